@@ -70,6 +70,7 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
     protected void doStop() throws Exception
     {
         pool.close();
+        super.doStop();
     }
 
     @Override
@@ -295,16 +296,65 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
         return true;
     }
 
+    /**
+     * <p>Closes up to the given number of idle connections.</p>
+     * <p>Only connections that are idle are closed, so that this method
+     * can be called concurrently with requests that are using this pool.</p>
+     *
+     * @param maxCount the max number of idle connections to close
+     * @return the number of connections closed
+     */
+    public int closeIdleConnections(int maxCount)
+    {
+        int closed = 0;
+        for (Pool<Connection>.Entry entry : pool.values())
+        {
+            if (closed >= maxCount)
+                break;
+            if (!pool.removeIdle(entry))
+                continue;
+            Connection connection = entry.getPooled();
+            ((Attachable)connection).setAttachment(null);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Removed idle {} {}", entry, pool);
+            released(connection);
+            removed(connection);
+            IO.close(connection);
+            ++closed;
+        }
+        return closed;
+    }
+
     protected void proceed()
     {
         requester.succeeded();
     }
 
+    /**
+     * @return the pool holding the connections
+     */
+    protected Pool<Connection> getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * <p>Acquires an entry from the pool, using the pool strategy.</p>
+     * <p>Subclasses may override this method to select the entry to acquire with
+     * their own policy, for example using {@link Pool#acquire(Pool.Entry)}.</p>
+     *
+     * @return an acquired entry, or {@code null} if no entry is available
+     */
+    protected Pool<Connection>.Entry acquireEntry()
+    {
+        return pool.acquire();
+    }
+
     protected Connection activate()
     {
         while (true)
         {
-            Pool<Connection>.Entry entry = pool.acquire();
+            Pool<Connection>.Entry entry = acquireEntry();
             if (entry != null)
             {
                 Connection connection = entry.getPooled();
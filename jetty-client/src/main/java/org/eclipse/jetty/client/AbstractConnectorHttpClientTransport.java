@@ -15,6 +15,7 @@ package org.eclipse.jetty.client;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jetty.client.api.Connection;
@@ -62,12 +63,31 @@ public abstract class AbstractConnectorHttpClientTransport extends AbstractHttpC
 
     @Override
     public void connect(InetSocketAddress address, Map<String, Object> context)
+    {
+        prepare(context);
+        connector.connect(address, context);
+    }
+
+    /**
+     * <p>Connects to the given addresses racing the connection attempts,
+     * see {@link ClientConnector#connect(List, Map)}.</p>
+     *
+     * @param addresses the addresses to connect to
+     * @param context the context information to establish the connection
+     */
+    @Override
+    public void connect(List<InetSocketAddress> addresses, Map<String, Object> context)
+    {
+        prepare(context);
+        connector.connect(addresses, context);
+    }
+
+    private void prepare(Map<String, Object> context)
     {
         HttpDestination destination = (HttpDestination)context.get(HTTP_DESTINATION_CONTEXT_KEY);
         context.put(ClientConnector.CLIENT_CONNECTION_FACTORY_CONTEXT_KEY, destination.getClientConnectionFactory());
         @SuppressWarnings("unchecked")
         Promise<Connection> promise = (Promise<Connection>)context.get(HTTP_CONNECTION_PROMISE_CONTEXT_KEY);
         context.put(ClientConnector.CONNECTION_PROMISE_CONTEXT_KEY, Promise.from(ioConnection -> {}, promise::failed));
-        connector.connect(address, context);
     }
 }
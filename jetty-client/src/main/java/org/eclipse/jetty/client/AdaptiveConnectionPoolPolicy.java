@@ -0,0 +1,303 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A policy that sizes an {@link AbstractConnectionPool} ahead of the demand of its destination.</p>
+ * <p>Connection pools open connections lazily, when requests are queued and no connection
+ * is available, so that under bursts of traffic requests wait for the connections to be
+ * established (for example, the TCP and TLS handshakes).
+ * This policy periodically samples, for its destination, the request rate, the time the
+ * requests waited in the queue, and the number of connections needed to serve the active
+ * and the queued requests; from these samples it computes a target number of connections,
+ * opening new connections before they are needed, and closing idle connections when the
+ * demand decreases, down to {@link #getMinConnections() a floor}.</p>
+ * <p>The target number of connections is the larger between the current demand and its
+ * moving average, multiplied by the growth of the request rate or of the demand when they
+ * are growing, plus {@link #getHeadroom() a headroom}; the headroom is doubled when, during
+ * the last period, requests waited in the queue on average longer than
+ * {@link #getMaxQueueTime() a threshold}.
+ * Connections in excess are closed one per period, only if they are idle, and only after
+ * the demand stayed below the connection count for as many periods as the moving averages
+ * need to settle.</p>
+ * <p>The policy is started and stopped with the connection pool, for example:</p>
+ * <pre>
+ * transport.setConnectionPoolFactory(destination -&gt;
+ * {
+ *     DuplexConnectionPool pool = new DuplexConnectionPool(destination, maxConnections, destination);
+ *     pool.addBean(new AdaptiveConnectionPoolPolicy(destination, pool));
+ *     return pool;
+ * });
+ * </pre>
+ */
+@ManagedObject("Adaptive sizing of a connection pool")
+public class AdaptiveConnectionPoolPolicy extends AbstractLifeCycle implements Runnable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConnectionPoolPolicy.class);
+
+    private final HttpDestination destination;
+    private final AbstractConnectionPool pool;
+    private final Scheduler scheduler;
+    private long period = 100;
+    private int minConnections;
+    private double headroom = 0.25;
+    private double smoothing = 0.25;
+    private long maxQueueTime = 1;
+    private Scheduler.Task task;
+    private long lastNanoTime;
+    private long lastQueued;
+    private long lastDequeued;
+    private long lastQueueTime;
+    private double rate;
+    private double queueTime;
+    private double demand;
+    private int target;
+    private int excessPeriods;
+
+    public AdaptiveConnectionPoolPolicy(HttpDestination destination, AbstractConnectionPool pool)
+    {
+        this.destination = Objects.requireNonNull(destination);
+        this.pool = Objects.requireNonNull(pool);
+        this.scheduler = destination.getHttpClient().getScheduler();
+    }
+
+    @ManagedAttribute("The sampling period in milliseconds")
+    public long getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * @param period the period, in milliseconds, at which the demand is sampled and the pool resized
+     */
+    public void setPeriod(long period)
+    {
+        if (period <= 0)
+            throw new IllegalArgumentException("Invalid period " + period);
+        this.period = period;
+    }
+
+    @ManagedAttribute("The min number of connections kept open")
+    public int getMinConnections()
+    {
+        return minConnections;
+    }
+
+    /**
+     * @param minConnections the min number of connections kept open, even if idle
+     */
+    public void setMinConnections(int minConnections)
+    {
+        this.minConnections = minConnections;
+    }
+
+    @ManagedAttribute("The fraction of connections opened in excess of the predicted demand")
+    public double getHeadroom()
+    {
+        return headroom;
+    }
+
+    public void setHeadroom(double headroom)
+    {
+        if (headroom < 0)
+            throw new IllegalArgumentException("Invalid headroom " + headroom);
+        this.headroom = headroom;
+    }
+
+    @ManagedAttribute("The weight of the last sample in the moving averages")
+    public double getSmoothing()
+    {
+        return smoothing;
+    }
+
+    /**
+     * @param smoothing the weight, between 0 (excluded) and 1 (included), of the last sample in the moving averages
+     */
+    public void setSmoothing(double smoothing)
+    {
+        if (smoothing <= 0 || smoothing > 1)
+            throw new IllegalArgumentException("Invalid smoothing " + smoothing);
+        this.smoothing = smoothing;
+    }
+
+    @ManagedAttribute("The queue time, in milliseconds, above which the headroom is doubled")
+    public long getMaxQueueTime()
+    {
+        return maxQueueTime;
+    }
+
+    /**
+     * @param maxQueueTime the average queue time, in milliseconds, above which the headroom is doubled
+     */
+    public void setMaxQueueTime(long maxQueueTime)
+    {
+        this.maxQueueTime = maxQueueTime;
+    }
+
+    @ManagedAttribute(value = "The moving average of the request rate, in requests per second", readonly = true)
+    public double getRequestRate()
+    {
+        return rate;
+    }
+
+    @ManagedAttribute(value = "The moving average of the queue time, in milliseconds", readonly = true)
+    public double getQueueTime()
+    {
+        return queueTime / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @ManagedAttribute(value = "The target number of connections", readonly = true)
+    public int getTargetConnections()
+    {
+        return target;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        lastNanoTime = System.nanoTime();
+        lastQueued = destination.getTotalQueuedRequestCount();
+        lastDequeued = destination.getTotalDequeuedRequestCount();
+        lastQueueTime = destination.getTotalQueueTime();
+        rate = 0;
+        queueTime = 0;
+        demand = 0;
+        target = getMinConnections();
+        excessPeriods = 0;
+        super.doStart();
+        schedule();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Scheduler.Task task = this.task;
+        if (task != null)
+            task.cancel();
+        super.doStop();
+    }
+
+    private void schedule()
+    {
+        if (isRunning())
+            task = scheduler.schedule(this, getPeriod(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run()
+    {
+        if (pool.isClosed())
+            return;
+        try
+        {
+            resize();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not resize {}", pool, x);
+        }
+        finally
+        {
+            schedule();
+        }
+    }
+
+    /**
+     * <p>Samples the demand and resizes the connection pool.</p>
+     * <p>This method is called periodically by the scheduler.</p>
+     */
+    protected void resize()
+    {
+        long now = System.nanoTime();
+        long queued = destination.getTotalQueuedRequestCount();
+        long dequeued = destination.getTotalDequeuedRequestCount();
+        long totalQueueTime = destination.getTotalQueueTime();
+        double elapsed = Math.max(1, now - lastNanoTime) / (double)TimeUnit.SECONDS.toNanos(1);
+        double currentRate = (queued - lastQueued) / elapsed;
+        long dequeuedInPeriod = dequeued - lastDequeued;
+        double currentQueueTime = dequeuedInPeriod > 0 ? (totalQueueTime - lastQueueTime) / (double)dequeuedInPeriod : 0;
+        lastNanoTime = now;
+        lastQueued = queued;
+        lastDequeued = dequeued;
+        lastQueueTime = totalQueueTime;
+
+        // The number of connections needed to serve the active and the queued requests.
+        int multiplex = Math.max(1, pool.getMaxMultiplex());
+        int queuedNow = destination.getQueuedRequestCount();
+        int currentDemand = pool.getActiveConnectionCount() + (queuedNow + multiplex - 1) / multiplex;
+
+        double previousRate = rate;
+        double previousDemand = demand;
+        rate = average(rate, currentRate);
+        queueTime = average(queueTime, currentQueueTime);
+        demand = average(demand, currentDemand);
+
+        double growth = Math.max(growth(previousRate, rate), growth(previousDemand, demand));
+        double headroom = getHeadroom();
+        if (currentQueueTime > TimeUnit.MILLISECONDS.toNanos(getMaxQueueTime()))
+            headroom *= 2;
+        double predicted = Math.max(currentDemand, demand) * growth * (1 + headroom);
+        int maxConnections = pool.getMaxConnectionCount();
+        target = Math.min(maxConnections, Math.max(getMinConnections(), (int)Math.ceil(predicted)));
+
+        int connections = pool.getConnectionCount();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resizing rate={}/s queue={}ns demand={}/{} target={} connections={} pending={} {}",
+                rate, queueTime, currentDemand, demand, target, connections, pool.getPendingConnectionCount(), pool);
+
+        if (connections < target)
+        {
+            // The connection count includes the pending connections.
+            pool.preCreateConnections(target - connections);
+        }
+        else if (connections > target && queuedNow == 0)
+        {
+            // Close excess connections only after the demand has
+            // stayed low for a while, to avoid churn on short dips.
+            if (++excessPeriods >= Math.ceil(1 / getSmoothing()))
+                pool.closeIdleConnections(1);
+        }
+        else
+        {
+            excessPeriods = 0;
+        }
+    }
+
+    private static double growth(double previous, double current)
+    {
+        return previous > 0 ? Math.min(2, Math.max(1, current / previous)) : 1;
+    }
+
+    private double average(double average, double sample)
+    {
+        double smoothing = getSmoothing();
+        return smoothing * sample + (1 - smoothing) * average;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[target=%d,rate=%.1f/s,queue=%.3fms]", getClass().getSimpleName(), hashCode(), getTargetConnections(), getRequestRate(), getQueueTime());
+    }
+}
@@ -0,0 +1,615 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A policy to send <em>hedged</em> requests, to reduce the tail latency
+ * caused by slow servers or slow connections.</p>
+ * <p>If an idempotent request has not received the response status and headers
+ * within {@link #getHedgeDelay() a delay}, a copy of the request (the hedge) is
+ * sent; the first of the two requests that receives a response wins, and the
+ * other request is aborted.
+ * The response of the winner is notified to the response listeners of the
+ * original request, so that applications see a single response.</p>
+ * <p>The delay is the {@link #getPercentile() percentile} of the latencies,
+ * from when requests are sent to when their responses begin, of the last
+ * {@link #getSampleSize() sampled} requests, so that only the slowest requests
+ * are hedged; requests are not hedged until {@link #getMinSamples() enough}
+ * latencies are sampled.</p>
+ * <p>To avoid that hedges overload servers that are already slow, each request
+ * earns a {@link #getBudgetRatio() fraction} of a hedge, up to
+ * {@link #getMaxBudget() a max budget}, and a hedge is sent only if a whole
+ * hedge has been earned: hedges add at most that fraction of requests to the
+ * load of the servers.</p>
+ * <p>Hedges are sent to the same destination by default, so that they use
+ * another connection of the destination connection pool; subclasses may
+ * override {@link #newHedgeURI(Request)} to send hedges to a different server.
+ * Hedges have the same headers, cookies, content and total timeout as the original
+ * requests, but do not notify request listeners.
+ * Requests whose content cannot be {@link Request.Content#isReproducible()
+ * reproduced} are not hedged.
+ * Once a hedge wins, aborting the original request has no effect on the hedge.</p>
+ * <p>When the hedge wins, the exchange of the original request is aborted with a
+ * {@link CancellationException}, but the original request is not, so its
+ * {@link Request#getAbortCause() abort cause} remains {@code null}.
+ * However, if the original request has not been completely sent yet, for example
+ * because it is queued waiting for a connection, its request listeners are notified
+ * of the failure with that {@link CancellationException}.</p>
+ * <p>The policy is configured with {@link HttpClient#setHedgingPolicy(HedgingPolicy)}.</p>
+ */
+@ManagedObject("Hedging of idempotent requests")
+public class HedgingPolicy
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HedgingPolicy.class);
+
+    private final AutoLock lock = new AutoLock();
+    private final ResponseNotifier notifier = new ResponseNotifier();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private long[] samples = new long[512];
+    private int sampleCount;
+    private int sampleIndex;
+    private int samplesSinceUpdate;
+    private long delayNanos = -1;
+    private double budget;
+    private double percentile = 95;
+    private long minDelay = 5;
+    private int minSamples = 20;
+    private double budgetRatio = 0.1;
+    private int maxBudget = 10;
+
+    @ManagedAttribute("The percentile of the response latencies after which requests are hedged")
+    public double getPercentile()
+    {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile)
+    {
+        if (percentile <= 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+        try (AutoLock l = lock.lock())
+        {
+            this.percentile = percentile;
+            updateDelay();
+        }
+    }
+
+    @ManagedAttribute("The min delay, in milliseconds, after which requests are hedged")
+    public long getMinDelay()
+    {
+        return minDelay;
+    }
+
+    public void setMinDelay(long minDelay)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            this.minDelay = minDelay;
+            updateDelay();
+        }
+    }
+
+    @ManagedAttribute("The number of the most recent response latencies sampled")
+    public int getSampleSize()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return samples.length;
+        }
+    }
+
+    public void setSampleSize(int sampleSize)
+    {
+        if (sampleSize <= 0)
+            throw new IllegalArgumentException("Invalid sample size " + sampleSize);
+        try (AutoLock l = lock.lock())
+        {
+            samples = new long[sampleSize];
+            sampleCount = 0;
+            sampleIndex = 0;
+            updateDelay();
+        }
+    }
+
+    @ManagedAttribute("The min number of response latencies sampled before requests are hedged")
+    public int getMinSamples()
+    {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            this.minSamples = minSamples;
+            updateDelay();
+        }
+    }
+
+    @ManagedAttribute("The fraction of a hedge earned by each request")
+    public double getBudgetRatio()
+    {
+        return budgetRatio;
+    }
+
+    public void setBudgetRatio(double budgetRatio)
+    {
+        if (budgetRatio < 0)
+            throw new IllegalArgumentException("Invalid budget ratio " + budgetRatio);
+        this.budgetRatio = budgetRatio;
+    }
+
+    @ManagedAttribute("The max number of hedges that can be earned")
+    public int getMaxBudget()
+    {
+        return maxBudget;
+    }
+
+    public void setMaxBudget(int maxBudget)
+    {
+        this.maxBudget = maxBudget;
+    }
+
+    /**
+     * @return the current delay, in milliseconds, after which requests are hedged,
+     * or {@code -1} if not enough response latencies have been sampled yet
+     */
+    @ManagedAttribute(value = "The current delay, in milliseconds, after which requests are hedged", readonly = true)
+    public long getHedgeDelay()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return delayNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(delayNanos);
+        }
+    }
+
+    @ManagedAttribute(value = "The number of requests that could be hedged", readonly = true)
+    public long getRequestCount()
+    {
+        return requests.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of hedges sent", readonly = true)
+    public long getHedgeCount()
+    {
+        return hedges.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of hedges that received a response before the original request", readonly = true)
+    public long getHedgeWinCount()
+    {
+        return hedgeWins.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of hedges not sent because the budget was exhausted", readonly = true)
+    public long getBudgetExhaustedCount()
+    {
+        return budgetExhausted.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        requests.reset();
+        hedges.reset();
+        hedgeWins.reset();
+        budgetExhausted.reset();
+    }
+
+    /**
+     * <p>Sends the given request, hedging it if it is idempotent
+     * and does not receive a response within the hedge delay.</p>
+     *
+     * @param request the request to send
+     * @param listeners the response listeners of the request
+     * @param sender the function that sends requests to the network
+     */
+    protected void send(HttpRequest request, List<Response.ResponseListener> listeners, BiConsumer<HttpRequest, List<Response.ResponseListener>> sender)
+    {
+        if (!isHedgeable(request))
+        {
+            sender.accept(request, listeners);
+            return;
+        }
+
+        requests.increment();
+        long delay;
+        try (AutoLock l = lock.lock())
+        {
+            budget = Math.min(maxBudget, budget + budgetRatio);
+            delay = delayNanos;
+        }
+        new Hedging(request, listeners, sender).send(delay);
+    }
+
+    private boolean isHedgeable(HttpRequest request)
+    {
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method == null || !method.isIdempotent())
+            return false;
+        Request.Content body = request.getBody();
+        if (body != null && !body.isReproducible())
+            return false;
+        return request.getUpgradeProtocol() == null;
+    }
+
+    /**
+     * @param request the request to hedge
+     * @return the URI to send the hedge of the given request to
+     */
+    protected URI newHedgeURI(Request request)
+    {
+        return request.getURI();
+    }
+
+    private HttpRequest newHedge(HttpRequest request)
+    {
+        long timeout = 0;
+        long timeoutAt = request.getTimeoutAt();
+        if (timeoutAt != -1)
+        {
+            timeout = TimeUnit.NANOSECONDS.toMillis(timeoutAt - System.nanoTime());
+            // Not worth hedging a request that is about to expire.
+            if (timeout <= 0)
+                return null;
+        }
+
+        HttpClient client = request.getHttpClient();
+        HttpRequest hedge = client.newHttpRequest(new HttpConversation(), newHedgeURI(request));
+        hedge.method(request.getMethod())
+            .version(request.getVersion())
+            .body(request.getBody())
+            .idleTimeout(request.getIdleTimeout(), TimeUnit.MILLISECONDS)
+            .timeout(timeout, TimeUnit.MILLISECONDS)
+            .followRedirects(request.isFollowRedirects());
+        // The Host header is not copied, as the hedge may be sent to a different server.
+        hedge.copyHeaders(request);
+        request.getAttributes().forEach(hedge::attribute);
+        hedge.sent();
+        return hedge;
+    }
+
+    private boolean acquireBudget()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            if (budget < 1)
+                return false;
+            --budget;
+            return true;
+        }
+    }
+
+    private void sample(long latency)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            samples[sampleIndex] = latency;
+            sampleIndex = (sampleIndex + 1) % samples.length;
+            if (sampleCount < samples.length)
+                ++sampleCount;
+            // Sorting the samples is expensive, so the delay is
+            // not updated for every sample, but periodically.
+            if (delayNanos < 0 || ++samplesSinceUpdate >= Math.max(1, samples.length / 16))
+                updateDelay();
+        }
+    }
+
+    private void updateDelay()
+    {
+        assert lock.isHeldByCurrentThread();
+        samplesSinceUpdate = 0;
+        if (sampleCount < Math.max(1, minSamples))
+        {
+            delayNanos = -1;
+            return;
+        }
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int)Math.ceil(percentile / 100 * sampleCount) - 1;
+        delayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(minDelay), sorted[Math.max(0, index)]);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[delay=%d,requests=%d,hedges=%d,wins=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getHedgeDelay(),
+            getRequestCount(),
+            getHedgeCount(),
+            getHedgeWinCount());
+    }
+
+    /**
+     * <p>The state of a request and of its hedge, if any.</p>
+     */
+    private class Hedging
+    {
+        private final AutoLock lock = new AutoLock();
+        private final HttpRequest request;
+        private final List<Response.ResponseListener> listeners;
+        private final BiConsumer<HttpRequest, List<Response.ResponseListener>> sender;
+        private Attempt primary;
+        private Attempt secondary;
+        private Attempt winner;
+        private Scheduler.Task task;
+        private boolean failed;
+
+        private Hedging(HttpRequest request, List<Response.ResponseListener> listeners, BiConsumer<HttpRequest, List<Response.ResponseListener>> sender)
+        {
+            this.request = request;
+            this.listeners = listeners;
+            this.sender = sender;
+        }
+
+        private void send(long delay)
+        {
+            Attempt attempt = new Attempt(this, request);
+            try (AutoLock l = lock.lock())
+            {
+                primary = attempt;
+                if (delay >= 0)
+                    task = request.getHttpClient().getScheduler().schedule(this::expired, delay, TimeUnit.NANOSECONDS);
+            }
+            sender.accept(request, attempt.listeners);
+        }
+
+        private void expired()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null || failed)
+                    return;
+            }
+
+            if (!acquireBudget())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Hedging budget exhausted for {}", request);
+                budgetExhausted.increment();
+                return;
+            }
+
+            HttpRequest hedge = newHedge(request);
+            if (hedge == null)
+                return;
+
+            Attempt attempt = new Attempt(this, hedge);
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null || failed)
+                    return;
+                secondary = attempt;
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Hedging {} with {}", request, hedge);
+            hedges.increment();
+            sender.accept(hedge, attempt.listeners);
+        }
+
+        private boolean win(Attempt attempt)
+        {
+            Attempt other;
+            Scheduler.Task task;
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null)
+                    return winner == attempt;
+                winner = attempt;
+                other = attempt == primary ? secondary : primary;
+                task = this.task;
+            }
+            if (task != null)
+                task.cancel();
+            if (attempt != primary)
+                hedgeWins.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Hedging won by {} for {}", attempt.request, request);
+            if (other != null)
+                other.abort(new CancellationException("Hedged request lost"));
+            return true;
+        }
+
+        private void lost(Attempt attempt, Result result)
+        {
+            Attempt other;
+            Scheduler.Task task;
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null || failed)
+                    return;
+                attempt.failed = true;
+                other = attempt == primary ? secondary : primary;
+                failed = other == null || other.failed;
+                task = this.task;
+            }
+
+            if (failed)
+            {
+                if (task != null)
+                    task.cancel();
+                Response response = result.getResponse();
+                notifier.notifyFailure(listeners, response, result.getFailure());
+                notifier.notifyComplete(listeners, new Result(request, result.getRequestFailure(), response, result.getResponseFailure()));
+            }
+            else
+            {
+                // If the application aborted the original request, abort the hedge too.
+                Throwable cause = request.getAbortCause();
+                if (attempt == primary && cause != null)
+                    other.abort(cause);
+            }
+        }
+    }
+
+    /**
+     * <p>The response listener of either the original request or its hedge.</p>
+     * <p>When an attempt wins, it replaces itself with the application
+     * response listeners, so that they are notified directly of the
+     * subsequent response events; events forwarded by protocol handlers
+     * to the listeners they captured are forwarded by this listener.</p>
+     */
+    private class Attempt implements Response.Listener
+    {
+        private final List<Response.ResponseListener> listeners = new ArrayList<>(2);
+        private final long beginNanoTime = System.nanoTime();
+        private final Hedging hedging;
+        private final HttpRequest request;
+        private boolean won;
+        private boolean failed;
+
+        private Attempt(Hedging hedging, HttpRequest request)
+        {
+            this.hedging = hedging;
+            this.request = request;
+            listeners.add(this);
+        }
+
+        private void abort(Throwable cause)
+        {
+            // Abort the exchange, not the original request, so that its abort cause
+            // remains null; its request listeners are notified of the failure only
+            // if the request has not been completely sent, see the class javadoc.
+            if (request == hedging.request)
+                request.getConversation().abort(cause);
+            else
+                request.abort(cause);
+        }
+
+        @Override
+        public void onBegin(Response response)
+        {
+            sample(System.nanoTime() - beginNanoTime);
+            if (!hedging.win(this))
+                return;
+            won = true;
+            // Events happen in the same thread, so the listeners of the
+            // exchange can be safely replaced before the next event.
+            int index = listeners.indexOf(this);
+            if (index >= 0)
+            {
+                listeners.remove(index);
+                listeners.addAll(index, hedging.listeners);
+                request.getConversation().updateResponseListeners(null);
+            }
+            notifier.notifyBegin(hedging.listeners, response);
+        }
+
+        @Override
+        public boolean onHeader(Response response, HttpField field)
+        {
+            if (won)
+                return notifier.notifyHeader(hedging.listeners, response, field);
+            return true;
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            if (won)
+                notifier.notifyHeaders(hedging.listeners, response);
+        }
+
+        @Override
+        public void onBeforeContent(Response response, LongConsumer demand)
+        {
+            if (won)
+                notifier.notifyBeforeContent(response, (context, value) -> demand.accept(value), contentListeners());
+            else
+                demand.accept(1);
+        }
+
+        @Override
+        public void onContent(Response response, LongConsumer demand, ByteBuffer content, Callback callback)
+        {
+            if (won)
+            {
+                notifier.notifyContent(response, (context, value) -> demand.accept(value), content, callback, contentListeners());
+            }
+            else
+            {
+                callback.succeeded();
+                demand.accept(1);
+            }
+        }
+
+        private List<Response.DemandedContentListener> contentListeners()
+        {
+            return hedging.listeners.stream()
+                .filter(Response.DemandedContentListener.class::isInstance)
+                .map(Response.DemandedContentListener.class::cast)
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public void onSuccess(Response response)
+        {
+            if (won)
+                notifier.notifySuccess(hedging.listeners, response);
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable failure)
+        {
+            if (won)
+                notifier.notifyFailure(hedging.listeners, response, failure);
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            if (won)
+                notifier.notifyComplete(hedging.listeners, new Result(hedging.request, result.getRequestFailure(), result.getResponse(), result.getResponseFailure()));
+            else
+                hedging.lost(this, result);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), request);
+        }
+    }
+}
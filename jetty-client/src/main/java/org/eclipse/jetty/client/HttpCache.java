@@ -0,0 +1,839 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A private, in-memory cache of HTTP responses, as defined by
+ * <a href="https://tools.ietf.org/html/rfc7234">RFC 7234</a>.</p>
+ * <p>The cache stores the cacheable responses to {@code GET} requests, up to
+ * {@link #getMaxSize() a total size} in bytes, evicting the least recently used
+ * responses; responses larger than {@link #getMaxEntrySize() a max size} are not
+ * stored.
+ * Responses with a {@code Vary} header are stored as variants, one for each
+ * combination of the values of the request headers listed by {@code Vary}.</p>
+ * <p>Fresh responses are served from the cache without contacting the server.
+ * Stale responses with a validator ({@code ETag} or {@code Last-Modified}) are
+ * revalidated with a conditional request: if the server replies {@code 304 Not Modified},
+ * the stored response is refreshed and served to the application, otherwise the new
+ * response is forwarded to the application and stored.
+ * Stale responses within their {@code stale-while-revalidate} window, as defined by
+ * <a href="https://tools.ietf.org/html/rfc5861">RFC 5861</a>, are served while they
+ * are revalidated in the background.
+ * Requests with unsafe methods, such as {@code POST}, invalidate the responses stored
+ * for their URI.</p>
+ * <p>The cache is configured with {@link HttpClient#setHttpCache(HttpCache)}, and it is
+ * also the {@link ProtocolHandler} of the {@code 304} responses to its conditional requests.
+ * Responses served from the cache are notified to the response listeners, but the request
+ * listeners are not notified because the request is not sent.</p>
+ */
+@ManagedObject("HTTP response cache")
+public class HttpCache implements ProtocolHandler
+{
+    public static final String NAME = "cache";
+    private static final Logger LOG = LoggerFactory.getLogger(HttpCache.class);
+    private static final String ATTRIBUTE = HttpCache.class.getName() + ".revalidation";
+
+    private final AutoLock lock = new AutoLock();
+    private final Map<String, List<Entry>> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final ResponseNotifier notifier = new ResponseNotifier();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder backgroundRevalidations = new LongAdder();
+    private long size;
+    private long evictions;
+    private long maxSize = 32 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @ManagedAttribute("The max total size, in bytes, of the stored responses")
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    @ManagedAttribute("The max size, in bytes, of a stored response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute(value = "The total size, in bytes, of the stored responses", readonly = true)
+    public long getSize()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return size;
+        }
+    }
+
+    @ManagedAttribute(value = "The number of stored responses", readonly = true)
+    public int getEntryCount()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return entries.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    @ManagedAttribute(value = "The number of responses served from the cache without contacting the server", readonly = true)
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute(value = "The number of cacheable requests forwarded to the server", readonly = true)
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute(value = "The number of conditional requests sent to revalidate stale responses", readonly = true)
+    public long getRevalidationCount()
+    {
+        return revalidations.sum();
+    }
+
+    @ManagedAttribute(value = "The number of revalidations that confirmed the stored response", readonly = true)
+    public long getValidationCount()
+    {
+        return validations.sum();
+    }
+
+    @ManagedAttribute(value = "The number of revalidations performed in the background", readonly = true)
+    public long getBackgroundRevalidationCount()
+    {
+        return backgroundRevalidations.sum();
+    }
+
+    @ManagedAttribute(value = "The number of responses evicted to make room for others", readonly = true)
+    public long getEvictionCount()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return evictions;
+        }
+    }
+
+    /**
+     * @return the ratio between the cacheable requests that were served with a stored
+     * response, either directly or after a revalidation, and all the cacheable requests
+     */
+    @ManagedAttribute(value = "The ratio of cacheable requests served with a stored response", readonly = true)
+    public double getHitRatio()
+    {
+        long hits = getHitCount();
+        long total = hits + getMissCount() + getRevalidationCount();
+        return total == 0 ? 0 : (double)(hits + getValidationCount()) / total;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        revalidations.reset();
+        validations.reset();
+        backgroundRevalidations.reset();
+        try (AutoLock l = lock.lock())
+        {
+            evictions = 0;
+        }
+    }
+
+    @ManagedOperation(value = "Removes all the stored responses", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * <p>Sends the given request, unless it can be served with a stored response.</p>
+     *
+     * @param request the request to send
+     * @param listeners the response listeners
+     * @param sender the function that sends requests to the server
+     */
+    protected void send(HttpRequest request, List<Response.ResponseListener> listeners, BiConsumer<HttpRequest, List<Response.ResponseListener>> sender)
+    {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.is(method))
+        {
+            if (!isSafe(method))
+                listeners = with(listeners, new InvalidationListener(key(request)));
+            sender.accept(request, listeners);
+            return;
+        }
+
+        HttpFields headers = request.getHeaders();
+        Map<String, String> directives = directives(headers);
+        if (directives.containsKey("no-store") || isConditional(headers) || headers.contains(HttpHeader.RANGE))
+        {
+            sender.accept(request, listeners);
+            return;
+        }
+
+        String key = key(request);
+        Entry entry = get(key, headers);
+        if (entry != null && isUsable(entry, headers, directives))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Cache hit {} for {}", entry, request);
+            hits.increment();
+            serve(entry, request, listeners);
+            if (entry.isStale(System.nanoTime()))
+                revalidate(entry, request, sender);
+            return;
+        }
+
+        if (directives.containsKey("only-if-cached"))
+        {
+            misses.increment();
+            serveGatewayTimeout(request, listeners);
+            return;
+        }
+
+        CacheListener listener;
+        if (entry != null && entry.hasValidators())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Cache revalidation {} for {}", entry, request);
+            revalidations.increment();
+            listener = new CacheListener(key, request, entry);
+            request.headers(entry::addValidators);
+            request.attribute(ATTRIBUTE, listener);
+        }
+        else
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Cache miss for {}", request);
+            misses.increment();
+            listener = new CacheListener(key, request, null);
+        }
+        sender.accept(request, with(listeners, listener));
+    }
+
+    private boolean isUsable(Entry entry, HttpFields headers, Map<String, String> directives)
+    {
+        boolean noCache = directives.containsKey("no-cache") ||
+            (!headers.contains(HttpHeader.CACHE_CONTROL) && headers.contains(HttpHeader.PRAGMA, "no-cache"));
+        if (noCache || entry.noCache)
+            return false;
+
+        long age = entry.getAge(System.nanoTime());
+        if (age > millis(directives, "max-age", Long.MAX_VALUE))
+            return false;
+        if (age < entry.freshness)
+            return age + millis(directives, "min-fresh", 0) < entry.freshness;
+        if (entry.mustRevalidate)
+            return false;
+
+        long staleness = age - entry.freshness;
+        long maxStale = directives.containsKey("max-stale") ? millis(directives, "max-stale", Long.MAX_VALUE) : -1;
+        return staleness <= maxStale || staleness < entry.staleWhileRevalidate;
+    }
+
+    private void revalidate(Entry entry, HttpRequest request, BiConsumer<HttpRequest, List<Response.ResponseListener>> sender)
+    {
+        if (!entry.hasValidators() || !entry.revalidating.compareAndSet(false, true))
+            return;
+
+        backgroundRevalidations.increment();
+        HttpClient client = request.getHttpClient();
+        HttpRequest revalidation = client.newHttpRequest(new HttpConversation(), request.getURI());
+        revalidation.method(HttpMethod.GET)
+            .version(request.getVersion())
+            .idleTimeout(request.getIdleTimeout(), TimeUnit.MILLISECONDS)
+            .timeout(request.getTimeout(), TimeUnit.MILLISECONDS);
+        // The same headers as the request, so that the variant of the response matches.
+        revalidation.copyHeaders(request)
+            .headers(entry::addValidators);
+        CacheListener listener = new CacheListener(entry.key, revalidation, entry);
+        revalidation.attribute(ATTRIBUTE, listener);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Cache background revalidation {} with {}", entry, revalidation);
+        revalidation.sent();
+        sender.accept(revalidation, with(new ArrayList<>(), listener));
+    }
+
+    @Override
+    public boolean accept(Request request, Response response)
+    {
+        return response.getStatus() == HttpStatus.NOT_MODIFIED_304 &&
+            request.getAttributes().get(ATTRIBUTE) instanceof CacheListener;
+    }
+
+    @Override
+    public Response.Listener getResponseListener()
+    {
+        return new NotModifiedListener();
+    }
+
+    private void serve(Entry entry, HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        long age = TimeUnit.MILLISECONDS.toSeconds(entry.getAge(System.nanoTime()));
+        List<Response.ResponseListener> responseListeners = without(listeners);
+        HttpResponse response = new HttpResponse(request, responseListeners)
+            .version(entry.version)
+            .status(entry.status)
+            .reason(entry.reason)
+            .headers(headers -> headers.add(entry.headers).put(HttpHeader.AGE, String.valueOf(age)));
+        // Applications and listeners may modify the content, so they are given a copy.
+        byte[] content = entry.content.clone();
+        notifier.forwardSuccessComplete(responseListeners, request, new HttpContentResponse(response, content, entry.mediaType, entry.encoding));
+    }
+
+    private void serveGatewayTimeout(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        HttpResponse response = new HttpResponse(request, listeners)
+            .version(request.getVersion())
+            .status(HttpStatus.GATEWAY_TIMEOUT_504)
+            .reason(HttpStatus.getMessage(HttpStatus.GATEWAY_TIMEOUT_504));
+        notifier.forwardSuccessComplete(listeners, request, new HttpContentResponse(response, new byte[0], null, null));
+    }
+
+    private Entry get(String key, HttpFields requestHeaders)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            List<Entry> variants = entries.get(key);
+            if (variants == null)
+                return null;
+            for (Entry entry : variants)
+            {
+                if (entry.matches(requestHeaders))
+                    return entry;
+            }
+            return null;
+        }
+    }
+
+    private void put(Entry entry)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            List<Entry> variants = entries.computeIfAbsent(entry.key, k -> new ArrayList<>(1));
+            Iterator<Entry> iterator = variants.iterator();
+            while (iterator.hasNext())
+            {
+                Entry variant = iterator.next();
+                if (variant.variant.equals(entry.variant))
+                {
+                    iterator.remove();
+                    size -= variant.size;
+                }
+            }
+            variants.add(entry);
+            size += entry.size;
+
+            // Evict the least recently used responses.
+            Iterator<List<Entry>> lru = entries.values().iterator();
+            while (size > getMaxSize() && lru.hasNext())
+            {
+                List<Entry> evicted = lru.next();
+                lru.remove();
+                for (Entry variant : evicted)
+                {
+                    size -= variant.size;
+                    ++evictions;
+                }
+            }
+        }
+    }
+
+    private void remove(String key)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            List<Entry> variants = entries.remove(key);
+            if (variants != null)
+            {
+                for (Entry variant : variants)
+                {
+                    size -= variant.size;
+                }
+            }
+        }
+    }
+
+    private void store(CacheListener listener, Response response, byte[] content)
+    {
+        HttpFields headers = response.getHeaders();
+        Entry entry = new Entry(listener.key, listener.request.getHeaders(), response.getVersion(), response.getStatus(), response.getReason(),
+            headers.asImmutable(), content, listener.requestTime, listener.responseTime, listener.responseNanoTime);
+        if (entry.freshness <= 0 && !entry.hasValidators())
+            return;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Cache store {}", entry);
+        put(entry);
+    }
+
+    private Entry update(CacheListener listener, Response response)
+    {
+        // Replace the stored headers with the ones of the 304 response.
+        Entry entry = listener.revalidated;
+        HttpFields.Mutable headers = HttpFields.build(entry.headers);
+        HttpFields notModified = response.getHeaders();
+        for (HttpField field : notModified)
+        {
+            HttpHeader header = field.getHeader();
+            if (header != HttpHeader.CONTENT_LENGTH && header != HttpHeader.TRANSFER_ENCODING && header != HttpHeader.CONTENT_ENCODING)
+                headers.remove(field.getName());
+        }
+        for (HttpField field : notModified)
+        {
+            HttpHeader header = field.getHeader();
+            if (header != HttpHeader.CONTENT_LENGTH && header != HttpHeader.TRANSFER_ENCODING && header != HttpHeader.CONTENT_ENCODING)
+                headers.add(field);
+        }
+
+        Entry updated = new Entry(entry.key, listener.request.getHeaders(), entry.version, entry.status, entry.reason,
+            headers.asImmutable(), entry.content, listener.requestTime, listener.responseTime, listener.responseNanoTime);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Cache update {}", updated);
+        put(updated);
+        return updated;
+    }
+
+    private static String key(HttpRequest request)
+    {
+        return request.getURI().toString();
+    }
+
+    private static boolean isSafe(String method)
+    {
+        return HttpMethod.HEAD.is(method) || HttpMethod.OPTIONS.is(method) || HttpMethod.TRACE.is(method);
+    }
+
+    private static boolean isConditional(HttpFields headers)
+    {
+        return headers.contains(HttpHeader.IF_NONE_MATCH) ||
+            headers.contains(HttpHeader.IF_MODIFIED_SINCE) ||
+            headers.contains(HttpHeader.IF_MATCH) ||
+            headers.contains(HttpHeader.IF_UNMODIFIED_SINCE) ||
+            headers.contains(HttpHeader.IF_RANGE);
+    }
+
+    /**
+     * <p>Returns whether the given response may be stored, only looking at its headers,
+     * so that the content of the responses that cannot be stored is not buffered.</p>
+     *
+     * @param response the response
+     * @return whether the response may be stored
+     */
+    private static boolean isStorable(Response response)
+    {
+        HttpFields headers = response.getHeaders();
+        Map<String, String> directives = directives(headers);
+        if (!isCacheable(response.getStatus()) ||
+            directives.containsKey("no-store") ||
+            headers.getCSV(HttpHeader.VARY, false).contains("*"))
+            return false;
+        // Responses without validators must be fresh.
+        return headers.contains(HttpHeader.ETAG) ||
+            headers.contains(HttpHeader.LAST_MODIFIED) ||
+            millis(directives, "max-age", 0) > 0 ||
+            headers.contains(HttpHeader.EXPIRES);
+    }
+
+    private static boolean isCacheable(int status)
+    {
+        switch (status)
+        {
+            case HttpStatus.OK_200:
+            case HttpStatus.NON_AUTHORITATIVE_INFORMATION_203:
+            case HttpStatus.NO_CONTENT_204:
+            case HttpStatus.MULTIPLE_CHOICES_300:
+            case HttpStatus.MOVED_PERMANENTLY_301:
+            case HttpStatus.NOT_FOUND_404:
+            case HttpStatus.METHOD_NOT_ALLOWED_405:
+            case HttpStatus.GONE_410:
+            case HttpStatus.URI_TOO_LONG_414:
+            case HttpStatus.NOT_IMPLEMENTED_501:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Map<String, String> directives(HttpFields headers)
+    {
+        return directives(headers.getCSV(HttpHeader.CACHE_CONTROL, false));
+    }
+
+    private static Map<String, String> directives(List<String> values)
+    {
+        Map<String, String> directives = new HashMap<>();
+        for (String value : values)
+        {
+            int equals = value.indexOf('=');
+            if (equals < 0)
+                directives.put(value.trim().toLowerCase(Locale.ENGLISH), null);
+            else
+                directives.put(value.substring(0, equals).trim().toLowerCase(Locale.ENGLISH), value.substring(equals + 1).trim());
+        }
+        return directives;
+    }
+
+    private static long millis(Map<String, String> directives, String name, long defaultValue)
+    {
+        if (!directives.containsKey(name))
+            return defaultValue;
+        String value = directives.get(name);
+        if (value == null)
+            return defaultValue;
+        try
+        {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        }
+        catch (NumberFormatException x)
+        {
+            // Invalid values make the response stale.
+            return 0;
+        }
+    }
+
+    private static long date(HttpFields headers, HttpHeader header)
+    {
+        String value = headers.get(header);
+        return value == null ? -1 : DateParser.parseDate(value);
+    }
+
+    private static List<Response.ResponseListener> with(List<Response.ResponseListener> listeners, Response.ResponseListener listener)
+    {
+        // The cache listener is notified first, so that the cache is
+        // updated when the application is notified of the completion.
+        List<Response.ResponseListener> result = new ArrayList<>(listeners.size() + 1);
+        result.add(listener);
+        result.addAll(listeners);
+        return result;
+    }
+
+    private static List<Response.ResponseListener> without(List<Response.ResponseListener> listeners)
+    {
+        return listeners.stream()
+            .filter(listener -> !(listener instanceof CacheListener))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[entries=%d,size=%d/%d,hitRatio=%.3f]", getClass().getSimpleName(), hashCode(), getEntryCount(), getSize(), getMaxSize(), getHitRatio());
+    }
+
+    private static class Entry
+    {
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+        private final String key;
+        private final Map<String, String> variant = new HashMap<>();
+        private final HttpVersion version;
+        private final int status;
+        private final String reason;
+        private final HttpFields headers;
+        private final byte[] content;
+        private final String mediaType;
+        private final String encoding;
+        private final String etag;
+        private final String lastModified;
+        private final long responseNanoTime;
+        private final long initialAge;
+        private final long freshness;
+        private final long staleWhileRevalidate;
+        private final boolean noCache;
+        private final boolean mustRevalidate;
+        private final long size;
+
+        private Entry(String key, HttpFields requestHeaders, HttpVersion version, int status, String reason, HttpFields headers, byte[] content, long requestTime, long responseTime, long responseNanoTime)
+        {
+            this.key = key;
+            this.version = version;
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.content = content;
+            this.responseNanoTime = responseNanoTime;
+
+            long size = key.length() + content.length;
+            for (HttpField field : headers)
+            {
+                size += field.getName().length() + field.getValue().length();
+            }
+            for (String name : headers.getCSV(HttpHeader.VARY, false))
+            {
+                String lowerName = name.toLowerCase(Locale.ENGLISH);
+                variant.put(lowerName, String.join(",", requestHeaders.getValuesList(lowerName)));
+            }
+            this.size = size;
+
+            String contentType = headers.get(HttpHeader.CONTENT_TYPE);
+            mediaType = contentType == null ? null : MimeTypes.getContentTypeWithoutCharset(contentType);
+            encoding = contentType == null ? null : MimeTypes.getCharsetFromContentType(contentType);
+            etag = headers.get(HttpHeader.ETAG);
+            lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+
+            // See RFC 7234, section 4.2.3.
+            long date = date(headers, HttpHeader.DATE);
+            if (date < 0)
+                date = responseTime;
+            long ageValue;
+            try
+            {
+                ageValue = TimeUnit.SECONDS.toMillis(Math.max(0, headers.getLongField(HttpHeader.AGE)));
+            }
+            catch (NumberFormatException x)
+            {
+                ageValue = 0;
+            }
+            long apparentAge = Math.max(0, responseTime - date);
+            long correctedAge = ageValue + Math.max(0, responseTime - requestTime);
+            initialAge = Math.max(apparentAge, correctedAge);
+
+            // See RFC 7234, section 4.2.1.
+            Map<String, String> directives = directives(headers.getCSV(HttpHeader.CACHE_CONTROL, false));
+            if (directives.containsKey("max-age"))
+            {
+                freshness = millis(directives, "max-age", 0);
+            }
+            else if (headers.contains(HttpHeader.EXPIRES))
+            {
+                long expires = date(headers, HttpHeader.EXPIRES);
+                freshness = expires < 0 ? 0 : expires - date;
+            }
+            else
+            {
+                // Heuristic freshness, see RFC 7234, section 4.2.2.
+                long modified = date(headers, HttpHeader.LAST_MODIFIED);
+                freshness = modified < 0 ? 0 : Math.max(0, date - modified) / 10;
+            }
+            staleWhileRevalidate = millis(directives, "stale-while-revalidate", 0);
+            noCache = directives.containsKey("no-cache");
+            mustRevalidate = directives.containsKey("must-revalidate");
+        }
+
+        private long getAge(long nanoTime)
+        {
+            return initialAge + TimeUnit.NANOSECONDS.toMillis(nanoTime - responseNanoTime);
+        }
+
+        private boolean isStale(long nanoTime)
+        {
+            return getAge(nanoTime) >= freshness;
+        }
+
+        private boolean hasValidators()
+        {
+            return etag != null || lastModified != null;
+        }
+
+        private void addValidators(HttpFields.Mutable headers)
+        {
+            if (etag != null)
+                headers.put(HttpHeader.IF_NONE_MATCH, etag);
+            if (lastModified != null)
+                headers.put(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+        }
+
+        private boolean matches(HttpFields requestHeaders)
+        {
+            for (Map.Entry<String, String> entry : variant.entrySet())
+            {
+                if (!entry.getValue().equals(String.join(",", requestHeaders.getValuesList(entry.getKey()))))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,%d,size=%d,freshness=%dms,variant=%s]", getClass().getSimpleName(), hashCode(), key, status, size, freshness, variant);
+        }
+    }
+
+    /**
+     * <p>Stores the response to a cacheable request, if the response is cacheable.</p>
+     */
+    private class CacheListener extends Response.Listener.Adapter
+    {
+        private final String key;
+        private final HttpRequest request;
+        private final Entry revalidated;
+        private final long requestTime = System.currentTimeMillis();
+        private ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private long responseTime;
+        private long responseNanoTime;
+
+        private CacheListener(String key, HttpRequest request, Entry revalidated)
+        {
+            this.key = key;
+            this.request = request;
+            this.revalidated = revalidated;
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            responseTime = System.currentTimeMillis();
+            responseNanoTime = System.nanoTime();
+            if (!isStorable(response) || response.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH) > getMaxEntrySize())
+                content = null;
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer buffer)
+        {
+            ByteArrayOutputStream content = this.content;
+            if (content == null)
+                return;
+            if (content.size() + buffer.remaining() > getMaxEntrySize())
+            {
+                this.content = null;
+                return;
+            }
+            try
+            {
+                BufferUtil.writeTo(buffer, content);
+            }
+            catch (IOException x)
+            {
+                this.content = null;
+            }
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            if (revalidated != null)
+                revalidated.revalidating.set(false);
+            Response response = result.getResponse();
+            // Only store the response to this request, or to its hedge,
+            // and not the final response of a conversation (e.g. a redirect).
+            if (result.isSucceeded() && content != null && request.getURI().equals(response.getRequest().getURI()))
+                store(this, response, content.toByteArray());
+        }
+
+        private Entry notModified(Response response)
+        {
+            // The stored response is served, and must not be stored again.
+            content = null;
+            responseTime = System.currentTimeMillis();
+            responseNanoTime = System.nanoTime();
+            return update(this, response);
+        }
+    }
+
+    /**
+     * <p>Handles the {@code 304} responses to the conditional requests
+     * sent to revalidate stored responses.</p>
+     */
+    private class NotModifiedListener extends Response.Listener.Adapter
+    {
+        @Override
+        public void onComplete(Result result)
+        {
+            HttpRequest request = (HttpRequest)result.getRequest();
+            Response response = result.getResponse();
+            HttpConversation conversation = request.getConversation();
+            conversation.updateResponseListeners(null);
+            List<Response.ResponseListener> listeners = conversation.getResponseListeners();
+            if (result.isFailed())
+            {
+                notifier.forwardFailureComplete(listeners, request, result.getRequestFailure(), response, result.getResponseFailure());
+                return;
+            }
+            CacheListener listener = (CacheListener)request.getAttributes().get(ATTRIBUTE);
+            Entry entry = listener.notModified(response);
+            validations.increment();
+            serve(entry, request, listeners);
+        }
+    }
+
+    /**
+     * <p>Invalidates the responses stored for the URI of a request
+     * with an unsafe method, if the request succeeds.</p>
+     */
+    private class InvalidationListener implements Response.CompleteListener
+    {
+        private final String key;
+
+        private InvalidationListener(String key)
+        {
+            this.key = key;
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            if (result.isSucceeded() && result.getResponse().getStatus() < HttpStatus.BAD_REQUEST_400)
+                remove(key);
+        }
+    }
+}
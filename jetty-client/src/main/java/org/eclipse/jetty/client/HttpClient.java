@@ -129,6 +129,8 @@ public class HttpClient extends ContainerLifeCycle
     private CookieManager cookieManager;
     private CookieStore cookieStore;
     private SocketAddressResolver resolver;
+    private HttpCache httpCache;
+    private HedgingPolicy hedgingPolicy;
     private HttpField agentField = new HttpField(HttpHeader.USER_AGENT, USER_AGENT);
     private boolean followRedirects = true;
     private int maxConnectionsPerDestination = 64;
@@ -211,6 +213,8 @@ public class HttpClient extends ContainerLifeCycle
         handlers.put(new WWWAuthenticationProtocolHandler(this));
         handlers.put(new ProxyAuthenticationProtocolHandler(this));
         handlers.put(new UpgradeProtocolHandler());
+        if (httpCache != null)
+            handlers.put(httpCache);
 
         decoderFactories.add(new GZIPContentDecoder.Factory(byteBufferPool));
 
@@ -550,6 +554,24 @@ public class HttpClient extends ContainerLifeCycle
     }
 
     protected void send(final HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        HttpCache httpCache = getHttpCache();
+        if (httpCache == null)
+            sendHedged(request, listeners);
+        else
+            httpCache.send(request, listeners, this::sendHedged);
+    }
+
+    private void sendHedged(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        HedgingPolicy hedgingPolicy = getHedgingPolicy();
+        if (hedgingPolicy == null)
+            sendToDestination(request, listeners);
+        else
+            hedgingPolicy.send(request, listeners, this::sendToDestination);
+    }
+
+    private void sendToDestination(HttpRequest request, List<Response.ResponseListener> listeners)
     {
         HttpDestination destination = (HttpDestination)resolveDestination(request);
         destination.send(request, listeners);
@@ -567,7 +589,8 @@ public class HttpClient extends ContainerLifeCycle
                 Map<String, Object> context = new ConcurrentHashMap<>();
                 context.put(ClientConnectionFactory.CLIENT_CONTEXT_KEY, HttpClient.this);
                 context.put(HttpClientTransport.HTTP_DESTINATION_CONTEXT_KEY, destination);
-                connect(socketAddresses, 0, context);
+                context.put(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY, promise);
+                transport.connect(socketAddresses, context);
             }
 
             @Override
@@ -575,23 +598,6 @@ public class HttpClient extends ContainerLifeCycle
             {
                 promise.failed(x);
             }
-
-            private void connect(List<InetSocketAddress> socketAddresses, int index, Map<String, Object> context)
-            {
-                context.put(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY, new Promise.Wrapper<>(promise)
-                {
-                    @Override
-                    public void failed(Throwable x)
-                    {
-                        int nextIndex = index + 1;
-                        if (nextIndex == socketAddresses.size())
-                            super.failed(x);
-                        else
-                            connect(socketAddresses, nextIndex, context);
-                    }
-                });
-                transport.connect(socketAddresses.get(index), context);
-            }
         });
     }
 
@@ -812,6 +818,44 @@ public class HttpClient extends ContainerLifeCycle
         this.resolver = resolver;
     }
 
+    /**
+     * @return the {@link HttpCache} of this HttpClient, or null if responses are not cached
+     */
+    public HttpCache getHttpCache()
+    {
+        return httpCache;
+    }
+
+    /**
+     * @param httpCache the {@link HttpCache} of this HttpClient, or null to not cache responses
+     */
+    public void setHttpCache(HttpCache httpCache)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        updateBean(this.httpCache, httpCache);
+        this.httpCache = httpCache;
+    }
+
+    /**
+     * @return the {@link HedgingPolicy} of this HttpClient, or null if requests are not hedged
+     */
+    public HedgingPolicy getHedgingPolicy()
+    {
+        return hedgingPolicy;
+    }
+
+    /**
+     * @param hedgingPolicy the {@link HedgingPolicy} of this HttpClient, or null to not hedge requests
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        updateBean(this.hedgingPolicy, hedgingPolicy);
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
     /**
      * @return the max number of connections that this HttpClient opens to {@link Destination}s
      */
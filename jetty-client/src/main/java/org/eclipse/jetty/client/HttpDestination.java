@@ -23,6 +23,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Destination;
@@ -61,6 +62,9 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
     private final ClientConnectionFactory connectionFactory;
     private final HttpField hostField;
     private final TimeoutTask timeout;
+    private final LongAdder queuedRequests = new LongAdder();
+    private final LongAdder dequeuedRequests = new LongAdder();
+    private final LongAdder queueTime = new LongAdder();
     private ConnectionPool connectionPool;
 
     public HttpDestination(HttpClient client, Origin origin)
@@ -210,6 +214,28 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         return exchanges.size();
     }
 
+    @ManagedAttribute(value = "The total number of requests queued", readonly = true)
+    public long getTotalQueuedRequestCount()
+    {
+        return queuedRequests.longValue();
+    }
+
+    @ManagedAttribute(value = "The total number of requests dequeued to be sent", readonly = true)
+    public long getTotalDequeuedRequestCount()
+    {
+        return dequeuedRequests.longValue();
+    }
+
+    /**
+     * @return the total time, in nanoseconds, that the dequeued requests waited in the queue
+     * @see #getTotalDequeuedRequestCount()
+     */
+    @ManagedAttribute(value = "The total time, in nanoseconds, dequeued requests waited in the queue", readonly = true)
+    public long getTotalQueueTime()
+    {
+        return queueTime.longValue();
+    }
+
     public Origin.Address getConnectAddress()
     {
         return proxy == null ? getOrigin().getAddress() : proxy.getAddress();
@@ -255,6 +281,7 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         {
             if (enqueue(exchanges, exchange))
             {
+                queuedRequests.increment();
                 long expiresAt = request.getTimeoutAt();
                 if (expiresAt != -1)
                     timeout.schedule(expiresAt);
@@ -342,6 +369,9 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         }
         else
         {
+            dequeuedRequests.increment();
+            queueTime.add(System.nanoTime() - exchange.getCreationNanoTime());
+
             Request request = exchange.getRequest();
             Throwable cause = request.getAbortCause();
             if (cause != null)
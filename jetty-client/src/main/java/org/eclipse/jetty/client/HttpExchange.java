@@ -31,6 +31,7 @@ public class HttpExchange
     private final HttpRequest request;
     private final List<Response.ResponseListener> listeners;
     private final HttpResponse response;
+    private final long creationNanoTime = System.nanoTime();
     private State requestState = State.PENDING;
     private State responseState = State.PENDING;
     private HttpChannel _channel;
@@ -58,6 +59,14 @@ public class HttpExchange
         return request.getConversation();
     }
 
+    /**
+     * @return the {@link System#nanoTime()} at which this exchange was created
+     */
+    public long getCreationNanoTime()
+    {
+        return creationNanoTime;
+    }
+
     public HttpRequest getRequest()
     {
         return request;
@@ -110,6 +110,11 @@ public class HttpRequest implements Request
             headers.put(userAgentField);
     }
 
+    HttpClient getHttpClient()
+    {
+        return client;
+    }
+
     public HttpConversation getConversation()
     {
         return conversation;
@@ -884,6 +889,52 @@ public class HttpRequest implements Request
         return result;
     }
 
+    /**
+     * <p>Copies the headers and the cookies of the given request into this request,
+     * which is derived from it, for example to hedge it or to revalidate its response.</p>
+     * <p>The copied headers replace the default ones such as {@code User-Agent},
+     * rather than duplicating them.
+     * The headers that are added when the given request is {@link #normalized() normalized},
+     * such as {@code Host} and {@code Cookie}, are not copied, as they are added again
+     * when this request is normalized.</p>
+     *
+     * @param request the request to copy the headers and the cookies from
+     * @return this request
+     */
+    HttpRequest copyHeaders(HttpRequest request)
+    {
+        HttpFields requestHeaders = request.getHeaders();
+        for (HttpField field : requestHeaders)
+        {
+            headers.remove(field.getName());
+        }
+        for (HttpField field : requestHeaders)
+        {
+            if (!isNormalizationHeader(field.getHeader()))
+                headers.add(field);
+        }
+        for (HttpCookie cookie : request.getCookies())
+        {
+            cookie(cookie);
+        }
+        return this;
+    }
+
+    private static boolean isNormalizationHeader(HttpHeader header)
+    {
+        if (header == null)
+            return false;
+        switch (header)
+        {
+            case HOST:
+            case COOKIE:
+            case PROXY_AUTHORIZATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private String buildQuery()
     {
         StringBuilder result = new StringBuilder();
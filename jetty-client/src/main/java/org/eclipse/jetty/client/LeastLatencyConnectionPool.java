@@ -0,0 +1,257 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A {@link ConnectionPool} that provides the connection that is expected
+ * to complete a new request sooner, among two connections chosen randomly.</p>
+ * <p>For each connection, this class tracks the number of outstanding requests
+ * and a moving average of the latency of the requests, from when the connection
+ * is acquired to when it is released; the cost of a connection is the number of
+ * outstanding requests, plus the new one, times the average latency.
+ * For multiplexed connections, the latency is derived from the number of
+ * outstanding requests over time, so that requests need not be matched with
+ * their responses.</p>
+ * <p>The average latency immediately follows latency peaks, and decays
+ * exponentially with {@link #getDecayTime() a time constant}, also while the
+ * connection is not used, so that a connection that was slow is eventually
+ * chosen again to probe whether it is still slow.
+ * A connection without latency samples is assumed to be as fast as the other
+ * connection it is compared with.</p>
+ * <p>Choosing the better of two random connections, rather than the best of all
+ * connections, avoids that all concurrent requests pile on the same connection
+ * while its statistics are not yet updated.
+ * If neither chosen connection can be acquired, a connection is provided
+ * randomly among the ones that are available, like {@link RandomConnectionPool}.</p>
+ * <p>This class is typically configured with
+ * {@link HttpClientTransport#setConnectionPoolFactory(ConnectionPool.Factory)}:</p>
+ * <pre>
+ * transport.setConnectionPoolFactory(destination -&gt;
+ *     new LeastLatencyConnectionPool(destination, maxConnections, destination, maxMultiplex));
+ * </pre>
+ */
+@ManagedObject
+public class LeastLatencyConnectionPool extends MultiplexConnectionPool
+{
+    private final Map<Connection, Stats> stats = new ConcurrentHashMap<>();
+    private volatile long decayNanos = TimeUnit.SECONDS.toNanos(10);
+
+    public LeastLatencyConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        super(destination, new Pool<>(Pool.StrategyType.RANDOM, maxConnections, false), requester, maxMultiplex);
+    }
+
+    @ManagedAttribute("The time constant, in milliseconds, of the decay of the latency averages")
+    public long getDecayTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(decayNanos);
+    }
+
+    /**
+     * @param decayTime the time constant, in milliseconds, of the decay of the latency averages
+     */
+    public void setDecayTime(long decayTime)
+    {
+        if (decayTime <= 0)
+            throw new IllegalArgumentException("Invalid decay time " + decayTime);
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayTime);
+    }
+
+    @Override
+    protected Pool<Connection>.Entry acquireEntry()
+    {
+        Pool<Connection> pool = getPool();
+        Object[] entries = pool.values().toArray();
+        int size = entries.length;
+        if (size > 0)
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int index1 = random.nextInt(size);
+            @SuppressWarnings("unchecked")
+            Pool<Connection>.Entry entry1 = (Pool<Connection>.Entry)entries[index1];
+            Pool<Connection>.Entry entry2 = null;
+            if (size > 1)
+            {
+                int index2 = random.nextInt(size - 1);
+                if (index2 >= index1)
+                    ++index2;
+                @SuppressWarnings("unchecked")
+                Pool<Connection>.Entry entry = (Pool<Connection>.Entry)entries[index2];
+                entry2 = entry;
+                if (isCheaper(entry2, entry1))
+                {
+                    entry2 = entry1;
+                    entry1 = entry;
+                }
+            }
+            if (pool.acquire(entry1))
+                return entry1;
+            if (entry2 != null && pool.acquire(entry2))
+                return entry2;
+        }
+        return super.acquireEntry();
+    }
+
+    private boolean isCheaper(Pool<Connection>.Entry entry1, Pool<Connection>.Entry entry2)
+    {
+        Stats stats1 = getStats(entry1);
+        if (stats1 == null)
+            return false;
+        Stats stats2 = getStats(entry2);
+        if (stats2 == null)
+            return true;
+
+        long now = System.nanoTime();
+        long decayNanos = this.decayNanos;
+        double latency1 = stats1.getLatency(now, decayNanos);
+        double latency2 = stats2.getLatency(now, decayNanos);
+        // A connection without samples is assumed as fast as the other.
+        if (latency1 == 0)
+            latency1 = latency2;
+        if (latency2 == 0)
+            latency2 = latency1;
+        if (latency1 == 0)
+            latency1 = latency2 = 1;
+        return (stats1.getOutstanding() + 1) * latency1 < (stats2.getOutstanding() + 1) * latency2;
+    }
+
+    private Stats getStats(Pool<Connection>.Entry entry)
+    {
+        Connection connection = entry.getPooled();
+        return connection == null ? null : stats.get(connection);
+    }
+
+    /**
+     * @param connection the connection
+     * @return the average latency, in nanoseconds, of the given connection,
+     * or {@code 0} if the connection has no latency samples
+     */
+    public double getLatency(Connection connection)
+    {
+        Stats stats = this.stats.get(connection);
+        return stats == null ? 0 : stats.getLatency(System.nanoTime(), decayNanos);
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        stats.put(connection, new Stats());
+        super.onCreated(connection);
+    }
+
+    @Override
+    protected void acquired(Connection connection)
+    {
+        Stats stats = this.stats.get(connection);
+        if (stats != null)
+            stats.acquired(System.nanoTime());
+        super.acquired(connection);
+    }
+
+    @Override
+    protected void released(Connection connection)
+    {
+        Stats stats = this.stats.get(connection);
+        if (stats != null)
+            stats.released(System.nanoTime(), decayNanos);
+        super.released(connection);
+    }
+
+    @Override
+    protected void removed(Connection connection)
+    {
+        stats.remove(connection);
+        super.removed(connection);
+    }
+
+    private static class Stats
+    {
+        private final AutoLock lock = new AutoLock();
+        private int outstanding;
+        private long lastNanoTime;
+        // The integral of the outstanding requests over time since the last release.
+        private double load;
+        private double latency;
+        private long sampleNanoTime;
+
+        private void acquired(long now)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                accumulate(now);
+                ++outstanding;
+            }
+        }
+
+        private void released(long now, long decayNanos)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                // Idle connections are released when they are removed.
+                if (outstanding == 0)
+                    return;
+                accumulate(now);
+                --outstanding;
+                // By Little's law, the load accumulated since the last release
+                // is, on average, the latency of the request just completed.
+                double sample = load;
+                load = 0;
+                if (sample > latency)
+                    latency = sample;
+                else
+                    latency = sample + (latency - sample) * decay(now, decayNanos);
+                sampleNanoTime = now;
+            }
+        }
+
+        private void accumulate(long now)
+        {
+            load += outstanding * (double)(now - lastNanoTime);
+            lastNanoTime = now;
+        }
+
+        private int getOutstanding()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                return outstanding;
+            }
+        }
+
+        private double getLatency(long now, long decayNanos)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                return latency * decay(now, decayNanos);
+            }
+        }
+
+        private double decay(long now, long decayNanos)
+        {
+            return Math.exp(-Math.max(0, now - sampleNanoTime) / (double)decayNanos);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Attachable;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConnectionPoolPolicyTest
+{
+    private final List<MockConnection> connections = new ArrayList<>();
+    private HttpClient client;
+    private HttpDestination destination;
+    private DuplexConnectionPool pool;
+    private AdaptiveConnectionPoolPolicy policy;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        client = new HttpClient()
+        {
+            @Override
+            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            {
+                MockConnection connection = new MockConnection();
+                connections.add(connection);
+                promise.succeeded(connection);
+            }
+        };
+        client.start();
+        destination = new HttpDestination(client, new Origin("http", "localhost", 8080))
+        {
+        };
+        pool = new DuplexConnectionPool(destination, 16, Callback.NOOP);
+        policy = new AdaptiveConnectionPoolPolicy(destination, pool);
+        // Resize explicitly in the tests.
+        policy.setPeriod(TimeUnit.HOURS.toMillis(1));
+        pool.addBean(policy);
+        pool.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        pool.stop();
+        client.stop();
+    }
+
+    @Test
+    public void testConnectionsArePreCreatedAheadOfDemand()
+    {
+        for (int i = 0; i < 4; ++i)
+        {
+            assertNotNull(pool.acquire(true));
+        }
+        assertEquals(4, pool.getConnectionCount());
+
+        policy.resize();
+
+        // The headroom is 25% of the demand.
+        assertEquals(5, policy.getTargetConnections());
+        assertEquals(5, pool.getConnectionCount());
+        assertEquals(1, pool.getIdleConnectionCount());
+    }
+
+    @Test
+    public void testQueuedRequestsArePartOfTheDemand() throws Exception
+    {
+        for (int i = 0; i < 8; ++i)
+        {
+            HttpRequest request = new HttpRequest(client, new HttpConversation(), URI.create("http://localhost:8080/"));
+            destination.getHttpExchanges().offer(new HttpExchange(destination, request, new ArrayList<>()));
+        }
+
+        policy.resize();
+
+        assertEquals(10, policy.getTargetConnections());
+        assertEquals(10, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testIdleConnectionsAreClosedDownToFloor() throws Exception
+    {
+        policy.setMinConnections(2);
+        pool.preCreateConnections(5).get(5, TimeUnit.SECONDS);
+        Connection active = pool.acquire(false);
+        assertNotNull(active);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            policy.resize();
+        }
+
+        // The active connection is not closed.
+        assertEquals(2, pool.getConnectionCount());
+        assertTrue(pool.isActive(active));
+        assertFalse(active.isClosed());
+        assertEquals(3, connections.stream().filter(MockConnection::isClosed).count());
+    }
+
+    private static class MockConnection implements Connection, Attachable
+    {
+        private Object attachment;
+        private boolean closed;
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
+        @Override
+        public void setAttachment(Object obj)
+        {
+            attachment = obj;
+        }
+
+        @Override
+        public Object getAttachment()
+        {
+            return attachment;
+        }
+    }
+}
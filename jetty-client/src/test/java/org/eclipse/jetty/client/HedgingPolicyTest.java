@@ -0,0 +1,387 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.io.Connection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgingPolicyTest extends AbstractHttpClientServerTest
+{
+    private static final long DELAY = 100;
+
+    private final BlockingQueue<HttpFields> serverRequests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Request> clientRequests = new LinkedBlockingQueue<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch serverClosed = new CountDownLatch(1);
+    private Scenario scenario;
+    private volatile String hedgeHost;
+    private HedgingPolicy policy;
+
+    private void start(Scenario scenario, Service service) throws Exception
+    {
+        start(scenario, service, client -> {});
+    }
+
+    private void start(Scenario scenario, Service service, Consumer<HttpClient> config) throws Exception
+    {
+        this.scenario = scenario;
+        startServer(scenario, new EmptyServerHandler()
+        {
+            private final AtomicInteger requests = new AtomicInteger();
+
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                String content = "warmup";
+                if (!"/warmup".equals(target))
+                {
+                    serverRequests.offer(HttpFields.build(jettyRequest.getHttpFields()).asImmutable());
+                    try
+                    {
+                        content = service.serve(requests.getAndIncrement());
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new InterruptedIOException();
+                    }
+                }
+                response.getOutputStream().print(content);
+            }
+        });
+        connector.addBean(new Connection.Listener()
+        {
+            @Override
+            public void onOpened(Connection connection)
+            {
+            }
+
+            @Override
+            public void onClosed(Connection connection)
+            {
+                serverClosed.countDown();
+            }
+        });
+
+        policy = new HedgingPolicy()
+        {
+            @Override
+            protected URI newHedgeURI(Request request)
+            {
+                URI uri = super.newHedgeURI(request);
+                String host = hedgeHost;
+                return host == null ? uri : URI.create(uri.toString().replace(uri.getHost(), host));
+            }
+        };
+        // A small sample window updates the delay at every sample.
+        policy.setSampleSize(16);
+        policy.setPercentile(50);
+        policy.setMinSamples(1);
+        policy.setMinDelay(DELAY);
+        policy.setBudgetRatio(1);
+        startClient(scenario, client ->
+        {
+            client.setHedgingPolicy(policy);
+            client.getRequestListeners().add(new Request.Listener.Adapter()
+            {
+                @Override
+                public void onQueued(Request request)
+                {
+                    if (!"/warmup".equals(request.getPath()))
+                        clientRequests.offer(request);
+                }
+            });
+            config.accept(client);
+        });
+
+        // Sample fast responses, so that the hedge delay is the min delay
+        // despite the first requests also paying for the connection setup.
+        for (int i = 0; i < 20 && (i == 0 || policy.getHedgeDelay() > DELAY); ++i)
+        {
+            assertEquals("warmup", newRequest("/warmup").send().getContentAsString());
+        }
+        assertEquals(DELAY, policy.getHedgeDelay());
+        policy.resetStatistics();
+    }
+
+    @AfterEach
+    public void release()
+    {
+        release.countDown();
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testSlowRequestIsHedged(Scenario scenario) throws Exception
+    {
+        start(scenario, index ->
+        {
+            // The original request is slow.
+            if (index == 0)
+                release.await(5, TimeUnit.SECONDS);
+            return "request" + index;
+        });
+
+        Request request = newRequest("/");
+        ContentResponse response = send(request).get(5, TimeUnit.SECONDS);
+        assertEquals("request1", response.getContentAsString());
+        assertNull(request.getAbortCause());
+        assertEquals(1, policy.getRequestCount());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+
+        // The hedge has the same headers as the original request.
+        HttpFields primary = serverRequests.poll(5, TimeUnit.SECONDS);
+        HttpFields hedge = serverRequests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge);
+        assertEquals(primary.getValuesList(HttpHeader.USER_AGENT), hedge.getValuesList(HttpHeader.USER_AGENT));
+        assertEquals(1, hedge.getValuesList(HttpHeader.USER_AGENT).size());
+        assertEquals(1, hedge.getValuesList(HttpHeader.ACCEPT_ENCODING).size());
+
+        // The connection of the original request has been closed by the abort.
+        release.countDown();
+        assertTrue(serverClosed.await(5, TimeUnit.SECONDS));
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testHedgeHasSameCookies(Scenario scenario) throws Exception
+    {
+        start(scenario, index ->
+        {
+            // The original request is slow.
+            if (index == 0)
+                release.await(5, TimeUnit.SECONDS);
+            return "request" + index;
+        });
+        URI uri = URI.create(scenario.getScheme() + "://localhost:" + connector.getLocalPort());
+        client.getCookieStore().add(uri, new HttpCookie("stored", "1"));
+
+        Request request = newRequest("/").cookie(new HttpCookie("request", "2"));
+        assertEquals("request1", send(request).get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(1, policy.getHedgeWinCount());
+
+        // The hedge does not duplicate the Cookie header of the original request.
+        HttpFields primary = serverRequests.poll(5, TimeUnit.SECONDS);
+        HttpFields hedge = serverRequests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge);
+        assertEquals(List.of("request=2; stored=1"), primary.getValuesList(HttpHeader.COOKIE));
+        assertEquals(primary.getValuesList(HttpHeader.COOKIE), hedge.getValuesList(HttpHeader.COOKIE));
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testOriginalRequestWinningAbortsHedge(Scenario scenario) throws Exception
+    {
+        CountDownLatch hedgeLatch = new CountDownLatch(1);
+        start(scenario, index ->
+        {
+            // The original request replies when the hedge is received.
+            if (index == 0)
+                hedgeLatch.await(5, TimeUnit.SECONDS);
+            else
+                hedgeLatch.countDown();
+            if (index > 0)
+                release.await(5, TimeUnit.SECONDS);
+            return "request" + index;
+        });
+
+        Request request = newRequest("/");
+        assertEquals("request0", send(request).get(5, TimeUnit.SECONDS).getContentAsString());
+        assertSame(request, clientRequests.poll(5, TimeUnit.SECONDS));
+        Request hedge = clientRequests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge);
+        assertNotSame(request, hedge);
+        assertThat(hedge.getAbortCause(), instanceOf(CancellationException.class));
+        assertNull(request.getAbortCause());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(0, policy.getHedgeWinCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testFastRequestIsNotHedged(Scenario scenario) throws Exception
+    {
+        start(scenario, index -> "request" + index);
+
+        assertEquals("request0", send(newRequest("/")).get(5, TimeUnit.SECONDS).getContentAsString());
+        Thread.sleep(2 * DELAY);
+        assertEquals(1, serverRequests.size());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testNonIdempotentRequestIsNotHedged(Scenario scenario) throws Exception
+    {
+        start(scenario, index ->
+        {
+            Thread.sleep(2 * DELAY);
+            return "request" + index;
+        });
+
+        assertEquals("request0", send(newRequest("/").method(HttpMethod.POST)).get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(1, serverRequests.size());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testBudgetLimitsHedges(Scenario scenario) throws Exception
+    {
+        CountDownLatch hedgeLatch = new CountDownLatch(1);
+        start(scenario, index ->
+        {
+            switch (index)
+            {
+                case 0:
+                    // The original request replies when the hedge is received.
+                    hedgeLatch.await(5, TimeUnit.SECONDS);
+                    break;
+                case 1:
+                    hedgeLatch.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    break;
+                default:
+                    Thread.sleep(2 * DELAY);
+                    break;
+            }
+            return "request" + index;
+        });
+        policy.setBudgetRatio(0.5);
+        policy.setMaxBudget(1);
+
+        // The warmup requests earned a whole hedge.
+        assertEquals("request0", send(newRequest("/")).get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(1, policy.getHedgeCount());
+
+        // The budget is exhausted, this request is not hedged.
+        assertEquals("request2", send(newRequest("/")).get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(3, serverRequests.size());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getBudgetExhaustedCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testAbortAbortsHedge(Scenario scenario) throws Exception
+    {
+        start(scenario, index ->
+        {
+            release.await(5, TimeUnit.SECONDS);
+            return "request" + index;
+        });
+
+        Request request = newRequest("/");
+        FutureResponseListener listener = send(request);
+        assertNotNull(serverRequests.poll(5, TimeUnit.SECONDS));
+        assertNotNull(serverRequests.poll(5, TimeUnit.SECONDS));
+        clientRequests.poll(5, TimeUnit.SECONDS);
+        Request hedge = clientRequests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge);
+
+        Throwable cause = new Exception("explicitly_aborted");
+        request.abort(cause);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> listener.get(5, TimeUnit.SECONDS));
+        assertSame(cause, failure.getCause());
+        assertSame(cause, hedge.getAbortCause());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testQueuedRequestLosingIsNotifiedOfFailure(Scenario scenario) throws Exception
+    {
+        start(scenario, index ->
+        {
+            // The first request blocks the only connection to localhost.
+            if (index == 0)
+                release.await(5, TimeUnit.SECONDS);
+            return "request" + index;
+        }, client -> client.setMaxConnectionsPerDestination(1));
+        // Hedges are sent to another destination, with another connection.
+        hedgeHost = "127.0.0.1";
+
+        send(newRequest("/").method(HttpMethod.POST));
+        assertNotNull(serverRequests.poll(5, TimeUnit.SECONDS));
+
+        BlockingQueue<Throwable> failures = new LinkedBlockingQueue<>();
+        Request request = newRequest("/")
+            .cookie(new HttpCookie("request", "1"))
+            .onRequestFailure((r, x) -> failures.offer(x));
+        assertEquals("request1", send(request).get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(1, policy.getHedgeWinCount());
+        // The hedge has the cookies of the original request, that was not normalized.
+        HttpFields hedge = serverRequests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge);
+        assertEquals("request=1", hedge.get(HttpHeader.COOKIE));
+
+        // The original request was queued when the hedge won, so its request
+        // listeners are notified of the failure, but it is not aborted.
+        assertThat(failures.poll(5, TimeUnit.SECONDS), instanceOf(CancellationException.class));
+        assertNull(request.getAbortCause());
+    }
+
+    private Request newRequest(String path)
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path(path);
+    }
+
+    private FutureResponseListener send(Request request)
+    {
+        FutureResponseListener listener = new FutureResponseListener(request);
+        request.send(listener);
+        return listener;
+    }
+
+    private interface Service
+    {
+        String serve(int index) throws InterruptedException;
+    }
+}
@@ -0,0 +1,388 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class HttpCacheTest extends AbstractHttpClientServerTest
+{
+    private final BlockingQueue<HttpFields> requests = new LinkedBlockingQueue<>();
+    private final HttpCache cache = new HttpCache();
+    private Scenario scenario;
+
+    private void start(Scenario scenario, CacheHandler handler) throws Exception
+    {
+        this.scenario = scenario;
+        startServer(scenario, handler);
+        startClient(scenario, client -> client.setHttpCache(cache));
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testFreshResponseIsServedFromCache(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                response.setHeader("Cache-Control", "max-age=60");
+                return "hello";
+            }
+        });
+
+        ContentResponse response1 = send(newRequest("/a"));
+        assertEquals("hello", response1.getContentAsString());
+        assertNull(response1.getHeaders().get(HttpHeader.AGE));
+        ContentResponse response2 = send(newRequest("/a"));
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("hello", response2.getContentAsString());
+        assertNotNull(response2.getHeaders().get(HttpHeader.AGE));
+
+        assertEquals(1, requests.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio());
+
+        // Modifying the content of a hit does not modify the stored response.
+        Arrays.fill(response2.getContent(), (byte)'x');
+        ContentResponse response3 = send(newRequest("/a").onResponseContent((r, content) -> content.put(0, (byte)'x')));
+        assertEquals("xello", response3.getContentAsString());
+        assertEquals("hello", send(newRequest("/a")).getContentAsString());
+        assertEquals(1, requests.size());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testStaleResponseIsRevalidated(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                if ("\"v1\"".equals(request.getHeader("If-None-Match")))
+                {
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    response.setHeader("Cache-Control", "max-age=60");
+                    return "";
+                }
+                response.setHeader("Cache-Control", "max-age=0");
+                response.setHeader("ETag", "\"v1\"");
+                return "hello";
+            }
+        });
+
+        assertEquals("hello", send(newRequest("/a")).getContentAsString());
+        ContentResponse response = send(newRequest("/a"));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("hello", response.getContentAsString());
+        assertEquals("max-age=60", response.getHeaders().get(HttpHeader.CACHE_CONTROL));
+        assertEquals(2, requests.size());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(1, cache.getValidationCount());
+
+        // The response was refreshed by the 304 response.
+        assertEquals("hello", send(newRequest("/a")).getContentAsString());
+        assertEquals(2, requests.size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testStaleWhileRevalidate(Scenario scenario) throws Exception
+    {
+        AtomicInteger version = new AtomicInteger();
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                int v = version.incrementAndGet();
+                response.setHeader("Cache-Control", "max-age=0, stale-while-revalidate=60");
+                response.setHeader("ETag", "\"v" + v + "\"");
+                return "hello" + v;
+            }
+        });
+
+        assertEquals("hello1", send(newRequest("/a")).getContentAsString());
+        requests.clear();
+
+        // The stale response is served, and revalidated in background.
+        assertEquals("hello1", send(newRequest("/a").cookie(new HttpCookie("name", "value"))).getContentAsString());
+        HttpFields revalidation = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(revalidation);
+        assertEquals("\"v1\"", revalidation.get(HttpHeader.IF_NONE_MATCH));
+        assertEquals("name=value", revalidation.get(HttpHeader.COOKIE));
+        assertEquals(1, cache.getBackgroundRevalidationCount());
+
+        // The response of the background revalidation replaces the stored one.
+        awaitStored("/a", "hello2");
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testStaleWhileRevalidateVariant(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                response.setHeader("Vary", "Accept-Encoding, User-Agent");
+                if (request.getHeader("If-None-Match") != null)
+                {
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    response.setHeader("Cache-Control", "max-age=60");
+                    return "";
+                }
+                response.setHeader("Cache-Control", "max-age=0, stale-while-revalidate=60");
+                response.setHeader("ETag", "\"v1\"");
+                return "hello";
+            }
+        });
+
+        assertEquals("hello", send(newRequest("/a")).getContentAsString());
+        requests.clear();
+        assertEquals("hello", send(newRequest("/a")).getContentAsString());
+
+        // The background revalidation has the same headers as the revalidated request.
+        HttpFields revalidation = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(revalidation);
+        assertEquals(1, revalidation.getValuesList(HttpHeader.ACCEPT_ENCODING).size());
+        assertEquals(1, revalidation.getValuesList(HttpHeader.USER_AGENT).size());
+
+        // The 304 response refreshes the stored variant.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getValidationCount() == 0 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.getValidationCount());
+        assertEquals(1, cache.getEntryCount());
+
+        // The refreshed variant is fresh, and served without revalidation.
+        assertEquals("hello", send(newRequest("/a")).getContentAsString());
+        assertEquals(1, cache.getBackgroundRevalidationCount());
+        assertEquals(0, requests.size());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testVariantsAreStoredSeparately(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                response.setHeader("Cache-Control", "max-age=60");
+                response.setHeader("Vary", "Accept-Language");
+                return request.getHeader("Accept-Language");
+            }
+        });
+
+        assertEquals("en", send(newRequest("/a").headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "en"))).getContentAsString());
+        assertEquals("fr", send(newRequest("/a").headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "fr"))).getContentAsString());
+        assertEquals("en", send(newRequest("/a").headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "en"))).getContentAsString());
+        assertEquals("fr", send(newRequest("/a").headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "fr"))).getContentAsString());
+
+        assertEquals(2, requests.size());
+        assertEquals(2, cache.getEntryCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testUncacheableResponsesAreNotStored(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                switch (target)
+                {
+                    case "/no-store":
+                        response.setHeader("Cache-Control", "no-store, max-age=60");
+                        break;
+                    case "/vary-all":
+                        response.setHeader("Cache-Control", "max-age=60");
+                        response.setHeader("Vary", "*");
+                        break;
+                    case "/error":
+                        response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+                        response.setHeader("Cache-Control", "max-age=60");
+                        break;
+                    default:
+                        break;
+                }
+                return "hello";
+            }
+        });
+
+        for (String path : List.of("/no-store", "/vary-all", "/error", "/no-validators"))
+        {
+            send(newRequest(path));
+            send(newRequest(path));
+        }
+
+        assertEquals(8, requests.size());
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testUnsafeMethodInvalidatesStoredResponse(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                response.setHeader("Cache-Control", "max-age=60");
+                return "hello";
+            }
+        });
+
+        send(newRequest("/a"));
+        send(newRequest("/a").method(HttpMethod.POST));
+        assertEquals(0, cache.getEntryCount());
+        send(newRequest("/a"));
+
+        assertEquals(3, requests.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testRequestDirectives(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                response.setHeader("Cache-Control", "max-age=60");
+                return "hello";
+            }
+        });
+
+        ContentResponse response = send(newRequest("/a").headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "only-if-cached")));
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT_504, response.getStatus());
+        assertEquals(0, requests.size());
+
+        send(newRequest("/a"));
+        send(newRequest("/a").headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "no-cache")));
+        assertEquals(2, requests.size());
+        send(newRequest("/a").headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "min-fresh=120")));
+        assertEquals(3, requests.size());
+        response = send(newRequest("/a").headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "only-if-cached")));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(3, requests.size());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testLeastRecentlyUsedResponseIsEvicted(Scenario scenario) throws Exception
+    {
+        start(scenario, new CacheHandler()
+        {
+            @Override
+            protected String service(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                response.setHeader("Cache-Control", "max-age=60");
+                return "x".repeat(300);
+            }
+        });
+        cache.setMaxSize(1024);
+
+        send(newRequest("/a"));
+        send(newRequest("/b"));
+        // Use /a, so that /b is the least recently used.
+        send(newRequest("/a"));
+        send(newRequest("/c"));
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(1, cache.getEvictionCount());
+        requests.clear();
+        send(newRequest("/a"));
+        send(newRequest("/c"));
+        assertEquals(0, requests.size());
+        send(newRequest("/b"));
+        assertEquals(1, requests.size());
+    }
+
+    private Request newRequest(String path)
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path(path)
+            .timeout(5, TimeUnit.SECONDS);
+    }
+
+    private ContentResponse send(Request request) throws Exception
+    {
+        return request.send();
+    }
+
+    private void awaitStored(String path, String content) throws Exception
+    {
+        // The background revalidation completes asynchronously.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline)
+        {
+            ContentResponse response = send(newRequest(path).headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "only-if-cached")));
+            if (response.getStatus() == HttpStatus.OK_200 && content.equals(response.getContentAsString()))
+                return;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Response to " + path + " not stored");
+    }
+
+    private abstract class CacheHandler extends EmptyServerHandler
+    {
+        @Override
+        protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+        {
+            requests.offer(HttpFields.build(jettyRequest.getHttpFields()).asImmutable());
+            String content = service(target, request, response);
+            response.getOutputStream().print(content);
+        }
+
+        protected abstract String service(String target, HttpServletRequest request, HttpServletResponse response);
+    }
+}
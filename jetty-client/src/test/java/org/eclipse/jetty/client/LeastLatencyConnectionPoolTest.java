@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Attachable;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LeastLatencyConnectionPoolTest
+{
+    private HttpClient client;
+    private LeastLatencyConnectionPool pool;
+
+    private void start(int maxMultiplex) throws Exception
+    {
+        client = new HttpClient()
+        {
+            @Override
+            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            {
+                promise.succeeded(new MockConnection());
+            }
+        };
+        client.start();
+        HttpDestination destination = new HttpDestination(client, new Origin("http", "localhost", 8080))
+        {
+        };
+        pool = new LeastLatencyConnectionPool(destination, 2, Callback.NOOP, maxMultiplex);
+        pool.start();
+        pool.preCreateConnections(2).get(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (pool != null)
+            pool.stop();
+        if (client != null)
+            client.stop();
+    }
+
+    @Test
+    public void testFasterConnectionIsPreferred() throws Exception
+    {
+        start(1);
+
+        Connection fast = pool.acquire(false);
+        Connection slow = pool.acquire(false);
+        assertNotNull(fast);
+        assertNotNull(slow);
+        Thread.sleep(1);
+        assertTrue(pool.release(fast));
+        Thread.sleep(50);
+        assertTrue(pool.release(slow));
+        assertThat(pool.getLatency(slow), greaterThan(pool.getLatency(fast)));
+
+        for (int i = 0; i < 20; ++i)
+        {
+            Connection connection = pool.acquire(false);
+            assertSame(fast, connection);
+            assertTrue(pool.release(connection));
+        }
+    }
+
+    @Test
+    public void testLessLoadedConnectionIsPreferred() throws Exception
+    {
+        start(4);
+
+        // Without latency samples, the connection with less outstanding requests is preferred.
+        Connection connection1 = pool.acquire(false);
+        Connection connection2 = pool.acquire(false);
+        assertNotNull(connection1);
+        assertNotNull(connection2);
+        assertThat(connection2, not(sameInstance(connection1)));
+
+        Connection connection3 = pool.acquire(false);
+        Connection other = connection3 == connection1 ? connection2 : connection1;
+        assertSame(other, pool.acquire(false));
+    }
+
+    @Test
+    public void testLatencyDecays() throws Exception
+    {
+        start(1);
+        pool.setDecayTime(20);
+
+        Connection connection = pool.acquire(false);
+        assertNotNull(connection);
+        Thread.sleep(50);
+        assertTrue(pool.release(connection));
+        double latency = pool.getLatency(connection);
+        assertThat(latency, greaterThan((double)TimeUnit.MILLISECONDS.toNanos(40)));
+
+        Thread.sleep(200);
+        assertThat(pool.getLatency(connection), lessThan(latency / 100));
+    }
+
+    private static class MockConnection implements Connection, Attachable
+    {
+        private Object attachment;
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return false;
+        }
+
+        @Override
+        public void setAttachment(Object obj)
+        {
+            attachment = obj;
+        }
+
+        @Override
+        public Object getAttachment()
+        {
+            return attachment;
+        }
+    }
+}
@@ -15,7 +15,9 @@ package org.eclipse.jetty.http;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -72,6 +74,15 @@ import static org.eclipse.jetty.http.HttpCompliance.Violation.WHITESPACE_AFTER_F
  * is used to help the parsing of subsequent messages.
  * </p>
  * <p>
+ * The per parser cache survives across the messages parsed on a persistent
+ * connection and learns which fields are repeated: when it is full, only the
+ * fields that have been looked up since they were cached are kept, and their
+ * counts are halved so that fields no longer sent age out. A field found in
+ * the cache is passed to the handler as the same {@link HttpField} instance,
+ * without allocating any String. The effectiveness of the cache is reported by
+ * {@link #getFieldCacheHits()} and {@link #getFieldCacheMisses()}.
+ * </p>
+ * <p>
  * The parser can work in varying compliance modes:
  * <dl>
  * <dt>RFC7230</dt><dd>(default) Compliance with RFC7230</dd>
@@ -241,7 +252,9 @@ public class HttpParser
     private boolean _headResponse;
     private boolean _cr;
     private ByteBuffer _contentChunk;
-    private Index.Mutable<HttpField> _fieldCache;
+    private FieldCache _fieldCache;
+    private long _fieldCacheHits;
+    private long _fieldCacheMisses;
     private int _length;
     private final StringBuilder _string = new StringBuilder();
     private int _headerCacheSize = 1024;
@@ -1035,7 +1048,7 @@ public class HttpParser
                         if (_field == null)
                             _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
                         if (getHeaderCacheSize() > 0 && _field.contains(HttpHeaderValue.CLOSE.asString()))
-                            _fieldCache = NO_CACHE;
+                            _fieldCache = new FieldCache(NO_CACHE);
                         break;
 
                     case AUTHORIZATION:
@@ -1045,6 +1058,7 @@ public class HttpParser
                     case ACCEPT_LANGUAGE:
                     case COOKIE:
                     case CACHE_CONTROL:
+                    case ORIGIN:
                     case USER_AGENT:
                         addToFieldCache = _field == null;
                         break;
@@ -1057,15 +1071,13 @@ public class HttpParser
                 if (addToFieldCache && _header != null && _valueString != null)
                 {
                     if (_fieldCache == null)
-                        _fieldCache = Index.buildCaseSensitiveMutableVisibleAsciiAlphabet(getHeaderCacheSize());
+                        _fieldCache = new FieldCache(Index.buildCaseSensitiveMutableVisibleAsciiAlphabet(getHeaderCacheSize()));
 
                     if (_field == null)
                         _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
-                    if (_field.getValue().length() < getHeaderCacheSize() && !_fieldCache.put(_field))
-                    {
-                        _fieldCache.clear();
-                        _fieldCache.put(_field);
-                    }
+                    _fieldCacheMisses++;
+                    if (_field.getValue().length() < getHeaderCacheSize())
+                        _fieldCache.put(_field, getHeaderCacheSize());
                 }
             }
             _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
@@ -1244,7 +1256,8 @@ public class HttpParser
                             if (buffer.hasRemaining())
                             {
                                 // Try a look ahead for the known header name and value.
-                                HttpField cachedField = _fieldCache == null ? null : _fieldCache.getBest(buffer, -1, buffer.remaining());
+                                HttpField cachedField = _fieldCache == null ? null : _fieldCache._index.getBest(buffer, -1, buffer.remaining());
+                                boolean learned = cachedField != null;
                                 if (cachedField == null)
                                     cachedField = CACHE.getBest(buffer, -1, buffer.remaining());
 
@@ -1293,6 +1306,11 @@ public class HttpParser
                                     byte peek = buffer.get(pos);
                                     if (peek == HttpTokens.CARRIAGE_RETURN || peek == HttpTokens.LINE_FEED)
                                     {
+                                        if (learned)
+                                        {
+                                            _fieldCacheHits++;
+                                            _fieldCache.hit(cachedField);
+                                        }
                                         _field = cachedField;
                                         _valueString = v;
                                         setState(FieldState.IN_VALUE);
@@ -1911,7 +1929,23 @@ public class HttpParser
 
     public Index<HttpField> getFieldCache()
     {
-        return _fieldCache;
+        return _fieldCache == null ? null : _fieldCache._index;
+    }
+
+    /**
+     * @return the number of fields that were found in the per parser field cache
+     */
+    public long getFieldCacheHits()
+    {
+        return _fieldCacheHits;
+    }
+
+    /**
+     * @return the number of cacheable fields that were not found in the per parser field cache
+     */
+    public long getFieldCacheMisses()
+    {
+        return _fieldCacheMisses;
     }
 
     @Override
@@ -1924,6 +1958,64 @@ public class HttpParser
             getContentLength());
     }
 
+    /**
+     * <p>The per parser cache of the fields previously parsed, that counts
+     * how many times each field is found, so that the most frequent fields
+     * are kept when the cache is full.</p>
+     */
+    private static class FieldCache
+    {
+        private final Map<HttpField, int[]> _hits = new IdentityHashMap<>();
+        private Index.Mutable<HttpField> _index;
+
+        private FieldCache(Index.Mutable<HttpField> index)
+        {
+            _index = index;
+        }
+
+        private void hit(HttpField field)
+        {
+            int[] hits = _hits.get(field);
+            if (hits != null)
+                hits[0]++;
+        }
+
+        /**
+         * @param field the field to cache
+         * @param capacity the capacity of the index to rebuild if it is full
+         * @return whether the field is cached
+         */
+        private boolean put(HttpField field, int capacity)
+        {
+            if (_index == NO_CACHE)
+                return false;
+            if (_index.put(field))
+            {
+                _hits.put(field, new int[1]);
+                return true;
+            }
+
+            // The index is full, rebuild it with the fields that have been hit, most frequent first.
+            List<Map.Entry<HttpField, int[]>> entries = new ArrayList<>(_hits.entrySet());
+            entries.sort((e1, e2) -> Integer.compare(e2.getValue()[0], e1.getValue()[0]));
+            _index = Index.buildCaseSensitiveMutableVisibleAsciiAlphabet(capacity);
+            _hits.clear();
+            for (Map.Entry<HttpField, int[]> entry : entries)
+            {
+                int[] hits = entry.getValue();
+                if (hits[0] == 0 || !_index.put(entry.getKey()))
+                    break;
+                // Age the counts, so that the fields no longer sent are eventually evicted.
+                hits[0] >>= 1;
+                _hits.put(entry.getKey(), hits);
+            }
+            if (!_index.put(field))
+                return false;
+            _hits.put(field, new int[1]);
+            return true;
+        }
+    }
+
     /* Event Handler interface
      * These methods return true if the caller should process the events
      * so far received (eg return from parseNext and call HttpChannel.handle).
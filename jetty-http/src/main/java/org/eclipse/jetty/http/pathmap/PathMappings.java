@@ -16,14 +16,19 @@ package org.eclipse.jetty.http.pathmap;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import org.eclipse.jetty.util.Index;
+import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.Dumpable;
@@ -34,6 +39,11 @@ import org.slf4j.LoggerFactory;
  * Path Mappings of PathSpec to Resource.
  * <p>
  * Sorted into search order upon entry into the Set
+ * <p>
+ * {@link #getMatch(String)} looks up the {@link ServletPathSpec} mappings via indexes, and
+ * only tries the other mappings (e.g. {@link RegexPathSpec} or {@link UriTemplatePathSpec})
+ * whose literal prefix matches the path, so that its cost does not grow with the number of
+ * mappings. The lookup structures are compiled on the first match after a modification.
  *
  * @param <E> the type of mapping endpoint
  */
@@ -55,6 +65,8 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
         .caseSensitive(true)
         .mutable()
         .build();
+    private final AtomicInteger _version = new AtomicInteger();
+    private volatile Compiled _compiled;
 
     @Override
     public String dump()
@@ -82,13 +94,21 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
     public void reset()
     {
         _mappings.clear();
+        _exactMap.clear();
         _prefixMap.clear();
         _suffixMap.clear();
+        _version.incrementAndGet();
     }
 
     public void removeIf(Predicate<MappedResource<E>> predicate)
     {
-        _mappings.removeIf(predicate);
+        List<PathSpec> removed = new ArrayList<>();
+        for (MappedResource<E> mr : _mappings)
+        {
+            if (predicate.test(mr))
+                removed.add(mr.getPathSpec());
+        }
+        removed.forEach(this::remove);
     }
 
     /**
@@ -125,67 +145,66 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
 
     public MappedResource<E> getMatch(String path)
     {
-        PathSpecGroup lastGroup = null;
+        // The version is read before the mappings are compiled, so that
+        // a modification concurrent with the compilation is not missed.
+        int version = _version.get();
+        Compiled compiled = _compiled;
+        if (compiled == null || compiled._version != version)
+            _compiled = compiled = new Compiled(version);
 
-        // Search all the mappings
-        for (MappedResource<E> mr : _mappings)
+        // Search the groups in order
+        for (int g = 0; g < compiled._groups.length; g++)
         {
-            PathSpecGroup group = mr.getPathSpec().getGroup();
-            if (group != lastGroup)
+            switch (compiled._groups[g])
             {
-                // New group in list, so let's look for an optimization
-                switch (group)
+                case EXACT:
                 {
-                    case EXACT:
+                    int i = path.length();
+                    while (i >= 0)
                     {
-                        int i = path.length();
-                        while (i >= 0)
-                        {
-                            MappedResource<E> candidate = _exactMap.getBest(path, 0, i);
-                            if (candidate == null)
-                                break;
-                            if (candidate.getPathSpec().matches(path))
-                                return candidate;
-                            i = candidate.getPathSpec().getPrefix().length() - 1;
-                        }
-                        break;
+                        MappedResource<E> candidate = _exactMap.getBest(path, 0, i);
+                        if (candidate == null)
+                            break;
+                        if (candidate.getPathSpec().matches(path))
+                            return candidate;
+                        i = candidate.getPathSpec().getPrefix().length() - 1;
                     }
+                    break;
+                }
 
-                    case PREFIX_GLOB:
+                case PREFIX_GLOB:
+                {
+                    int i = path.length();
+                    while (i >= 0)
                     {
-                        int i = path.length();
-                        while (i >= 0)
-                        {
-                            MappedResource<E> candidate = _prefixMap.getBest(path, 0, i);
-                            if (candidate == null)
-                                break;
-                            if (candidate.getPathSpec().matches(path))
-                                return candidate;
-                            i = candidate.getPathSpec().getPrefix().length() - 1;
-                        }
-                        break;
+                        MappedResource<E> candidate = _prefixMap.getBest(path, 0, i);
+                        if (candidate == null)
+                            break;
+                        if (candidate.getPathSpec().matches(path))
+                            return candidate;
+                        i = candidate.getPathSpec().getPrefix().length() - 1;
                     }
+                    break;
+                }
 
-                    case SUFFIX_GLOB:
+                case SUFFIX_GLOB:
+                {
+                    int i = -1;
+                    while ((i = path.indexOf('.', i + 1)) >= 0)
                     {
-                        int i = 0;
-                        while ((i = path.indexOf('.', i + 1)) > 0)
-                        {
-                            MappedResource<E> candidate = _suffixMap.get(path, i + 1, path.length() - i - 1);
-                            if (candidate != null && candidate.getPathSpec().matches(path))
-                                return candidate;
-                        }
-                        break;
+                        MappedResource<E> candidate = _suffixMap.get(path, i + 1, path.length() - i - 1);
+                        if (candidate != null && candidate.getPathSpec().matches(path))
+                            return candidate;
                     }
-
-                    default:
+                    break;
                 }
-            }
 
-            if (mr.getPathSpec().matches(path))
-                return mr;
+                default:
+            }
 
-            lastGroup = group;
+            MappedResource<E> match = compiled._candidates.get(g).getMatch(path);
+            if (match != null)
+                return match;
         }
 
         return null;
@@ -247,6 +266,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
         }
 
         boolean added = _mappings.add(entry);
+        _version.incrementAndGet();
         if (LOG.isDebugEnabled())
             LOG.debug("{} {} to {}", added ? "Added" : "Ignored", entry, this);
         return added;
@@ -286,11 +306,182 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
                 break;
             }
         }
+        _version.incrementAndGet();
         if (LOG.isDebugEnabled())
             LOG.debug("{} {} to {}", removed ? "Removed" : "Ignored", pathSpec, this);
         return removed;
     }
 
+    private boolean isIndexed(MappedResource<E> mr)
+    {
+        // Empty keys, e.g. for "/*", are never returned by the index lookups.
+        PathSpec pathSpec = mr.getPathSpec();
+        switch (pathSpec.getGroup())
+        {
+            case EXACT:
+                return !StringUtil.isEmpty(pathSpec.getPrefix()) && _exactMap.get(pathSpec.getPrefix()) == mr;
+            case PREFIX_GLOB:
+                return !StringUtil.isEmpty(pathSpec.getPrefix()) && _prefixMap.get(pathSpec.getPrefix()) == mr;
+            case SUFFIX_GLOB:
+                return !StringUtil.isEmpty(pathSpec.getSuffix()) && _suffixMap.get(pathSpec.getSuffix()) == mr;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param pathSpec the path spec
+     * @return the literal string that all the paths matched by the path spec start with
+     */
+    static String getLiteralPrefix(PathSpec pathSpec)
+    {
+        String declaration = pathSpec.getDeclaration();
+        if (pathSpec instanceof UriTemplatePathSpec)
+        {
+            // Characters other than variables are literal, unless they are regex operators.
+            for (int i = 0; i < declaration.length(); i++)
+            {
+                if ("?+*()^$|".indexOf(declaration.charAt(i)) >= 0)
+                    return "";
+            }
+            int variable = declaration.indexOf('{');
+            return variable < 0 ? declaration : declaration.substring(0, variable);
+        }
+
+        if (pathSpec instanceof RegexPathSpec)
+        {
+            // Alternatives may not share the prefix.
+            if (declaration.indexOf('|') >= 0)
+                return "";
+            int start = declaration.startsWith("^") ? 1 : 0;
+            int end = start;
+            while (end < declaration.length() && "\\.[]{}()*+?^$".indexOf(declaration.charAt(end)) < 0)
+            {
+                end++;
+            }
+            // A quantifier makes the previous character optional.
+            if (end < declaration.length() && end > start && "?*{".indexOf(declaration.charAt(end)) >= 0)
+                end--;
+            return declaration.substring(start, end);
+        }
+
+        return "";
+    }
+
+    /**
+     * The mappings compiled for {@link #getMatch(String)}, valid until the mappings are modified.
+     */
+    private class Compiled
+    {
+        private final int _version;
+        private final PathSpecGroup[] _groups;
+        private final List<Candidates<E>> _candidates;
+
+        private Compiled(int version)
+        {
+            _version = version;
+            Map<PathSpecGroup, List<Candidate<E>>> groups = new EnumMap<>(PathSpecGroup.class);
+            int ordinal = 0;
+            for (MappedResource<E> mr : _mappings)
+            {
+                List<Candidate<E>> candidates = groups.computeIfAbsent(mr.getPathSpec().getGroup(), g -> new ArrayList<>());
+                // The indexed mappings are looked up directly.
+                if (!isIndexed(mr))
+                    candidates.add(new Candidate<>(ordinal, mr));
+                ordinal++;
+            }
+
+            _groups = groups.keySet().toArray(new PathSpecGroup[0]);
+            _candidates = new ArrayList<>(_groups.length);
+            for (PathSpecGroup group : _groups)
+            {
+                _candidates.add(new Candidates<>(groups.get(group)));
+            }
+        }
+    }
+
+    /**
+     * <p>The mappings of a group that are not indexed, grouped by literal prefix.</p>
+     * <p>The literal prefixes that match a path are found via an {@link Index}, so that
+     * only the mappings that may match the path are tried, in the order of the mappings.</p>
+     */
+    private static class Candidates<E>
+    {
+        private final List<Candidate<E>> _unprefixed = new ArrayList<>();
+        private final Index<PrefixCandidates<E>> _prefixed;
+
+        private Candidates(List<Candidate<E>> candidates)
+        {
+            Map<String, PrefixCandidates<E>> prefixed = new LinkedHashMap<>();
+            for (Candidate<E> candidate : candidates)
+            {
+                String prefix = getLiteralPrefix(candidate._mappedResource.getPathSpec());
+                if (prefix.isEmpty())
+                    _unprefixed.add(candidate);
+                else
+                    prefixed.computeIfAbsent(prefix, PrefixCandidates::new)._candidates.add(candidate);
+            }
+            _prefixed = prefixed.isEmpty() ? null : new Index.Builder<PrefixCandidates<E>>()
+                .caseSensitive(true)
+                .withAll(() -> prefixed)
+                .build();
+        }
+
+        private MappedResource<E> getMatch(String path)
+        {
+            Candidate<E> best = getMatch(_unprefixed, path, null);
+            if (_prefixed != null)
+            {
+                int i = path.length();
+                while (i > 0)
+                {
+                    PrefixCandidates<E> candidates = _prefixed.getBest(path, 0, i);
+                    if (candidates == null)
+                        break;
+                    best = getMatch(candidates._candidates, path, best);
+                    i = candidates._prefix.length() - 1;
+                }
+            }
+            return best == null ? null : best._mappedResource;
+        }
+
+        private static <E> Candidate<E> getMatch(List<Candidate<E>> candidates, String path, Candidate<E> best)
+        {
+            for (Candidate<E> candidate : candidates)
+            {
+                // Only a mapping that precedes the best match so far can replace it.
+                if (best != null && candidate._ordinal >= best._ordinal)
+                    break;
+                if (candidate._mappedResource.getPathSpec().matches(path))
+                    return candidate;
+            }
+            return best;
+        }
+    }
+
+    private static class PrefixCandidates<E>
+    {
+        private final String _prefix;
+        private final List<Candidate<E>> _candidates = new ArrayList<>();
+
+        private PrefixCandidates(String prefix)
+        {
+            _prefix = prefix;
+        }
+    }
+
+    private static class Candidate<E>
+    {
+        private final int _ordinal;
+        private final MappedResource<E> _mappedResource;
+
+        private Candidate(int ordinal, MappedResource<E> mappedResource)
+        {
+            _ordinal = ordinal;
+            _mappedResource = mappedResource;
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -2124,6 +2124,38 @@ public class HttpParserTest
         assertSame(field, _fields.get(0));
     }
 
+    @Test
+    @SuppressWarnings("ReferenceEquality")
+    public void testCachedFieldSurvivesFullCache()
+    {
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parser.setHeaderCacheSize(64);
+
+        HttpField userAgent = null;
+        for (int i = 0; i < 100; ++i)
+        {
+            ByteBuffer buffer = BufferUtil.toBuffer(
+                "GET / HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "User-Agent: agent\r\n" +
+                    "Cookie: id=" + i + "\r\n" +
+                    "\r\n");
+            parseAll(parser, buffer);
+            parser.reset();
+            assertEquals("agent", _fields.get(1).getValue());
+            if (i == 1)
+                userAgent = _fields.get(1);
+            else if (i > 1)
+                assertSame(userAgent, _fields.get(1));
+        }
+
+        // Every request hits Host and User-Agent, except the first, and misses Cookie.
+        assertEquals(2 * 99, parser.getFieldCacheHits());
+        assertEquals(2 + 100, parser.getFieldCacheMisses());
+        assertNull(parser.getFieldCache().get("Cookie: id=0"));
+    }
+
     @Test
     public void testParseRequest()
     {
@@ -13,6 +13,10 @@
 
 package org.eclipse.jetty.http.pathmap;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -456,4 +460,130 @@ public class PathMappingsTest
         assertThat(p.remove(new ServletPathSpec("/a/b/c")), is(true));
         assertThat(p.remove(new ServletPathSpec("/a/b/c")), is(false));
     }
+    @Test
+    public void testRemoveIf()
+    {
+        PathMappings<String> p = new PathMappings<>();
+        p.put(new ServletPathSpec("/a/*"), "resourceA");
+        p.put(new ServletPathSpec("/a/b"), "resourceB");
+        p.put(new UriTemplatePathSpec("/a/{var}/c"), "resourceC");
+        assertMatch(p, "/a/b", "resourceB");
+
+        p.removeIf(mr -> mr.getResource().equals("resourceB"));
+        assertThat(p.size(), is(2));
+        assertMatch(p, "/a/b", "resourceA");
+
+        p.removeIf(mr -> mr.getResource().equals("resourceA"));
+        assertMatch(p, "/a/b/c", "resourceC");
+        assertThat(p.getMatch("/a/b"), nullValue());
+    }
+
+    @Test
+    public void testLiteralPrefix()
+    {
+        assertThat(PathMappings.getLiteralPrefix(new UriTemplatePathSpec("/a/{var}/c")), is("/a/"));
+        assertThat(PathMappings.getLiteralPrefix(new UriTemplatePathSpec("/a/b.c")), is("/a/b.c"));
+        assertThat(PathMappings.getLiteralPrefix(new UriTemplatePathSpec("/{var}")), is("/"));
+        assertThat(PathMappings.getLiteralPrefix(new RegexPathSpec("^/a/.*/c$")), is("/a/"));
+        assertThat(PathMappings.getLiteralPrefix(new RegexPathSpec("/ab?/c")), is("/a"));
+        assertThat(PathMappings.getLiteralPrefix(new RegexPathSpec("^/ab+/c")), is("/ab"));
+        assertThat(PathMappings.getLiteralPrefix(new RegexPathSpec("^/a|/b$")), is(""));
+        assertThat(PathMappings.getLiteralPrefix(new RegexPathSpec("(?i)^/a/b$")), is(""));
+        assertThat(PathMappings.getLiteralPrefix(new ServletPathSpec("/a/*")), is(""));
+    }
+
+    /**
+     * Test that the compiled lookup finds the same match as trying the mappings of each group in order.
+     */
+    @Test
+    public void testManyMappingsMatchOrder()
+    {
+        PathMappings<String> p = new PathMappings<>();
+        for (int i = 0; i < 50; i++)
+        {
+            p.put(new ServletPathSpec("/s" + i + "/*"), "prefix" + i);
+            p.put(new ServletPathSpec("/s" + i + "/exact"), "exact" + i);
+            p.put(new ServletPathSpec("*.e" + i), "suffix" + i);
+            p.put(new UriTemplatePathSpec("/s" + i + "/{id}/orders/{order}"), "template" + i);
+            p.put(new UriTemplatePathSpec("/{tenant}/t" + i + "/{id}"), "tenant" + i);
+            p.put(new RegexPathSpec("^/s" + i + "/[0-9]+/items$"), "regex" + i);
+            p.put(new RegexPathSpec("^/r" + (i % 5) + "/.*" + i + "$"), "regexSuffix" + i);
+        }
+        p.put(new RegexPathSpec("^.*/admin$"), "admin");
+        p.put(new ServletPathSpec("/"), "default");
+        p.put(new ServletPathSpec(""), "root");
+
+        List<String> paths = new ArrayList<>();
+        paths.add("/");
+        paths.add("/other");
+        paths.add("/s1/admin");
+        for (int i = 0; i < 55; i++)
+        {
+            paths.add("/s" + i + "/exact");
+            paths.add("/s" + i + "/exact.e" + i);
+            paths.add("/s" + i + "/123/orders/456");
+            paths.add("/s" + i + "/123/items");
+            paths.add("/s" + i + "/abc/items");
+            paths.add("/acme/t" + i + "/123");
+            paths.add("/r" + (i % 5) + "/x/" + i);
+            paths.add("/x/y.e" + i);
+            paths.add("/s" + i);
+        }
+
+        for (String path : paths)
+        {
+            MappedResource<String> expected = null;
+            // Within a group, the indexed servlet path specs have precedence.
+            groups:
+            for (PathSpecGroup group : PathSpecGroup.values())
+            {
+                for (boolean servlet : new boolean[]{true, false})
+                {
+                    for (MappedResource<String> mr : p)
+                    {
+                        PathSpec pathSpec = mr.getPathSpec();
+                        if (pathSpec.getGroup() == group && (pathSpec instanceof ServletPathSpec) == servlet && pathSpec.matches(path))
+                        {
+                            expected = mr;
+                            break groups;
+                        }
+                    }
+                }
+            }
+            MappedResource<String> actual = p.getMatch(path);
+            assertThat(path, actual == null ? null : actual.getResource(), is(expected == null ? null : expected.getResource()));
+        }
+    }
+
+    @Test
+    public void testModificationsDuringConcurrentMatches() throws Exception
+    {
+        PathMappings<String> p = new PathMappings<>();
+        p.put(new ServletPathSpec("/"), "default");
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread matcher = new Thread(() ->
+        {
+            while (running.get())
+            {
+                p.getMatch("/other");
+            }
+        });
+        matcher.start();
+        try
+        {
+            // A compilation concurrent with a modification must not hide the modification.
+            for (int i = 0; i < 1000; i++)
+            {
+                p.put(new RegexPathSpec("^/r" + i + "$"), "regex" + i);
+                assertMatch(p, "/r" + i, "regex" + i);
+                p.remove(new RegexPathSpec("^/r" + i + "$"));
+                assertMatch(p, "/r" + i, "default");
+            }
+        }
+        finally
+        {
+            running.set(false);
+            matcher.join();
+        }
+    }
 }
@@ -109,6 +109,8 @@ public class HTTP2Client extends ContainerLifeCycle
     private int maxFrameLength = Frame.DEFAULT_MAX_LENGTH;
     private int maxConcurrentPushedStreams = 32;
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
+    private int writeCoalescingSize;
+    private long writeCoalescingDelay;
     private int maxDynamicTableSize = 4096;
     private int maxHeaderBlockFragment = 0;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
@@ -314,6 +316,36 @@ public class HTTP2Client extends ContainerLifeCycle
         this.maxSettingsKeys = maxSettingsKeys;
     }
 
+    @ManagedAttribute("The size of the buffers into which small frames are coalesced, or 0 to disable coalescing")
+    public int getWriteCoalescingSize()
+    {
+        return writeCoalescingSize;
+    }
+
+    /**
+     * @param writeCoalescingSize the size of the buffers into which small frames are coalesced, or 0 to disable coalescing
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalescingSize(int)
+     */
+    public void setWriteCoalescingSize(int writeCoalescingSize)
+    {
+        this.writeCoalescingSize = writeCoalescingSize;
+    }
+
+    @ManagedAttribute("The max delay in microseconds of small writes, or 0 to disable delays")
+    public long getWriteCoalescingDelay()
+    {
+        return writeCoalescingDelay;
+    }
+
+    /**
+     * @param writeCoalescingDelay the max delay in microseconds of small writes, or 0 to disable delays
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalescingDelay(long)
+     */
+    public void setWriteCoalescingDelay(long writeCoalescingDelay)
+    {
+        this.writeCoalescingDelay = writeCoalescingDelay;
+    }
+
     @ManagedAttribute("The HPACK dynamic table maximum size")
     public int getMaxDynamicTableSize()
     {
@@ -0,0 +1,214 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.BDPFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BDPFlowControlStrategyTest
+{
+    private final ByteBufferPool byteBufferPool = new MappedByteBufferPool();
+    private final List<PingFrame> pings = new ArrayList<>();
+    private final List<WindowUpdateFrame> windowUpdates = new ArrayList<>();
+    private final List<SettingsFrame> settings = new ArrayList<>();
+    private final List<PingFrame> notifiedPings = new ArrayList<>();
+    private Scheduler scheduler;
+    private ByteArrayEndPoint endPoint;
+    private Parser parser;
+    private BDPFlowControlStrategy flowControl;
+    private HTTP2ClientSession session;
+    private Stream stream;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        endPoint = new ByteArrayEndPoint();
+        endPoint.setGrowOutput(true);
+        parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
+        {
+            @Override
+            public void onPing(PingFrame frame)
+            {
+                pings.add(frame);
+            }
+
+            @Override
+            public void onWindowUpdate(WindowUpdateFrame frame)
+            {
+                windowUpdates.add(frame);
+            }
+
+            @Override
+            public void onSettings(SettingsFrame frame)
+            {
+                settings.add(frame);
+            }
+        }, 4096, 8192);
+        parser.init(UnaryOperator.identity());
+
+        flowControl = new BDPFlowControlStrategy(FlowControlStrategy.DEFAULT_WINDOW_SIZE, 192 * 1024, 96 * 1024);
+        flowControl.setPingInterval(0);
+        session = new HTTP2ClientSession(scheduler, endPoint, new Generator(byteBufferPool), new Session.Listener.Adapter()
+        {
+            @Override
+            public void onPing(Session session, PingFrame frame)
+            {
+                notifiedPings.add(frame);
+            }
+        }, flowControl);
+
+        MetaData.Request request = new MetaData.Request("GET", HttpScheme.HTTP.asString(), null, "/", HttpVersion.HTTP_2, HttpFields.EMPTY, -1);
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(request, null, true), promise, new Stream.Listener.Adapter());
+        stream = promise.get(5, TimeUnit.SECONDS);
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, HttpFields.EMPTY);
+        session.onHeaders(new HeadersFrame(stream.getId(), response, null, false));
+        parse();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testWindowsGrowWhenTheyLimitThroughput()
+    {
+        // Most of the window is received in one round-trip.
+        int length = 48 * 1024;
+        receive(length);
+        PingFrame ping = takePing();
+        assertNotNull(ping);
+        session.onPing(new PingFrame(ping.getPayload(), true));
+        parse();
+
+        // The PING reply is not notified to the application.
+        assertTrue(notifiedPings.isEmpty());
+        assertEquals(length, flowControl.getBDP());
+        assertEquals(2 * length, flowControl.getSessionRecvWindow());
+        assertEquals(2 * length, flowControl.getStreamRecvWindow());
+
+        // The session window is enlarged, in addition to the update for the consumed bytes.
+        assertTrue(windowUpdates.stream()
+            .filter(frame -> frame.getStreamId() == 0)
+            .anyMatch(frame -> frame.getWindowDelta() == 2 * length - FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        assertEquals(1, settings.size());
+        assertEquals(2 * length, (int)settings.get(0).getSettings().get(SettingsFrame.INITIAL_WINDOW_SIZE));
+        assertEquals(2 * length, flowControl.getInitialStreamRecvWindow());
+    }
+
+    @Test
+    public void testWindowsAreBounded()
+    {
+        int length = 64000;
+        receive(length);
+        session.onPing(new PingFrame(takePing().getPayload(), true));
+        parse();
+
+        assertEquals(2 * length, flowControl.getSessionRecvWindow());
+        assertEquals(96 * 1024, flowControl.getStreamRecvWindow());
+    }
+
+    @Test
+    public void testWindowsShrinkWhenUnused()
+    {
+        receive(48 * 1024);
+        session.onPing(new PingFrame(takePing().getPayload(), true));
+        parse();
+        int sessionWindow = flowControl.getSessionRecvWindow();
+        int streamWindow = flowControl.getStreamRecvWindow();
+
+        for (int i = 0; i < 4; ++i)
+        {
+            receive(1024);
+            session.onPing(new PingFrame(takePing().getPayload(), true));
+            parse();
+        }
+
+        assertEquals(Math.max(FlowControlStrategy.DEFAULT_WINDOW_SIZE, sessionWindow / 2), flowControl.getSessionRecvWindow());
+        assertEquals(Math.max(FlowControlStrategy.DEFAULT_WINDOW_SIZE, streamWindow / 2), flowControl.getStreamRecvWindow());
+        // Stream windows are not shrunk via SETTINGS.
+        assertEquals(1, settings.size());
+    }
+
+    @Test
+    public void testApplicationPingIsNotified()
+    {
+        receive(1024);
+        PingFrame ping = takePing();
+        assertNotNull(ping);
+        session.onPing(new PingFrame(ping.getPayloadAsLong() + 1, true));
+        assertEquals(1, notifiedPings.size());
+        // The BDP ping is still outstanding.
+        receive(1024);
+        assertNull(takePing());
+    }
+
+    private void receive(int length)
+    {
+        session.onData(new DataFrame(stream.getId(), ByteBuffer.allocate(length), false));
+        parse();
+    }
+
+    private PingFrame takePing()
+    {
+        return pings.isEmpty() ? null : pings.remove(0);
+    }
+
+    private void parse()
+    {
+        ByteBuffer output = endPoint.takeOutput();
+        while (output.hasRemaining())
+        {
+            parser.parse(output);
+        }
+    }
+}
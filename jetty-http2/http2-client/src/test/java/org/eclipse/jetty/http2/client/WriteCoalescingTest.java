@@ -0,0 +1,173 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteCoalescingTest
+{
+    private static final int PING_LENGTH = Frame.HEADER_LENGTH + PingFrame.PING_LENGTH;
+
+    private final BlockingQueue<List<Integer>> writes = new LinkedBlockingQueue<>();
+    private Scheduler scheduler;
+    private HTTP2ClientSession session;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        ByteArrayEndPoint endPoint = new ByteArrayEndPoint()
+        {
+            @Override
+            public boolean flush(ByteBuffer... buffers) throws IOException
+            {
+                List<Integer> lengths = new ArrayList<>();
+                for (ByteBuffer buffer : buffers)
+                {
+                    lengths.add(buffer.remaining());
+                }
+                writes.offer(lengths);
+                return super.flush(buffers);
+            }
+        };
+        endPoint.setGrowOutput(true);
+        MappedByteBufferPool byteBufferPool = new MappedByteBufferPool();
+        session = new HTTP2ClientSession(scheduler, endPoint, new Generator(byteBufferPool), new Session.Listener.Adapter(), new BufferingFlowControlStrategy(0.5F));
+        session.setWriteCoalescingSize(4096);
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testSmallFramesAreCoalescedWithinDelay() throws Exception
+    {
+        long delay = TimeUnit.MILLISECONDS.toMicros(500);
+        session.setWriteCoalescingDelay(delay);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < 3; ++i)
+        {
+            session.ping(new PingFrame(i, false), Callback.NOOP);
+        }
+        assertNull(writes.poll());
+
+        List<Integer> write = writes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(write);
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MICROSECONDS.toNanos(delay));
+        // The 3 PING frames are written in a single buffer.
+        assertEquals(List.of(3 * PING_LENGTH), write);
+        assertEquals(1, session.getWriteCount());
+        assertEquals(1, session.getDelayedWriteCount());
+        assertEquals(3, session.getCoalescedBufferCount());
+        assertTrue(session.getAverageWriteDelay() >= delay);
+    }
+
+    @Test
+    public void testWriteThresholdEndsDelay() throws Exception
+    {
+        session.setWriteCoalescingDelay(TimeUnit.SECONDS.toMicros(30));
+        session.setWriteThreshold(2 * PING_LENGTH + 1);
+
+        session.ping(new PingFrame(0, false), Callback.NOOP);
+        session.ping(new PingFrame(1, false), Callback.NOOP);
+        assertNull(writes.poll());
+
+        // The third PING exceeds the write threshold, so the write happens immediately.
+        session.ping(new PingFrame(2, false), Callback.NOOP);
+        List<Integer> write = writes.poll(5, TimeUnit.SECONDS);
+        assertEquals(List.of(3 * PING_LENGTH), write);
+    }
+
+    @Test
+    public void testSmallBuffersAroundLargeBufferAreCoalesced() throws Exception
+    {
+        MetaData.Request request = new MetaData.Request("POST", HttpScheme.HTTP.asString(), null, "/", HttpVersion.HTTP_2, HttpFields.EMPTY, -1);
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(request, null, false), promise, new Stream.Listener.Adapter());
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        writes.clear();
+        long coalesced = session.getCoalescedBufferCount();
+
+        session.setWriteCoalescingDelay(TimeUnit.MILLISECONDS.toMicros(100));
+        int length = 8192;
+        session.ping(new PingFrame(0, false), Callback.NOOP);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), false), Callback.NOOP);
+        session.ping(new PingFrame(1, false), Callback.NOOP);
+        session.ping(new PingFrame(2, false), Callback.NOOP);
+
+        List<Integer> write = writes.poll(5, TimeUnit.SECONDS);
+        // The first PING frame and the DATA frame header are merged, and so are the last 2 PING frames.
+        assertEquals(List.of(PING_LENGTH + Frame.HEADER_LENGTH, length, 2 * PING_LENGTH), write);
+        assertEquals(4, session.getCoalescedBufferCount() - coalesced);
+    }
+
+    @Test
+    public void testLargeBuffersAreNotCopied() throws Exception
+    {
+        MetaData.Request request = new MetaData.Request("POST", HttpScheme.HTTP.asString(), null, "/", HttpVersion.HTTP_2, HttpFields.EMPTY, -1);
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(request, null, false), promise, new Stream.Listener.Adapter());
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        writes.clear();
+        long coalesced = session.getCoalescedBufferCount();
+
+        session.setWriteCoalescingDelay(TimeUnit.MILLISECONDS.toMicros(100));
+        int length = 8192;
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), false), Callback.NOOP);
+        session.ping(new PingFrame(0, false), Callback.NOOP);
+
+        List<Integer> write = writes.poll(5, TimeUnit.SECONDS);
+        // The small buffers are not adjacent, so nothing is copied.
+        assertEquals(List.of(Frame.HEADER_LENGTH, length, PING_LENGTH), write);
+        assertEquals(coalesced, session.getCoalescedBufferCount());
+    }
+}
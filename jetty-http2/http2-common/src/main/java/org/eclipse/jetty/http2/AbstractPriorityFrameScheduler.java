@@ -0,0 +1,144 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
+import org.eclipse.jetty.http2.frames.StreamFrame;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>Base class for {@link FrameScheduler}s that order streams by priority.</p>
+ * <p>Frames other than DATA are processed first, in the order they have been
+ * queued, unless they follow a DATA frame of the same stream, for example
+ * trailers; the remaining frames are ordered by the {@link #rank(int) rank}
+ * of their stream, lowest first.</p>
+ * <p>Only one DATA frame is generated before the frames are ordered again,
+ * so that the stream with the lowest rank that is able to send, because it
+ * is not stalled by flow control, gets the next DATA frame; this guarantees
+ * that the connection is never idle while there is a stream able to send.</p>
+ */
+public abstract class AbstractPriorityFrameScheduler implements FrameScheduler
+{
+    private static final Comparator<Ranked> COMPARATOR = (r1, r2) -> compare(r1.rank, r1.streamId, r2.rank, r2.streamId);
+
+    protected final AutoLock lock = new AutoLock();
+    private final List<Ranked> ranked = new ArrayList<>();
+    private final Set<Integer> dataStreams = new HashSet<>();
+    private long[] ranks = new long[16];
+    private int[] streamIds = new int[16];
+
+    private static int compare(long rank1, int streamId1, long rank2, int streamId2)
+    {
+        int result = Long.compare(rank1, rank2);
+        // Streams with the same rank are ordered by stream id,
+        // while frames other than DATA retain their order.
+        if (result == 0 && rank1 != Long.MIN_VALUE)
+            result = Integer.compare(streamId1, streamId2);
+        return result;
+    }
+
+    @Override
+    public boolean schedule(List<HTTP2Flusher.Entry> entries)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            prepare();
+            int size = entries.size();
+            if (ranks.length < size)
+            {
+                ranks = new long[Math.max(size, 2 * ranks.length)];
+                streamIds = new int[ranks.length];
+            }
+            boolean sorted = true;
+            for (int i = 0; i < size; ++i)
+            {
+                Frame frame = entries.get(i).getFrame();
+                int streamId = frame instanceof StreamFrame ? ((StreamFrame)frame).getStreamId() : 0;
+                long rank;
+                if (frame.getType() == FrameType.DATA)
+                {
+                    dataStreams.add(streamId);
+                    rank = rank(streamId);
+                }
+                else if (streamId == 0 || !dataStreams.contains(streamId))
+                {
+                    rank = Long.MIN_VALUE;
+                }
+                else
+                {
+                    rank = rank(streamId);
+                }
+                ranks[i] = rank;
+                streamIds[i] = streamId;
+                if (i > 0 && compare(ranks[i - 1], streamIds[i - 1], rank, streamId) > 0)
+                    sorted = false;
+            }
+            dataStreams.clear();
+
+            // Typically only the stream that sent the last DATA frame
+            // has changed rank, so the entries may already be in order.
+            if (sorted)
+                return true;
+
+            for (int i = 0; i < size; ++i)
+            {
+                ranked.add(new Ranked(entries.get(i), streamIds[i], ranks[i]));
+            }
+            // The sort is stable, so that the entries of the same stream retain their order.
+            ranked.sort(COMPARATOR);
+            for (int i = 0; i < size; ++i)
+            {
+                entries.set(i, ranked.get(i).entry);
+            }
+            ranked.clear();
+            return true;
+        }
+    }
+
+    /**
+     * <p>Called with the lock held before the entries are ranked.</p>
+     */
+    protected void prepare()
+    {
+    }
+
+    /**
+     * <p>Called with the lock held to rank the frames of the given stream.</p>
+     *
+     * @param streamId the stream id
+     * @return the rank of the stream, greater than {@link Long#MIN_VALUE}
+     */
+    protected abstract long rank(int streamId);
+
+    private static class Ranked
+    {
+        private final HTTP2Flusher.Entry entry;
+        private final int streamId;
+        private final long rank;
+
+        private Ranked(HTTP2Flusher.Entry entry, int streamId, long rank)
+        {
+            this.entry = entry;
+            this.streamId = streamId;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A flow control strategy that sizes the receive windows after the
+ * bandwidth-delay product (BDP) of the connection.</p>
+ * <p>When DATA frames are received, a PING frame is sent and the bytes received
+ * until the PING reply arrives are counted: they are a sample of the BDP.
+ * When the sample is close to the receive windows, the windows are limiting
+ * the throughput and are grown to twice the sample; when several consecutive
+ * samples are much smaller than the receive windows, the windows are shrunk
+ * to save memory. The windows never exceed the configured bounds.</p>
+ * <p>The session receive window is grown with a WINDOW_UPDATE frame, while the
+ * stream receive windows are grown with a SETTINGS frame that enlarges
+ * {@link SettingsFrame#INITIAL_WINDOW_SIZE}. Windows are shrunk by withholding
+ * WINDOW_UPDATE frames until the data in flight fits the smaller window, since
+ * a smaller initial window size would make the data already in flight exceed
+ * the stream windows.</p>
+ * <p>As in {@link BufferingFlowControlStrategy}, WINDOW_UPDATE frames are sent
+ * when the consumed bytes exceed a fraction of the window, the
+ * {@link #getBufferRatio() buffer ratio}.</p>
+ * <p>PING frames are sent at most every {@link #getPingInterval() ping interval},
+ * to stay within the rate control limits of the remote peer.</p>
+ */
+@ManagedObject
+public class BDPFlowControlStrategy extends AbstractFlowControlStrategy
+{
+    private static final int SHRINK_SAMPLES = 4;
+
+    private final AutoLock lock = new AutoLock();
+    private final AtomicInteger sessionLevel = new AtomicInteger();
+    private final Map<IStream, AtomicInteger> streamLevels = new ConcurrentHashMap<>();
+    private final long pingNonce = ThreadLocalRandom.current().nextLong();
+    private final int minRecvWindow;
+    private final int maxSessionRecvWindow;
+    private final int maxStreamRecvWindow;
+    private float bufferRatio = 0.5F;
+    private long pingInterval = 250;
+    private volatile int sessionRecvWindow = DEFAULT_WINDOW_SIZE;
+    private volatile int streamRecvWindow;
+    private boolean estimated;
+    private long pings;
+    private boolean pinging;
+    private long pingNanoTime;
+    private long pingBytes;
+    private long rtt;
+    private long bdp;
+    private long maxBandwidth;
+    private int shrinkSamples;
+
+    public BDPFlowControlStrategy()
+    {
+        this(DEFAULT_WINDOW_SIZE, 16 * 1024 * 1024, 8 * 1024 * 1024);
+    }
+
+    /**
+     * @param minRecvWindow the minimum size of the session and stream receive windows
+     * @param maxSessionRecvWindow the maximum size of the session receive window
+     * @param maxStreamRecvWindow the maximum size of the stream receive windows
+     */
+    public BDPFlowControlStrategy(int minRecvWindow, int maxSessionRecvWindow, int maxStreamRecvWindow)
+    {
+        super(DEFAULT_WINDOW_SIZE);
+        if (minRecvWindow <= 0 || maxSessionRecvWindow < minRecvWindow || maxStreamRecvWindow < minRecvWindow)
+            throw new IllegalArgumentException();
+        this.minRecvWindow = minRecvWindow;
+        this.maxSessionRecvWindow = maxSessionRecvWindow;
+        this.maxStreamRecvWindow = maxStreamRecvWindow;
+    }
+
+    @ManagedAttribute(value = "The minimum size of the receive windows", readonly = true)
+    public int getMinRecvWindow()
+    {
+        return minRecvWindow;
+    }
+
+    @ManagedAttribute(value = "The maximum size of the session receive window", readonly = true)
+    public int getMaxSessionRecvWindow()
+    {
+        return maxSessionRecvWindow;
+    }
+
+    @ManagedAttribute(value = "The maximum size of the stream receive windows", readonly = true)
+    public int getMaxStreamRecvWindow()
+    {
+        return maxStreamRecvWindow;
+    }
+
+    @ManagedAttribute("The ratio between the receive window and the consumed bytes that trigger a window update")
+    public float getBufferRatio()
+    {
+        return bufferRatio;
+    }
+
+    public void setBufferRatio(float bufferRatio)
+    {
+        this.bufferRatio = bufferRatio;
+    }
+
+    @ManagedAttribute("The minimum interval in milliseconds between PING frames")
+    public long getPingInterval()
+    {
+        return pingInterval;
+    }
+
+    public void setPingInterval(long pingInterval)
+    {
+        this.pingInterval = pingInterval;
+    }
+
+    @ManagedAttribute(value = "The session receive window chosen from the BDP", readonly = true)
+    public int getSessionRecvWindow()
+    {
+        return sessionRecvWindow;
+    }
+
+    @ManagedAttribute(value = "The stream receive window chosen from the BDP", readonly = true)
+    public int getStreamRecvWindow()
+    {
+        int window = streamRecvWindow;
+        return window > 0 ? window : getInitialStreamRecvWindow();
+    }
+
+    @ManagedAttribute(value = "The last BDP sample in bytes", readonly = true)
+    public long getBDP()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return bdp;
+        }
+    }
+
+    @ManagedAttribute(value = "The smoothed round-trip time in microseconds", readonly = true)
+    public long getRoundTripTime()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return TimeUnit.NANOSECONDS.toMicros(rtt);
+        }
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream)
+    {
+        super.onStreamCreated(stream);
+        streamLevels.put(stream, new AtomicInteger());
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream)
+    {
+        streamLevels.remove(stream);
+        super.onStreamDestroyed(stream);
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+
+        long ping = 0;
+        boolean send = false;
+        try (AutoLock l = lock.lock())
+        {
+            if (pinging)
+            {
+                pingBytes += length;
+            }
+            else
+            {
+                long now = System.nanoTime();
+                if (pings == 0 || now - pingNanoTime >= TimeUnit.MILLISECONDS.toNanos(pingInterval))
+                {
+                    pinging = true;
+                    pingNanoTime = now;
+                    pingBytes = length;
+                    ping = pingNonce + ++pings;
+                    send = true;
+                }
+            }
+        }
+
+        if (send)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Sending BDP ping {} for {}", ping, session);
+            session.ping(new PingFrame(ping, false), Callback.NOOP);
+        }
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        int sessionWindow;
+        int streamWindow;
+        int sessionDelta;
+        try (AutoLock l = lock.lock())
+        {
+            if (!pinging || frame.getPayloadAsLong() != pingNonce + pings)
+                return false;
+            pinging = false;
+
+            long sampleRTT = Math.max(1, System.nanoTime() - pingNanoTime);
+            rtt = rtt == 0 ? sampleRTT : (7 * rtt + sampleRTT) / 8;
+            long sample = pingBytes;
+            bdp = sample;
+            long bandwidth = sample * TimeUnit.SECONDS.toNanos(1) / sampleRTT;
+
+            sessionWindow = sessionRecvWindow;
+            streamWindow = getStreamRecvWindow();
+            long limit = Math.min(sessionWindow, streamWindow);
+            if (3 * sample >= 2 * limit)
+            {
+                shrinkSamples = 0;
+                // Grow only if the windows, not the network, limit the throughput.
+                if (bandwidth >= maxBandwidth)
+                {
+                    maxBandwidth = bandwidth;
+                    sessionWindow = (int)Math.max(sessionWindow, Math.min(2 * sample, maxSessionRecvWindow));
+                    streamWindow = (int)Math.max(streamWindow, Math.min(2 * sample, maxStreamRecvWindow));
+                }
+            }
+            else if (4 * sample < limit)
+            {
+                if (++shrinkSamples >= SHRINK_SAMPLES)
+                {
+                    shrinkSamples = 0;
+                    maxBandwidth = bandwidth;
+                    sessionWindow = (int)Math.max(minRecvWindow, Math.max(2 * sample, sessionWindow / 2));
+                    streamWindow = (int)Math.max(minRecvWindow, Math.max(2 * sample, streamWindow / 2));
+                }
+            }
+            else
+            {
+                shrinkSamples = 0;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("BDP sample {} bytes in {} us, recv windows session/stream {}/{} -> {}/{} for {}",
+                    sample, TimeUnit.NANOSECONDS.toMicros(sampleRTT), sessionRecvWindow, getStreamRecvWindow(), sessionWindow, streamWindow, session);
+
+            estimated = true;
+            sessionDelta = sessionWindow - sessionRecvWindow;
+            sessionRecvWindow = sessionWindow;
+            streamRecvWindow = streamWindow;
+        }
+
+        if (sessionDelta > 0)
+        {
+            session.updateRecvWindow(sessionDelta);
+            sendWindowUpdate(null, session, new WindowUpdateFrame(0, sessionDelta));
+        }
+
+        // Stream windows can only be enlarged via SETTINGS; they are
+        // shrunk by withholding the stream window updates instead.
+        if (streamWindow > getInitialStreamRecvWindow())
+            session.settings(new SettingsFrame(Map.of(SettingsFrame.INITIAL_WINDOW_SIZE, streamWindow), false), Callback.NOOP);
+
+        return true;
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        float ratio = bufferRatio;
+
+        int level = sessionLevel.addAndGet(length);
+        int window = sessionRecvWindow;
+        int maxLevel = (int)(window * ratio);
+        if (level > maxLevel)
+        {
+            if (sessionLevel.compareAndSet(level, 0))
+            {
+                // Withhold the bytes that exceed a shrunk window.
+                int delta = Math.min(level, window - session.updateRecvWindow(0));
+                if (delta > 0)
+                {
+                    session.updateRecvWindow(delta);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Data consumed, {} bytes, updated session recv window by {}/{} for {}", length, delta, maxLevel, session);
+                    sendWindowUpdate(null, session, new WindowUpdateFrame(0, delta));
+                }
+                else
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Data consumed, {} bytes, withheld session recv window update {}/{} for {}", length, level, maxLevel, session);
+                }
+            }
+            else
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, concurrent session recv window level {}/{} for {}", length, sessionLevel, maxLevel, session);
+            }
+        }
+        else
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Data consumed, {} bytes, session recv window level {}/{} for {}", length, level, maxLevel, session);
+        }
+
+        if (stream != null)
+        {
+            if (stream.isRemotelyClosed())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, ignoring update stream recv window for remotely closed {}", length, stream);
+            }
+            else
+            {
+                AtomicInteger streamLevel = streamLevels.get(stream);
+                if (streamLevel != null)
+                {
+                    level = streamLevel.addAndGet(length);
+                    window = getStreamRecvWindow();
+                    maxLevel = (int)(window * ratio);
+                    if (level > maxLevel)
+                    {
+                        level = streamLevel.getAndSet(0);
+                        int delta = Math.min(level, window - stream.updateRecvWindow(0));
+                        if (delta > 0)
+                        {
+                            stream.updateRecvWindow(delta);
+                            if (LOG.isDebugEnabled())
+                                LOG.debug("Data consumed, {} bytes, updated stream recv window by {}/{} for {}", length, delta, maxLevel, stream);
+                            sendWindowUpdate(stream, session, new WindowUpdateFrame(stream.getId(), delta));
+                        }
+                        else
+                        {
+                            if (LOG.isDebugEnabled())
+                                LOG.debug("Data consumed, {} bytes, withheld stream recv window update {}/{} for {}", length, level, maxLevel, stream);
+                        }
+                    }
+                    else
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, stream recv window level {}/{} for {}", length, level, maxLevel, stream);
+                    }
+                }
+            }
+        }
+    }
+
+    protected void sendWindowUpdate(IStream stream, ISession session, WindowUpdateFrame frame)
+    {
+        session.frames(stream, List.of(frame), Callback.NOOP);
+    }
+
+    @Override
+    public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+    {
+        super.windowUpdate(session, stream, frame);
+        // Until the first BDP estimation, track the session recv
+        // window configured by the session, typically at preface.
+        if (frame.getStreamId() == 0 && !estimated)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                sessionRecvWindow = Math.max(sessionRecvWindow, session.updateRecvWindow(0));
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[sessionRecvWindow=%d,streamRecvWindow=%d,bdp=%d,rtt=%dus,sessionStallTime=%dms,streamsStallTime=%dms]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getSessionRecvWindow(),
+            getStreamRecvWindow(),
+            getBDP(),
+            getRoundTripTime(),
+            getSessionStallTime(),
+            getStreamsStallTime());
+    }
+}
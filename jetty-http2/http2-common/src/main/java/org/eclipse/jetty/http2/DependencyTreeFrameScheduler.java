@@ -0,0 +1,357 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A {@link FrameScheduler} that implements the stream dependency tree of
+ * RFC 7540, section 5.3, built from the priority information of HEADERS
+ * frames and from PRIORITY frames.</p>
+ * <p>A stream is served before the streams that depend on it; sibling streams
+ * share the bandwidth in proportion to their weight, the next DATA frame going
+ * to the sibling whose subtree has sent the fewest bytes relative to its weight.</p>
+ * <p>The number of streams tracked in the tree is limited by
+ * {@link #getMaxStreams()}, because PRIORITY frames may refer to streams
+ * that are never opened.
+ * The nodes created by PRIORITY frames for streams that are not open are
+ * placeholders that, as allowed by RFC 7540, section 5.3.4, age out in
+ * creation order to make room for other nodes, so that PRIORITY frames
+ * cannot prevent the streams opened later from being tracked.</p>
+ * <p>The whole tree is ranked only after HEADERS frames, PRIORITY frames or stream
+ * removals changed it; the bytes sent by a stream only move the stream, and its
+ * ancestors, among their siblings, so only the subtrees of those siblings are
+ * ranked again.</p>
+ */
+public class DependencyTreeFrameScheduler extends AbstractPriorityFrameScheduler
+{
+    public static final int DEFAULT_WEIGHT = 16;
+    private static final int MAX_WEIGHT = 256;
+    private static final Comparator<Node> COMPARATOR = Comparator.<Node>comparingLong(node -> node.virtualTime).thenComparingInt(node -> node.streamId);
+
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private final Set<Node> placeholders = new LinkedHashSet<>();
+    private final Deque<Node> ranking = new ArrayDeque<>();
+    private final Node root = new Node(0);
+    private final int maxStreams;
+    private boolean changed = true;
+
+    public DependencyTreeFrameScheduler()
+    {
+        this(1024);
+    }
+
+    public DependencyTreeFrameScheduler(int maxStreams)
+    {
+        this.maxStreams = maxStreams;
+    }
+
+    public int getMaxStreams()
+    {
+        return maxStreams;
+    }
+
+    @Override
+    public void onHeaders(HeadersFrame frame)
+    {
+        PriorityFrame priority = frame.getPriority();
+        try (AutoLock l = lock.lock())
+        {
+            int streamId = frame.getStreamId();
+            if (priority != null)
+                prioritize(streamId, priority.getParentStreamId(), priority.getWeight(), priority.isExclusive(), true);
+            else if (!nodes.containsKey(streamId))
+                prioritize(streamId, 0, DEFAULT_WEIGHT, false, true);
+            else
+                placeholders.remove(nodes.get(streamId));
+        }
+    }
+
+    @Override
+    public void onPriority(PriorityFrame frame)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            prioritize(frame.getStreamId(), frame.getParentStreamId(), frame.getWeight(), frame.isExclusive(), false);
+        }
+    }
+
+    private void prioritize(int streamId, int parentStreamId, int weight, boolean exclusive, boolean open)
+    {
+        if (streamId == 0 || streamId == parentStreamId)
+            return;
+
+        Node node = nodes.get(streamId);
+        if (node == null)
+        {
+            if (nodes.size() >= maxStreams && !ageOut(parentStreamId))
+                return;
+            node = new Node(streamId);
+            nodes.put(streamId, node);
+            if (!open)
+                placeholders.add(node);
+        }
+        else if (open)
+        {
+            placeholders.remove(node);
+        }
+
+        // SPEC: a dependency on a stream that is not in the tree
+        // results in that stream being given a default priority.
+        Node parent = parentStreamId == 0 ? root : nodes.get(parentStreamId);
+        if (parent == null)
+        {
+            parent = root;
+            weight = DEFAULT_WEIGHT;
+            exclusive = false;
+        }
+
+        // SPEC: if a stream is made dependent on one of its own
+        // dependencies, the formerly dependent stream is first moved
+        // to be dependent on the reprioritized stream's previous parent.
+        if (!node.children.isEmpty() && isAncestor(node, parent))
+        {
+            detach(parent);
+            attach(node.parent, parent);
+        }
+
+        if (node.parent != null)
+            detach(node);
+        node.weight = Math.max(1, Math.min(MAX_WEIGHT, weight));
+        if (exclusive)
+        {
+            for (Node child : parent.children)
+            {
+                child.parent = node;
+                node.children.add(child);
+            }
+            parent.children.clear();
+        }
+        attach(parent, node);
+    }
+
+    private boolean isAncestor(Node ancestor, Node node)
+    {
+        for (Node parent = node.parent; parent != null; parent = parent.parent)
+        {
+            if (parent == ancestor)
+                return true;
+        }
+        return false;
+    }
+
+    private void attach(Node parent, Node child)
+    {
+        changed = true;
+        child.parent = parent;
+        child.virtualTime = parent.clock;
+        parent.children.add(child);
+    }
+
+    private void detach(Node child)
+    {
+        changed = true;
+        child.parent.children.remove(child);
+        child.parent = null;
+    }
+
+    /**
+     * <p>Removes the oldest placeholder, other than the given parent stream, to make room for a new node.</p>
+     *
+     * @param parentStreamId the stream id of the parent of the new node, that must not be removed
+     * @return whether a placeholder has been removed
+     */
+    private boolean ageOut(int parentStreamId)
+    {
+        Iterator<Node> iterator = placeholders.iterator();
+        while (iterator.hasNext())
+        {
+            Node placeholder = iterator.next();
+            if (placeholder.streamId != parentStreamId)
+            {
+                iterator.remove();
+                nodes.remove(placeholder.streamId);
+                remove(placeholder);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onStreamRemoved(int streamId)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            Node node = nodes.remove(streamId);
+            if (node == null)
+                return;
+            placeholders.remove(node);
+            remove(node);
+        }
+    }
+
+    private void remove(Node node)
+    {
+        // SPEC: the dependencies of a removed stream become dependent
+        // on its parent, sharing the weight of the removed stream.
+        Node parent = node.parent;
+        detach(node);
+        int weights = 0;
+        for (Node child : node.children)
+        {
+            weights += child.weight;
+        }
+        for (Node child : node.children)
+        {
+            child.weight = Math.max(1, node.weight * child.weight / weights);
+            attach(parent, child);
+        }
+        node.children.clear();
+    }
+
+    @Override
+    public void onDataGenerated(int streamId, int length)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            Node node = nodes.get(streamId);
+            if (node == null)
+                return;
+            // Charge the bytes to the stream and to its ancestors, so that
+            // siblings share the bandwidth consumed by their whole subtree.
+            for (; node != root; node = node.parent)
+            {
+                Node parent = node.parent;
+                // A node that was not active restarts from the virtual
+                // time of the last served sibling, so that it does not
+                // monopolize the bandwidth to recover the time it was idle.
+                long start = Math.max(node.virtualTime, parent.clock);
+                parent.clock = start;
+                node.virtualTime = start + (long)length * MAX_WEIGHT / node.weight;
+                if (!changed)
+                    reorder(node);
+            }
+        }
+    }
+
+    /**
+     * <p>Moves the given node, whose virtual time has increased, after the siblings
+     * that now precede it, and ranks again the subtrees of the node and of those
+     * siblings, which occupy a contiguous range of ranks.</p>
+     *
+     * @param node the node to move among its siblings
+     */
+    private void reorder(Node node)
+    {
+        List<Node> siblings = node.parent.children;
+        int index = siblings.indexOf(node);
+        int end = index;
+        while (end + 1 < siblings.size() && COMPARATOR.compare(siblings.get(end + 1), node) < 0)
+        {
+            siblings.set(end, siblings.get(end + 1));
+            ++end;
+        }
+        if (end == index)
+            return;
+        siblings.set(end, node);
+        long rank = node.rank - 1;
+        for (int i = end; i >= index; --i)
+        {
+            ranking.push(siblings.get(i));
+        }
+        rank(rank, false);
+    }
+
+    @Override
+    protected void prepare()
+    {
+        if (!changed)
+            return;
+        changed = false;
+        ranking.push(root);
+        rank(Long.MIN_VALUE, true);
+    }
+
+    /**
+     * <p>Ranks the subtrees of the nodes in {@link #ranking}, in order, with
+     * a depth-first, pre-order visit, iterative because a peer may build
+     * arbitrarily deep dependency chains.</p>
+     * <p>The children of the visited nodes are sorted when the whole tree is
+     * ranked, and are kept sorted by {@link #reorder(Node)} otherwise.</p>
+     *
+     * @param rank the rank preceding the rank of the first node
+     * @param sort whether to sort the children of the visited nodes
+     */
+    private void rank(long rank, boolean sort)
+    {
+        while (!ranking.isEmpty())
+        {
+            Node node = ranking.pop();
+            node.rank = ++rank;
+            List<Node> children = node.children;
+            if (sort)
+                children.sort(COMPARATOR);
+            for (int i = children.size(); i-- > 0;)
+            {
+                ranking.push(children.get(i));
+            }
+        }
+    }
+
+    @Override
+    protected long rank(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? Long.MAX_VALUE : node.rank;
+    }
+
+    @Override
+    public String toString()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return String.format("%s@%x[streams=%d,placeholders=%d]", getClass().getSimpleName(), hashCode(), nodes.size(), placeholders.size());
+        }
+    }
+
+    private static class Node
+    {
+        private final List<Node> children = new ArrayList<>();
+        private final int streamId;
+        private Node parent;
+        private int weight = DEFAULT_WEIGHT;
+        private long virtualTime;
+        private long clock;
+        private long rank;
+
+        private Node(int streamId)
+        {
+            this.streamId = streamId;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A {@link FrameScheduler} that implements the extensible priority scheme
+ * of RFC 9218, where each request carries its urgency and whether it can be
+ * processed incrementally in the {@code priority} header.</p>
+ * <p>Streams with a lower urgency are always served before streams with a
+ * higher urgency; within the same urgency, non-incremental streams are served
+ * one at a time in the order they have been opened, then incremental streams
+ * share the bandwidth fairly, the next DATA frame going to the stream that
+ * has sent the fewest bytes since it became active.</p>
+ * <p>Requests without the {@code priority} header have the default urgency
+ * of 3 and are not incremental; PRIORITY frames are ignored.</p>
+ */
+public class ExtensiblePriorityFrameScheduler extends AbstractPriorityFrameScheduler
+{
+    public static final String PRIORITY_HEADER = "priority";
+    public static final int DEFAULT_URGENCY = 3;
+    private static final int URGENCIES = 8;
+    private static final long MAX_VALUE = (1L << 55) - 1;
+
+    private final Map<Integer, Priority> priorities = new HashMap<>();
+    private final long[] clocks = new long[URGENCIES];
+
+    @Override
+    public void onHeaders(HeadersFrame frame)
+    {
+        MetaData metaData = frame.getMetaData();
+        if (metaData == null || !metaData.isRequest())
+            return;
+        String value = metaData.getFields().get(PRIORITY_HEADER);
+        if (value == null)
+            return;
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+        for (String member : StringUtil.csvSplit(value))
+        {
+            // Parameters of dictionary members are ignored.
+            int semicolon = member.indexOf(';');
+            if (semicolon >= 0)
+                member = member.substring(0, semicolon).trim();
+            if (member.length() == 3 && member.startsWith("u="))
+            {
+                int digit = member.charAt(2) - '0';
+                if (digit >= 0 && digit < URGENCIES)
+                    urgency = digit;
+            }
+            else if ("i".equals(member) || "i=?1".equals(member))
+            {
+                incremental = true;
+            }
+            else if ("i=?0".equals(member))
+            {
+                incremental = false;
+            }
+        }
+        try (AutoLock l = lock.lock())
+        {
+            priorities.put(frame.getStreamId(), new Priority(urgency, incremental, clocks[urgency]));
+        }
+    }
+
+    @Override
+    public void onPriority(PriorityFrame frame)
+    {
+    }
+
+    @Override
+    public void onStreamRemoved(int streamId)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            priorities.remove(streamId);
+        }
+    }
+
+    @Override
+    public void onDataGenerated(int streamId, int length)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            Priority priority = priorities.get(streamId);
+            if (priority == null || !priority.incremental)
+                return;
+            // A stream that was not active restarts from the virtual
+            // time of the last served stream, so that it does not
+            // monopolize the bandwidth to recover the time it was idle.
+            long start = Math.max(priority.virtualTime, clocks[priority.urgency]);
+            clocks[priority.urgency] = start;
+            priority.virtualTime = Math.min(MAX_VALUE, start + length);
+        }
+    }
+
+    @Override
+    protected long rank(int streamId)
+    {
+        Priority priority = priorities.get(streamId);
+        if (priority == null)
+            return ((long)DEFAULT_URGENCY << 56) | streamId;
+        long rank = (long)priority.urgency << 56;
+        if (priority.incremental)
+            return rank | (1L << 55) | priority.virtualTime;
+        return rank | streamId;
+    }
+
+    @Override
+    public String toString()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return String.format("%s@%x[streams=%d]", getClass().getSimpleName(), hashCode(), priorities.size());
+        }
+    }
+
+    private static class Priority
+    {
+        private final int urgency;
+        private final boolean incremental;
+        private long virtualTime;
+
+        private Priority(int urgency, boolean incremental, long virtualTime)
+        {
+            this.urgency = urgency;
+            this.incremental = incremental;
+            this.virtualTime = virtualTime;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.List;
+
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+
+/**
+ * <p>A {@link FrameScheduler} that ignores priorities and processes the frames
+ * in the order they are queued, generating one DATA frame per stream in turn.</p>
+ */
+public class FIFOFrameScheduler implements FrameScheduler
+{
+    @Override
+    public void onHeaders(HeadersFrame frame)
+    {
+    }
+
+    @Override
+    public void onPriority(PriorityFrame frame)
+    {
+    }
+
+    @Override
+    public void onStreamRemoved(int streamId)
+    {
+    }
+
+    @Override
+    public boolean schedule(List<HTTP2Flusher.Entry> entries)
+    {
+        return false;
+    }
+
+    @Override
+    public void onDataGenerated(int streamId, int length)
+    {
+    }
+}
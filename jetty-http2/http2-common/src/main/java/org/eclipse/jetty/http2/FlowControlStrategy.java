@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.http2;
 
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 
 public interface FlowControlStrategy
@@ -37,6 +38,20 @@ public interface FlowControlStrategy
 
     public void onDataSent(IStream stream, int length);
 
+    /**
+     * <p>Invoked when a PING reply is received, for strategies that send
+     * PING frames to measure the round-trip time.</p>
+     *
+     * @param session the session
+     * @param frame the PING reply
+     * @return whether the PING reply has been sent in response to a PING sent
+     * by this strategy, and must not be notified to the application
+     */
+    public default boolean onPingReply(ISession session, PingFrame frame)
+    {
+        return false;
+    }
+
     public interface Factory
     {
         public FlowControlStrategy newFlowControlStrategy();
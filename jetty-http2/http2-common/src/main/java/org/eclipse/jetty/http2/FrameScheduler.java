@@ -0,0 +1,69 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.List;
+
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+
+/**
+ * <p>Decides the order in which {@link HTTP2Flusher} processes the frames queued
+ * for a session, so that the bandwidth of the connection can be shared among
+ * streams according to their priority.</p>
+ * <p>The priority signals received from the remote peer are notified via
+ * {@link #onHeaders(HeadersFrame)} and {@link #onPriority(PriorityFrame)};
+ * before each pass over the queued frames, {@link HTTP2Flusher} calls
+ * {@link #schedule(List)} to order them, and then notifies the DATA bytes
+ * generated for each stream via {@link #onDataGenerated(int, int)}.</p>
+ * <p>Implementations are called concurrently by the thread that parses and by
+ * the thread that flushes, so they must be thread-safe.</p>
+ */
+public interface FrameScheduler
+{
+    /**
+     * @param frame a HEADERS frame received from the remote peer
+     */
+    public void onHeaders(HeadersFrame frame);
+
+    /**
+     * @param frame a PRIORITY frame received from the remote peer
+     */
+    public void onPriority(PriorityFrame frame);
+
+    /**
+     * @param streamId the id of the stream that has been removed from the session
+     */
+    public void onStreamRemoved(int streamId);
+
+    /**
+     * <p>Sorts in place the given entries in the order they should be processed.</p>
+     * <p>Entries of the same stream must retain their relative order.</p>
+     *
+     * @param entries the entries to sort
+     * @return whether at most one DATA frame must be generated before sorting the entries again
+     */
+    public boolean schedule(List<HTTP2Flusher.Entry> entries);
+
+    /**
+     * @param streamId the id of the stream for which a DATA frame has been generated
+     * @param length the length of the DATA frame payload
+     */
+    public void onDataGenerated(int streamId, int length);
+
+    public interface Factory
+    {
+        public FrameScheduler newFrameScheduler();
+    }
+}
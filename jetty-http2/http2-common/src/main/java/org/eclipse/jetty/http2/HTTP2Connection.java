@@ -27,6 +27,7 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.io.RetainableByteBufferPool;
 import org.eclipse.jetty.io.WriteFlusher;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -49,7 +50,7 @@ public class HTTP2Connection extends AbstractConnection implements WriteFlusher.
     private final Queue<Runnable> tasks = new ArrayDeque<>();
     private final HTTP2Producer producer = new HTTP2Producer();
     private final AtomicLong bytesIn = new AtomicLong();
-    private final ByteBufferPool byteBufferPool;
+    private final RetainableByteBufferPool retainableByteBufferPool;
     private final Parser parser;
     private final ISession session;
     private final int bufferSize;
@@ -58,9 +59,14 @@ public class HTTP2Connection extends AbstractConnection implements WriteFlusher.
     private boolean useOutputDirectByteBuffers;
 
     public HTTP2Connection(ByteBufferPool byteBufferPool, Executor executor, EndPoint endPoint, Parser parser, ISession session, int bufferSize)
+    {
+        this(RetainableByteBufferPool.from(byteBufferPool), executor, endPoint, parser, session, bufferSize);
+    }
+
+    public HTTP2Connection(RetainableByteBufferPool retainableByteBufferPool, Executor executor, EndPoint endPoint, Parser parser, ISession session, int bufferSize)
     {
         super(endPoint, executor);
-        this.byteBufferPool = byteBufferPool;
+        this.retainableByteBufferPool = retainableByteBufferPool;
         this.parser = parser;
         this.session = session;
         this.bufferSize = bufferSize;
@@ -293,7 +299,7 @@ public class HTTP2Connection extends AbstractConnection implements WriteFlusher.
                             return task;
 
                         // If more references than 1 (ie not just us), don't refill into buffer and risk compaction.
-                        if (networkBuffer.getReferences() > 1)
+                        if (networkBuffer.isRetained())
                             reacquireNetworkBuffer();
                     }
 
@@ -421,11 +427,38 @@ public class HTTP2Connection extends AbstractConnection implements WriteFlusher.
         }
     }
 
-    private class NetworkBuffer extends RetainableByteBuffer implements Callback
+    private class NetworkBuffer implements Callback
     {
+        private final RetainableByteBuffer delegate;
+
         private NetworkBuffer()
         {
-            super(byteBufferPool, bufferSize, isUseInputDirectByteBuffers());
+            delegate = retainableByteBufferPool.acquire(bufferSize, isUseInputDirectByteBuffers());
+        }
+
+        private ByteBuffer getBuffer()
+        {
+            return delegate.getBuffer();
+        }
+
+        private boolean isRetained()
+        {
+            return delegate.isRetained();
+        }
+
+        private boolean hasRemaining()
+        {
+            return delegate.hasRemaining();
+        }
+
+        private void retain()
+        {
+            delegate.retain();
+        }
+
+        private int release()
+        {
+            return delegate.release();
         }
 
         private void put(ByteBuffer source)
@@ -459,5 +492,11 @@ public class HTTP2Connection extends AbstractConnection implements WriteFlusher.
         {
             return InvocationType.NON_BLOCKING;
         }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), delegate);
+        }
     }
 }
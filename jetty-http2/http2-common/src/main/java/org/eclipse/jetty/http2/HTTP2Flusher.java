@@ -18,22 +18,29 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,17 +52,27 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private final AutoLock lock = new AutoLock();
     private final Queue<WindowEntry> windows = new ArrayDeque<>();
     private final Deque<Entry> entries = new ArrayDeque<>();
-    private final Queue<Entry> pendingEntries = new ArrayDeque<>();
+    private final List<Entry> pendingEntries = new ArrayList<>();
     private final Collection<Entry> processedEntries = new ArrayList<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
+    private final ByteBufferPool.Lease coalesced;
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder coalescedBuffers = new LongAdder();
+    private final LongAdder delayedWrites = new LongAdder();
+    private final LongAdder writeDelay = new LongAdder();
     private Throwable terminated;
     private Entry stalledEntry;
+    private long writeDeadline;
+    private long writeDelayStart;
+    private Scheduler.Task writeTask;
 
     public HTTP2Flusher(HTTP2Session session)
     {
         this.session = session;
-        this.lease = new ByteBufferPool.Lease(session.getGenerator().getByteBufferPool());
+        ByteBufferPool byteBufferPool = session.getGenerator().getByteBufferPool();
+        this.lease = new ByteBufferPool.Lease(byteBufferPool);
+        this.coalesced = new ByteBufferPool.Lease(byteBufferPool);
     }
 
     public void window(IStream stream, WindowUpdateFrame frame)
@@ -145,6 +162,39 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         }
     }
 
+    /**
+     * @return the number of writes performed
+     */
+    public long getWriteCount()
+    {
+        return writes.longValue();
+    }
+
+    /**
+     * @return the number of small buffers copied into shared buffers
+     */
+    public long getCoalescedBufferCount()
+    {
+        return coalescedBuffers.longValue();
+    }
+
+    /**
+     * @return the number of writes that have been delayed to coalesce more frames
+     */
+    public long getDelayedWriteCount()
+    {
+        return delayedWrites.longValue();
+    }
+
+    /**
+     * @return the average delay, in microseconds, of the writes that have been delayed
+     */
+    public long getAverageWriteDelay()
+    {
+        long count = delayedWrites.longValue();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(writeDelay.longValue() / count);
+    }
+
     @Override
     protected Action process() throws Throwable
     {
@@ -165,17 +215,18 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             Entry entry;
             while ((entry = entries.poll()) != null)
             {
-                pendingEntries.offer(entry);
+                pendingEntries.add(entry);
             }
         }
 
-        if (pendingEntries.isEmpty())
+        if (pendingEntries.isEmpty() && lease.getSize() == 0)
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed {}", session);
             return Action.IDLE;
         }
 
+        FrameScheduler scheduler = session.getFrameScheduler();
         while (true)
         {
             boolean progress = false;
@@ -183,6 +234,11 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             if (pendingEntries.isEmpty())
                 break;
 
+            // The scheduler may require to order the entries again
+            // after each DATA frame, to honor the stream priorities.
+            boolean oneDataFrame = scheduler.schedule(pendingEntries);
+            boolean dataGenerated = false;
+
             Iterator<Entry> pending = pendingEntries.iterator();
             while (pending.hasNext())
             {
@@ -201,8 +257,13 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                     continue;
                 }
 
+                boolean data = entry.frame.getType() == FrameType.DATA;
+                if (data && dataGenerated && oneDataFrame)
+                    continue;
+
                 try
                 {
+                    int dataRemaining = entry.getDataBytesRemaining();
                     if (entry.generate(lease))
                     {
                         if (LOG.isDebugEnabled())
@@ -210,6 +271,12 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
                         progress = true;
 
+                        if (data)
+                        {
+                            dataGenerated = true;
+                            scheduler.onDataGenerated(((DataFrame)entry.frame).getStreamId(), dataRemaining - entry.getDataBytesRemaining());
+                        }
+
                         // We use ArrayList contains() + add() instead of HashSet add()
                         // because that is faster for collections of size up to 250 entries.
                         if (!processedEntries.contains(entry))
@@ -268,10 +335,20 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return Action.IDLE;
         }
 
+        if (delayWrite())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Delaying write of {} bytes", lease.getTotalLength());
+            return Action.IDLE;
+        }
+
+        byteBuffers = coalesce(byteBuffers);
+        writes.increment();
+
         if (LOG.isDebugEnabled())
             LOG.debug("Writing {} buffers ({} bytes) - entries processed/pending {}/{}: {}/{}",
                 byteBuffers.size(),
-                lease.getTotalLength(),
+                BufferUtil.remaining(byteBuffers.toArray(EMPTY_BYTE_BUFFERS)),
                 processedEntries.size(),
                 pendingEntries.size(),
                 processedEntries,
@@ -281,6 +358,122 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         return Action.SCHEDULED;
     }
 
+    /**
+     * <p>Delays the write of small amounts of bytes, in the hope that other frames are
+     * queued in the meantime and can be written together, in a similar way TCP's
+     * Nagle's algorithm does.</p>
+     * <p>The write is not delayed if it is not small, that is it reached the
+     * {@link HTTP2Session#getWriteThreshold() write threshold}, if there are pending
+     * frames that could not be generated, or if it has been already delayed for
+     * {@link HTTP2Session#getWriteCoalescingDelay() the max delay}.</p>
+     *
+     * @return whether the write has been delayed
+     */
+    private boolean delayWrite()
+    {
+        long delay = session.getWriteCoalescingDelay();
+        if (delay <= 0)
+            return false;
+
+        long now = System.nanoTime();
+        if (writeDelayStart == 0)
+        {
+            if (!pendingEntries.isEmpty() || lease.getTotalLength() >= session.getWriteThreshold())
+                return false;
+            writeDelayStart = now;
+            writeDeadline = now + TimeUnit.MICROSECONDS.toNanos(delay);
+            writeTask = session.getScheduler().schedule(this::iterate, delay, TimeUnit.MICROSECONDS);
+            return true;
+        }
+
+        if (now - writeDeadline < 0 && pendingEntries.isEmpty() && lease.getTotalLength() < session.getWriteThreshold())
+            return true;
+
+        delayedWrites.increment();
+        writeDelay.add(now - writeDelayStart);
+        writeDelayStart = 0;
+        Scheduler.Task task = writeTask;
+        writeTask = null;
+        if (task != null)
+            task.cancel();
+        return false;
+    }
+
+    /**
+     * <p>Copies runs of small buffers, typically control frames, frame headers and
+     * small DATA payloads, into shared pooled buffers of
+     * {@link HTTP2Session#getWriteCoalescingSize() the coalescing size}, so that
+     * the gathering write has fewer buffers, which results in fewer TLS records
+     * when the connection is encrypted.</p>
+     * <p>Buffers larger than half the coalescing size are written as they are,
+     * and so are small buffers that cannot be merged with an adjacent one.</p>
+     *
+     * @param buffers the buffers generated for this write
+     * @return the buffers to write
+     */
+    private List<ByteBuffer> coalesce(List<ByteBuffer> buffers)
+    {
+        int size = session.getWriteCoalescingSize();
+        if (size <= 0 || buffers.size() < 2)
+            return buffers;
+
+        // Scan first, so that pooled buffers are acquired
+        // only if at least two buffers can be merged.
+        int count = buffers.size();
+        int index = 0;
+        while (index < count && coalesceEnd(buffers, index, size) - index < 2)
+        {
+            ++index;
+        }
+        if (index == count)
+            return buffers;
+
+        for (int i = 0; i < index; ++i)
+        {
+            coalesced.append(buffers.get(i), false);
+        }
+        while (index < count)
+        {
+            int end = coalesceEnd(buffers, index, size);
+            if (end - index < 2)
+            {
+                coalesced.append(buffers.get(index), false);
+                ++index;
+                continue;
+            }
+
+            ByteBuffer aggregate = coalesced.acquire(size, buffers.get(index).isDirect());
+            BufferUtil.clear(aggregate);
+            coalescedBuffers.add(end - index);
+            while (index < end)
+            {
+                BufferUtil.append(aggregate, buffers.get(index).slice());
+                ++index;
+            }
+            coalesced.append(aggregate, true);
+        }
+        return coalesced.getByteBuffers();
+    }
+
+    /**
+     * @return the end, exclusive, of the run of small buffers starting at
+     * the given index whose total length fits in the given size
+     */
+    private static int coalesceEnd(List<ByteBuffer> buffers, int index, int size)
+    {
+        int length = 0;
+        int end = index;
+        while (end < buffers.size())
+        {
+            int remaining = buffers.get(end).remaining();
+            if (remaining > size / 2 || length + remaining > size)
+                break;
+            length += remaining;
+            ++end;
+        }
+        return end;
+    }
+
     void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
@@ -307,21 +500,16 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private void finish()
     {
         lease.recycle();
+        coalesced.recycle();
 
         processedEntries.forEach(Entry::succeeded);
         processedEntries.clear();
 
         if (stalledEntry != null)
         {
-            int size = pendingEntries.size();
-            for (int i = 0; i < size; ++i)
-            {
-                Entry entry = pendingEntries.peek();
-                if (entry == stalledEntry)
-                    break;
-                pendingEntries.poll();
-                pendingEntries.offer(entry);
-            }
+            int index = pendingEntries.indexOf(stalledEntry);
+            if (index > 0)
+                Collections.rotate(pendingEntries, -index);
             stalledEntry = null;
         }
     }
@@ -336,6 +524,11 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     protected void onCompleteFailure(Throwable x)
     {
         lease.recycle();
+        coalesced.recycle();
+        Scheduler.Task task = writeTask;
+        writeTask = null;
+        if (task != null)
+            task.cancel();
 
         Throwable closed;
         Set<Entry> allEntries;
@@ -419,6 +612,11 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             this.stream = stream;
         }
 
+        public Frame getFrame()
+        {
+            return frame;
+        }
+
         public abstract int getFrameBytesGenerated();
 
         public int getDataBytesRemaining()
@@ -95,11 +95,14 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private final Session.Listener listener;
     private final FlowControlStrategy flowControl;
     private final HTTP2Flusher flusher;
+    private FrameScheduler frameScheduler = new FIFOFrameScheduler();
     private int maxLocalStreams;
     private int maxRemoteStreams;
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private int writeThreshold;
+    private int writeCoalescingSize;
+    private long writeCoalescingDelay;
     private boolean pushEnabled;
     private boolean connectProtocolEnabled;
 
@@ -136,6 +139,17 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         return flowControl;
     }
 
+    @ManagedAttribute(value = "The frame scheduler", readonly = true)
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
     @ManagedAttribute(value = "The total number of streams opened", readonly = true)
     public long getStreamsOpened()
     {
@@ -203,6 +217,72 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.writeThreshold = writeThreshold;
     }
 
+    @ManagedAttribute("The size of the buffers into which small frames are coalesced, or 0 to disable coalescing")
+    public int getWriteCoalescingSize()
+    {
+        return writeCoalescingSize;
+    }
+
+    /**
+     * <p>Sets the size of the pooled buffers into which small frames, such as control
+     * frames and small DATA frames, are copied before being written, so that a single
+     * gathering write contains fewer buffers and results in fewer TLS records.</p>
+     *
+     * @param writeCoalescingSize the size of the coalescing buffers, or 0 to disable coalescing
+     */
+    public void setWriteCoalescingSize(int writeCoalescingSize)
+    {
+        this.writeCoalescingSize = writeCoalescingSize;
+    }
+
+    @ManagedAttribute("The max delay in microseconds of writes smaller than the write threshold, or 0 to disable delays")
+    public long getWriteCoalescingDelay()
+    {
+        return writeCoalescingDelay;
+    }
+
+    /**
+     * <p>Sets the max delay of writes smaller than the {@link #getWriteThreshold() write threshold},
+     * during which more frames can be queued and written together.</p>
+     * <p>Delays trade latency for fewer writes on busy connections; the delay actually
+     * incurred is reported by {@link #getAverageWriteDelay()}.</p>
+     *
+     * @param writeCoalescingDelay the max write delay in microseconds, or 0 to disable delays
+     */
+    public void setWriteCoalescingDelay(long writeCoalescingDelay)
+    {
+        this.writeCoalescingDelay = writeCoalescingDelay;
+    }
+
+    @ManagedAttribute(value = "The number of writes", readonly = true)
+    public long getWriteCount()
+    {
+        return flusher.getWriteCount();
+    }
+
+    @ManagedAttribute(value = "The number of small buffers coalesced into shared buffers", readonly = true)
+    public long getCoalescedBufferCount()
+    {
+        return flusher.getCoalescedBufferCount();
+    }
+
+    @ManagedAttribute(value = "The number of delayed writes", readonly = true)
+    public long getDelayedWriteCount()
+    {
+        return flusher.getDelayedWriteCount();
+    }
+
+    @ManagedAttribute(value = "The average delay in microseconds of delayed writes", readonly = true)
+    public long getAverageWriteDelay()
+    {
+        return flusher.getAverageWriteDelay();
+    }
+
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
     public EndPoint getEndPoint()
     {
         return endPoint;
@@ -301,6 +381,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Received {} on {}", frame, this);
+        frameScheduler.onPriority(frame);
     }
 
     @Override
@@ -427,7 +508,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -875,6 +957,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             LOG.debug("Removed {} {} from {}", stream.isLocal() ? "local" : "remote", stream, this);
         onStreamClosed(stream);
         flowControl.onStreamDestroyed(stream);
+        frameScheduler.onStreamRemoved(streamId);
         onStreamDestroyed(streamId);
         return true;
     }
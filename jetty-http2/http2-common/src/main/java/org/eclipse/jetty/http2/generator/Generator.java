@@ -71,6 +71,16 @@ public class Generator
         hpackEncoder.setValidateEncoding(validateEncoding);
     }
 
+    public void setHpackAdaptiveIndexing(boolean adaptiveIndexing)
+    {
+        hpackEncoder.setAdaptiveIndexing(adaptiveIndexing);
+    }
+
+    public void setHpackBlockCacheSize(int blockCacheSize)
+    {
+        hpackEncoder.setBlockCacheSize(blockCacheSize);
+    }
+
     public void setHeaderTableSize(int headerTableSize)
     {
         hpackEncoder.setRemoteMaxDynamicTableSize(headerTableSize);
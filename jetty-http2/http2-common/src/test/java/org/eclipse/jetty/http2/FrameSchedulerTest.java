@@ -0,0 +1,311 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.http2.frames.StreamFrame;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameSchedulerTest
+{
+    @Test
+    public void testFIFOKeepsOrder()
+    {
+        FrameScheduler scheduler = new FIFOFrameScheduler();
+        List<HTTP2Flusher.Entry> entries = entries(data(1), headers(3, null), data(5));
+
+        assertFalse(scheduler.schedule(entries));
+        assertThat(describe(entries), contains("DATA#1", "HEADERS#3", "DATA#5"));
+    }
+
+    @Test
+    public void testExtensibleUrgency()
+    {
+        FrameScheduler scheduler = new ExtensiblePriorityFrameScheduler();
+        scheduler.onHeaders(headers(1, null));
+        scheduler.onHeaders(headers(3, "u=5"));
+        scheduler.onHeaders(headers(5, "u=0"));
+        List<HTTP2Flusher.Entry> entries = entries(data(3), data(1), data(5), headers(7, null));
+
+        assertTrue(scheduler.schedule(entries));
+        assertThat(describe(entries), contains("HEADERS#7", "DATA#5", "DATA#1", "DATA#3"));
+    }
+
+    @Test
+    public void testExtensibleNonIncrementalIsSequential()
+    {
+        FrameScheduler scheduler = new ExtensiblePriorityFrameScheduler();
+        scheduler.onHeaders(headers(1, "u=2"));
+        scheduler.onHeaders(headers(3, "u=2"));
+        List<HTTP2Flusher.Entry> entries = entries(data(3), data(1));
+
+        for (int i = 0; i < 4; ++i)
+        {
+            assertEquals(1, serve(scheduler, entries));
+        }
+    }
+
+    @Test
+    public void testExtensibleIncrementalIsFair()
+    {
+        FrameScheduler scheduler = new ExtensiblePriorityFrameScheduler();
+        scheduler.onHeaders(headers(1, "u=3, i"));
+        scheduler.onHeaders(headers(3, "i=?1;foo=bar"));
+        List<HTTP2Flusher.Entry> entries = entries(data(1), data(3));
+
+        List<Integer> served = new ArrayList<>();
+        for (int i = 0; i < 6; ++i)
+        {
+            served.add(serve(scheduler, entries));
+        }
+        assertThat(served, contains(1, 3, 1, 3, 1, 3));
+
+        // A stream that becomes active does not monopolize the bandwidth.
+        scheduler.onHeaders(headers(5, "u=3, i"));
+        entries.add(new TestEntry(data(5)));
+        served.clear();
+        for (int i = 0; i < 6; ++i)
+        {
+            served.add(serve(scheduler, entries));
+        }
+        assertThat(served, contains(5, 1, 3, 5, 1, 3));
+    }
+
+    @Test
+    public void testTrailersRemainAfterData()
+    {
+        FrameScheduler scheduler = new ExtensiblePriorityFrameScheduler();
+        scheduler.onHeaders(headers(1, "u=4"));
+        scheduler.onHeaders(headers(3, "u=1"));
+        List<HTTP2Flusher.Entry> entries = entries(data(1), headers(1, null), data(3));
+
+        scheduler.schedule(entries);
+        assertThat(describe(entries), contains("DATA#3", "DATA#1", "HEADERS#1"));
+    }
+
+    @Test
+    public void testDependencyTreeParentBeforeChildren()
+    {
+        FrameScheduler scheduler = new DependencyTreeFrameScheduler();
+        scheduler.onHeaders(headers(1, null));
+        scheduler.onPriority(new PriorityFrame(3, 1, 16, false));
+        scheduler.onPriority(new PriorityFrame(5, 3, 16, false));
+        List<HTTP2Flusher.Entry> entries = entries(data(5), data(3), data(1));
+
+        scheduler.schedule(entries);
+        assertThat(describe(entries), contains("DATA#1", "DATA#3", "DATA#5"));
+
+        // Stream 7 becomes the exclusive parent of stream 1.
+        scheduler.onPriority(new PriorityFrame(7, 0, 16, true));
+        entries.add(new TestEntry(data(7)));
+        scheduler.schedule(entries);
+        assertThat(describe(entries), contains("DATA#7", "DATA#1", "DATA#3", "DATA#5"));
+
+        // Removing stream 1 makes stream 3 dependent on stream 7.
+        scheduler.onStreamRemoved(1);
+        entries.removeIf(entry -> streamId(entry) == 1);
+        scheduler.onPriority(new PriorityFrame(9, 0, 16, false));
+        entries.add(0, new TestEntry(data(9)));
+        scheduler.schedule(entries);
+        assertThat(describe(entries), contains("DATA#7", "DATA#3", "DATA#5", "DATA#9"));
+    }
+
+    @Test
+    public void testDependencyTreeWeights()
+    {
+        FrameScheduler scheduler = new DependencyTreeFrameScheduler();
+        scheduler.onPriority(new PriorityFrame(1, 0, 256, false));
+        scheduler.onPriority(new PriorityFrame(3, 0, 64, false));
+        // Stream 5 depends on stream 3, so it shares the bandwidth of stream 3.
+        scheduler.onPriority(new PriorityFrame(5, 3, 16, false));
+        List<HTTP2Flusher.Entry> entries = entries(data(1), data(5));
+
+        int[] served = new int[6];
+        for (int i = 0; i < 100; ++i)
+        {
+            served[serve(scheduler, entries)]++;
+        }
+        assertEquals(80, served[1]);
+        assertEquals(20, served[5]);
+    }
+
+    @Test
+    public void testDependencyTreeIncrementalRanking()
+    {
+        // The tree of the first scheduler is ranked again only for the streams that sent
+        // DATA frames, while the tree of the second scheduler is changed at every round,
+        // so that it is ranked again entirely: both must serve the streams in the same order.
+        FrameScheduler incremental = new DependencyTreeFrameScheduler();
+        FrameScheduler full = new DependencyTreeFrameScheduler();
+        for (FrameScheduler scheduler : List.of(incremental, full))
+        {
+            scheduler.onPriority(new PriorityFrame(1, 0, 256, false));
+            scheduler.onPriority(new PriorityFrame(3, 0, 64, false));
+            scheduler.onPriority(new PriorityFrame(5, 3, 16, false));
+            scheduler.onPriority(new PriorityFrame(7, 3, 200, false));
+            scheduler.onPriority(new PriorityFrame(9, 1, 8, false));
+            scheduler.onPriority(new PriorityFrame(11, 0, 32, false));
+        }
+        List<HTTP2Flusher.Entry> incrementalEntries = entries(data(11), data(9), data(7), data(5));
+        List<HTTP2Flusher.Entry> fullEntries = entries(data(11), data(9), data(7), data(5));
+
+        for (int i = 0; i < 200; ++i)
+        {
+            full.onPriority(new PriorityFrame(1001, 0, 16, false));
+            assertEquals(serve(full, fullEntries), serve(incremental, incrementalEntries));
+            assertEquals(describe(fullEntries), describe(incrementalEntries));
+        }
+    }
+
+    @Test
+    public void testDependencyTreeIsBounded()
+    {
+        FrameScheduler scheduler = new DependencyTreeFrameScheduler(2);
+        scheduler.onHeaders(headers(1, null));
+        scheduler.onHeaders(headers(3, null));
+        scheduler.onHeaders(headers(5, null));
+        List<HTTP2Flusher.Entry> entries = entries(data(5), data(3), data(1));
+
+        scheduler.schedule(entries);
+        // Stream 5 is not tracked, so it is served last.
+        assertThat(describe(entries), contains("DATA#1", "DATA#3", "DATA#5"));
+    }
+
+    @Test
+    public void testDependencyTreePlaceholdersAgeOut()
+    {
+        FrameScheduler scheduler = new DependencyTreeFrameScheduler(4);
+        scheduler.onHeaders(headers(1, null));
+        // PRIORITY frames for streams that are never opened.
+        for (int streamId = 101; streamId < 1101; streamId += 2)
+        {
+            scheduler.onPriority(new PriorityFrame(streamId, 0, 256, false));
+        }
+
+        // Streams opened after the PRIORITY frames are still tracked.
+        scheduler.onHeaders(new HeadersFrame(3, null, new PriorityFrame(3, 1, 16, false), false));
+        scheduler.onHeaders(new HeadersFrame(5, null, new PriorityFrame(5, 3, 16, false), false));
+        scheduler.onHeaders(headers(7, null));
+        List<HTTP2Flusher.Entry> entries = entries(data(1101), data(5), data(3), data(1));
+
+        scheduler.schedule(entries);
+        assertThat(describe(entries), contains("DATA#1", "DATA#3", "DATA#5", "DATA#1101"));
+    }
+
+    @Test
+    public void testDependencyTreeDeepChain()
+    {
+        int streams = 100_000;
+        FrameScheduler scheduler = new DependencyTreeFrameScheduler(streams);
+        for (int i = 0; i < streams; ++i)
+        {
+            int streamId = 2 * i + 1;
+            scheduler.onPriority(new PriorityFrame(streamId, Math.max(0, streamId - 2), 16, false));
+        }
+        List<HTTP2Flusher.Entry> entries = entries(data(2 * streams - 1), data(1));
+
+        scheduler.schedule(entries);
+        assertThat(describe(entries), contains("DATA#1", "DATA#" + (2 * streams - 1)));
+    }
+
+    private static int serve(FrameScheduler scheduler, List<HTTP2Flusher.Entry> entries)
+    {
+        scheduler.schedule(entries);
+        int streamId = streamId(entries.get(0));
+        scheduler.onDataGenerated(streamId, Frame.DEFAULT_MAX_LENGTH);
+        return streamId;
+    }
+
+    private static int streamId(HTTP2Flusher.Entry entry)
+    {
+        return ((StreamFrame)entry.getFrame()).getStreamId();
+    }
+
+    private static List<String> describe(List<HTTP2Flusher.Entry> entries)
+    {
+        return entries.stream()
+            .map(entry -> entry.getFrame().getType() + "#" + streamId(entry))
+            .collect(Collectors.toList());
+    }
+
+    private static List<HTTP2Flusher.Entry> entries(Frame... frames)
+    {
+        List<HTTP2Flusher.Entry> entries = new ArrayList<>();
+        for (Frame frame : frames)
+        {
+            entries.add(new TestEntry(frame));
+        }
+        return entries;
+    }
+
+    private static DataFrame data(int streamId)
+    {
+        return new DataFrame(streamId, BufferUtil.EMPTY_BUFFER, false);
+    }
+
+    private static HeadersFrame headers(int streamId, String priority)
+    {
+        HttpFields.Mutable fields = HttpFields.build();
+        if (priority != null)
+            fields.put(ExtensiblePriorityFrameScheduler.PRIORITY_HEADER, priority);
+        MetaData.Request request = new MetaData.Request("GET", HttpScheme.HTTPS.asString(), null, "/", HttpVersion.HTTP_2, fields, -1);
+        return new HeadersFrame(streamId, request, null, false);
+    }
+
+    private static class TestEntry extends HTTP2Flusher.Entry
+    {
+        private TestEntry(Frame frame)
+        {
+            super(frame, null, Callback.NOOP);
+        }
+
+        @Override
+        public int getFrameBytesGenerated()
+        {
+            return 0;
+        }
+
+        @Override
+        protected boolean generate(ByteBufferPool.Lease lease)
+        {
+            return false;
+        }
+
+        @Override
+        public long onFlushed(long bytes)
+        {
+            return bytes;
+        }
+    }
+}
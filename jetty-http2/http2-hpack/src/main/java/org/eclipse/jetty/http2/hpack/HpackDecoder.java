@@ -14,6 +14,9 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
@@ -21,21 +24,30 @@ import org.eclipse.jetty.http.HttpTokens;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http2.hpack.HpackContext.Entry;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Utf8StringBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Hpack Decoder
  * <p>This is not thread safe and may only be called by 1 thread at a time.</p>
+ * <p>Literal names and values are decoded into a reusable scratch array, and looked
+ * up in a bounded table of the names and fields previously decoded, so that the
+ * names and fields repeated on a connection are emitted as the same instances,
+ * without allocating any String.</p>
  */
 public class HpackDecoder
 {
     public static final Logger LOG = LoggerFactory.getLogger(HpackDecoder.class);
     public static final HttpField.LongValueHttpField CONTENT_LENGTH_0 =
         new HttpField.LongValueHttpField(HttpHeader.CONTENT_LENGTH, 0L);
+    private static final int INTERNED_SIZE = 128;
+    private static final int MAX_INTERNED_LENGTH = 1024;
 
     private final HpackContext _context;
     private final MetaDataBuilder _builder;
+    private final Interned[] _interned = new Interned[INTERNED_SIZE];
+    private byte[] _scratch = new byte[256];
     private int _localMaxDynamicTableSize;
 
     /**
@@ -110,7 +122,6 @@ public class HpackDecoder
                 byte f = (byte)((b & 0xF0) >> 4);
                 String name;
                 HttpHeader header;
-                String value;
 
                 boolean indexed;
                 int nameIndex;
@@ -162,10 +173,14 @@ public class HpackDecoder
                     huffmanName = (buffer.get() & 0x80) == 0x80;
                     int length = NBitInteger.decode(buffer, 7);
                     _builder.checkSize(length, huffmanName);
-                    if (huffmanName)
-                        name = Huffman.decode(buffer, length);
-                    else
-                        name = toASCIIString(buffer, length);
+                    int decoded = decodeToScratch(buffer, length, huffmanName);
+                    int slot = slot(null, decoded);
+                    name = (String)lookup(slot, null, decoded);
+                    if (name == null)
+                    {
+                        name = scratchToString(decoded, huffmanName);
+                        intern(slot, null, decoded, name);
+                    }
                     check:
                     for (int i = name.length(); i-- > 0; )
                     {
@@ -203,46 +218,13 @@ public class HpackDecoder
                 boolean huffmanValue = (buffer.get() & 0x80) == 0x80;
                 int length = NBitInteger.decode(buffer, 7);
                 _builder.checkSize(length, huffmanValue);
-                if (huffmanValue)
-                    value = Huffman.decode(buffer, length);
-                else
-                    value = toASCIIString(buffer, length);
-
-                // Make the new field
-                HttpField field;
-                if (header == null)
+                int decoded = decodeToScratch(buffer, length, huffmanValue);
+                int slot = slot(name, decoded);
+                HttpField field = (HttpField)lookup(slot, name, decoded);
+                if (field == null)
                 {
-                    // just make a normal field and bypass header name lookup
-                    field = new HttpField(null, name, value);
-                }
-                else
-                {
-                    // might be worthwhile to create a value HttpField if it is indexed
-                    // and/or of a type that may be looked up multiple times.
-                    switch (header)
-                    {
-                        case C_STATUS:
-                            if (indexed)
-                                field = new HttpField.IntValueHttpField(header, name, value);
-                            else
-                                field = new HttpField(header, name, value);
-                            break;
-
-                        case C_AUTHORITY:
-                            field = new AuthorityHttpField(value);
-                            break;
-
-                        case CONTENT_LENGTH:
-                            if ("0".equals(value))
-                                field = CONTENT_LENGTH_0;
-                            else
-                                field = new HttpField.LongValueHttpField(header, name, value);
-                            break;
-
-                        default:
-                            field = new HttpField(header, name, value);
-                            break;
-                    }
+                    field = newHttpField(header, name, scratchToString(decoded, huffmanValue), indexed);
+                    intern(slot, name, decoded, field);
                 }
 
                 if (LOG.isDebugEnabled())
@@ -267,6 +249,104 @@ public class HpackDecoder
         return _builder.build();
     }
 
+    private HttpField newHttpField(HttpHeader header, String name, String value, boolean indexed)
+    {
+        HttpField field;
+        if (header == null)
+        {
+            // just make a normal field and bypass header name lookup
+            field = new HttpField(null, name, value);
+        }
+        else
+        {
+            // might be worthwhile to create a value HttpField if it is indexed
+            // and/or of a type that may be looked up multiple times.
+            switch (header)
+            {
+                case C_STATUS:
+                    if (indexed)
+                        field = new HttpField.IntValueHttpField(header, name, value);
+                    else
+                        field = new HttpField(header, name, value);
+                    break;
+
+                case C_AUTHORITY:
+                    field = new AuthorityHttpField(value);
+                    break;
+
+                case CONTENT_LENGTH:
+                    if ("0".equals(value))
+                        field = CONTENT_LENGTH_0;
+                    else
+                        field = new HttpField.LongValueHttpField(header, name, value);
+                    break;
+
+                default:
+                    field = new HttpField(header, name, value);
+                    break;
+            }
+        }
+        return field;
+    }
+
+    private int decodeToScratch(ByteBuffer buffer, int length, boolean huffman) throws HpackException.CompressionException
+    {
+        int size = huffman ? Huffman.maxDecodedLength(length) : length;
+        if (_scratch.length < size)
+            _scratch = new byte[Math.max(size, 2 * _scratch.length)];
+        if (huffman)
+            return Huffman.decode(buffer, length, _scratch);
+        for (int i = 0; i < length; ++i)
+        {
+            _scratch[i] = (byte)(0x7F & buffer.get());
+        }
+        return length;
+    }
+
+    private String scratchToString(int length, boolean huffman)
+    {
+        if (length == 0)
+            return "";
+        if (huffman)
+        {
+            for (int i = 0; i < length; ++i)
+            {
+                if (_scratch[i] < 0)
+                {
+                    // Not US-ASCII, so decode as UTF-8.
+                    Utf8StringBuilder utf8 = new Utf8StringBuilder(length);
+                    utf8.append(_scratch, 0, length);
+                    return utf8.toString();
+                }
+            }
+        }
+        return new String(_scratch, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private int slot(String name, int length)
+    {
+        int hash = name == null ? 0 : name.hashCode();
+        for (int i = 0; i < length; ++i)
+        {
+            hash = 31 * hash + _scratch[i];
+        }
+        return (hash ^ (hash >>> 16)) & (INTERNED_SIZE - 1);
+    }
+
+    private Object lookup(int slot, String name, int length)
+    {
+        Interned interned = _interned[slot];
+        if (interned != null && Objects.equals(interned._name, name) && Arrays.equals(interned._bytes, 0, interned._bytes.length, _scratch, 0, length))
+            return interned._value;
+        return null;
+    }
+
+    private void intern(int slot, String name, int length, Object value)
+    {
+        if (length <= MAX_INTERNED_LENGTH)
+            _interned[slot] = new Interned(name, Arrays.copyOf(_scratch, length), value);
+    }
+
     public static String toASCIIString(ByteBuffer buffer, int length)
     {
         StringBuilder builder = new StringBuilder(length);
@@ -282,4 +362,21 @@ public class HpackDecoder
     {
         return String.format("HpackDecoder@%x{%s}", hashCode(), _context);
     }
+
+    /**
+     * A decoded name, if {@code _name} is null, or a decoded field with the given name.
+     */
+    private static class Interned
+    {
+        private final String _name;
+        private final byte[] _bytes;
+        private final Object _value;
+
+        private Interned(String name, byte[] bytes, Object value)
+        {
+            _name = name;
+            _bytes = bytes;
+            _value = value;
+        }
+    }
 }
@@ -15,9 +15,14 @@ package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.jetty.http.HttpField;
@@ -36,9 +41,23 @@ import org.eclipse.jetty.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>An HPACK encoder of the header blocks of a connection.</p>
+ * <p>By default, fields are indexed in the dynamic table according to fixed rules
+ * based on their name. With {@link #setAdaptiveIndexing(boolean) adaptive indexing},
+ * the encoder instead counts how many times each field is encoded, and indexes the
+ * fields that have been encoded at least twice, whatever their name (except for the
+ * fields that must never be indexed, such as {@code Authorization}), so that the
+ * dynamic table contains the fields that are actually repeated on the connection.</p>
+ * <p>With a {@link #setBlockCacheSize(int) block cache}, the encoded bytes of runs of
+ * consecutive {@link PreEncodedHttpField}s are cached, and copied as a whole when the
+ * same run of fields is encoded again and the dynamic table has not been modified in
+ * the meantime, which is the case once the fields of the run have been indexed.</p>
+ */
 public class HpackEncoder
 {
     private static final Logger LOG = LoggerFactory.getLogger(HpackEncoder.class);
+    private static final int MAX_TRACKED_FIELDS = 256;
     private static final HttpField[] STATUSES = new HttpField[599];
     static final EnumSet<HttpHeader> DO_NOT_HUFFMAN =
         EnumSet.of(
@@ -97,6 +116,11 @@ public class HpackEncoder
     private int _maxHeaderListSize;
     private int _headerListSize;
     private boolean _validateEncoding = true;
+    private boolean _adaptiveIndexing;
+    private final Map<HttpField, int[]> _frequencies = new HashMap<>();
+    private Block[] _blocks;
+    private final List<HttpField> _run = new ArrayList<>();
+    private int _generation;
 
     public HpackEncoder()
     {
@@ -157,6 +181,40 @@ public class HpackEncoder
         _validateEncoding = validateEncoding;
     }
 
+    /**
+     * @return whether fields are indexed based on how many times they are encoded
+     */
+    public boolean isAdaptiveIndexing()
+    {
+        return _adaptiveIndexing;
+    }
+
+    /**
+     * @param adaptiveIndexing whether fields are indexed based on how many times they are encoded
+     */
+    public void setAdaptiveIndexing(boolean adaptiveIndexing)
+    {
+        _adaptiveIndexing = adaptiveIndexing;
+        _frequencies.clear();
+    }
+
+    /**
+     * @return the max number of encoded runs of pre encoded fields that are cached
+     */
+    public int getBlockCacheSize()
+    {
+        return _blocks == null ? 0 : _blocks.length;
+    }
+
+    /**
+     * @param blockCacheSize the max number of encoded runs of pre encoded fields that are cached,
+     * rounded down to a power of 2, or 0 to disable the cache
+     */
+    public void setBlockCacheSize(int blockCacheSize)
+    {
+        _blocks = blockCacheSize <= 0 ? null : new Block[Integer.highestOneBit(blockCacheSize)];
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata) throws HpackException
     {
         try
@@ -246,8 +304,15 @@ public class HpackEncoder
                         continue;
                     if (header == HttpHeader.CONTENT_LENGTH)
                         contentLengthEncoded = true;
+                    if (_blocks != null && field instanceof PreEncodedHttpField)
+                    {
+                        _run.add(field);
+                        continue;
+                    }
+                    encodeRun(buffer);
                     encode(buffer, field);
                 }
+                encodeRun(buffer);
 
                 if (!contentLengthEncoded)
                 {
@@ -275,6 +340,7 @@ public class HpackEncoder
         }
         catch (Throwable x)
         {
+            _run.clear();
             HpackException.SessionException failure = new HpackException.SessionException("Could not hpack encode %s", metadata);
             failure.initCause(x);
             throw failure;
@@ -288,6 +354,50 @@ public class HpackEncoder
         buffer.put((byte)0x20);
         NBitInteger.encode(buffer, 5, maxDynamicTableSize);
         _context.resize(maxDynamicTableSize);
+        _generation++;
+    }
+
+    private void encodeRun(ByteBuffer buffer)
+    {
+        int size = _run.size();
+        if (size == 0)
+            return;
+
+        int hash = 0;
+        for (int i = 0; i < size; i++)
+        {
+            hash = 31 * hash + System.identityHashCode(_run.get(i));
+        }
+        int slot = (hash ^ (hash >>> 16)) & (_blocks.length - 1);
+
+        Block block = _blocks[slot];
+        if (block != null && block.matches(_run, _generation))
+        {
+            buffer.put(block._encoded);
+            _headerListSize += block._headerListSize;
+            if (_debug)
+                LOG.debug("encode Block:{} to {} octets", _run, block._encoded.length);
+        }
+        else
+        {
+            int generation = _generation;
+            int position = buffer.position();
+            int headerListSize = _headerListSize;
+            for (int i = 0; i < size; i++)
+            {
+                encode(buffer, _run.get(i));
+            }
+            // The encoded bytes can only be copied again if the dynamic table has not been modified.
+            if (generation == _generation)
+            {
+                byte[] encoded = new byte[buffer.position() - position];
+                ByteBuffer slice = buffer.duplicate();
+                slice.position(position);
+                slice.get(encoded);
+                _blocks[slot] = new Block(_run.toArray(new HttpField[size]), encoded, _headerListSize - headerListSize, generation);
+            }
+        }
+        _run.clear();
     }
 
     public void encode(ByteBuffer buffer, HttpField field)
@@ -329,7 +439,21 @@ public class HpackEncoder
             HttpHeader header = field.getHeader();
 
             // Select encoding strategy
-            if (header == null)
+            if (_adaptiveIndexing && !(field instanceof PreEncodedHttpField) && (header == null || !DO_NOT_INDEX.contains(header)))
+            {
+                // Index the field if it is repeated, with the same
+                // size and content length exclusions of the static rules.
+                indexed = fieldSize < _context.getMaxDynamicTableSize() &&
+                    (header != HttpHeader.CONTENT_LENGTH || "0".equals(field.getValue())) &&
+                    isRepeated(field);
+                Entry name = header == null ? _context.get(field.getName()) : _context.get(header);
+                boolean huffman = header == null || !DO_NOT_HUFFMAN.contains(header);
+                encodeName(buffer, indexed ? (byte)0x40 : (byte)0x00, indexed ? 6 : 4, header == null ? field.getName() : header.asString(), name);
+                encodeValue(buffer, huffman, field.getValue());
+                if (_debug)
+                    encoding = "Adaptive" + (name == null ? "LitHuffN" : "LitIdxN") + (huffman ? "HuffV" : "LitV") + (indexed ? "Idx" : "!Idx");
+            }
+            else if (header == null)
             {
                 // Select encoding strategy for unknown header names
                 Entry name = _context.get(field.getName());
@@ -421,7 +545,10 @@ public class HpackEncoder
 
             // If we want the field referenced, then we add it to our table and reference set.
             if (indexed)
+            {
                 _context.add(field);
+                _generation++;
+            }
         }
 
         if (_debug)
@@ -431,6 +558,29 @@ public class HpackEncoder
         }
     }
 
+    private boolean isRepeated(HttpField field)
+    {
+        int[] frequency = _frequencies.get(field);
+        if (frequency != null)
+            return ++frequency[0] > 1;
+
+        if (_frequencies.size() >= MAX_TRACKED_FIELDS)
+        {
+            // Age the frequencies, so that the fields no longer encoded are forgotten.
+            for (Iterator<int[]> i = _frequencies.values().iterator(); i.hasNext(); )
+            {
+                int[] f = i.next();
+                f[0] >>= 1;
+                if (f[0] == 0)
+                    i.remove();
+            }
+            if (_frequencies.size() >= MAX_TRACKED_FIELDS)
+                _frequencies.clear();
+        }
+        _frequencies.put(field, new int[]{1});
+        return false;
+    }
+
     private void encodeName(ByteBuffer buffer, byte mask, int bits, String name, Entry entry)
     {
         buffer.put(mask);
@@ -490,4 +640,32 @@ public class HpackEncoder
             }
         }
     }
+
+    private static class Block
+    {
+        private final HttpField[] _fields;
+        private final byte[] _encoded;
+        private final int _headerListSize;
+        private final int _generation;
+
+        private Block(HttpField[] fields, byte[] encoded, int headerListSize, int generation)
+        {
+            _fields = fields;
+            _encoded = encoded;
+            _headerListSize = headerListSize;
+            _generation = generation;
+        }
+
+        private boolean matches(List<HttpField> fields, int generation)
+        {
+            if (_generation != generation || _fields.length != fields.size())
+                return false;
+            for (int i = 0; i < _fields.length; i++)
+            {
+                if (_fields[i] != fields.get(i))
+                    return false;
+            }
+            return true;
+        }
+    }
 }
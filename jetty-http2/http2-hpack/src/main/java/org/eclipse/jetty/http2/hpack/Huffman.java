@@ -355,7 +355,35 @@ public class Huffman
 
     public static String decode(ByteBuffer buffer, int length) throws HpackException.CompressionException
     {
-        Utf8StringBuilder utf8 = new Utf8StringBuilder(length * 2);
+        byte[] bytes = new byte[maxDecodedLength(length)];
+        int decoded = decode(buffer, length, bytes);
+        Utf8StringBuilder utf8 = new Utf8StringBuilder(decoded);
+        utf8.append(bytes, 0, decoded);
+        return utf8.toString();
+    }
+
+    /**
+     * @param length the length in octets of a huffman encoded string
+     * @return the max length in octets of the decoded string
+     */
+    public static int maxDecodedLength(int length)
+    {
+        // The shortest huffman code is 5 bits long.
+        return length * 8 / 5;
+    }
+
+    /**
+     * <p>Decodes a huffman encoded string into the given array, without allocating.</p>
+     *
+     * @param buffer the buffer containing the huffman encoded string
+     * @param length the length in octets of the huffman encoded string
+     * @param decoded the array to decode into, at least {@link #maxDecodedLength(int)} long
+     * @return the number of decoded octets
+     * @throws HpackException.CompressionException if the string is not correctly encoded
+     */
+    public static int decode(ByteBuffer buffer, int length, byte[] decoded) throws HpackException.CompressionException
+    {
+        int size = 0;
         int node = 0;
         int current = 0;
         int bits = 0;
@@ -375,7 +403,7 @@ public class Huffman
                         throw new HpackException.CompressionException("EOS in content");
 
                     // terminal node
-                    utf8.append((byte)(0xFF & rowsym[node]));
+                    decoded[size++] = (byte)(0xFF & rowsym[node]);
                     bits -= rowbits[node];
                     node = 0;
                 }
@@ -408,7 +436,7 @@ public class Huffman
                 break;
             }
 
-            utf8.append((byte)(0xFF & rowsym[node]));
+            decoded[size++] = (byte)(0xFF & rowsym[node]);
             bits -= rowbits[node];
             node = 0;
         }
@@ -416,7 +444,7 @@ public class Huffman
         if (node != 0)
             throw new HpackException.CompressionException("Bad termination");
 
-        return utf8.toString();
+        return size;
     }
 
     public static int octetsNeeded(String s)
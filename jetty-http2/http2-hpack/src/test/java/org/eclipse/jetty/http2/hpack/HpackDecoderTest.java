@@ -17,12 +17,16 @@ import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http2.hpack.HpackException.CompressionException;
 import org.eclipse.jetty.http2.hpack.HpackException.SessionException;
 import org.eclipse.jetty.http2.hpack.HpackException.StreamException;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.TypeUtil;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
@@ -33,6 +37,7 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -562,4 +567,50 @@ public class HpackDecoderTest
         StreamException ex = assertThrows(StreamException.class, () -> decoder.decode(buffer));
         assertThat(ex.getMessage(), Matchers.containsString("Illegal header"));
     }
+
+    @Test
+    public void testUpperCaseNameRepeated()
+    {
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        // The second time the name is interned, but must still be rejected.
+        for (int i = 0; i < 2; i++)
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(TypeUtil.fromHexString("0001480130"));
+            StreamException ex = assertThrows(StreamException.class, () -> decoder.decode(buffer));
+            assertThat(ex.getMessage(), Matchers.containsString("Uppercase header"));
+        }
+    }
+
+    @Test
+    public void testRepeatedLiteralFieldsAreShared() throws Exception
+    {
+        // Without a dynamic table, the fields are always encoded as literals.
+        HpackEncoder encoder = new HpackEncoder(0);
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        HttpFields fields = HttpFields.build()
+            .add(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:85.0) Gecko/20100101 Firefox/85.0")
+            .add(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8")
+            .add("x-custom", "custom value")
+            .add(HttpHeader.CONTENT_LENGTH, "0");
+        MetaData.Request request = new MetaData.Request("GET", HttpURI.from("http://localhost/path"), HttpVersion.HTTP_2, fields);
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, request);
+        BufferUtil.flipToFlush(buffer, pos);
+        ByteBuffer copy = buffer.duplicate();
+
+        MetaData.Request decoded1 = (MetaData.Request)decoder.decode(buffer);
+        MetaData.Request decoded2 = (MetaData.Request)decoder.decode(copy);
+
+        assertEquals(fields.size(), decoded1.getFields().size());
+        for (int i = 0; i < fields.size(); i++)
+        {
+            HttpField field = decoded1.getFields().getField(i);
+            assertEquals(fields.getField(i).getValue(), field.getValue());
+            assertSame(field, decoded2.getFields().getField(i));
+        }
+    }
 }
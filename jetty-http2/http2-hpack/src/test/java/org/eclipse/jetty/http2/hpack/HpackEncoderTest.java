@@ -20,13 +20,17 @@ import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.util.BufferUtil;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class HpackEncoderTest
 {
@@ -306,4 +310,103 @@ public class HpackEncoderTest
         assertThat(context.getMaxDynamicTableSize(), Matchers.is(50));
         assertThat(context.size(), Matchers.is(1));
     }
+
+    @Test
+    public void testAdaptiveIndexing() throws Exception
+    {
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setAdaptiveIndexing(true);
+        HpackContext ctx = encoder.getHpackContext();
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        HttpFields fields = HttpFields.build()
+            .add(HttpHeader.CACHE_CONTROL, "max-age=60")
+            .add("X-Api-Version", "3")
+            .add(HttpHeader.LAST_MODIFIED, "Thu, 01 Jan 1970 00:00:00 GMT")
+            .add(HttpHeader.CONTENT_LENGTH, "1024")
+            .add(HttpHeader.AUTHORIZATION, "secret");
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+
+        // The first time the fields are not indexed.
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, response);
+        BufferUtil.flipToFlush(buffer, pos);
+        int length1 = buffer.remaining();
+        assertEquals(0, ctx.size());
+        assertFields(fields, decoder.decode(buffer).getFields());
+
+        // The second time the repeated fields are indexed, but not the
+        // fields that the static rules do not index, such as Last-Modified,
+        // a non-zero Content-Length, or the never indexed Authorization.
+        BufferUtil.clear(buffer);
+        pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, response);
+        BufferUtil.flipToFlush(buffer, pos);
+        assertEquals(2, ctx.size());
+        assertNotNull(ctx.get(fields.getField(HttpHeader.CACHE_CONTROL)));
+        assertNotNull(ctx.get(fields.getField("X-Api-Version")));
+        assertNull(ctx.get(fields.getField(HttpHeader.LAST_MODIFIED)));
+        assertNull(ctx.get(fields.getField(HttpHeader.CONTENT_LENGTH)));
+        assertNull(ctx.get(fields.getField(HttpHeader.AUTHORIZATION)));
+        assertFields(fields, decoder.decode(buffer).getFields());
+
+        // The third time the indexed fields are referenced.
+        BufferUtil.clear(buffer);
+        pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, response);
+        BufferUtil.flipToFlush(buffer, pos);
+        assertThat(buffer.remaining(), Matchers.lessThan(length1));
+        assertFields(fields, decoder.decode(buffer).getFields());
+    }
+
+    @Test
+    public void testBlockCache() throws Exception
+    {
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setBlockCacheSize(16);
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        HttpFields common = HttpFields.build()
+            .add(new PreEncodedHttpField(HttpHeader.SERVER, "Jetty"))
+            .add(new PreEncodedHttpField(HttpHeader.CONTENT_TYPE, "application/json"))
+            .add(new PreEncodedHttpField(HttpHeader.CACHE_CONTROL, "no-store"))
+            .add(new PreEncodedHttpField(HttpHeader.VARY, "Accept-Encoding"))
+            .asImmutable();
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        for (int i = 0; i < 4; i++)
+        {
+            byte[][] encoded = new byte[2][];
+            for (int j = 0; j < 2; j++)
+            {
+                BufferUtil.clear(buffer);
+                int pos = BufferUtil.flipToFill(buffer);
+                encoder.encode(buffer, new MetaData.Response(HttpVersion.HTTP_2, 200, HttpFields.build(common)));
+                BufferUtil.flipToFlush(buffer, pos);
+                encoded[j] = BufferUtil.toArray(buffer);
+                assertFields(common, decoder.decode(buffer).getFields());
+            }
+            // Once indexed, the common fields are encoded to the same bytes.
+            if (i > 0)
+                assertArrayEquals(encoded[0], encoded[1]);
+
+            // Modify the dynamic table, so that the cached block cannot be used.
+            HttpFields fields = HttpFields.build(common).add("X-Request-" + i, "value");
+            BufferUtil.clear(buffer);
+            int pos = BufferUtil.flipToFill(buffer);
+            encoder.encode(buffer, new MetaData.Response(HttpVersion.HTTP_2, 200, fields));
+            BufferUtil.flipToFlush(buffer, pos);
+            assertFields(fields, decoder.decode(buffer).getFields());
+        }
+    }
+
+    private static void assertFields(HttpFields expected, HttpFields actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (HttpField field : expected)
+        {
+            assertEquals(field.getValue(), actual.get(field.getName()));
+        }
+    }
 }
@@ -29,6 +29,12 @@ etc/jetty-http2c.xml
 ## Specifies the maximum number of keys in all SETTINGS frames received by a session.
 # jetty.http2.maxSettingsKeys=64
 
+## Whether the HPACK encoder indexes the header fields that are repeated.
+# jetty.http2c.hpackAdaptiveIndexing=false
+
+## Specifies the number of HPACK encoded blocks of pre encoded header fields cached per connection.
+# jetty.http2c.hpackBlockCacheSize=0
+
 ## Specifies the maximum number of bad frames and pings per second,
 ## after which a session is closed to avoid denial of service attacks.
 # jetty.http2.rateControl.maxEventsPerSecond=20
@@ -24,7 +24,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.FIFOFrameScheduler;
 import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.FrameScheduler;
 import org.eclipse.jetty.http2.HTTP2Connection;
 import org.eclipse.jetty.http2.ISession;
 import org.eclipse.jetty.http2.api.Session;
@@ -53,15 +55,20 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private final HTTP2SessionContainer sessionContainer = new HTTP2SessionContainer();
     private final HttpConfiguration httpConfiguration;
     private int maxDynamicTableSize = 4096;
+    private boolean hpackAdaptiveIndexing;
+    private int hpackBlockCacheSize;
     private int initialSessionRecvWindow = 1024 * 1024;
     private int initialStreamRecvWindow = 512 * 1024;
     private int maxConcurrentStreams = 128;
     private int maxHeaderBlockFragment = 0;
     private int maxFrameLength = Frame.DEFAULT_MAX_LENGTH;
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
+    private int writeCoalescingSize;
+    private long writeCoalescingDelay;
     private boolean connectProtocolEnabled = true;
     private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(20);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private FrameScheduler.Factory frameSchedulerFactory = FIFOFrameScheduler::new;
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
@@ -98,6 +105,38 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxDynamicTableSize = maxDynamicTableSize;
     }
 
+    @ManagedAttribute("Whether HPACK indexes the fields that are repeated")
+    public boolean isHpackAdaptiveIndexing()
+    {
+        return hpackAdaptiveIndexing;
+    }
+
+    /**
+     * @param hpackAdaptiveIndexing whether the HPACK encoder of each connection indexes
+     * the fields that are repeated, rather than following fixed rules
+     * @see org.eclipse.jetty.http2.hpack.HpackEncoder#setAdaptiveIndexing(boolean)
+     */
+    public void setHpackAdaptiveIndexing(boolean hpackAdaptiveIndexing)
+    {
+        this.hpackAdaptiveIndexing = hpackAdaptiveIndexing;
+    }
+
+    @ManagedAttribute("The number of HPACK encoded blocks of pre encoded fields cached per connection")
+    public int getHpackBlockCacheSize()
+    {
+        return hpackBlockCacheSize;
+    }
+
+    /**
+     * @param hpackBlockCacheSize the number of HPACK encoded runs of pre encoded fields
+     * cached by the HPACK encoder of each connection, or 0 to disable the cache
+     * @see org.eclipse.jetty.http2.hpack.HpackEncoder#setBlockCacheSize(int)
+     */
+    public void setHpackBlockCacheSize(int hpackBlockCacheSize)
+    {
+        this.hpackBlockCacheSize = hpackBlockCacheSize;
+    }
+
     @ManagedAttribute("The initial size of session's flow control receive window")
     public int getInitialSessionRecvWindow()
     {
@@ -152,6 +191,28 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.flowControlStrategyFactory = flowControlStrategyFactory;
     }
 
+    /**
+     * @return the factory of the {@link FrameScheduler} that orders the frames sent on each connection
+     */
+    public FrameScheduler.Factory getFrameSchedulerFactory()
+    {
+        return frameSchedulerFactory;
+    }
+
+    /**
+     * <p>Sets the factory of the {@link FrameScheduler} that orders the frames sent on each connection.</p>
+     * <p>The default {@link FIFOFrameScheduler} ignores stream priorities; use
+     * {@link org.eclipse.jetty.http2.ExtensiblePriorityFrameScheduler} or
+     * {@link org.eclipse.jetty.http2.DependencyTreeFrameScheduler} to honor
+     * the priorities sent by clients.</p>
+     *
+     * @param frameSchedulerFactory the factory of {@link FrameScheduler}s
+     */
+    public void setFrameSchedulerFactory(FrameScheduler.Factory frameSchedulerFactory)
+    {
+        this.frameSchedulerFactory = frameSchedulerFactory;
+    }
+
     @ManagedAttribute("The stream idle timeout in milliseconds")
     public long getStreamIdleTimeout()
     {
@@ -185,6 +246,36 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxSettingsKeys = maxSettingsKeys;
     }
 
+    @ManagedAttribute("The size of the buffers into which small frames are coalesced, or 0 to disable coalescing")
+    public int getWriteCoalescingSize()
+    {
+        return writeCoalescingSize;
+    }
+
+    /**
+     * @param writeCoalescingSize the size of the buffers into which small frames are coalesced, or 0 to disable coalescing
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalescingSize(int)
+     */
+    public void setWriteCoalescingSize(int writeCoalescingSize)
+    {
+        this.writeCoalescingSize = writeCoalescingSize;
+    }
+
+    @ManagedAttribute("The max delay in microseconds of small writes, or 0 to disable delays")
+    public long getWriteCoalescingDelay()
+    {
+        return writeCoalescingDelay;
+    }
+
+    /**
+     * @param writeCoalescingDelay the max delay in microseconds of small writes, or 0 to disable delays
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalescingDelay(long)
+     */
+    public void setWriteCoalescingDelay(long writeCoalescingDelay)
+    {
+        this.writeCoalescingDelay = writeCoalescingDelay;
+    }
+
     @ManagedAttribute("Whether CONNECT requests supports a protocol")
     public boolean isConnectProtocolEnabled()
     {
@@ -260,8 +351,11 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), isUseOutputDirectByteBuffers(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        generator.setHpackAdaptiveIndexing(isHpackAdaptiveIndexing());
+        generator.setHpackBlockCacheSize(getHpackBlockCacheSize());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
+        session.setFrameScheduler(getFrameSchedulerFactory().newFrameScheduler());
         session.setMaxLocalStreams(getMaxConcurrentStreams());
         session.setMaxRemoteStreams(getMaxConcurrentStreams());
         // For a single stream in a connection, there will be a race between
@@ -273,13 +367,15 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
             session.setStreamIdleTimeout(streamIdleTimeout);
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
         session.setWriteThreshold(getHttpConfiguration().getOutputBufferSize());
+        session.setWriteCoalescingSize(getWriteCoalescingSize());
+        session.setWriteCoalescingDelay(getWriteCoalescingDelay());
         session.setConnectProtocolEnabled(isConnectProtocolEnabled());
 
         ServerParser parser = newServerParser(connector, session, getRateControlFactory().newRateControl(endPoint));
         parser.setMaxFrameLength(getMaxFrameLength());
         parser.setMaxSettingsKeys(getMaxSettingsKeys());
 
-        HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
+        HTTP2Connection connection = new HTTP2ServerConnection(connector.getRetainableByteBufferPool(), connector.getExecutor(),
             endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
@@ -99,6 +99,7 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
                     if (stream != null)
                     {
                         onStreamOpened(stream);
+                        getFrameScheduler().onHeaders(frame);
 
                         if (metaData instanceof MetaData.ConnectRequest)
                         {
@@ -0,0 +1,260 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>A {@link RetainableByteBufferPool} where the {@link RetainableByteBuffer}s,
+ * along with the ByteBuffers they wrap, are held in queues that are held in array elements.</p>
+ * <p>Given a capacity {@code factor} of 1024, the first array element holds a queue of
+ * RetainableByteBuffers each of capacity 1024, the second array element holds a queue
+ * of RetainableByteBuffers each of capacity 2048, and so on.</p>
+ * <p>A RetainableByteBuffer is returned to its queue as soon as its reference count
+ * drops to zero, so that a network buffer whose slices have been handed to several
+ * requests or frames is recycled when the last slice is released.</p>
+ */
+@ManagedObject
+public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool
+{
+    private final int _factor;
+    private final int _minCapacity;
+    private final int _maxBucketSize;
+    private final long _maxHeapMemory;
+    private final long _maxDirectMemory;
+    private final Bucket[] _direct;
+    private final Bucket[] _indirect;
+    private final AtomicLong _heapMemory = new AtomicLong();
+    private final AtomicLong _directMemory = new AtomicLong();
+
+    /**
+     * Creates a new ArrayRetainableByteBufferPool with a default configuration.
+     */
+    public ArrayRetainableByteBufferPool()
+    {
+        this(0, -1, -1, Integer.MAX_VALUE, -1L, -1L);
+    }
+
+    /**
+     * Creates a new ArrayRetainableByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum buffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum buffer capacity
+     * @param maxBucketSize the maximum number of buffers for each bucket
+     * @param maxHeapMemory the max heap memory in bytes, or -1 for unlimited
+     * @param maxDirectMemory the max direct memory in bytes, or -1 for unlimited
+     */
+    public ArrayRetainableByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory)
+    {
+        _factor = factor <= 0 ? 1024 : factor;
+        if (minCapacity <= 0)
+            minCapacity = 0;
+        if (maxCapacity <= 0)
+            maxCapacity = 64 * 1024;
+        if ((maxCapacity % _factor) != 0 || _factor >= maxCapacity)
+            throw new IllegalArgumentException("The capacity factor must be a divisor of maxCapacity");
+        _minCapacity = minCapacity;
+        _maxBucketSize = maxBucketSize <= 0 ? Integer.MAX_VALUE : maxBucketSize;
+        _maxHeapMemory = maxHeapMemory;
+        _maxDirectMemory = maxDirectMemory;
+
+        int length = maxCapacity / _factor;
+        _direct = new Bucket[length];
+        _indirect = new Bucket[length];
+        for (int i = 0; i < length; ++i)
+        {
+            int capacity = (i + 1) * _factor;
+            _direct[i] = new Bucket(capacity, true);
+            _indirect[i] = new Bucket(capacity, false);
+        }
+    }
+
+    @Override
+    public RetainableByteBuffer acquire(int size, boolean direct)
+    {
+        Bucket bucket = bucketFor(size, direct);
+        if (bucket == null)
+        {
+            // Not pooled, just wrap a new buffer.
+            Buffer buffer = new Buffer(newByteBuffer(size, direct), null);
+            buffer.acquire();
+            return buffer;
+        }
+
+        Buffer buffer = bucket.poll();
+        if (buffer == null)
+        {
+            buffer = new Buffer(newByteBuffer(bucket._capacity, direct), bucket);
+        }
+        else
+        {
+            if (buffer.getBuffer().isDirect())
+                _directMemory.addAndGet(-bucket._capacity);
+            else
+                _heapMemory.addAndGet(-bucket._capacity);
+        }
+        buffer.acquire();
+        return buffer;
+    }
+
+    protected ByteBuffer newByteBuffer(int capacity, boolean direct)
+    {
+        return direct ? BufferUtil.allocateDirect(capacity) : BufferUtil.allocate(capacity);
+    }
+
+    private void release(Buffer buffer)
+    {
+        Bucket bucket = buffer._bucket;
+        if (bucket == null)
+            return;
+        buffer.clear();
+        boolean direct = buffer.getBuffer().isDirect();
+        AtomicLong memory = direct ? _directMemory : _heapMemory;
+        long maxMemory = direct ? _maxDirectMemory : _maxHeapMemory;
+        if (maxMemory > 0 && memory.get() + bucket._capacity > maxMemory)
+            return;
+        if (bucket.offer(buffer))
+            memory.addAndGet(bucket._capacity);
+    }
+
+    private Bucket bucketFor(int size, boolean direct)
+    {
+        if (size < _minCapacity)
+            return null;
+        int b = size == 0 ? 0 : (size - 1) / _factor;
+        Bucket[] buckets = direct ? _direct : _indirect;
+        if (b >= buckets.length)
+            return null;
+        return buckets[b];
+    }
+
+    @ManagedAttribute("The number of pooled direct RetainableByteBuffers")
+    public long getDirectByteBufferCount()
+    {
+        return getByteBufferCount(true);
+    }
+
+    @ManagedAttribute("The number of pooled heap RetainableByteBuffers")
+    public long getHeapByteBufferCount()
+    {
+        return getByteBufferCount(false);
+    }
+
+    private long getByteBufferCount(boolean direct)
+    {
+        long count = 0;
+        for (Bucket bucket : direct ? _direct : _indirect)
+        {
+            count += bucket._size.get();
+        }
+        return count;
+    }
+
+    @ManagedAttribute("The bytes retained by direct RetainableByteBuffers")
+    public long getDirectMemory()
+    {
+        return _directMemory.get();
+    }
+
+    @ManagedAttribute("The bytes retained by heap RetainableByteBuffers")
+    public long getHeapMemory()
+    {
+        return _heapMemory.get();
+    }
+
+    @ManagedOperation(value = "Clears this RetainableByteBufferPool", impact = "ACTION")
+    public void clear()
+    {
+        for (int i = 0; i < _direct.length; ++i)
+        {
+            _direct[i].clear();
+            _indirect[i].clear();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{heap=%d/%d,direct=%d/%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getHeapByteBufferCount(),
+            getHeapMemory(),
+            getDirectByteBufferCount(),
+            getDirectMemory());
+    }
+
+    private class Bucket
+    {
+        private final Deque<Buffer> _queue = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger _size = new AtomicInteger();
+        private final int _capacity;
+        private final boolean _direct;
+
+        private Bucket(int capacity, boolean direct)
+        {
+            _capacity = capacity;
+            _direct = direct;
+        }
+
+        private Buffer poll()
+        {
+            Buffer buffer = _queue.pollFirst();
+            if (buffer != null)
+                _size.decrementAndGet();
+            return buffer;
+        }
+
+        private boolean offer(Buffer buffer)
+        {
+            if (_size.incrementAndGet() > _maxBucketSize)
+            {
+                _size.decrementAndGet();
+                return false;
+            }
+            _queue.offerFirst(buffer);
+            return true;
+        }
+
+        private void clear()
+        {
+            AtomicLong memory = _direct ? _directMemory : _heapMemory;
+            while (poll() != null)
+            {
+                memory.addAndGet(-_capacity);
+            }
+        }
+    }
+
+    private class Buffer extends RetainableByteBuffer
+    {
+        private final Bucket _bucket;
+
+        private Buffer(ByteBuffer buffer, Bucket bucket)
+        {
+            super(buffer, retainable -> ArrayRetainableByteBufferPool.this.release((Buffer)retainable));
+            _bucket = bucket;
+        }
+    }
+}
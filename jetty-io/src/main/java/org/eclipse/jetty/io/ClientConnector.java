@@ -14,6 +14,9 @@
 package org.eclipse.jetty.io;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.StandardSocketOptions;
@@ -21,14 +24,21 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -51,6 +61,7 @@ public class ClientConnector extends ContainerLifeCycle
     private int selectors = 1;
     private boolean connectBlocking;
     private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration connectionAttemptDelay = Duration.ofMillis(250);
     private Duration idleTimeout = Duration.ofSeconds(30);
     private SocketAddress bindAddress;
     private boolean reuseAddress = true;
@@ -141,6 +152,29 @@ public class ClientConnector extends ContainerLifeCycle
             selectorManager.setConnectTimeout(connectTimeout.toMillis());
     }
 
+    /**
+     * @return the delay between the connection attempts to the addresses of the same host
+     * @see #connect(List, Map)
+     */
+    public Duration getConnectionAttemptDelay()
+    {
+        return connectionAttemptDelay;
+    }
+
+    /**
+     * <p>Sets the delay after which, if a connection attempt has not completed yet,
+     * a connection attempt to the next address of the same host is started in parallel.</p>
+     * <p>A zero or negative delay disables parallel connection attempts, so that
+     * the addresses are tried one after the other.</p>
+     *
+     * @param connectionAttemptDelay the delay between the connection attempts to the addresses of the same host
+     * @see #connect(List, Map)
+     */
+    public void setConnectionAttemptDelay(Duration connectionAttemptDelay)
+    {
+        this.connectionAttemptDelay = connectionAttemptDelay;
+    }
+
     public Duration getIdleTimeout()
     {
         return idleTimeout;
@@ -211,6 +245,32 @@ public class ClientConnector extends ContainerLifeCycle
         return new ClientSelectorManager(getExecutor(), getScheduler(), getSelectors());
     }
 
+    /**
+     * <p>Connects to one of the given addresses of the same host, racing the connection
+     * attempts as specified by <a href="https://tools.ietf.org/html/rfc8305">RFC 8305</a>
+     * ("Happy Eyeballs").</p>
+     * <p>The addresses are sorted so that IPv6 and IPv4 addresses alternate, starting
+     * with the family of the first address.
+     * A connection attempt to the next address is started when the previous attempt fails,
+     * or when the previous attempt has not completed within the
+     * {@link #getConnectionAttemptDelay() connection attempt delay}.
+     * The first attempt that establishes the connect wins, and the other attempts are aborted.</p>
+     * <p>The connection attempts are made one after the other when the connect is
+     * {@link #isConnectBlocking() blocking}, or when the connection attempt delay is not positive.</p>
+     *
+     * @param addresses the addresses of the same host to connect to
+     * @param context the context information to establish the connection
+     */
+    public void connect(List<? extends SocketAddress> addresses, Map<String, Object> context)
+    {
+        if (context == null)
+            context = new HashMap<>();
+        if (addresses.size() == 1)
+            connect(addresses.get(0), context);
+        else
+            new Race(addresses, context).next();
+    }
+
     public void connect(SocketAddress address, Map<String, Object> context)
     {
         SocketChannel channel = null;
@@ -222,6 +282,9 @@ public class ClientConnector extends ContainerLifeCycle
             context.putIfAbsent(REMOTE_SOCKET_ADDRESS_CONTEXT_KEY, address);
 
             channel = SocketChannel.open();
+            Object promise = context.get(CONNECTION_PROMISE_CONTEXT_KEY);
+            if (promise instanceof Race.Attempt)
+                ((Race.Attempt)promise).channel = channel;
             SocketAddress bindAddress = getBindAddress();
             if (bindAddress != null)
             {
@@ -249,7 +312,10 @@ public class ClientConnector extends ContainerLifeCycle
             }
 
             if (connected)
+            {
+                connectFinished(context);
                 selectorManager.accept(channel, context);
+            }
             else
                 selectorManager.connect(channel, context);
         }
@@ -273,6 +339,7 @@ public class ClientConnector extends ContainerLifeCycle
             context.put(ClientConnector.CLIENT_CONNECTOR_CONTEXT_KEY, this);
             if (!channel.isConnected())
                 throw new IllegalStateException("SocketChannel must be connected");
+            connectFinished(context);
             configure(channel);
             channel.configureBlocking(false);
             selectorManager.accept(channel, context);
@@ -288,6 +355,13 @@ public class ClientConnector extends ContainerLifeCycle
         }
     }
 
+    private void connectFinished(Map<String, Object> context) throws IOException
+    {
+        Object promise = context.get(CONNECTION_PROMISE_CONTEXT_KEY);
+        if (promise instanceof Race.Attempt)
+            ((Race.Attempt)promise).connected();
+    }
+
     protected void configure(SocketChannel channel) throws IOException
     {
         channel.socket().setTcpNoDelay(true);
@@ -343,6 +417,14 @@ public class ClientConnector extends ContainerLifeCycle
                 promise.succeeded(connection);
         }
 
+        @Override
+        protected void connectFinished(SelectableChannel channel, Object attachment) throws IOException
+        {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> context = (Map<String, Object>)attachment;
+            ClientConnector.this.connectFinished(context);
+        }
+
         @Override
         protected void connectionFailed(SelectableChannel channel, Throwable failure, Object attachment)
         {
@@ -351,4 +433,173 @@ public class ClientConnector extends ContainerLifeCycle
             connectFailed(failure, context);
         }
     }
+
+    /**
+     * <p>The connection attempts to the addresses of the same host.</p>
+     * <p>Each attempt uses a copy of the context, where the connection promise
+     * is replaced by the attempt itself, so that the outcome of each attempt is
+     * known; only the attempt that wins reports its outcome to the connection
+     * promise of the original context.</p>
+     */
+    private class Race
+    {
+        private final AutoLock lock = new AutoLock();
+        private final List<Attempt> attempts = new ArrayList<>();
+        private final Deque<SocketAddress> addresses;
+        private final Map<String, Object> context;
+        private final Promise<?> promise;
+        private final long delay;
+        private Scheduler.Task task;
+        private Attempt winner;
+        private Throwable failure;
+
+        private Race(List<? extends SocketAddress> addresses, Map<String, Object> context)
+        {
+            this.addresses = interleave(addresses);
+            this.context = context;
+            this.promise = (Promise<?>)context.get(CONNECTION_PROMISE_CONTEXT_KEY);
+            this.delay = isConnectBlocking() ? 0 : getConnectionAttemptDelay().toMillis();
+        }
+
+        private Deque<SocketAddress> interleave(List<? extends SocketAddress> addresses)
+        {
+            Deque<SocketAddress> first = new ArrayDeque<>();
+            Deque<SocketAddress> second = new ArrayDeque<>();
+            boolean firstIPv6 = isIPv6(addresses.get(0));
+            for (SocketAddress address : addresses)
+            {
+                if (isIPv6(address) == firstIPv6)
+                    first.offer(address);
+                else
+                    second.offer(address);
+            }
+            Deque<SocketAddress> result = new ArrayDeque<>(addresses.size());
+            while (!first.isEmpty() || !second.isEmpty())
+            {
+                if (!first.isEmpty())
+                    result.offer(first.poll());
+                if (!second.isEmpty())
+                    result.offer(second.poll());
+            }
+            return result;
+        }
+
+        private boolean isIPv6(SocketAddress address)
+        {
+            return address instanceof InetSocketAddress && ((InetSocketAddress)address).getAddress() instanceof Inet6Address;
+        }
+
+        private void next()
+        {
+            Attempt attempt;
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null || addresses.isEmpty())
+                    return;
+                attempt = new Attempt(addresses.poll());
+                attempts.add(attempt);
+                if (task != null)
+                    task.cancel();
+                task = delay > 0 && !addresses.isEmpty() ? getScheduler().schedule(this::next, delay, TimeUnit.MILLISECONDS) : null;
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Connection attempt to {}", attempt.address);
+            connect(attempt.address, attempt.context);
+        }
+
+        private boolean win(Attempt attempt)
+        {
+            List<Attempt> losers;
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null)
+                    return winner == attempt;
+                winner = attempt;
+                if (task != null)
+                    task.cancel();
+                attempts.remove(attempt);
+                losers = new ArrayList<>(attempts);
+                attempts.clear();
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Connection attempt to {} won over {}", attempt.address, losers);
+            losers.forEach(Attempt::abort);
+            return true;
+        }
+
+        private void failed(Attempt attempt, Throwable x)
+        {
+            boolean next = false;
+            Throwable failure = null;
+            try (AutoLock l = lock.lock())
+            {
+                if (winner != null && winner != attempt)
+                    return;
+                if (winner == null)
+                {
+                    attempts.remove(attempt);
+                    if (this.failure != null)
+                        x.addSuppressed(this.failure);
+                    this.failure = x;
+                    if (!addresses.isEmpty())
+                        next = true;
+                    else if (attempts.isEmpty())
+                        failure = x;
+                }
+                else
+                {
+                    failure = x;
+                }
+            }
+            if (next)
+                next();
+            else if (failure != null && promise != null)
+                promise.failed(failure);
+        }
+
+        private class Attempt implements Promise<Connection>
+        {
+            private final SocketAddress address;
+            private final Map<String, Object> context;
+            private volatile SocketChannel channel;
+
+            private Attempt(SocketAddress address)
+            {
+                this.address = address;
+                this.context = new ConcurrentHashMap<>(Race.this.context);
+                this.context.put(CONNECTION_PROMISE_CONTEXT_KEY, this);
+            }
+
+            private void connected() throws IOException
+            {
+                if (!win(this))
+                    throw new ConnectException("Connection attempt to " + address + " aborted");
+            }
+
+            private void abort()
+            {
+                IO.close(channel);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void succeeded(Connection connection)
+            {
+                if (win(this) && promise != null)
+                    ((Promise<Connection>)promise).succeeded(connection);
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                Race.this.failed(this, x);
+            }
+
+            @Override
+            public String toString()
+            {
+                return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), address);
+            }
+        }
+    }
 }
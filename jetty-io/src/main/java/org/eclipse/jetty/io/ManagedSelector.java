@@ -46,7 +46,6 @@ import org.eclipse.jetty.util.component.DumpableCollection;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Scheduler;
-import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,6 +83,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     private Selector _selector;
     private Deque<SelectorUpdate> _updates = new ArrayDeque<>();
     private Deque<SelectorUpdate> _updateable = new ArrayDeque<>();
+    private Deque<Runnable> _flushes = new ArrayDeque<>();
+    private Deque<Runnable> _flushable = new ArrayDeque<>();
+    private long _batchedFlushes;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
@@ -91,7 +93,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         _id = id;
         SelectorProducer producer = new SelectorProducer();
         Executor executor = selectorManager.getExecutor();
-        _strategy = new EatWhatYouKill(producer, executor);
+        _strategy = selectorManager.newExecutionStrategy(producer, executor);
         addBean(_strategy, true);
     }
 
@@ -269,6 +271,71 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         }
     }
 
+    /**
+     * <p>Returns whether a flush can be batched, that is deferred until the keys selected
+     * by the current select iteration have been processed, rather than being performed
+     * immediately.</p>
+     * <p>Flushes are batched only if {@link SelectorManager#isFlushBatching() flush batching}
+     * is enabled and this selector is busy processing selected keys; when it is waiting
+     * in {@link Selector#select()} the flush is performed immediately, as it would otherwise
+     * require a wakeup of the selector.</p>
+     *
+     * @return whether a flush can be batched
+     * @see #submitFlush(Runnable)
+     */
+    boolean isFlushBatchable()
+    {
+        if (!_selectorManager.isFlushBatching())
+            return false;
+        try (AutoLock l = _lock.lock())
+        {
+            return !_selecting && _selector != null;
+        }
+    }
+
+    /**
+     * <p>Submits a task that completes a batched flush.</p>
+     * <p>The task is produced, after the keys selected by the current select iteration,
+     * together with the other batched flushes, so that the writes to the endpoints
+     * are performed back to back before selecting again.</p>
+     *
+     * @param task the task that completes the flush
+     */
+    void submitFlush(Runnable task)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Queued flush {} on {}", task, this);
+
+        Selector selector = null;
+        try (AutoLock l = _lock.lock())
+        {
+            _flushes.offer(task);
+            ++_batchedFlushes;
+            // The selector may have started to select
+            // after isFlushBatchable() was called.
+            if (_selecting)
+            {
+                selector = _selector;
+                _selecting = false;
+            }
+        }
+
+        if (selector != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wakeup on flush {}", this);
+            selector.wakeup();
+        }
+    }
+
+    long getBatchedFlushCount()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _batchedFlushes;
+        }
+    }
+
     private void wakeup()
     {
         if (LOG.isDebugEnabled())
@@ -314,6 +381,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             {
                 if (connect.timeout.cancel())
                 {
+                    _selectorManager.connectFinished(channel, connect.attachment);
                     key.interestOps(0);
                     execute(new CreateEndPoint(connect, key));
                 }
@@ -500,6 +568,10 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 if (task != null)
                     return task;
 
+                task = processFlushes();
+                if (task != null)
+                    return task;
+
                 processUpdates();
 
                 updateKeys();
@@ -540,15 +612,22 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 
             Selector selector;
             int updates;
+            int flushes;
             try (AutoLock l = _lock.lock())
             {
                 updates = _updates.size();
-                _selecting = updates == 0;
-                selector = _selecting ? null : _selector;
+                // Take the flushes batched during this iteration; they
+                // are produced after a non-blocking select, see select().
+                Deque<Runnable> batched = _flushes;
+                _flushes = _flushable;
+                _flushable = batched;
+                flushes = _flushable.size();
+                _selecting = updates == 0 && flushes == 0;
+                selector = updates == 0 ? null : _selector;
             }
 
             if (LOG.isDebugEnabled())
-                LOG.debug("updates {}", updates);
+                LOG.debug("updates {} flushes {}", updates, flushes);
 
             if (selector != null)
             {
@@ -567,7 +646,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector {} waiting with {} keys", selector, selector.keys().size());
-                    int selected = ManagedSelector.this.select(selector);
+                    // Do not wait for events if there are batched flushes to perform.
+                    int selected = _flushable.isEmpty() ? ManagedSelector.this.select(selector) : nioSelect(selector, true);
                     // The selector may have been recreated.
                     selector = _selector;
                     if (selector != null)
@@ -664,6 +744,14 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             return null;
         }
 
+        private Runnable processFlushes()
+        {
+            Runnable task = _flushable.poll();
+            if (task != null && LOG.isDebugEnabled())
+                LOG.debug("flush {}", task);
+            return task;
+        }
+
         private void updateKeys()
         {
             // Do update keys for only previously selected keys.
@@ -1004,6 +1092,12 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             }
             _selector = null;
             IO.close(selector);
+            // The endpoints are closed, so their pending writes have been failed.
+            _flushable.clear();
+            try (AutoLock l = _lock.lock())
+            {
+                _flushes.clear();
+            }
             _stopped.countDown();
         }
     }
@@ -15,6 +15,7 @@ package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Retainable;
@@ -24,12 +25,14 @@ import org.eclipse.jetty.util.Retainable;
  * <p>Acquires a ByteBuffer from a {@link ByteBufferPool} and maintains a reference count that is
  * initially 1, incremented with {@link #retain()} and decremented with {@link #release()}. The buffer
  * is released to the pool when the reference count is decremented to 0.</p>
+ * <p>Instances created by a {@link RetainableByteBufferPool} are instead returned to their pool
+ * when the reference count is decremented to 0, and may be reused by a subsequent acquire.</p>
  */
 public class RetainableByteBuffer implements Retainable
 {
-    private final ByteBufferPool pool;
     private final ByteBuffer buffer;
     private final AtomicInteger references;
+    private final Consumer<RetainableByteBuffer> releaser;
 
     public RetainableByteBuffer(ByteBufferPool pool, int size)
     {
@@ -38,9 +41,34 @@ public class RetainableByteBuffer implements Retainable
 
     public RetainableByteBuffer(ByteBufferPool pool, int size, boolean direct)
     {
-        this.pool = pool;
-        this.buffer = pool.acquire(size, direct);
-        this.references = new AtomicInteger(1);
+        this(pool.acquire(size, direct), retainable -> pool.release(retainable.getBuffer()));
+        this.references.set(1);
+    }
+
+    /**
+     * <p>Creates a RetainableByteBuffer that wraps the given ByteBuffer and that is
+     * handed to the given releaser when the reference count is decremented to 0.</p>
+     * <p>The reference count is initially 0, and it is set to 1 by {@link #acquire()}.</p>
+     *
+     * @param buffer the ByteBuffer to wrap
+     * @param releaser the function to call when this RetainableByteBuffer is released
+     */
+    protected RetainableByteBuffer(ByteBuffer buffer, Consumer<RetainableByteBuffer> releaser)
+    {
+        this.buffer = buffer;
+        this.releaser = releaser;
+        this.references = new AtomicInteger();
+    }
+
+    /**
+     * <p>Prepares this RetainableByteBuffer to be (re)used, setting the reference count to 1.</p>
+     *
+     * @throws IllegalStateException if this RetainableByteBuffer is already in use
+     */
+    protected void acquire()
+    {
+        if (references.getAndSet(1) != 0)
+            throw new IllegalStateException("re-pooled while still used " + this);
     }
 
     public ByteBuffer getBuffer()
@@ -66,13 +94,24 @@ public class RetainableByteBuffer implements Retainable
         }
     }
 
+    /**
+     * @return whether this buffer is retained by other users, on top of the one that acquired it
+     */
+    public boolean isRetained()
+    {
+        return references.get() > 1;
+    }
+
     public int release()
     {
-        int ref = references.decrementAndGet();
+        int ref = references.updateAndGet(r ->
+        {
+            if (r <= 0)
+                throw new IllegalStateException("already released " + this);
+            return r - 1;
+        });
         if (ref == 0)
-            pool.release(buffer);
-        else if (ref < 0)
-            throw new IllegalStateException("already released " + this);
+            releaser.accept(this);
         return ref;
     }
 
@@ -0,0 +1,68 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.util.Objects;
+
+import org.eclipse.jetty.util.component.Container;
+
+/**
+ * <p>A pool of {@link RetainableByteBuffer}s.</p>
+ * <p>The buffers returned by {@link #acquire(int, boolean)} have a reference count of 1;
+ * they may be {@link RetainableByteBuffer#retain() retained}, for example when slices of
+ * the buffer are passed to other components, and they are returned to the pool when the
+ * last reference is {@link RetainableByteBuffer#release() released}.</p>
+ */
+public interface RetainableByteBufferPool
+{
+    /**
+     * <p>Acquires a {@link RetainableByteBuffer} with a reference count of 1.</p>
+     * <p>The returned buffer may have a bigger capacity than the size being requested,
+     * and it is in flush mode, with no bytes to read.</p>
+     *
+     * @param size the minimum capacity of the buffer
+     * @param direct whether the buffer must be direct or not
+     * @return a RetainableByteBuffer
+     */
+    RetainableByteBuffer acquire(int size, boolean direct);
+
+    /**
+     * <p>Returns a RetainableByteBufferPool that wraps the given {@link ByteBufferPool}.</p>
+     * <p>The returned pool acquires and releases the ByteBuffers from the given ByteBufferPool,
+     * but does not pool the {@link RetainableByteBuffer} wrappers.</p>
+     *
+     * @param byteBufferPool the ByteBufferPool to wrap
+     * @return a RetainableByteBufferPool that wraps the given ByteBufferPool
+     */
+    static RetainableByteBufferPool from(ByteBufferPool byteBufferPool)
+    {
+        Objects.requireNonNull(byteBufferPool);
+        return (size, direct) -> new RetainableByteBuffer(byteBufferPool, size, direct);
+    }
+
+    /**
+     * <p>Finds a RetainableByteBufferPool bean in the given container, or wraps
+     * the given ByteBufferPool if no such bean exists.</p>
+     *
+     * @param container the container to look the bean into, or null
+     * @param byteBufferPool the ByteBufferPool to wrap if the bean is not found
+     * @return a RetainableByteBufferPool
+     * @see #from(ByteBufferPool)
+     */
+    static RetainableByteBufferPool findOrAdapt(Container container, ByteBufferPool byteBufferPool)
+    {
+        RetainableByteBufferPool pool = container == null ? null : container.getBean(RetainableByteBufferPool.class);
+        return pool != null ? pool : from(byteBufferPool);
+    }
+}
@@ -36,9 +36,12 @@ import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.Container;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.eclipse.jetty.util.thread.ThreadPoolBudget;
+import org.eclipse.jetty.util.thread.strategy.AdaptiveExecutionStrategy;
+import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +65,8 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final IntUnaryOperator _selectorIndexUpdate;
     private final List<AcceptListener> _acceptListeners = new ArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private boolean _flushBatching;
+    private boolean _adaptiveExecution;
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -129,6 +134,78 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _connectTimeout = milliseconds;
     }
 
+    /**
+     * @return whether flushes are batched at the end of select iterations
+     * @see #setFlushBatching(boolean)
+     */
+    @ManagedAttribute("Whether flushes are batched at the end of select iterations")
+    public boolean isFlushBatching()
+    {
+        return _flushBatching;
+    }
+
+    /**
+     * <p>Sets whether flushes are batched at the end of select iterations.</p>
+     * <p>When enabled, the writes performed on {@link SocketChannelEndPoint}s while
+     * a selector is busy processing selected keys are not performed immediately,
+     * but they are collected and performed back to back once the selected keys
+     * have been processed, before selecting again. This reduces the interleaving of
+     * read and write system calls for small-request, high-rate traffic.</p>
+     * <p>Writes performed while the selector is waiting for events are always
+     * performed immediately, as with flush batching disabled.</p>
+     * <p>Only the writes performed with {@code EndPoint.write(Callback, ByteBuffer...)}
+     * are batched: bytes flushed directly with {@code EndPoint.flush(ByteBuffer...)},
+     * such as the encrypted bytes written by {@code SslConnection}, are not.</p>
+     *
+     * @param flushBatching whether flushes are batched at the end of select iterations
+     */
+    public void setFlushBatching(boolean flushBatching)
+    {
+        _flushBatching = flushBatching;
+    }
+
+    /**
+     * @return whether the selectors run their tasks with an {@link AdaptiveExecutionStrategy}
+     * @see #setAdaptiveExecution(boolean)
+     */
+    @ManagedAttribute("Whether the selectors run their tasks with an adaptive execution strategy")
+    public boolean isAdaptiveExecution()
+    {
+        return _adaptiveExecution;
+    }
+
+    /**
+     * <p>Sets whether the selectors run the tasks they produce with an
+     * {@link AdaptiveExecutionStrategy}, rather than with an {@link EatWhatYouKill}
+     * strategy, so that the execution mode adapts to the observed task service times.</p>
+     * <p>This property must be set before this SelectorManager is started.</p>
+     *
+     * @param adaptiveExecution whether the selectors run their tasks with an adaptive execution strategy
+     * @see #newExecutionStrategy(ExecutionStrategy.Producer, Executor)
+     */
+    public void setAdaptiveExecution(boolean adaptiveExecution)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _adaptiveExecution = adaptiveExecution;
+    }
+
+    /**
+     * @return the number of flushes that have been batched
+     * @see #setFlushBatching(boolean)
+     */
+    @ManagedAttribute("The number of flushes batched at the end of select iterations")
+    public long getBatchedFlushCount()
+    {
+        long count = 0;
+        for (ManagedSelector selector : _selectors)
+        {
+            if (selector != null)
+                count += selector.getBatchedFlushCount();
+        }
+        return count;
+    }
+
     /**
      * Executes the given task in a different thread.
      *
@@ -238,6 +315,24 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         super.doStart();
     }
 
+    /**
+     * <p>Factory method for the {@link ExecutionStrategy} used by a {@link ManagedSelector}
+     * to run the tasks produced by the select loop.</p>
+     * <p>This implementation returns an {@link AdaptiveExecutionStrategy} if
+     * {@link #isAdaptiveExecution() adaptive execution} is enabled, otherwise
+     * an {@link EatWhatYouKill} strategy.</p>
+     *
+     * @param producer the producer of tasks
+     * @param executor the executor used to run tasks
+     * @return a new execution strategy
+     */
+    protected ExecutionStrategy newExecutionStrategy(ExecutionStrategy.Producer producer, Executor executor)
+    {
+        if (isAdaptiveExecution())
+            return new AdaptiveExecutionStrategy(producer, executor);
+        return new EatWhatYouKill(producer, executor);
+    }
+
     /**
      * <p>Factory method for {@link ManagedSelector}.</p>
      *
@@ -345,6 +440,20 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         return ((SocketChannel)channel).isConnectionPending();
     }
 
+    /**
+     * <p>Callback method invoked when a non-blocking connect has been established,
+     * before the {@link EndPoint} and the {@link Connection} for the channel are created.</p>
+     * <p>Throwing from this method aborts the connect, that is then reported via
+     * {@link #connectionFailed(SelectableChannel, Throwable, Object)}.</p>
+     *
+     * @param channel the channel that established the connect
+     * @param attachment the attachment object associated at registration
+     * @throws IOException if the connect must be aborted
+     */
+    protected void connectFinished(SelectableChannel channel, Object attachment) throws IOException
+    {
+    }
+
     protected SelectableChannel doAccept(SelectableChannel server) throws IOException
     {
         return ((ServerSocketChannel)server).accept();
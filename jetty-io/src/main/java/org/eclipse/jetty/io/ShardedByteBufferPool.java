@@ -0,0 +1,332 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A ByteBuffer pool where ByteBuffers are held in a number of independent shards,
+ * to reduce the contention on the queues when many threads acquire and release buffers.</p>
+ * <p>Each shard is organized like {@link ArrayByteBufferPool}, with an array of queues
+ * of ByteBuffers where each array element holds ByteBuffers of capacity multiple of
+ * the capacity {@code factor}.</p>
+ * <p>A thread acquires and releases buffers from the shard it has affinity with, so that
+ * threads mostly do not contend on the same queues; only when its own shard has no buffer
+ * of the requested capacity, a thread steals a buffer from the other shards.</p>
+ * <p>The number of shards defaults to the number of available processors, rounded up
+ * to the next power of 2.</p>
+ */
+@ManagedObject
+public class ShardedByteBufferPool extends AbstractByteBufferPool
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedByteBufferPool.class);
+
+    private final int _minCapacity;
+    private final int _length;
+    private final int _mask;
+    private final Shard[] _shards;
+
+    /**
+     * Creates a new ShardedByteBufferPool with a default configuration.
+     */
+    public ShardedByteBufferPool()
+    {
+        this(-1, -1, -1);
+    }
+
+    /**
+     * Creates a new ShardedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     */
+    public ShardedByteBufferPool(int minCapacity, int factor, int maxCapacity)
+    {
+        this(minCapacity, factor, maxCapacity, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new ShardedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum ByteBuffer queue length of each shard
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     */
+    public ShardedByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory)
+    {
+        this(minCapacity, factor, maxCapacity, maxQueueLength, maxHeapMemory, maxDirectMemory, -1);
+    }
+
+    /**
+     * Creates a new ShardedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum ByteBuffer queue length of each shard
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     * @param shards the number of shards, rounded up to the next power of 2,
+     * or a non-positive value for a default based on the number of processors
+     */
+    public ShardedByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory, int shards)
+    {
+        super(factor, maxQueueLength, maxHeapMemory, maxDirectMemory);
+
+        factor = getCapacityFactor();
+        if (minCapacity <= 0)
+            minCapacity = 0;
+        if (maxCapacity <= 0)
+            maxCapacity = 64 * 1024;
+        if ((maxCapacity % factor) != 0 || factor >= maxCapacity)
+            throw new IllegalArgumentException("The capacity factor must be a divisor of maxCapacity");
+        if (shards <= 0)
+            shards = Runtime.getRuntime().availableProcessors();
+        // Round up to the next power of 2, so that the shard index can be masked.
+        shards = Math.max(1, Integer.highestOneBit(shards - 1) << 1);
+
+        _minCapacity = minCapacity;
+        _length = maxCapacity / factor;
+        _mask = shards - 1;
+        _shards = new Shard[shards];
+        for (int i = 0; i < shards; ++i)
+        {
+            _shards[i] = new Shard(_length);
+        }
+    }
+
+    @ManagedAttribute("The number of shards")
+    public int getShards()
+    {
+        return _shards.length;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        if (size < _minCapacity)
+            return newByteBuffer(size, direct);
+        int b = bucketFor(size);
+        int capacity = (b + 1) * getCapacityFactor();
+        if (b >= _length)
+            return newByteBuffer(capacity, direct);
+
+        int index = shardIndex();
+        for (int i = 0; i < _shards.length; ++i)
+        {
+            // Try first the shard this thread has affinity
+            // with, then steal from the neighbour shards.
+            Bucket bucket = _shards[(index + i) & _mask].bucketsFor(direct).get(b);
+            if (bucket == null)
+                continue;
+            ByteBuffer buffer = bucket.acquire();
+            if (buffer != null)
+            {
+                decrementMemory(buffer);
+                return buffer;
+            }
+        }
+        return newByteBuffer(capacity, direct);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+
+        int capacity = buffer.capacity();
+        // Validate that this buffer is from this pool.
+        if ((capacity % getCapacityFactor()) != 0)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("ByteBuffer {} does not belong to this pool, discarding it", BufferUtil.toDetailString(buffer));
+            return;
+        }
+
+        if (capacity < _minCapacity)
+            return;
+        int b = bucketFor(capacity);
+        if (b >= _length)
+            return;
+
+        boolean direct = buffer.isDirect();
+        Bucket bucket = _shards[shardIndex()].bucketFor(b, direct);
+        bucket.release(buffer);
+        incrementMemory(buffer);
+        releaseExcessMemory(direct, this::clearOldestBucket);
+    }
+
+    private Bucket newBucket(int key)
+    {
+        return new Bucket(key * getCapacityFactor(), getMaxQueueLength());
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        for (Shard shard : _shards)
+        {
+            shard.clear(true);
+            shard.clear(false);
+        }
+    }
+
+    private void clearOldestBucket(boolean direct)
+    {
+        long oldest = Long.MAX_VALUE;
+        Bucket oldestBucket = null;
+        for (Shard shard : _shards)
+        {
+            AtomicReferenceArray<Bucket> buckets = shard.bucketsFor(direct);
+            for (int i = 0; i < _length; ++i)
+            {
+                Bucket bucket = buckets.get(i);
+                // Empty buckets are skipped, otherwise they would be
+                // selected again and again without releasing memory.
+                if (bucket == null || bucket.isEmpty())
+                    continue;
+                long lastUpdate = bucket.getLastUpdate();
+                if (lastUpdate < oldest)
+                {
+                    oldest = lastUpdate;
+                    oldestBucket = bucket;
+                }
+            }
+        }
+        if (oldestBucket != null)
+            oldestBucket.clear(this::decrementMemory);
+    }
+
+    private int bucketFor(int capacity)
+    {
+        return (capacity - 1) / getCapacityFactor();
+    }
+
+    private int shardIndex()
+    {
+        return (int)Thread.currentThread().getId() & _mask;
+    }
+
+    @ManagedAttribute("The number of pooled direct ByteBuffers")
+    public long getDirectByteBufferCount()
+    {
+        return getByteBufferCount(true);
+    }
+
+    @ManagedAttribute("The number of pooled heap ByteBuffers")
+    public long getHeapByteBufferCount()
+    {
+        return getByteBufferCount(false);
+    }
+
+    private long getByteBufferCount(boolean direct)
+    {
+        long count = 0;
+        for (Shard shard : _shards)
+        {
+            count += shard.getByteBufferCount(direct);
+        }
+        return count;
+    }
+
+    // Package local for testing
+    AtomicReferenceArray<Bucket> bucketsFor(int shard, boolean direct)
+    {
+        return _shards[shard].bucketsFor(direct);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{shards=%d,heap=%d/%d,direct=%d/%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            _shards.length,
+            getHeapByteBufferCount(),
+            getHeapMemory(),
+            getDirectByteBufferCount(),
+            getDirectMemory());
+    }
+
+    private class Shard
+    {
+        private final AtomicReferenceArray<Bucket> _direct;
+        private final AtomicReferenceArray<Bucket> _indirect;
+
+        private Shard(int length)
+        {
+            _direct = new AtomicReferenceArray<>(length);
+            _indirect = new AtomicReferenceArray<>(length);
+        }
+
+        private AtomicReferenceArray<Bucket> bucketsFor(boolean direct)
+        {
+            return direct ? _direct : _indirect;
+        }
+
+        private Bucket bucketFor(int b, boolean direct)
+        {
+            AtomicReferenceArray<Bucket> buckets = bucketsFor(direct);
+            Bucket bucket = buckets.get(b);
+            if (bucket == null)
+            {
+                Bucket newBucket = newBucket(b + 1);
+                // Buckets are never removed, so a failed
+                // CAS means that another thread won the race.
+                if (buckets.compareAndSet(b, null, newBucket))
+                    bucket = newBucket;
+                else
+                    bucket = buckets.get(b);
+            }
+            return bucket;
+        }
+
+        private void clear(boolean direct)
+        {
+            AtomicReferenceArray<Bucket> buckets = bucketsFor(direct);
+            for (int i = 0; i < buckets.length(); ++i)
+            {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null)
+                    bucket.clear();
+            }
+        }
+
+        private long getByteBufferCount(boolean direct)
+        {
+            long count = 0;
+            AtomicReferenceArray<Bucket> buckets = bucketsFor(direct);
+            for (int i = 0; i < buckets.length(); ++i)
+            {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null)
+                    count += bucket.size();
+            }
+            return count;
+        }
+    }
+}
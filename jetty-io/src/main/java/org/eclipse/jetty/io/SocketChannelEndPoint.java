@@ -19,11 +19,14 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -47,6 +50,12 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
     private int _currentInterestOps;
     // The desired value for interestOps.
     private int _desiredInterestOps;
+    // Whether the first flush of the current write may be batched.
+    private boolean _batchFlush;
+    // Whether the current write has been batched.
+    private boolean _flushBatched;
+    // The file region being transferred by the current write, if any.
+    private Transfer _transfer;
 
     private abstract class RunnableTask implements Runnable, Invocable
     {
@@ -255,9 +264,75 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
         return filled;
     }
 
+    @Override
+    public void write(Callback callback, ByteBuffer... buffers) throws IllegalStateException
+    {
+        _batchFlush = _selector != null && _selector.isFlushBatchable();
+        try
+        {
+            super.write(callback, buffers);
+        }
+        finally
+        {
+            _batchFlush = false;
+        }
+    }
+
+    /**
+     * <p>Writes a region of the given file directly to the socket, using
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that the bytes are not copied to user space buffers when the OS supports it.</p>
+     * <p>Like {@link #write(Callback, ByteBuffer...)}, the write is asynchronous
+     * and the callback is notified when the whole region has been written.
+     * The file channel is not closed by this method.</p>
+     * <p>The transferred bytes are not passed to {@link #flush(ByteBuffer...)},
+     * so subclasses that override it to inspect or transform the bytes do not
+     * see them.</p>
+     *
+     * @param callback the callback to notify when the region has been written
+     * @param file the file channel to read from
+     * @param position the position in the file of the first byte to write
+     * @param count the number of bytes to write
+     * @throws WritePendingException if another write operation is pending
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long count) throws WritePendingException
+    {
+        if (_transfer != null)
+            throw new WritePendingException();
+        Transfer transfer = new Transfer(callback, file, position, count);
+        _transfer = transfer;
+        try
+        {
+            write(transfer, BufferUtil.EMPTY_BUFFER);
+        }
+        catch (WritePendingException x)
+        {
+            _transfer = null;
+            throw x;
+        }
+    }
+
     @Override
     public boolean flush(ByteBuffer... buffers) throws IOException
     {
+        Transfer transfer = _transfer;
+        if (transfer != null)
+            return transfer.flush();
+
+        if (_batchFlush)
+        {
+            _batchFlush = false;
+            if (BufferUtil.remaining(buffers) > 0)
+            {
+                // Do not write now, onIncompleteFlush()
+                // will submit the write to the selector.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("batched flush {}", this);
+                _flushBatched = true;
+                return false;
+            }
+        }
+
         long flushed;
         try
         {
@@ -282,6 +357,76 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
         return true;
     }
 
+    private class Transfer extends Callback.Nested
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private Transfer(Callback callback, FileChannel file, long position, long count)
+        {
+            super(callback);
+            _file = file;
+            _position = position;
+            _remaining = count;
+        }
+
+        private boolean flush() throws IOException
+        {
+            long flushed = 0;
+            try
+            {
+                while (_remaining > 0)
+                {
+                    long transferred = _file.transferTo(_position, _remaining, _channel);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("transferred {} {}", transferred, SocketChannelEndPoint.this);
+                    if (transferred == 0)
+                    {
+                        if (_position >= _file.size())
+                            throw new EofException("Unexpected end of file " + _file);
+                        break;
+                    }
+                    _position += transferred;
+                    _remaining -= transferred;
+                    flushed += transferred;
+                }
+            }
+            catch (EofException e)
+            {
+                throw e;
+            }
+            catch (IOException e)
+            {
+                throw new EofException(e);
+            }
+
+            if (flushed > 0)
+            {
+                notIdle();
+                Connection connection = getConnection();
+                if (connection instanceof WriteFlusher.Listener)
+                    ((WriteFlusher.Listener)connection).onFlushed(flushed);
+            }
+
+            return _remaining == 0;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            _transfer = null;
+            super.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            _transfer = null;
+            super.failed(x);
+        }
+    }
+
     public SocketChannel getChannel()
     {
         return _channel;
@@ -302,7 +447,15 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
     @Override
     protected void onIncompleteFlush()
     {
-        changeInterests(SelectionKey.OP_WRITE);
+        if (_flushBatched)
+        {
+            _flushBatched = false;
+            _selector.submitFlush(_runCompleteWrite);
+        }
+        else
+        {
+            changeInterests(SelectionKey.OP_WRITE);
+        }
     }
 
     @Override
@@ -0,0 +1,166 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArrayRetainableByteBufferPoolTest
+{
+    @Test
+    public void testAcquireRelease()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool();
+
+        RetainableByteBuffer buffer = pool.acquire(1500, true);
+        assertEquals(1, buffer.getReferences());
+        assertTrue(buffer.getBuffer().isDirect());
+        assertThat(buffer.getBuffer().capacity(), greaterThanOrEqualTo(1500));
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, pool.getDirectByteBufferCount());
+
+        assertEquals(0, buffer.release());
+        assertEquals(1, pool.getDirectByteBufferCount());
+        assertEquals(2048, pool.getDirectMemory());
+
+        RetainableByteBuffer reacquired = pool.acquire(1024 + 1, true);
+        assertSame(buffer, reacquired);
+        assertEquals(1, reacquired.getReferences());
+        assertEquals(0, pool.getDirectByteBufferCount());
+        assertEquals(0, pool.getDirectMemory());
+
+        RetainableByteBuffer heap = pool.acquire(1500, false);
+        assertNotSame(buffer, heap);
+        assertFalse(heap.getBuffer().isDirect());
+    }
+
+    @Test
+    public void testReleasedWhenLastReferenceReleased()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool();
+
+        RetainableByteBuffer buffer = pool.acquire(1024, false);
+        BufferUtil.append(buffer.getBuffer(), BufferUtil.toBuffer("0123456789"));
+
+        // Two slices of the network buffer are handed to other components.
+        buffer.retain();
+        buffer.retain();
+        assertTrue(buffer.isRetained());
+
+        assertEquals(2, buffer.release());
+        assertEquals(0, pool.getHeapByteBufferCount());
+        assertEquals(1, buffer.release());
+        assertFalse(buffer.isRetained());
+        assertEquals(0, pool.getHeapByteBufferCount());
+        assertEquals(0, buffer.release());
+        assertEquals(1, pool.getHeapByteBufferCount());
+
+        // The buffer is cleared when it is returned to the pool.
+        assertTrue(pool.acquire(1024, false).isEmpty());
+    }
+
+    @Test
+    public void testReleaseTooManyTimes()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool();
+
+        RetainableByteBuffer buffer = pool.acquire(1024, false);
+        buffer.release();
+        assertThrows(IllegalStateException.class, buffer::release);
+        assertThrows(IllegalStateException.class, buffer::retain);
+        assertEquals(1, pool.getHeapByteBufferCount());
+    }
+
+    @Test
+    public void testNotPooledCapacity()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(10, 100, 1000, -1, -1, -1);
+
+        RetainableByteBuffer small = pool.acquire(5, false);
+        assertEquals(5, small.getBuffer().capacity());
+        small.release();
+
+        RetainableByteBuffer large = pool.acquire(1001, false);
+        assertThat(large.getBuffer().capacity(), greaterThanOrEqualTo(1001));
+        large.release();
+
+        assertEquals(0, pool.getHeapByteBufferCount());
+        assertEquals(0, pool.getHeapMemory());
+    }
+
+    @Test
+    public void testMaxBucketSize()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, -1, -1, 2, -1, -1);
+
+        RetainableByteBuffer buffer1 = pool.acquire(512, false);
+        RetainableByteBuffer buffer2 = pool.acquire(512, false);
+        RetainableByteBuffer buffer3 = pool.acquire(512, false);
+
+        buffer1.release();
+        buffer2.release();
+        buffer3.release();
+
+        assertEquals(2, pool.getHeapByteBufferCount());
+        assertEquals(2 * 1024, pool.getHeapMemory());
+    }
+
+    @Test
+    public void testMaxMemory()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, -1, -1, -1, -1, 3 * 1024);
+
+        RetainableByteBuffer buffer1 = pool.acquire(2048, true);
+        RetainableByteBuffer buffer2 = pool.acquire(2048, true);
+        buffer1.release();
+        buffer2.release();
+
+        assertEquals(1, pool.getDirectByteBufferCount());
+        assertEquals(2048, pool.getDirectMemory());
+
+        pool.clear();
+        assertEquals(0, pool.getDirectByteBufferCount());
+        assertEquals(0, pool.getDirectMemory());
+    }
+
+    @Test
+    public void testFindOrAdapt()
+    {
+        ByteBufferPool byteBufferPool = new MappedByteBufferPool();
+        ContainerLifeCycle container = new ContainerLifeCycle();
+
+        RetainableByteBufferPool adapted = RetainableByteBufferPool.findOrAdapt(container, byteBufferPool);
+        RetainableByteBuffer buffer = adapted.acquire(1024, false);
+        ByteBuffer byteBuffer = buffer.getBuffer();
+        buffer.release();
+        // The adapter returns the ByteBuffer to the wrapped ByteBufferPool.
+        assertSame(byteBuffer, byteBufferPool.acquire(1024, false));
+
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool();
+        container.addBean(pool);
+        assertSame(pool, RetainableByteBufferPool.findOrAdapt(container, byteBufferPool));
+    }
+}
@@ -0,0 +1,135 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ClientConnectorTest
+{
+    private final AtomicInteger connections = new AtomicInteger();
+    private ClientConnector connector;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        connector = new ClientConnector();
+        connector.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        connector.stop();
+    }
+
+    @Test
+    public void testConnectFallsBackImmediatelyWhenAttemptFails() throws Exception
+    {
+        connector.setConnectionAttemptDelay(Duration.ofSeconds(30));
+        try (ServerSocketChannel server = newServer())
+        {
+            long begin = System.nanoTime();
+            Promise.Completable<Connection> promise = connect(List.of(newClosedAddress(), (InetSocketAddress)server.getLocalAddress()));
+
+            assertNotNull(promise.get(5, TimeUnit.SECONDS));
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin), lessThan(5L));
+            assertEquals(1, connections.get());
+        }
+    }
+
+    @Test
+    public void testOnlyFirstConnectWins() throws Exception
+    {
+        connector.setConnectionAttemptDelay(Duration.ofMillis(1));
+        try (ServerSocketChannel server1 = newServer();
+             ServerSocketChannel server2 = newServer())
+        {
+            Promise.Completable<Connection> promise = connect(List.of((InetSocketAddress)server1.getLocalAddress(), (InetSocketAddress)server2.getLocalAddress()));
+
+            Connection connection = promise.get(5, TimeUnit.SECONDS);
+            assertNotNull(connection);
+            // Give the other connection attempt the time to complete.
+            Thread.sleep(500);
+            assertEquals(1, connections.get());
+        }
+    }
+
+    @Test
+    public void testConnectFailsWhenAllAttemptsFail() throws Exception
+    {
+        Promise.Completable<Connection> promise = connect(List.of(newClosedAddress(), newClosedAddress()));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> promise.get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause(), instanceOf(ConnectException.class));
+        assertEquals(1, failure.getCause().getSuppressed().length);
+        assertEquals(0, connections.get());
+    }
+
+    private Promise.Completable<Connection> connect(List<InetSocketAddress> addresses)
+    {
+        Promise.Completable<Connection> promise = new Promise.Completable<>();
+        Map<String, Object> context = new HashMap<>();
+        context.put(ClientConnector.CONNECTION_PROMISE_CONTEXT_KEY, promise);
+        context.put(ClientConnector.CLIENT_CONNECTION_FACTORY_CONTEXT_KEY, (ClientConnectionFactory)(endPoint, ctx) ->
+        {
+            connections.incrementAndGet();
+            return new AbstractConnection(endPoint, connector.getExecutor())
+            {
+                @Override
+                public void onFillable()
+                {
+                }
+            };
+        });
+        connector.connect(addresses, context);
+        return promise;
+    }
+
+    private static ServerSocketChannel newServer() throws Exception
+    {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        return server;
+    }
+
+    private static InetSocketAddress newClosedAddress() throws Exception
+    {
+        ServerSocketChannel server = newServer();
+        InetSocketAddress address = (InetSocketAddress)server.getLocalAddress();
+        IO.close(server);
+        return address;
+    }
+}
@@ -27,12 +27,18 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.TimerScheduler;
+import org.eclipse.jetty.util.thread.strategy.AdaptiveExecutionStrategy;
+import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SelectorManagerTest
@@ -158,4 +164,46 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testAdaptiveExecution() throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                return new SocketChannelEndPoint((SocketChannel)channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                return null;
+            }
+        };
+        selectorManager.setAdaptiveExecution(true);
+        selectorManager.start();
+        try
+        {
+            assertThat(selectorManager.getContainedBeans(AdaptiveExecutionStrategy.class), hasSize(1));
+            assertThrows(IllegalStateException.class, () -> selectorManager.setAdaptiveExecution(false));
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+
+        selectorManager.setAdaptiveExecution(false);
+        selectorManager.start();
+        try
+        {
+            assertThat(selectorManager.getContainedBeans(AdaptiveExecutionStrategy.class), empty());
+            assertThat(selectorManager.getContainedBeans(EatWhatYouKill.class), hasSize(1));
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
 }
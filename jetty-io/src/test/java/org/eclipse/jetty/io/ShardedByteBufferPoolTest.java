@@ -0,0 +1,238 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.StringUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedByteBufferPoolTest
+{
+    @Test
+    public void testShardsRoundedToPowerOfTwo()
+    {
+        assertEquals(1, new ShardedByteBufferPool(-1, -1, -1, -1, -1, -1, 1).getShards());
+        assertEquals(4, new ShardedByteBufferPool(-1, -1, -1, -1, -1, -1, 3).getShards());
+        assertEquals(8, new ShardedByteBufferPool(-1, -1, -1, -1, -1, -1, 8).getShards());
+        int shards = new ShardedByteBufferPool().getShards();
+        assertEquals(1, Integer.bitCount(shards));
+        assertThat(shards, greaterThanOrEqualTo(Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Test
+    public void testInvalidFactor()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedByteBufferPool(-1, 1000, 1500));
+    }
+
+    @Test
+    public void testMinimumRelease()
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(10, 100, 1000);
+
+        for (int size = 1; size <= 9; size++)
+        {
+            ByteBuffer buffer = bufferPool.acquire(size, true);
+            assertTrue(buffer.isDirect());
+            assertEquals(size, buffer.capacity());
+
+            bufferPool.release(buffer);
+            assertEquals(0, bufferPool.getDirectByteBufferCount());
+        }
+    }
+
+    @Test
+    public void testMaxRelease()
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(10, 100, 1000);
+
+        for (int size = 999; size <= 1001; size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer = bufferPool.acquire(size, true);
+            assertTrue(buffer.isDirect());
+            assertThat(buffer.capacity(), greaterThanOrEqualTo(size));
+
+            bufferPool.release(buffer);
+            assertEquals(size <= 1000, 1 == bufferPool.getDirectByteBufferCount());
+        }
+    }
+
+    @Test
+    public void testAcquireReleaseAcquire()
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(10, 100, 1000);
+
+        for (int size = 390; size <= 510; size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer1 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer1);
+            ByteBuffer buffer2 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer2);
+            ByteBuffer buffer3 = bufferPool.acquire(size, false);
+            bufferPool.release(buffer3);
+
+            assertEquals(1, bufferPool.getDirectByteBufferCount());
+            assertEquals(1, bufferPool.getHeapByteBufferCount());
+            assertSame(buffer1, buffer2);
+            assertNotSame(buffer1, buffer3);
+        }
+    }
+
+    @Test
+    public void testStealFromOtherShard() throws Exception
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(-1, -1, -1, -1, -1, -1, 2);
+        ByteBuffer buffer = bufferPool.acquire(1024, true);
+
+        // Release the buffer from a thread that has affinity with the other shard.
+        long otherShard = (Thread.currentThread().getId() + 1) & 1;
+        AtomicReference<Thread> releaser = new AtomicReference<>();
+        while (releaser.get() == null)
+        {
+            Thread thread = new Thread(() -> bufferPool.release(buffer));
+            if ((thread.getId() & 1) == otherShard)
+                releaser.set(thread);
+        }
+        releaser.get().start();
+        releaser.get().join(5000);
+
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(1, bufferPool.bucketsFor((int)otherShard, true).get(0).size());
+        assertEquals(buffer.capacity(), bufferPool.getDirectMemory());
+
+        // This thread steals the buffer from the other shard.
+        assertSame(buffer, bufferPool.acquire(1024, true));
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+        assertEquals(0, bufferPool.getDirectMemory());
+    }
+
+    @Test
+    public void testConcurrentAcquireRelease() throws Exception
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(-1, -1, -1, -1, -1, -1, 4);
+        int threads = 8;
+        int iterations = 1000;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t)
+        {
+            new Thread(() ->
+            {
+                for (int i = 0; i < iterations; ++i)
+                {
+                    ByteBuffer buffer = bufferPool.acquire(1 + (i * 97) % 4096, i % 2 == 0);
+                    bufferPool.release(buffer);
+                }
+                latch.countDown();
+            }).start();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        // The memory accounting must match the pooled buffers.
+        long directMemory = 0;
+        long heapMemory = 0;
+        for (int shard = 0; shard < bufferPool.getShards(); ++shard)
+        {
+            for (int b = 0; b < 4; ++b)
+            {
+                long capacity = (b + 1) * 1024L;
+                ByteBufferPool.Bucket bucket = bufferPool.bucketsFor(shard, true).get(b);
+                if (bucket != null)
+                    directMemory += bucket.size() * capacity;
+                bucket = bufferPool.bucketsFor(shard, false).get(b);
+                if (bucket != null)
+                    heapMemory += bucket.size() * capacity;
+            }
+        }
+        assertEquals(directMemory, bufferPool.getDirectMemory());
+        assertEquals(heapMemory, bufferPool.getHeapMemory());
+    }
+
+    @Test
+    public void testReleaseNonPooledBuffer()
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool();
+
+        // Release a few small non-pool buffers
+        bufferPool.release(ByteBuffer.wrap(StringUtil.getUtf8Bytes("Hello")));
+
+        assertEquals(0, bufferPool.getHeapByteBufferCount());
+    }
+
+    @Test
+    public void testMaxQueue()
+    {
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(-1, -1, -1, 2, -1, -1, 1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(512, false);
+        ByteBuffer buffer2 = bufferPool.acquire(512, false);
+        ByteBuffer buffer3 = bufferPool.acquire(512, false);
+
+        bufferPool.release(buffer1);
+        assertEquals(1, bufferPool.getHeapByteBufferCount());
+        bufferPool.release(buffer2);
+        assertEquals(2, bufferPool.getHeapByteBufferCount());
+        bufferPool.release(buffer3);
+        assertEquals(2, bufferPool.getHeapByteBufferCount());
+    }
+
+    @Test
+    public void testMaxMemory()
+    {
+        int factor = 1024;
+        int maxMemory = 11 * 1024;
+        ShardedByteBufferPool bufferPool = new ShardedByteBufferPool(-1, factor, -1, -1, -1, maxMemory, 1);
+
+        // Create the buckets - the oldest is the larger.
+        // 1+2+3+4=10 / maxMemory=11.
+        for (int i = 4; i >= 1; --i)
+        {
+            int capacity = factor * i;
+            ByteBuffer buffer = bufferPool.acquire(capacity, true);
+            bufferPool.release(buffer);
+        }
+        assertEquals(10 * factor, bufferPool.getDirectMemory());
+
+        // Create and release a buffer to exceed the max memory.
+        ByteBuffer buffer = bufferPool.newByteBuffer(2 * factor, true);
+        bufferPool.release(buffer);
+
+        // Now the oldest buffer should be gone and we have: 1+2x2+3=8
+        assertEquals(8 * factor, bufferPool.getDirectMemory());
+        assertTrue(bufferPool.bucketsFor(0, true).get(3).isEmpty());
+
+        // Create and release a large buffer.
+        // Max memory is exceeded and buckets 3 and 1 are cleared.
+        // We will have 2x2+7=11.
+        buffer = bufferPool.newByteBuffer(7 * factor, true);
+        bufferPool.release(buffer);
+        assertThat(bufferPool.getDirectMemory(), lessThanOrEqualTo((long)maxMemory));
+        assertTrue(bufferPool.bucketsFor(0, true).get(0).isEmpty());
+        assertTrue(bufferPool.bucketsFor(0, true).get(2).isEmpty());
+    }
+}
@@ -22,11 +22,18 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -181,6 +188,108 @@ public class SocketChannelEndPointTest
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("scenarios")
+    public void testEchoWithFlushBatching(Scenario scenario) throws Exception
+    {
+        init(scenario);
+        _manager.setFlushBatching(true);
+        try (Socket client = _scenario.newClient(_connector))
+        {
+            client.setSoTimeout(60000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                OutputStream out = client.getOutputStream();
+                InputStream in = client.getInputStream();
+                for (int i = 0; i < 1000; ++i)
+                {
+                    String message = "Hello" + i + "\n";
+                    out.write(message.getBytes(StandardCharsets.UTF_8));
+
+                    // Verify echo server to client
+                    for (char c : message.toCharArray())
+                    {
+                        int b = in.read();
+                        assertThat("expect valid char integer", b, greaterThan(0));
+                        assertEquals(c, (char)b, "expect characters to be same");
+                    }
+                }
+                // SslConnection flushes the encrypted bytes directly rather than
+                // writing them, so only cleartext writes are batched.
+                if (scenario instanceof SslScenario)
+                    assertEquals(0L, _manager.getBatchedFlushCount());
+                else
+                    assertThat(_manager.getBatchedFlushCount(), greaterThan(0L));
+
+                client.close();
+                for (int i = 0; i < 10; ++i)
+                {
+                    if (server.isOpen())
+                        Thread.sleep(10);
+                    else
+                        break;
+                }
+                assertFalse(server.isOpen());
+            }
+        }
+    }
+
+    @Test
+    public void testTransferFrom() throws Exception
+    {
+        init(new NormalScenario());
+        byte[] data = new byte[4 * 1024 * 1024];
+        new Random().nextBytes(data);
+        Path path = Files.createTempFile("transfer", ".bin");
+        try (Socket client = _scenario.newClient(_connector);
+             FileChannel file = FileChannel.open(Files.write(path, data), StandardOpenOption.READ))
+        {
+            client.setSoTimeout(60000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+                assertTrue(_lastEndPointLatch.await(5, TimeUnit.SECONDS));
+                SocketChannelEndPoint endPoint = (SocketChannelEndPoint)_lastEndPoint;
+
+                // Transfer a region that is larger than the socket buffers, so that
+                // the transfer cannot complete until the client reads the bytes.
+                int position = 1024;
+                int count = data.length - 2 * position;
+                FutureCallback callback = new FutureCallback();
+                endPoint.transferFrom(callback, file, position, count);
+                assertThrows(WritePendingException.class, () -> endPoint.transferFrom(Callback.NOOP, file, 0, 1));
+                assertThrows(WritePendingException.class, () -> endPoint.write(Callback.NOOP, BufferUtil.toBuffer("X")));
+
+                byte[] received = new byte[count];
+                InputStream in = client.getInputStream();
+                int length = 0;
+                while (length < count)
+                {
+                    int read = in.read(received, length, count - length);
+                    assertThat(read, greaterThan(0));
+                    length += read;
+                }
+                callback.get(5, TimeUnit.SECONDS);
+                assertTrue(Arrays.equals(Arrays.copyOfRange(data, position, position + count), received));
+
+                // Normal writes are possible after the transfer.
+                FutureCallback written = new FutureCallback();
+                endPoint.write(written, BufferUtil.toBuffer("OK"));
+                written.get(5, TimeUnit.SECONDS);
+                assertEquals('O', in.read());
+                assertEquals('K', in.read());
+            }
+        }
+        finally
+        {
+            Files.delete(path);
+        }
+    }
+
     @Test
     public void testShutdown() throws Exception
     {
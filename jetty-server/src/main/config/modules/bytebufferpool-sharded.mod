@@ -0,0 +1,39 @@
+[description]
+Configures a sharded ByteBufferPool used by ServerConnectors,
+that reduces contention on the buffer queues on many-core machines.
+
+[provides]
+bytebufferpool
+
+[depends]
+logging
+
+[xml]
+etc/jetty-bytebufferpool-sharded.xml
+
+[ini-template]
+## Minimum capacity of a single ByteBuffer.
+#jetty.byteBufferPool.minCapacity=0
+
+## Maximum capacity of a single ByteBuffer.
+## Requests for ByteBuffers larger than this value results
+## in the ByteBuffer being allocated but not pooled.
+#jetty.byteBufferPool.maxCapacity=65536
+
+## Bucket capacity factor.
+## ByteBuffers are allocated out of buckets that have
+## a capacity that is multiple of this factor.
+#jetty.byteBufferPool.factor=1024
+
+## Maximum queue length for each bucket of each shard (-1 for unbounded).
+#jetty.byteBufferPool.maxQueueLength=-1
+
+## Maximum heap memory retainable by the pool (-1 for unlimited).
+#jetty.byteBufferPool.maxHeapMemory=-1
+
+## Maximum direct memory retainable by the pool (-1 for unlimited).
+#jetty.byteBufferPool.maxDirectMemory=-1
+
+## Number of shards, rounded up to a power of 2
+## (-1 for a default based on the number of processors).
+#jetty.byteBufferPool.shards=-1
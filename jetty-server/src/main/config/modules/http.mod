@@ -50,4 +50,7 @@ etc/jetty-http.xml
 ## The SO_SNDBUF socket option to set on accepted sockets.
 ## A value of -1 indicates that the platform default is used.
 # jetty.http.acceptedSendBufferSize=-1
+
+## Whether the selectors run their tasks with an adaptive execution strategy.
+# jetty.http.adaptiveExecution=false
 # end::documentation[]
@@ -71,6 +71,9 @@ etc/jetty.xml
 ## Relative Redirect Locations allowed
 # jetty.httpConfig.relativeRedirectAllowed=false
 
+## Whether static file content is written with FileChannel.transferTo() on cleartext HTTP/1.1 connections
+# jetty.httpConfig.useFileChannelTransfer=false
+
 ### Server configuration
 ## Whether ctrl+c on the console gracefully stops the Jetty server
 # jetty.server.stopAtShutdown=true
@@ -53,6 +53,9 @@ etc/jetty-ssl-context.xml
 ## A value of -1 indicates that the platform default is used.
 # jetty.ssl.acceptedSendBufferSize=-1
 
+## Whether the selectors run their tasks with an adaptive execution strategy.
+# jetty.ssl.adaptiveExecution=false
+
 ## Whether client SNI data is required for all secure connections.
 ## When SNI is required, clients that do not send SNI data are rejected with an HTTP 400 response.
 # jetty.ssl.sniRequired=false
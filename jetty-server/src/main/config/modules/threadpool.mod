@@ -22,3 +22,6 @@ etc/jetty-threadpool.xml
 
 ## Whether to output a detailed dump.
 #jetty.threadPool.detailedDump=false
+
+## Whether blocking tasks run on virtual threads (requires a JDK with virtual threads).
+#jetty.threadPool.useVirtualThreads=false
@@ -34,6 +34,7 @@ import java.util.stream.Collectors;
 import org.eclipse.jetty.io.ArrayByteBufferPool;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.RetainableByteBufferPool;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.StringUtil;
@@ -68,6 +69,10 @@ import org.slf4j.LoggerFactory;
  * <li>The {@link ByteBufferPool} service is made available to all connections to be used to acquire and release
  * {@link ByteBuffer} instances from a pool.  The default is to use a new {@link ArrayByteBufferPool} instance.
  * </li>
+ * <li>The {@link RetainableByteBufferPool} service is made available to all connections to be used to acquire
+ * reference counted network buffers.  The default is to use a {@link RetainableByteBufferPool} server bean, or
+ * to wrap the {@link ByteBufferPool} if there is no such bean.
+ * </li>
  * </ul>
  * These services are managed as aggregate beans by the {@link ContainerLifeCycle} super class and
  * may either be managed or unmanaged beans.
@@ -145,6 +150,7 @@ public abstract class AbstractConnector extends ContainerLifeCycle implements Co
     private final Executor _executor;
     private final Scheduler _scheduler;
     private final ByteBufferPool _byteBufferPool;
+    private final RetainableByteBufferPool _retainableByteBufferPool;
     private final Thread[] _acceptors;
     private final Set<EndPoint> _endpoints = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final Set<EndPoint> _immutableEndPoints = Collections.unmodifiableSet(_endpoints);
@@ -188,6 +194,12 @@ public abstract class AbstractConnector extends ContainerLifeCycle implements Co
             pool = _server.getBean(ByteBufferPool.class);
         _byteBufferPool = pool != null ? pool : new ArrayByteBufferPool();
         addBean(_byteBufferPool);
+        RetainableByteBufferPool retainableByteBufferPool = _server.getBean(RetainableByteBufferPool.class);
+        if (retainableByteBufferPool != null)
+            addBean(retainableByteBufferPool);
+        else
+            retainableByteBufferPool = RetainableByteBufferPool.from(_byteBufferPool);
+        _retainableByteBufferPool = retainableByteBufferPool;
 
         addEventListener(new Container.Listener()
         {
@@ -255,6 +267,12 @@ public abstract class AbstractConnector extends ContainerLifeCycle implements Co
         return _byteBufferPool;
     }
 
+    @Override
+    public RetainableByteBufferPool getRetainableByteBufferPool()
+    {
+        return _retainableByteBufferPool;
+    }
+
     @Override
     @ManagedAttribute("The connection idle timeout in milliseconds")
     public long getIdleTimeout()
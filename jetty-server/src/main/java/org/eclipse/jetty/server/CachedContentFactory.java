@@ -17,16 +17,19 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -39,14 +42,22 @@ import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.PrecompressedHttpContent;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@ManagedObject("Cache of static contents")
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachedContentFactory.class);
+    // Same as GzipHandler.DEFAULT_MIN_GZIP_SIZE.
+    private static final int MIN_COMPRESS_SIZE = 32;
     private static final Map<CompressedContentFormat, CachedPrecompressedHttpContent> NO_PRECOMPRESSED = Collections.unmodifiableMap(Collections.emptyMap());
 
     private final ConcurrentMap<String, CachedHttpContent> _cache;
@@ -58,6 +69,11 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final boolean _etags;
     private final CompressedContentFormat[] _precompressedFormats;
     private final boolean _useFileMappedBuffer;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private ContentEvictionPolicy _evictionPolicy = new ContentEvictionPolicy.WindowTinyLfu();
+    private boolean _compressCachedContent;
 
     private int _maxCachedFileSize = 128 * 1024 * 1024;
     private int _maxCachedFiles = 2048;
@@ -86,16 +102,74 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         _precompressedFormats = precompressedFormats;
     }
 
+    @ManagedAttribute(value = "The size in bytes of the cached buffers", readonly = true)
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute(value = "The number of cached files", readonly = true)
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
 
+    /**
+     * @return the number of lookups that found valid cached content
+     */
+    @ManagedAttribute(value = "The number of cache hits", readonly = true)
+    public long getHits()
+    {
+        return _hits.longValue();
+    }
+
+    /**
+     * @return the number of lookups that did not find valid cached content
+     */
+    @ManagedAttribute(value = "The number of cache misses", readonly = true)
+    public long getMisses()
+    {
+        return _misses.longValue();
+    }
+
+    /**
+     * @return the number of contents evicted to respect the cache limits
+     */
+    @ManagedAttribute(value = "The number of cache evictions", readonly = true)
+    public long getEvictions()
+    {
+        return _evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the cache statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
+    /**
+     * @return the policy that chooses the contents to evict
+     */
+    public ContentEvictionPolicy getEvictionPolicy()
+    {
+        return _evictionPolicy;
+    }
+
+    /**
+     * <p>Sets the policy that chooses the contents to evict when the cache limits
+     * are exceeded; by default a {@link ContentEvictionPolicy.WindowTinyLfu} policy.</p>
+     * <p>The policy must be set before the cache is used.</p>
+     *
+     * @param evictionPolicy the policy that chooses the contents to evict
+     */
+    public void setEvictionPolicy(ContentEvictionPolicy evictionPolicy)
+    {
+        _evictionPolicy = Objects.requireNonNull(evictionPolicy);
+    }
+
+    @ManagedAttribute("The max size in bytes of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -107,6 +181,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         shrinkCache();
     }
 
+    @ManagedAttribute("The max size in bytes of the cached buffers")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -121,6 +196,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The max number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -140,6 +216,37 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return _useFileMappedBuffer;
     }
 
+    /**
+     * @return whether compressed variants of the cached contents are generated and cached
+     * @see #setCompressCachedContent(boolean)
+     */
+    @ManagedAttribute("Whether compressed variants of the cached contents are generated and cached")
+    public boolean isCompressCachedContent()
+    {
+        return _compressCachedContent;
+    }
+
+    /**
+     * <p>Sets whether compressed variants of the cached contents are generated and cached.</p>
+     * <p>When enabled, the first time the precompressed contents of a cached content are
+     * requested, the content is compressed in memory with each of the precompressed formats
+     * for which there is no precompressed resource, and the compressed bytes are cached
+     * along with the content, so that later requests with a matching {@code Accept-Encoding}
+     * are served without compressing the content again.
+     * The compressed variants count towards {@link #getMaxCacheSize() maxCacheSize} and
+     * are evicted with their content.</p>
+     * <p>Since the variants are served with a {@code Content-Encoding} header, a
+     * {@link org.eclipse.jetty.server.handler.gzip.GzipHandler} does not compress them again.</p>
+     *
+     * @param compressCachedContent whether compressed variants of the cached contents are generated and cached
+     * @see #compress(CompressedContentFormat, ByteBuffer)
+     */
+    public void setCompressCachedContent(boolean compressCachedContent)
+    {
+        _compressCachedContent = compressCachedContent;
+    }
+
+    @ManagedOperation(value = "Flushes the cache", impact = "ACTION")
     public void flushCache()
     {
         while (_cache.size() > 0)
@@ -148,7 +255,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             {
                 CachedHttpContent content = _cache.remove(path);
                 if (content != null)
+                {
+                    _evictionPolicy.onRemoved(content);
                     content.invalidate();
+                }
             }
         }
     }
@@ -169,9 +279,14 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     public HttpContent getContent(String pathInContext, int maxBufferSize) throws IOException
     {
         // Is the content in this cache?
+        _evictionPolicy.onAccess(pathInContext);
         CachedHttpContent content = _cache.get(pathInContext);
         if (content != null && (content).isValid())
+        {
+            _hits.increment();
             return content;
+        }
+        _misses.increment();
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -240,6 +355,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                                 compressedContent.invalidate();
                                 compressedContent = added;
                             }
+                            else
+                            {
+                                _evictionPolicy.onAdded(compressedContent);
+                            }
                         }
                     }
                     if (compressedContent != null)
@@ -257,6 +376,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content.invalidate();
                 content = added;
             }
+            else
+            {
+                _evictionPolicy.onAdded(content);
+            }
 
             return content;
         }
@@ -290,36 +413,43 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
     private void shrinkCache()
     {
-        // While we need to shrink
+        // While we need to shrink, evict the contents chosen by the policy.
         while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
+            CachedHttpContent content = _evictionPolicy.evict();
+            if (content == null)
+                break;
+            if (_cache.remove(content.getKey(), content))
             {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
-
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
-
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
-
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
-
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
-            {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
-                    break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+                _evictions.increment();
+                content.invalidate();
             }
         }
     }
 
+    /**
+     * <p>Compresses the given content with the given format.</p>
+     * <p>The default implementation only supports the {@code gzip} encoding;
+     * subclasses may override this method to support other encodings.</p>
+     *
+     * @param format the compression format
+     * @param content the content to compress
+     * @return the compressed content, or null if the format is not supported
+     * @throws IOException if the content cannot be compressed
+     * @see #setCompressCachedContent(boolean)
+     */
+    protected ByteBuffer compress(CompressedContentFormat format, ByteBuffer content) throws IOException
+    {
+        if (!CompressedContentFormat.GZIP._encoding.equalsIgnoreCase(format._encoding))
+            return null;
+        ByteArrayOutputStream2 output = new ByteArrayOutputStream2(content.remaining() / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output))
+        {
+            BufferUtil.writeTo(content.slice(), gzip);
+        }
+        return ByteBuffer.wrap(output.getBuf(), 0, output.getCount());
+    }
+
     protected ByteBuffer getIndirectBuffer(Resource resource)
     {
         try
@@ -368,7 +498,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     @Override
     public String toString()
     {
-        return "ResourceCache[" + _parent + "," + _factory + "]@" + hashCode();
+        return "ResourceCache[" + _parent + "," + _factory + "," + _evictionPolicy + "]@" + hashCode();
     }
 
     /**
@@ -390,7 +520,12 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
+        private final Map<CompressedContentFormat, CachedCompressedHttpContent> _compressed = new ConcurrentHashMap<>();
+        private final Set<CompressedContentFormat> _incompressible = ConcurrentHashMap.newKeySet();
+        private final Set<CompressedContentFormat> _compressing = ConcurrentHashMap.newKeySet();
+        private final AutoLock _lock = new AutoLock();
+        private volatile long _compressedSize;
+        private boolean _invalid;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
@@ -413,8 +548,6 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
                 shrinkCache();
 
-            _lastAccessed = System.currentTimeMillis();
-
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
             if (precompressedResources != null)
@@ -441,6 +574,14 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return _key != null;
         }
 
+        /**
+         * @return the number of bytes of this content and of its cached compressed variants
+         */
+        public long getWeight()
+        {
+            return _contentLengthValue + _compressedSize;
+        }
+
         @Override
         public Resource getResource()
         {
@@ -462,13 +603,13 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         boolean isValid()
         {
             if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
-            {
-                _lastAccessed = System.currentTimeMillis();
                 return true;
-            }
 
-            if (this == _cache.remove(_key))
+            if (_cache.remove(_key, this))
+            {
+                _evictionPolicy.onRemoved(this);
                 invalidate();
+            }
             return false;
         }
 
@@ -484,6 +625,17 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
             _mappedBuffer.getAndSet(null);
 
+            try (AutoLock l = _lock.lock())
+            {
+                _invalid = true;
+                for (CachedCompressedHttpContent compressed : _compressed.values())
+                {
+                    _cachedSize.addAndGet(-(int)compressed.getContentLengthValue());
+                }
+                _compressed.clear();
+                _compressedSize = 0;
+            }
+
             _cachedFiles.decrementAndGet();
             _resource.close();
         }
@@ -653,6 +805,26 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
         @Override
         public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+        {
+            Map<CompressedContentFormat, ? extends HttpContent> precompressed = getValidPrecompressedContents();
+            if (!_compressCachedContent)
+                return precompressed;
+
+            for (CompressedContentFormat format : _precompressedFormats)
+            {
+                if (precompressed == null || !precompressed.containsKey(format))
+                    compress(format);
+            }
+            if (_compressed.isEmpty())
+                return precompressed;
+            if (precompressed == null)
+                return _compressed;
+            Map<CompressedContentFormat, HttpContent> ret = new HashMap<>(precompressed);
+            ret.putAll(_compressed);
+            return ret;
+        }
+
+        private Map<CompressedContentFormat, ? extends HttpContent> getValidPrecompressedContents()
         {
             if (_precompressed.size() == 0)
                 return null;
@@ -668,6 +840,146 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             }
             return ret;
         }
+
+        private void compress(CompressedContentFormat format)
+        {
+            if (_compressed.containsKey(format) || _incompressible.contains(format))
+                return;
+
+            // Only one request compresses the content, the concurrent
+            // requests are served the uncompressed content meanwhile.
+            if (!_compressing.add(format))
+                return;
+
+            try
+            {
+                ByteBuffer compressed = null;
+                if (_contentLengthValue >= MIN_COMPRESS_SIZE)
+                {
+                    ByteBuffer content = getIndirectBuffer();
+                    if (content != null)
+                    {
+                        try
+                        {
+                            compressed = CachedContentFactory.this.compress(format, content);
+                        }
+                        catch (IOException x)
+                        {
+                            if (LOG.isDebugEnabled())
+                                LOG.debug("Could not compress {} with {}", this, format._encoding, x);
+                        }
+                    }
+                }
+
+                // Do not retry contents that cannot be compressed, or that do not shrink.
+                if (compressed == null || compressed.remaining() >= _contentLengthValue)
+                {
+                    _incompressible.add(format);
+                    return;
+                }
+
+                CachedCompressedHttpContent content = new CachedCompressedHttpContent(this, compressed, format);
+                try (AutoLock l = _lock.lock())
+                {
+                    // The content may have been invalidated while it was compressed.
+                    if (_invalid || _compressed.putIfAbsent(format, content) != null)
+                        return;
+                    _compressedSize += compressed.remaining();
+                    _cachedSize.addAndGet(compressed.remaining());
+                }
+                _evictionPolicy.onResized(this);
+                if (_cachedSize.get() > _maxCacheSize)
+                    shrinkCache();
+            }
+            finally
+            {
+                _compressing.remove(format);
+            }
+        }
+    }
+
+    /**
+     * <p>A compressed variant of a {@link CachedHttpContent}, whose
+     * compressed bytes are held in memory rather than by a resource.</p>
+     */
+    public class CachedCompressedHttpContent extends PrecompressedHttpContent
+    {
+        private final CachedHttpContent _content;
+        private final ByteBuffer _buffer;
+        private final CompressedContentFormat _format;
+        private final HttpField _contentLength;
+        private final HttpField _etag;
+
+        CachedCompressedHttpContent(CachedHttpContent content, ByteBuffer buffer, CompressedContentFormat format)
+        {
+            // There is no precompressed resource, the compressed
+            // content methods are overridden to use the buffer.
+            super(content, content, format);
+            _content = content;
+            _buffer = buffer;
+            _format = format;
+            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(buffer.remaining()));
+            _etag = (CachedContentFactory.this._etags) ? new PreEncodedHttpField(HttpHeader.ETAG, _content.getResource().getWeakETag(format._etag)) : null;
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            if (_etag != null)
+                return _etag;
+            return super.getETag();
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            if (_etag != null)
+                return _etag.getValue();
+            return super.getETagValue();
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            return _buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            return null;
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return new ByteArrayInputStream(_buffer.array(), _buffer.arrayOffset() + _buffer.position(), _buffer.remaining());
+        }
+
+        @Override
+        public ReadableByteChannel getReadableByteChannel()
+        {
+            return Channels.newChannel(getInputStream());
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("CachedCompressedHttpContent@%x{e=%s,r=%s,lm=%s,l=%d}", hashCode(), _format._encoding,
+                _content.getResource(), _content.getLastModified(), _buffer.remaining());
+        }
     }
 
     public class CachedPrecompressedHttpContent extends PrecompressedHttpContent
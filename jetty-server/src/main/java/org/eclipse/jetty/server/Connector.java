@@ -19,6 +19,7 @@ import java.util.concurrent.Executor;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.RetainableByteBufferPool;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -55,6 +56,14 @@ public interface Connector extends LifeCycle, Container, Graceful
      */
     public ByteBufferPool getByteBufferPool();
 
+    /**
+     * @return the {@link RetainableByteBufferPool} to acquire reference counted buffers from
+     */
+    public default RetainableByteBufferPool getRetainableByteBufferPool()
+    {
+        return RetainableByteBufferPool.findOrAdapt(this, getByteBufferPool());
+    }
+
     /**
      * @param nextProtocol the next protocol
      * @return the {@link ConnectionFactory} associated with the protocol name
@@ -0,0 +1,104 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.util.ProcessorUtils;
+
+/**
+ * <p>A lossy, striped buffer of the paths of the accessed contents.</p>
+ * <p>Request threads record accesses without locking, each in the stripe selected
+ * by its thread id; when a stripe is full, or when another thread is concurrently
+ * recording in the same stripe, the access is dropped, since eviction policies only
+ * need a sample of the accesses.</p>
+ * <p>The buffer has a single consumer: the eviction policy drains it while holding
+ * its lock, before modifying its state.</p>
+ */
+class ContentAccessBuffer
+{
+    private static final int STRIPE_CAPACITY = 32;
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe[] stripes;
+
+    ContentAccessBuffer()
+    {
+        int processors = Math.min(MAX_STRIPES, 2 * ProcessorUtils.availableProcessors());
+        stripes = new Stripe[Integer.highestOneBit(Math.max(1, processors - 1)) << 1];
+        for (int i = 0; i < stripes.length; ++i)
+        {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @param pathInContext the path of the accessed content
+     * @return whether the access has been recorded
+     */
+    boolean offer(String pathInContext)
+    {
+        long id = Thread.currentThread().getId();
+        int hash = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        long tail = stripe.tail.get();
+        if (tail - stripe.head >= STRIPE_CAPACITY)
+            return false;
+        if (!stripe.tail.compareAndSet(tail, tail + 1))
+            return false;
+        stripe.slots.lazySet(index(tail), pathInContext);
+        return true;
+    }
+
+    /**
+     * <p>Drains the recorded accesses, in the order they have been recorded
+     * by each thread; must be called with the lock of the policy held.</p>
+     *
+     * @param consumer the consumer of the paths of the accessed contents
+     */
+    void drainTo(Consumer<String> consumer)
+    {
+        for (Stripe stripe : stripes)
+        {
+            long head = stripe.head;
+            long tail = stripe.tail.get();
+            while (head < tail)
+            {
+                int index = index(head);
+                String pathInContext = stripe.slots.get(index);
+                // The access has been reserved but not yet published.
+                if (pathInContext == null)
+                    break;
+                stripe.slots.lazySet(index, null);
+                consumer.accept(pathInContext);
+                ++head;
+            }
+            stripe.head = head;
+        }
+    }
+
+    private static int index(long position)
+    {
+        return (int)position & (STRIPE_CAPACITY - 1);
+    }
+
+    private static class Stripe
+    {
+        private final AtomicReferenceArray<String> slots = new AtomicReferenceArray<>(STRIPE_CAPACITY);
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+    }
+}
@@ -0,0 +1,372 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.server.CachedContentFactory.CachedHttpContent;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>The policy used by {@link CachedContentFactory} to choose which
+ * cached contents to evict when the cache limits are exceeded.</p>
+ * <p>The cache notifies the policy of every lookup, of the contents
+ * added to the cache and of the contents removed from the cache; when
+ * the cache needs to shrink, it repeatedly asks the policy for the next
+ * content to evict.</p>
+ * <p>Implementations must be thread safe, and should perform each
+ * operation in constant time, since they are invoked by request threads.
+ * The implementations provided record the lookups in a lossy buffer
+ * without locking, and apply them only when the cache is modified.</p>
+ *
+ * @see CachedContentFactory#setEvictionPolicy(ContentEvictionPolicy)
+ */
+public interface ContentEvictionPolicy
+{
+    /**
+     * <p>Invoked when the content for the given path is looked up,
+     * whether the content is cached or not.</p>
+     * <p>This method is invoked for every request, so it should not
+     * contend on locks shared with other requests.</p>
+     *
+     * @param pathInContext the path of the content
+     */
+    void onAccess(String pathInContext);
+
+    /**
+     * @param content the content added to the cache
+     */
+    void onAdded(CachedHttpContent content);
+
+    /**
+     * <p>Invoked when the content has been removed from the cache other
+     * than by {@link #evict()}, for example because it is not valid anymore.</p>
+     *
+     * @param content the content removed from the cache
+     */
+    void onRemoved(CachedHttpContent content);
+
+    /**
+     * <p>Invoked when the number of bytes held by a cached content changes,
+     * for example because a compressed variant of the content has been cached.</p>
+     *
+     * @param content the resized content
+     * @see CachedHttpContent#getWeight()
+     */
+    default void onResized(CachedHttpContent content)
+    {
+    }
+
+    /**
+     * <p>Chooses the next content to evict, and forgets it.</p>
+     *
+     * @return the content to evict, or null if there are no contents
+     */
+    CachedHttpContent evict();
+
+    /**
+     * <p>Evicts the least recently used content.</p>
+     */
+    class LeastRecentlyUsed implements ContentEvictionPolicy
+    {
+        private final AutoLock lock = new AutoLock();
+        private final ContentAccessBuffer accesses = new ContentAccessBuffer();
+        private final LinkedHashMap<String, CachedHttpContent> contents = new LinkedHashMap<>(16, 0.75F, true);
+
+        @Override
+        public void onAccess(String pathInContext)
+        {
+            accesses.offer(pathInContext);
+        }
+
+        private void drain()
+        {
+            // Moves the accessed contents, if present, to the most recently used position.
+            accesses.drainTo(contents::get);
+        }
+
+        @Override
+        public void onAdded(CachedHttpContent content)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                drain();
+                contents.put(content.getKey(), content);
+            }
+        }
+
+        @Override
+        public void onRemoved(CachedHttpContent content)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                drain();
+                contents.remove(content.getKey(), content);
+            }
+        }
+
+        @Override
+        public CachedHttpContent evict()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                drain();
+                return removeEldest(contents);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                return String.format("%s@%x{size=%d}", getClass().getSimpleName(), hashCode(), contents.size());
+            }
+        }
+    }
+
+    /**
+     * <p>A size aware Window TinyLFU policy, where the size of a content
+     * is its {@link CachedHttpContent#getWeight() weight}.</p>
+     * <p>The access frequency of every looked up path, whether cached or not, is
+     * recorded in a compact {@link FrequencySketch count-min sketch} that is
+     * periodically aged, so that it adapts to changing workloads.</p>
+     * <p>Added contents enter a small LRU <em>window</em> that holds about
+     * {@code 1%} of the cached bytes, and overflow to the LRU <em>main</em> area.
+     * When the cache is full, the eldest window content is a candidate for the main
+     * area, and is admitted only if it has been accessed more frequently than the
+     * main area eviction victim, otherwise it is evicted.
+     * This keeps one-hit-wonder contents from evicting popular ones.</p>
+     * <p>The main area is split in a <em>probation</em> segment, where admitted
+     * contents start, and a <em>protected</em> segment, that holds about {@code 80%}
+     * of the main area bytes, where contents are promoted when accessed again
+     * while on probation.</p>
+     */
+    class WindowTinyLfu implements ContentEvictionPolicy
+    {
+        private final AutoLock lock = new AutoLock();
+        private final LinkedHashMap<String, CachedHttpContent> window = new LinkedHashMap<>(16, 0.75F, true);
+        private final LinkedHashMap<String, CachedHttpContent> probation = new LinkedHashMap<>(16, 0.75F, true);
+        private final LinkedHashMap<String, CachedHttpContent> protect = new LinkedHashMap<>(16, 0.75F, true);
+        private final Map<CachedHttpContent, Long> weights = new HashMap<>();
+        private final ContentAccessBuffer accesses = new ContentAccessBuffer();
+        private final FrequencySketch sketch = new FrequencySketch();
+        private long windowWeight;
+        private long probationWeight;
+        private long protectedWeight;
+
+        @Override
+        public void onAccess(String pathInContext)
+        {
+            accesses.offer(pathInContext);
+        }
+
+        private void drain()
+        {
+            accesses.drainTo(this::access);
+        }
+
+        private void access(String pathInContext)
+        {
+            sketch.increment(pathInContext.hashCode());
+
+            // The get() moves the content to the most recently used position.
+            if (window.get(pathInContext) != null || protect.get(pathInContext) != null)
+                return;
+
+            CachedHttpContent content = probation.remove(pathInContext);
+            if (content != null)
+            {
+                long weight = weigh(content);
+                probationWeight -= weight;
+                protect.put(pathInContext, content);
+                protectedWeight += weight;
+
+                // Demote the least recently used protected contents
+                // to keep the protected segment within its share.
+                long maxProtectedWeight = (probationWeight + protectedWeight) * 4 / 5;
+                while (protectedWeight > maxProtectedWeight && protect.size() > 1)
+                {
+                    CachedHttpContent demoted = removeEldest(protect);
+                    weight = weigh(demoted);
+                    protectedWeight -= weight;
+                    probation.put(demoted.getKey(), demoted);
+                    probationWeight += weight;
+                }
+            }
+        }
+
+        @Override
+        public void onAdded(CachedHttpContent content)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                drain();
+                remove(content.getKey(), null);
+                long weight = Math.max(1, content.getWeight());
+                weights.put(content, weight);
+                window.put(content.getKey(), content);
+                windowWeight += weight;
+                sketch.ensureCapacity(window.size() + probation.size() + protect.size());
+
+                // Move the contents that overflow the window to probation.
+                long maxWindowWeight = (windowWeight + probationWeight + protectedWeight) / 100;
+                while (windowWeight > maxWindowWeight && window.size() > 1)
+                {
+                    CachedHttpContent eldest = removeEldest(window);
+                    weight = weigh(eldest);
+                    windowWeight -= weight;
+                    probation.put(eldest.getKey(), eldest);
+                    probationWeight += weight;
+                }
+            }
+        }
+
+        @Override
+        public void onRemoved(CachedHttpContent content)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                drain();
+                remove(content.getKey(), content);
+            }
+        }
+
+        @Override
+        public void onResized(CachedHttpContent content)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                Long oldWeight = weights.get(content);
+                if (oldWeight == null)
+                    return;
+                long weight = Math.max(1, content.getWeight());
+                weights.put(content, weight);
+                long delta = weight - oldWeight;
+                String key = content.getKey();
+                if (window.containsKey(key))
+                    windowWeight += delta;
+                else if (probation.containsKey(key))
+                    probationWeight += delta;
+                else
+                    protectedWeight += delta;
+            }
+        }
+
+        @Override
+        public CachedHttpContent evict()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                drain();
+                // The eldest window content is a candidate for the main area.
+                CachedHttpContent candidate = null;
+                if (!window.isEmpty())
+                    candidate = window.values().iterator().next();
+
+                CachedHttpContent victim = null;
+                if (!probation.isEmpty())
+                    victim = probation.values().iterator().next();
+                else if (!protect.isEmpty())
+                    victim = protect.values().iterator().next();
+
+                if (candidate != null && victim != null && admit(candidate, victim))
+                {
+                    // The candidate is admitted to the main area, in probation.
+                    window.remove(candidate.getKey());
+                    long weight = weigh(candidate);
+                    windowWeight -= weight;
+                    probation.put(candidate.getKey(), candidate);
+                    probationWeight += weight;
+                    candidate = null;
+                }
+
+                CachedHttpContent evicted = candidate != null ? candidate : victim;
+                if (evicted != null)
+                    remove(evicted.getKey(), evicted);
+                return evicted;
+            }
+        }
+
+        private boolean admit(CachedHttpContent candidate, CachedHttpContent victim)
+        {
+            int candidateFrequency = sketch.frequency(candidate.getKey().hashCode());
+            int victimFrequency = sketch.frequency(victim.getKey().hashCode());
+            if (candidateFrequency != victimFrequency)
+                return candidateFrequency > victimFrequency;
+            // With equal frequencies, prefer to keep the smaller content.
+            return weigh(candidate) < weigh(victim);
+        }
+
+        private void remove(String key, CachedHttpContent content)
+        {
+            CachedHttpContent removed = remove(window, key, content);
+            if (removed != null)
+            {
+                windowWeight -= weights.remove(removed);
+                return;
+            }
+            removed = remove(probation, key, content);
+            if (removed != null)
+            {
+                probationWeight -= weights.remove(removed);
+                return;
+            }
+            removed = remove(protect, key, content);
+            if (removed != null)
+                protectedWeight -= weights.remove(removed);
+        }
+
+        private static CachedHttpContent remove(LinkedHashMap<String, CachedHttpContent> segment, String key, CachedHttpContent content)
+        {
+            if (content == null)
+                return segment.remove(key);
+            return segment.remove(key, content) ? content : null;
+        }
+
+        private long weigh(CachedHttpContent content)
+        {
+            // The weight when the content was added or last resized,
+            // so that the segment weights are consistent.
+            return weights.get(content);
+        }
+
+        @Override
+        public String toString()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                return String.format("%s@%x{window=%d/%d,probation=%d/%d,protected=%d/%d}",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    window.size(), windowWeight,
+                    probation.size(), probationWeight,
+                    protect.size(), protectedWeight);
+            }
+        }
+    }
+
+    private static CachedHttpContent removeEldest(LinkedHashMap<String, CachedHttpContent> contents)
+    {
+        Iterator<CachedHttpContent> iterator = contents.values().iterator();
+        if (!iterator.hasNext())
+            return null;
+        CachedHttpContent eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+}
@@ -0,0 +1,123 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+/**
+ * <p>A count-min sketch of the access frequencies of items, with 4-bit counters.</p>
+ * <p>Each item is mapped to 4 counters, one for each of 4 hash functions, all held
+ * within the same {@code long}; the estimated frequency of an item is the minimum
+ * value of its counters. When the number of increments reaches 10 times the
+ * capacity, all the counters are halved, so that old accesses are forgotten.</p>
+ * <p>This class is not thread safe, and must be accessed with the lock
+ * of the eviction policy that owns it held.</p>
+ */
+class FrequencySketch
+{
+    private static final long[] SEEDS = {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch()
+    {
+        ensureCapacity(MIN_CAPACITY);
+    }
+
+    /**
+     * <p>Resizes the sketch, if necessary, to accurately estimate the frequency
+     * of the given number of items; resizing forgets all the frequencies.</p>
+     *
+     * @param capacity the number of items
+     */
+    void ensureCapacity(int capacity)
+    {
+        int length = Integer.highestOneBit(Math.max(MIN_CAPACITY, Math.min(capacity, 1 << 30)) - 1) << 1;
+        if (table != null && table.length >= length)
+            return;
+        table = new long[length];
+        sampleSize = 10 * length;
+        size = 0;
+    }
+
+    /**
+     * @param hash the hash code of the item
+     * @return the estimated frequency of the item, between 0 and 15
+     */
+    int frequency(int hash)
+    {
+        hash = spread(hash);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; ++i)
+        {
+            int index = indexOf(hash, i);
+            int count = (int)((table[index] >>> ((start + i) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * <p>Increments the estimated frequency of the item, if it is not already at the max.</p>
+     *
+     * @param hash the hash code of the item
+     */
+    void increment(int hash)
+    {
+        hash = spread(hash);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; ++i)
+        {
+            int index = indexOf(hash, i);
+            long mask = 0xFL << ((start + i) << 2);
+            if ((table[index] & mask) != mask)
+            {
+                table[index] += 1L << ((start + i) << 2);
+                added = true;
+            }
+        }
+        if (added && ++size == sampleSize)
+            reset();
+    }
+
+    private void reset()
+    {
+        int odd = 0;
+        for (int i = 0; i < table.length; ++i)
+        {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int)h) & (table.length - 1);
+    }
+
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45D9F3B;
+        x = ((x >>> 16) ^ x) * 0x45D9F3B;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -52,6 +52,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.SharedBlockingCallback.Blocker;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -209,6 +210,32 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
         return _written;
     }
 
+    /**
+     * @return whether listeners are notified of the response content, so that
+     * the content must be written via {@link #write(ByteBuffer, boolean, Callback)}
+     * @see Listener#onResponseContent(Request, ByteBuffer)
+     */
+    boolean isResponseContentListened()
+    {
+        if (_combinedListener == NOOP_LISTENER || _combinedListener == HttpChannelListeners.NOOP)
+            return false;
+        if (_combinedListener instanceof HttpChannelListeners)
+            return ((HttpChannelListeners)_combinedListener).isResponseContentListener();
+        return true;
+    }
+
+    /**
+     * <p>Accounts response content that has been written to the network
+     * directly by the {@link EndPoint}, rather than via
+     * {@link #write(ByteBuffer, boolean, Callback)}, in {@link #getBytesWritten()}.</p>
+     *
+     * @param length the number of bytes of response content written
+     */
+    void onResponseContentTransferred(long length)
+    {
+        _written += length;
+    }
+
     /**
      * @return the number of requests handled by this connection
      */
@@ -1032,7 +1059,12 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
 
     protected void execute(Runnable task)
     {
-        _executor.execute(task);
+        // The task handles the request, so it may block.
+        Executor virtualThreadsExecutor = VirtualThreads.getVirtualThreadsExecutor(_executor);
+        if (virtualThreadsExecutor != null)
+            virtualThreadsExecutor.execute(task);
+        else
+            _executor.execute(task);
     }
 
     public Scheduler getScheduler()
@@ -194,6 +194,14 @@ public class HttpChannelListeners implements HttpChannel.Listener
         onResponseContent.onContent(request, content);
     }
 
+    /**
+     * @return whether any of the listeners is notified of the response content
+     */
+    public boolean isResponseContentListener()
+    {
+        return onResponseContent != NotifyContent.NOOP;
+    }
+
     @Override
     public void onResponseEnd(Request request)
     {
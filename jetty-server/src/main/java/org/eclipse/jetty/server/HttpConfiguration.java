@@ -66,6 +66,7 @@ public class HttpConfiguration implements Dumpable
     private int _maxErrorDispatches = 10;
     private boolean _useInputDirectByteBuffers = true;
     private boolean _useOutputDirectByteBuffers = true;
+    private boolean _useFileChannelTransfer;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
@@ -135,6 +136,7 @@ public class HttpConfiguration implements Dumpable
         _maxErrorDispatches = config._maxErrorDispatches;
         _useInputDirectByteBuffers = config._useInputDirectByteBuffers;
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
+        _useFileChannelTransfer = config._useFileChannelTransfer;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
         _httpCompliance = config._httpCompliance;
@@ -355,6 +357,27 @@ public class HttpConfiguration implements Dumpable
         return _useOutputDirectByteBuffers;
     }
 
+    /**
+     * <p>Sets whether static file content that is not buffered in memory is written
+     * to the network with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * avoiding the copy of the file bytes into user space buffers.</p>
+     * <p>The transfer is only possible for cleartext HTTP/1.1 connections when no
+     * {@link HttpOutput.Interceptor} (for example, for gzip) is active; in all other
+     * cases the content is written via buffers as usual.</p>
+     *
+     * @param useFileChannelTransfer whether to use {@code FileChannel.transferTo()} to write file content
+     */
+    public void setUseFileChannelTransfer(boolean useFileChannelTransfer)
+    {
+        _useFileChannelTransfer = useFileChannelTransfer;
+    }
+
+    @ManagedAttribute("Whether to use FileChannel.transferTo() to write file content")
+    public boolean isUseFileChannelTransfer()
+    {
+        return _useFileChannelTransfer;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
@@ -17,7 +17,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.BadMessageException;
@@ -35,6 +35,8 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.io.RetainableByteBufferPool;
 import org.eclipse.jetty.io.WriteFlusher;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -56,12 +58,12 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     private final HttpConfiguration _config;
     private final Connector _connector;
     private final ByteBufferPool _bufferPool;
+    private final RetainableByteBufferPool _retainableByteBufferPool;
     private final HttpInput _input;
     private final HttpGenerator _generator;
     private final HttpChannelOverHttp _channel;
     private final HttpParser _parser;
-    private final AtomicInteger _contentBufferReferences = new AtomicInteger();
-    private volatile ByteBuffer _requestBuffer = null;
+    private volatile RetainableByteBuffer _requestBuffer = null;
     private final AsyncReadCallback _asyncReadCallback = new AsyncReadCallback();
     private final SendCallback _sendCallback = new SendCallback();
     private final boolean _recordHttpComplianceViolations;
@@ -96,6 +98,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         _config = config;
         _connector = connector;
         _bufferPool = _connector.getByteBufferPool();
+        _retainableByteBufferPool = _connector.getRetainableByteBufferPool();
         _generator = newHttpGenerator();
         _channel = newHttpChannel();
         _input = _channel.getRequest().getHttpInput();
@@ -198,10 +201,10 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     @Override
     public ByteBuffer onUpgradeFrom()
     {
-        if (BufferUtil.hasContent(_requestBuffer))
+        if (!isRequestBufferEmpty())
         {
             ByteBuffer unconsumed = ByteBuffer.allocateDirect(_requestBuffer.remaining());
-            unconsumed.put(_requestBuffer);
+            unconsumed.put(_requestBuffer.getBuffer());
             unconsumed.flip();
             releaseRequestBuffer();
             return unconsumed;
@@ -223,15 +226,20 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         _channel.getResponse().getHttpOutput().onFlushed(bytes);
     }
 
+    /**
+     * <p>Releases this connection's reference to the request buffer, if it has been fully parsed.</p>
+     * <p>Content chunks that are slices of the request buffer retain it, so the buffer
+     * is only returned to the pool when the last of those chunks is released.</p>
+     */
     void releaseRequestBuffer()
     {
-        if (_requestBuffer != null && !_requestBuffer.hasRemaining())
+        RetainableByteBuffer buffer = _requestBuffer;
+        if (buffer != null && !buffer.hasRemaining())
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("releaseRequestBuffer {}", this);
-            ByteBuffer buffer = _requestBuffer;
             _requestBuffer = null;
-            _bufferPool.release(buffer);
+            buffer.release();
         }
     }
 
@@ -240,21 +248,28 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         if (_requestBuffer == null)
         {
             boolean useDirectByteBuffers = isUseInputDirectByteBuffers();
-            _requestBuffer = _bufferPool.acquire(getInputBufferSize(), useDirectByteBuffers);
+            _requestBuffer = _retainableByteBufferPool.acquire(getInputBufferSize(), useDirectByteBuffers);
         }
-        return _requestBuffer;
+        return _requestBuffer.getBuffer();
     }
 
     public boolean isRequestBufferEmpty()
     {
-        return BufferUtil.isEmpty(_requestBuffer);
+        RetainableByteBuffer buffer = _requestBuffer;
+        return buffer == null || buffer.isEmpty();
+    }
+
+    private String requestBufferToDetailString()
+    {
+        RetainableByteBuffer buffer = _requestBuffer;
+        return buffer == null ? "null" : buffer.toString();
     }
 
     @Override
     public void onFillable()
     {
         if (LOG.isDebugEnabled())
-            LOG.debug("{} onFillable enter {} {}", this, _channel.getState(), BufferUtil.toDetailString(_requestBuffer));
+            LOG.debug("{} onFillable enter {} {}", this, _channel.getState(), requestBufferToDetailString());
 
         HttpConnection last = setCurrentConnection(this);
         try
@@ -304,7 +319,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         {
             setCurrentConnection(last);
             if (LOG.isDebugEnabled())
-                LOG.debug("{} onFillable exit {} {}", this, _channel.getState(), BufferUtil.toDetailString(_requestBuffer));
+                LOG.debug("{} onFillable exit {} {}", this, _channel.getState(), requestBufferToDetailString());
         }
     }
 
@@ -327,32 +342,34 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
 
     private int fillRequestBuffer()
     {
-        if (_contentBufferReferences.get() > 0)
+        if (isRequestBufferEmpty())
         {
-            LOG.warn("{} fill with unconsumed content!", this);
-            return 0;
-        }
+            if (_requestBuffer != null && _requestBuffer.isRetained())
+            {
+                // The empty buffer is still referenced by unconsumed content,
+                // do not refill it and risk compaction: get a fresh one.
+                _requestBuffer.release();
+                _requestBuffer = null;
+            }
 
-        if (BufferUtil.isEmpty(_requestBuffer))
-        {
             // Get a buffer
             // We are not in a race here for the request buffer as we have not yet received a request,
             // so there are not an possible legal threads calling #parseContent or #completed.
-            _requestBuffer = getRequestBuffer();
+            ByteBuffer requestBuffer = getRequestBuffer();
 
             // fill
             try
             {
-                int filled = getEndPoint().fill(_requestBuffer);
+                int filled = getEndPoint().fill(requestBuffer);
                 if (filled == 0) // Do a retry on fill 0 (optimization for SSL connections)
-                    filled = getEndPoint().fill(_requestBuffer);
+                    filled = getEndPoint().fill(requestBuffer);
 
                 // tell parser
                 if (filled < 0)
                     _parser.atEOF();
 
                 if (LOG.isDebugEnabled())
-                    LOG.debug("{} filled {} {}", this, filled, BufferUtil.toDetailString(_requestBuffer));
+                    LOG.debug("{} filled {} {}", this, filled, requestBufferToDetailString());
 
                 return filled;
             }
@@ -369,16 +386,16 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     private boolean parseRequestBuffer()
     {
         if (LOG.isDebugEnabled())
-            LOG.debug("{} parse {}", this, BufferUtil.toDetailString(_requestBuffer));
+            LOG.debug("{} parse {}", this, requestBufferToDetailString());
 
-        boolean handle = _parser.parseNext(_requestBuffer == null ? BufferUtil.EMPTY_BUFFER : _requestBuffer);
+        RetainableByteBuffer requestBuffer = _requestBuffer;
+        boolean handle = _parser.parseNext(requestBuffer == null ? BufferUtil.EMPTY_BUFFER : requestBuffer.getBuffer());
 
         if (LOG.isDebugEnabled())
             LOG.debug("{} parsed {} {}", this, handle, _parser);
 
-        // recycle buffer ?
-        if (_contentBufferReferences.get() == 0)
-            releaseRequestBuffer();
+        // Release our reference to the buffer, content chunks may still retain it.
+        releaseRequestBuffer();
 
         return handle;
     }
@@ -396,16 +413,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         _channel.recycle();
         _parser.reset();
         _generator.reset();
-        if (_contentBufferReferences.get() == 0)
-        {
-            releaseRequestBuffer();
-        }
-        else
-        {
-            LOG.warn("{} lingering content references?!?!", this);
-            _requestBuffer = null; // Not returned to pool!
-            _contentBufferReferences.set(0);
-        }
+        releaseRequestBuffer();
         return true;
     }
 
@@ -450,7 +458,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             if (_parser.isStart())
             {
                 // if the buffer is empty
-                if (BufferUtil.isEmpty(_requestBuffer))
+                if (isRequestBufferEmpty())
                 {
                     // look for more data
                     fillInterested();
@@ -549,7 +557,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
 
     HttpInput.Content newContent(ByteBuffer c)
     {
-        return new Content(c);
+        return new Content(c, _requestBuffer);
     }
 
     @Override
@@ -602,26 +610,25 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             _channel);
     }
 
-    private class Content extends HttpInput.Content
+    private static class Content extends HttpInput.Content
     {
-        public Content(ByteBuffer content)
+        private final AtomicReference<RetainableByteBuffer> _retained;
+
+        public Content(ByteBuffer content, RetainableByteBuffer buffer)
         {
             super(content);
-            _contentBufferReferences.incrementAndGet();
+            if (buffer != null)
+                buffer.retain();
+            _retained = new AtomicReference<>(buffer);
         }
 
         @Override
         public void succeeded()
         {
-            int counter = _contentBufferReferences.decrementAndGet();
-            if (counter == 0)
-                releaseRequestBuffer();
-            // TODO: this should do something (warn? fail?) if _contentBufferReferences goes below 0
-            if (counter < 0)
-            {
-                LOG.warn("Content reference counting went below zero: {}", counter);
-                _contentBufferReferences.incrementAndGet();
-            }
+            // Release the request buffer slice only once.
+            RetainableByteBuffer buffer = _retained.getAndSet(null);
+            if (buffer != null)
+                buffer.release();
         }
 
         @Override
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
@@ -32,7 +33,10 @@ import javax.servlet.WriteListener;
 
 import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.NetworkTrafficSocketChannelEndPoint;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IO;
@@ -1280,6 +1284,14 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
         if (rbc != null)
         {
+            SocketChannelEndPoint endPoint = getFileChannelTransferEndPoint(httpContent);
+            if (endPoint != null && rbc instanceof FileChannel)
+            {
+                // Close of the file channel is done by the transfer
+                sendContent(endPoint, (FileChannel)rbc, httpContent.getContentLengthValue(), callback);
+                return;
+            }
+
             // Close of the rbc is done by the async sendContent
             sendContent(rbc, callback);
             return;
@@ -1306,6 +1318,52 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         callback.failed(cause);
     }
 
+    /**
+     * @param httpContent the content to send
+     * @return the endpoint to transfer the content to with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * or null if the content must be written via buffers
+     * @see HttpConfiguration#isUseFileChannelTransfer()
+     */
+    private SocketChannelEndPoint getFileChannelTransferEndPoint(HttpContent httpContent)
+    {
+        if (!_channel.getHttpConfiguration().isUseFileChannelTransfer())
+            return null;
+        // Interceptors, for example for gzip, must see the content bytes.
+        if (_interceptor != _channel)
+            return null;
+        // Only cleartext HTTP/1.1 connections write directly to the socket;
+        // TLS and HTTP/2 endpoints are not SocketChannelEndPoints.
+        EndPoint endPoint = _channel.getEndPoint();
+        if (!(endPoint instanceof SocketChannelEndPoint) || endPoint instanceof NetworkTrafficSocketChannelEndPoint)
+            return null;
+        if (_channel.getRequest().isHead())
+            return null;
+        // Listeners must be notified of the content bytes.
+        if (_channel.isResponseContentListened())
+            return null;
+        // The transferred bytes must be framed by the Content-Length header.
+        long contentLength = httpContent.getContentLengthValue();
+        if (contentLength <= 0 || _channel.getResponse().getLongContentLength() != contentLength)
+            return null;
+        return (SocketChannelEndPoint)endPoint;
+    }
+
+    private void sendContent(SocketChannelEndPoint endPoint, FileChannel file, long length, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendContent(file={},length={},{})", file, length, callback);
+
+        if (prepareSendContent(0, callback))
+        {
+            _written += length;
+            new FileChannelTransferCB(endPoint, file, length, callback).iterate();
+        }
+        else
+        {
+            IO.close(file);
+        }
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -1817,6 +1875,63 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * <p>Commits the response headers, transfers the file content directly
+     * to the socket and then completes the response.</p>
+     * <p>The transferred bytes are accounted in {@link HttpChannel#getBytesWritten()},
+     * but are not seen by {@link HttpChannel.Listener#onResponseContent(Request, ByteBuffer)},
+     * so the transfer is not used when there are such listeners.</p>
+     */
+    private class FileChannelTransferCB extends NestedChannelWriteCB
+    {
+        private final SocketChannelEndPoint _endPoint;
+        private final FileChannel _file;
+        private final long _length;
+        private int _step;
+
+        FileChannelTransferCB(SocketChannelEndPoint endPoint, FileChannel file, long length, Callback callback)
+        {
+            super(callback, true);
+            _endPoint = endPoint;
+            _file = file;
+            _length = length;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            switch (_step++)
+            {
+                case 0:
+                    // The file must still match the Content-Length
+                    // header, that is sent before the file content.
+                    long size = _file.size();
+                    if (size != _length)
+                        throw new IOException(String.format("File size %d != Content-Length %d", size, _length));
+                    // Commit and write the response headers.
+                    channelWrite(BufferUtil.EMPTY_BUFFER, false, this);
+                    return Action.SCHEDULED;
+                case 1:
+                    _endPoint.transferFrom(this, _file, 0, _length);
+                    return Action.SCHEDULED;
+                case 2:
+                    _channel.onResponseContentTransferred(_length);
+                    channelWrite(BufferUtil.EMPTY_BUFFER, true, this);
+                    return Action.SCHEDULED;
+                default:
+                    IO.close(_file);
+                    return Action.SUCCEEDED;
+            }
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            IO.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
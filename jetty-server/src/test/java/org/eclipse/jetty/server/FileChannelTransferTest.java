@@ -0,0 +1,166 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class FileChannelTransferTest
+{
+    private final BlockingQueue<String> _log = new LinkedBlockingQueue<>();
+    private final AtomicInteger _transfers = new AtomicInteger();
+    private Server _server;
+    private ServerConnector _connector;
+    private byte[] _content;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        File dir = MavenTestingUtils.getTargetTestingDir(FileChannelTransferTest.class.getSimpleName());
+        _content = new byte[256 * 1024];
+        for (int i = 0; i < _content.length; ++i)
+        {
+            _content[i] = (byte)('a' + i % 26);
+        }
+        Files.write(new File(dir, "file.txt").toPath(), _content);
+
+        _server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setUseFileChannelTransfer(true);
+        _connector = new ServerConnector(_server, new HttpConnectionFactory(config))
+        {
+            @Override
+            protected SocketChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key)
+            {
+                SocketChannelEndPoint endPoint = new SocketChannelEndPoint(channel, selectSet, key, getScheduler())
+                {
+                    @Override
+                    public void transferFrom(Callback callback, FileChannel file, long position, long count)
+                    {
+                        _transfers.incrementAndGet();
+                        super.transferFrom(callback, file, position, count);
+                    }
+                };
+                endPoint.setIdleTimeout(getIdleTimeout());
+                return endPoint;
+            }
+        };
+        _server.addConnector(_connector);
+        ResourceHandler resourceHandler = new ResourceHandler();
+        resourceHandler.setResourceBase(dir.getAbsolutePath());
+        _server.setHandler(resourceHandler);
+        _server.setRequestLog(new CustomRequestLog(_log::offer, "%s %O"));
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testTransferredBytesAreWritten() throws Exception
+    {
+        BlockingQueue<Long> written = new LinkedBlockingQueue<>();
+        _connector.addBean(new HttpChannel.Listener()
+        {
+            @Override
+            public void onComplete(Request request)
+            {
+                written.offer(request.getHttpChannel().getBytesWritten());
+            }
+        });
+        _server.start();
+
+        HttpTester.Response response = get("/file.txt");
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(_content.length, response.getLongField(HttpHeader.CONTENT_LENGTH));
+        assertArrayEquals(_content, response.getContentBytes());
+        assertEquals(1, _transfers.get());
+        assertEquals("200 " + _content.length, _log.poll(5, TimeUnit.SECONDS));
+        assertEquals(_content.length, (long)written.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResponseContentListenerDisablesTransfer() throws Exception
+    {
+        AtomicLong notified = new AtomicLong();
+        _connector.addBean(new HttpChannel.Listener()
+        {
+            @Override
+            public void onResponseContent(Request request, ByteBuffer content)
+            {
+                notified.addAndGet(content.remaining());
+            }
+        });
+        _server.start();
+
+        HttpTester.Response response = get("/file.txt");
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(_content, response.getContentBytes());
+        assertEquals(0, _transfers.get());
+        // The request log is written after the response content is notified.
+        assertEquals("200 " + _content.length, _log.poll(5, TimeUnit.SECONDS));
+        assertThat(notified.get(), is((long)_content.length));
+    }
+
+    private HttpTester.Response get(String path) throws IOException
+    {
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.setSoTimeout(5000);
+            OutputStream output = socket.getOutputStream();
+            output.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            InputStream input = socket.getInputStream();
+            HttpTester.Response response = HttpTester.parseResponse(input);
+            assertNotNull(response);
+            return response;
+        }
+    }
+}
@@ -17,11 +17,20 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpContent;
@@ -31,6 +40,7 @@ import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.resource.PathResource;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceCollection;
@@ -38,11 +48,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(WorkDirExtension.class)
@@ -201,6 +214,8 @@ public class ResourceCacheTest
         directory = Resource.newResource(files[0].getParentFile().getAbsolutePath());
 
         cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        // This test verifies the least recently used eviction order.
+        cache.setEvictionPolicy(new ContentEvictionPolicy.LeastRecentlyUsed());
 
         cache.setMaxCacheSize(95);
         cache.setMaxCachedFileSize(85);
@@ -228,6 +243,7 @@ public class ResourceCacheTest
             assertEquals(0, cache.getCachedFiles());
 
             cache = new CachedContentFactory(null, directory, new MimeTypes(), true, false, CompressedContentFormat.NONE);
+            cache.setEvictionPolicy(new ContentEvictionPolicy.LeastRecentlyUsed());
             cache.setMaxCacheSize(95);
             cache.setMaxCachedFileSize(85);
             cache.setMaxCachedFiles(4);
@@ -356,6 +372,210 @@ public class ResourceCacheTest
         assertEquals(getContent(cache, "four"), "4 - four (no extension)");
     }
 
+    @Test
+    public void testWindowTinyLfuKeepsFrequentContent() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 100; ++i)
+        {
+            makeFile(basePath.resolve("file-" + i + ".txt"), "content " + i);
+        }
+        Resource directory = new PathResource(basePath);
+
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(10);
+        assertThat(cache.getEvictionPolicy(), instanceOf(ContentEvictionPolicy.WindowTinyLfu.class));
+
+        // Make the first 5 files popular.
+        for (int j = 0; j < 5; ++j)
+        {
+            for (int i = 0; i < 5; ++i)
+            {
+                assertEquals("content " + i, getContent(cache, "file-" + i + ".txt"));
+            }
+        }
+
+        // Scan the other files once.
+        for (int i = 5; i < 100; ++i)
+        {
+            assertEquals("content " + i, getContent(cache, "file-" + i + ".txt"));
+        }
+        assertEquals(10, cache.getCachedFiles());
+        assertEquals(90, cache.getEvictions());
+
+        // The popular files have not been evicted by the scan.
+        cache.resetStatistics();
+        for (int i = 0; i < 5; ++i)
+        {
+            assertEquals("content " + i, getContent(cache, "file-" + i + ".txt"));
+        }
+        assertEquals(5, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testLeastRecentlyUsed() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 4; ++i)
+        {
+            makeFile(basePath.resolve("file-" + i + ".txt"), "content " + i);
+        }
+        Resource directory = new PathResource(basePath);
+
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setEvictionPolicy(new ContentEvictionPolicy.LeastRecentlyUsed());
+        cache.setMaxCachedFiles(2);
+
+        getContent(cache, "file-0.txt");
+        getContent(cache, "file-1.txt");
+        // Access file-0 again, so that file-1 is the least recently used.
+        getContent(cache, "file-0.txt");
+        getContent(cache, "file-2.txt");
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+
+        getContent(cache, "file-0.txt");
+        assertEquals(2, cache.getHits());
+        getContent(cache, "file-1.txt");
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testContentAccessBufferIsLossy() throws Exception
+    {
+        ContentAccessBuffer buffer = new ContentAccessBuffer();
+        int recorded = 0;
+        for (int i = 0; i < 1000; ++i)
+        {
+            if (buffer.offer("file-" + i))
+                ++recorded;
+        }
+        assertThat(recorded, lessThan(1000));
+
+        // The accesses recorded by a thread are drained in order.
+        List<String> drained = new ArrayList<>();
+        buffer.drainTo(drained::add);
+        assertEquals(recorded, drained.size());
+        for (int i = 0; i < recorded; ++i)
+        {
+            assertEquals("file-" + i, drained.get(i));
+        }
+
+        // Draining makes room for more accesses.
+        assertTrue(buffer.offer("file-0"));
+        drained.clear();
+        buffer.drainTo(drained::add);
+        assertEquals(List.of("file-0"), drained);
+    }
+
+    @Test
+    public void testCompressCachedContent() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; ++i)
+        {
+            builder.append("body { color: black; }\n");
+        }
+        String css = builder.toString();
+        makeFile(basePath.resolve("style.css"), css);
+        makeFile(basePath.resolve("small.css"), "p {}");
+        makeFile(basePath.resolve("precompressed.css"), css);
+        makeFile(basePath.resolve("precompressed.css.gz"), "precompressed");
+        Resource directory = new PathResource(basePath);
+
+        CompressedContentFormat[] formats = {CompressedContentFormat.GZIP};
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, true, formats);
+        cache.setCompressCachedContent(true);
+
+        HttpContent content = cache.getContent("style.css", 4096);
+        Map<CompressedContentFormat, ? extends HttpContent> variants = content.getPrecompressedContents();
+        HttpContent gzip = variants.get(CompressedContentFormat.GZIP);
+        assertThat(gzip.getContentLengthValue(), lessThan((long)css.length()));
+        assertEquals(css.length() + gzip.getContentLengthValue(), cache.getCachedSize());
+        // The compressed variant is part of the eviction weight.
+        assertEquals(css.length() + gzip.getContentLengthValue(), ((CachedContentFactory.CachedHttpContent)content).getWeight());
+        assertEquals("gzip", gzip.getContentEncodingValue());
+        assertEquals(content.getResource().getWeakETag(CompressedContentFormat.GZIP._etag), gzip.getETagValue());
+        try (InputStream input = new GZIPInputStream(gzip.getInputStream()))
+        {
+            assertEquals(css, IO.toString(input, UTF_8));
+        }
+
+        // The compressed variant is cached.
+        assertSame(gzip, cache.getContent("style.css", 4096).getPrecompressedContents().get(CompressedContentFormat.GZIP));
+
+        // Too small to be compressed.
+        assertThat(cache.getContent("small.css", 4096).getPrecompressedContents(), nullValue());
+
+        // The precompressed resource is preferred.
+        HttpContent precompressed = cache.getContent("precompressed.css", 4096).getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        assertEquals("precompressed".length(), precompressed.getContentLengthValue());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedSize());
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testCompressInvalidatedContent() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; ++i)
+        {
+            builder.append("body { color: black; }\n");
+        }
+        String css = builder.toString();
+        makeFile(basePath.resolve("style.css"), css);
+        Resource directory = new PathResource(basePath);
+
+        AtomicInteger compressions = new AtomicInteger();
+        CountDownLatch compressLatch = new CountDownLatch(1);
+        CountDownLatch invalidateLatch = new CountDownLatch(1);
+        CompressedContentFormat[] formats = {CompressedContentFormat.GZIP};
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, true, formats)
+        {
+            @Override
+            protected ByteBuffer compress(CompressedContentFormat format, ByteBuffer content) throws IOException
+            {
+                compressions.incrementAndGet();
+                compressLatch.countDown();
+                try
+                {
+                    assertTrue(invalidateLatch.await(5, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException x)
+                {
+                    throw new IOException(x);
+                }
+                return super.compress(format, content);
+            }
+        };
+        cache.setCompressCachedContent(true);
+
+        HttpContent content = cache.getContent("style.css", 4096);
+        CompletableFuture<Map<CompressedContentFormat, ? extends HttpContent>> compressed = CompletableFuture.supplyAsync(content::getPrecompressedContents);
+        assertTrue(compressLatch.await(5, TimeUnit.SECONDS));
+
+        // A concurrent request does not compress the same content again.
+        assertThat(content.getPrecompressedContents(), nullValue());
+        assertEquals(1, compressions.get());
+
+        // Invalidate the content while it is being compressed.
+        cache.flushCache();
+        invalidateLatch.countDown();
+
+        assertThat(compressed.get(5, TimeUnit.SECONDS), nullValue());
+        assertEquals(1, compressions.get());
+        assertEquals(0, cache.getCachedSize());
+        assertEquals(0, cache.getCachedFiles());
+    }
+
     static String getContent(CachedContentFactory rc, String path) throws Exception
     {
         HttpContent content = rc.getContent(path, rc.getMaxCachedFileSize());
@@ -31,6 +31,7 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.server.CachedContentFactory;
+import org.eclipse.jetty.server.ContentEvictionPolicy;
 import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
@@ -102,6 +103,12 @@ import org.slf4j.LoggerFactory;
  *  maxCacheSize      The maximum total size of the cache or 0 for no cache.
  *  maxCachedFileSize The maximum size of a file to cache
  *  maxCachedFiles    The maximum number of files to cache
+ *  cacheEvictionPolicy
+ *                    The policy used to evict files from the cache: "TinyLFU" (the default)
+ *                    or "LRU"
+ *  compressCachedContent
+ *                    If true, cached files are compressed in memory with the precompressed
+ *                    formats for which there is no precompressed file, on first request.
  *
  *  useFileMappedBuffer
  *                    If set to true, it will use mapped file buffer to serve static content
@@ -260,7 +267,14 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                     _cache.setMaxCachedFileSize(maxCachedFileSize);
                 if (maxCachedFiles >= -1)
                     _cache.setMaxCachedFiles(maxCachedFiles);
+                String evictionPolicy = getInitParameter("cacheEvictionPolicy");
+                if ("LRU".equalsIgnoreCase(evictionPolicy))
+                    _cache.setEvictionPolicy(new ContentEvictionPolicy.LeastRecentlyUsed());
+                else if (evictionPolicy != null && !"TinyLFU".equalsIgnoreCase(evictionPolicy))
+                    throw new UnavailableException("Unknown cacheEvictionPolicy " + evictionPolicy);
+                _cache.setCompressCachedContent(getInitBoolean("compressCachedContent", false));
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
+                _contextHandler.addBean(_cache);
             }
         }
         catch (Exception e)
@@ -478,7 +492,10 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
     public void destroy()
     {
         if (_cache != null)
+        {
             _cache.flushCache();
+            _contextHandler.removeBean(_cache);
+        }
         super.destroy();
     }
 
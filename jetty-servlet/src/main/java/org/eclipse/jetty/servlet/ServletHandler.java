@@ -20,12 +20,15 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.EventListener;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import javax.servlet.DispatcherType;
@@ -111,8 +114,12 @@ public class ServletHandler extends ScopedHandler
     private ListenerHolder[] _listeners = new ListenerHolder[0];
     private boolean _initialized = false;
 
+    /**
+     * The filter chains cached by path in context, or by servlet name, for each dispatch type.
+     */
     @SuppressWarnings("unchecked")
     protected final ConcurrentMap<String, FilterChain>[] _chainCache = new ConcurrentMap[FilterMapping.ALL];
+    private final FilterChainCache[] _filterChainCaches = new FilterChainCache[FilterMapping.ALL];
 
     /**
      * Constructor.
@@ -178,6 +185,10 @@ public class ServletHandler extends ScopedHandler
                 _chainCache[FilterMapping.INCLUDE] = new ConcurrentHashMap<>();
                 _chainCache[FilterMapping.ERROR] = new ConcurrentHashMap<>();
                 _chainCache[FilterMapping.ASYNC] = new ConcurrentHashMap<>();
+                for (int i = 0; i < _chainCache.length; i++)
+                {
+                    _filterChainCaches[i] = new FilterChainCache(_chainCache[i]);
+                }
             }
 
             if (_contextHandler == null)
@@ -544,12 +555,40 @@ public class ServletHandler extends ScopedHandler
     private FilterChain getFilterChain(Request baseRequest, String pathInContext, ServletHolder servletHolder)
     {
         Objects.requireNonNull(servletHolder);
-        String key = pathInContext == null ? servletHolder.getName() : pathInContext;
+        String path = pathInContext == null ? servletHolder.getName() : pathInContext;
         int dispatch = FilterMapping.dispatch(baseRequest.getDispatcherType());
 
-        if (_filterChainsCached)
+        FilterChainCache cache = _filterChainsCached ? _filterChainCaches[dispatch] : null;
+        if (cache != null)
         {
-            FilterChain chain = _chainCache[dispatch].get(key);
+            // Fast path for the paths already looked up.
+            FilterChain chain = cache.get(path);
+            if (chain != null)
+                return chain;
+        }
+
+        // The chain only depends on the servlet and on the path mappings that apply,
+        // so the cache is keyed on those rather than on the path, which allows paths
+        // that only differ by an id (e.g. /users/123 and /users/456) to share a chain.
+        List<FilterMapping> pathMappings = pathInContext == null ? null : _filterPathMappings;
+        long[] matches = null;
+        if (pathMappings != null)
+        {
+            for (int i = 0; i < pathMappings.size(); i++)
+            {
+                if (pathMappings.get(i).appliesTo(pathInContext, dispatch))
+                {
+                    if (matches == null)
+                        matches = new long[(pathMappings.size() + 63) / 64];
+                    matches[i >> 6] |= 1L << i;
+                }
+            }
+        }
+        FilterChainKey key = new FilterChainKey(servletHolder, matches);
+
+        if (cache != null)
+        {
+            FilterChain chain = cache.get(path, key, _maxFilterChainsCacheSize);
             if (chain != null)
                 return chain;
         }
@@ -576,29 +615,21 @@ public class ServletHandler extends ScopedHandler
             }
         }
 
-        if (pathInContext != null && _filterPathMappings != null)
+        if (matches != null)
         {
-            for (FilterMapping mapping : _filterPathMappings)
+            for (int i = 0; i < pathMappings.size(); i++)
             {
-                if (mapping.appliesTo(pathInContext, dispatch))
-                    chain = newFilterChain(mapping.getFilterHolder(), chain == null ? new ChainEnd(servletHolder) : chain);
+                if ((matches[i >> 6] & (1L << i)) != 0)
+                    chain = newFilterChain(pathMappings.get(i).getFilterHolder(), chain == null ? new ChainEnd(servletHolder) : chain);
             }
         }
 
-        if (_filterChainsCached)
+        if (cache != null)
         {
-            final Map<String, FilterChain> cache = _chainCache[dispatch];
-            // Do we have too many cached chains?
-            if (_maxFilterChainsCacheSize > 0 && cache.size() >= _maxFilterChainsCacheSize)
-            {
-                // flush the cache
-                LOG.debug("{} flushed filter chain cache for {}", this, baseRequest.getDispatcherType());
-                cache.clear();
-            }
             chain = chain == null ? new ChainEnd(servletHolder) : chain;
-            // flush the cache
-            LOG.debug("{} cached filter chain for {}: {}", this, baseRequest.getDispatcherType(), chain);
-            cache.put(key, chain);
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} cached filter chain for {}: {}", this, baseRequest.getDispatcherType(), chain);
+            cache.put(path, key, chain, _maxFilterChainsCacheSize);
         }
         return chain;
     }
@@ -616,13 +647,13 @@ public class ServletHandler extends ScopedHandler
 
     protected void invalidateChainsCache()
     {
-        if (_chainCache[FilterMapping.REQUEST] != null)
+        if (_filterChainCaches[FilterMapping.REQUEST] != null)
         {
-            _chainCache[FilterMapping.REQUEST].clear();
-            _chainCache[FilterMapping.FORWARD].clear();
-            _chainCache[FilterMapping.INCLUDE].clear();
-            _chainCache[FilterMapping.ERROR].clear();
-            _chainCache[FilterMapping.ASYNC].clear();
+            _filterChainCaches[FilterMapping.REQUEST].clear();
+            _filterChainCaches[FilterMapping.FORWARD].clear();
+            _filterChainCaches[FilterMapping.INCLUDE].clear();
+            _filterChainCaches[FilterMapping.ERROR].clear();
+            _filterChainCaches[FilterMapping.ASYNC].clear();
         }
     }
 
@@ -1399,10 +1430,10 @@ public class ServletHandler extends ScopedHandler
             }
 
             // flush filter chain cache
-            for (int i = _chainCache.length; i-- > 0; )
+            for (int i = _filterChainCaches.length; i-- > 0; )
             {
-                if (_chainCache[i] != null)
-                    _chainCache[i].clear();
+                if (_filterChainCaches[i] != null)
+                    _filterChainCaches[i].clear();
             }
 
             if (LOG.isDebugEnabled())
@@ -1520,6 +1551,7 @@ public class ServletHandler extends ScopedHandler
     /**
      * @return The maximum entries in a filter chain cache.
      */
+    @ManagedAttribute("maximum entries in a filter chain cache")
     public int getMaxFilterChainsCacheSize()
     {
         return _maxFilterChainsCacheSize;
@@ -1528,7 +1560,8 @@ public class ServletHandler extends ScopedHandler
     /**
      * Set the maximum filter chain cache size.
      * Filter chains are cached if {@link #isFilterChainsCached()} is true. If the max cache size
-     * is greater than zero, then the cache is flushed whenever it grows to be this size.
+     * is greater than zero, then the least recently used chain is evicted whenever the cache
+     * grows to be this size.
      *
      * @param maxFilterChainsCacheSize the maximum number of entries in a filter chain cache.
      */
@@ -1537,6 +1570,30 @@ public class ServletHandler extends ScopedHandler
         _maxFilterChainsCacheSize = maxFilterChainsCacheSize;
     }
 
+    @ManagedAttribute("number of cached filter chains")
+    public int getFilterChainsCacheSize()
+    {
+        return Arrays.stream(_filterChainCaches).filter(Objects::nonNull).mapToInt(FilterChainCache::size).sum();
+    }
+
+    @ManagedAttribute("number of filter chains found in the cache")
+    public long getFilterChainsCacheHits()
+    {
+        return Arrays.stream(_filterChainCaches).filter(Objects::nonNull).mapToLong(FilterChainCache::getHits).sum();
+    }
+
+    @ManagedAttribute("number of filter chains not found in the cache")
+    public long getFilterChainsCacheMisses()
+    {
+        return Arrays.stream(_filterChainCaches).filter(Objects::nonNull).mapToLong(FilterChainCache::getMisses).sum();
+    }
+
+    @ManagedAttribute("number of filter chains evicted from the cache")
+    public long getFilterChainsCacheEvictions()
+    {
+        return Arrays.stream(_filterChainCaches).filter(Objects::nonNull).mapToLong(FilterChainCache::getEvictions).sum();
+    }
+
     void destroyServlet(Servlet servlet)
     {
         if (_contextHandler != null)
@@ -1628,6 +1685,148 @@ public class ServletHandler extends ScopedHandler
         }
     }
 
+    /**
+     * <p>The key of a cached filter chain: the servlet and the filter path mappings that apply.</p>
+     */
+    private static class FilterChainKey
+    {
+        private final ServletHolder _servletHolder;
+        private final long[] _matches;
+        private final int _hashCode;
+
+        private FilterChainKey(ServletHolder servletHolder, long[] matches)
+        {
+            _servletHolder = servletHolder;
+            _matches = matches;
+            _hashCode = 31 * System.identityHashCode(servletHolder) + Arrays.hashCode(matches);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof FilterChainKey))
+                return false;
+            FilterChainKey that = (FilterChainKey)obj;
+            return _servletHolder == that._servletHolder && Arrays.equals(_matches, that._matches);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
+
+    /**
+     * <p>A cache of filter chains for a dispatcher type.</p>
+     * <p>Chains are first looked up by path, without locking, in a map that is
+     * flushed when it is full; then by the servlet and the filter path mappings
+     * that apply, in a map that evicts the least recently used chain when it is full.</p>
+     */
+    private static class FilterChainCache
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final ConcurrentMap<String, FilterChain> _paths;
+        private final Map<FilterChainKey, FilterChain> _chains = new LinkedHashMap<>(16, 0.75F, true);
+        private final LongAdder _hits = new LongAdder();
+        private final LongAdder _misses = new LongAdder();
+        private final LongAdder _evictions = new LongAdder();
+
+        private FilterChainCache(ConcurrentMap<String, FilterChain> paths)
+        {
+            _paths = paths;
+        }
+
+        private FilterChain get(String path)
+        {
+            FilterChain chain = _paths.get(path);
+            if (chain != null)
+                _hits.increment();
+            return chain;
+        }
+
+        private FilterChain get(String path, FilterChainKey key, int maxSize)
+        {
+            FilterChain chain;
+            try (AutoLock l = _lock.lock())
+            {
+                chain = _chains.get(key);
+            }
+            if (chain == null)
+            {
+                _misses.increment();
+                return null;
+            }
+            _hits.increment();
+            putPath(path, chain, maxSize);
+            return chain;
+        }
+
+        private void put(String path, FilterChainKey key, FilterChain chain, int maxSize)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                Iterator<FilterChain> iterator = _chains.values().iterator();
+                while (maxSize > 0 && _chains.size() >= maxSize && iterator.hasNext())
+                {
+                    iterator.next();
+                    iterator.remove();
+                    _evictions.increment();
+                }
+                _chains.put(key, chain);
+            }
+            putPath(path, chain, maxSize);
+        }
+
+        private void putPath(String path, FilterChain chain, int maxSize)
+        {
+            // The chains are still cached by mappings, so the paths can just be flushed.
+            if (maxSize > 0 && _paths.size() >= maxSize)
+                _paths.clear();
+            _paths.put(path, chain);
+        }
+
+        private void clear()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _chains.clear();
+            }
+            _paths.clear();
+        }
+
+        private int size()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                return _chains.size();
+            }
+        }
+
+        private long getHits()
+        {
+            return _hits.longValue();
+        }
+
+        private long getMisses()
+        {
+            return _misses.longValue();
+        }
+
+        private long getEvictions()
+        {
+            return _evictions.longValue();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[size=%d,paths=%d,hits=%d,misses=%d,evictions=%d]", getClass().getSimpleName(), hashCode(), size(), _paths.size(), getHits(), getMisses(), getEvictions());
+        }
+    }
+
     static class Chain implements FilterChain
     {
         private final FilterHolder _filterHolder;
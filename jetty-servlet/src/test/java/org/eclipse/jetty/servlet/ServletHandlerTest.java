@@ -36,6 +36,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -830,6 +831,71 @@ public class ServletHandlerTest
         assertThat(connector.getResponse("GET /other.bob HTTP/1.0\r\n\r\n"), containsString("path-/*-path-*.bob-default"));
     }
 
+    @Test
+    public void testFilterChainsCacheKeyedOnMappings() throws Exception
+    {
+        Server server = new Server();
+        ServletHandler handler = new ServletHandler();
+        server.setHandler(handler);
+
+        ServletHolder users = new ServletHolder(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+            {
+                resp.getOutputStream().println("USERS");
+            }
+        });
+        users.setName("users");
+        handler.addServletWithMapping(users, "/users/*");
+
+        for (final String mapping : new String[]{"/users/*", "*.json", "*.xml"})
+        {
+            handler.addFilterWithMapping(new FilterHolder((TestFilter)(request, response, chain) ->
+            {
+                response.getOutputStream().print("path-" + mapping + "-");
+                chain.doFilter(request, response);
+            }), mapping, EnumSet.of(DispatcherType.REQUEST));
+        }
+
+        LocalConnector connector = new LocalConnector(server);
+        server.addConnector(connector);
+
+        server.start();
+
+        // Paths that only differ by an id share the same chain.
+        for (int id = 0; id < 10; id++)
+        {
+            assertThat(connector.getResponse("GET /users/" + id + " HTTP/1.0\r\n\r\n"), containsString("path-/users/*-USERS"));
+        }
+        assertThat(handler.getFilterChainsCacheSize(), is(1));
+        assertThat(handler.getFilterChainsCacheMisses(), is(1L));
+        assertThat(handler.getFilterChainsCacheHits(), is(9L));
+        // The chains are also cached by path, for the next requests to the same paths.
+        assertThat(handler._chainCache[FilterMapping.REQUEST].size(), is(10));
+        assertThat(connector.getResponse("GET /users/0 HTTP/1.0\r\n\r\n"), containsString("path-/users/*-USERS"));
+        assertThat(handler.getFilterChainsCacheHits(), is(10L));
+
+        assertThat(connector.getResponse("GET /users/1.json HTTP/1.0\r\n\r\n"), containsString("path-/users/*-path-*.json-USERS"));
+        assertThat(handler.getFilterChainsCacheSize(), is(2));
+
+        // When the cache is full, the least recently used chain is evicted.
+        handler.setMaxFilterChainsCacheSize(2);
+        assertThat(connector.getResponse("GET /users/1.xml HTTP/1.0\r\n\r\n"), containsString("path-/users/*-path-*.xml-USERS"));
+        assertThat(handler.getFilterChainsCacheSize(), is(2));
+        assertThat(handler.getFilterChainsCacheEvictions(), is(1L));
+
+        long misses = handler.getFilterChainsCacheMisses();
+        assertThat(connector.getResponse("GET /users/2.json HTTP/1.0\r\n\r\n"), containsString("path-/users/*-path-*.json-USERS"));
+        assertThat(handler.getFilterChainsCacheMisses(), is(misses));
+        // The *.xml chain is now the least recently used.
+        assertThat(connector.getResponse("GET /users/2 HTTP/1.0\r\n\r\n"), containsString("path-/users/*-USERS"));
+        assertThat(handler.getFilterChainsCacheMisses(), is(misses + 1));
+        assertThat(handler.getFilterChainsCacheEvictions(), is(2L));
+        assertThat(connector.getResponse("GET /users/3.json HTTP/1.0\r\n\r\n"), containsString("path-/users/*-path-*.json-USERS"));
+        assertThat(handler.getFilterChainsCacheMisses(), is(misses + 1));
+    }
+
     private interface TestFilter extends Filter
     {
         default void init(FilterConfig filterConfig) throws ServletException
@@ -23,11 +23,16 @@ import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,8 +45,16 @@ import org.slf4j.LoggerFactory;
  * When the method {@link #close()} is called, all {@link Closeable}s in the pool
  * are also closed.
  * </p>
+ * <p>
+ * The pool may record statistics about the calls to {@link #acquire()}, such as
+ * their latency, how many found no available entry, and how many were satisfied
+ * by the {@link ThreadLocal} cache or by the configured {@link StrategyType}.
+ * Recording these statistics costs time in {@link #acquire()}, so it is
+ * disabled by default, see {@link #setStatisticsEnabled(boolean)}.
+ * </p>
  * @param <T>
  */
+@ManagedObject
 public class Pool<T> implements AutoCloseable, Dumpable
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(Pool.class);
@@ -65,6 +78,14 @@ public class Pool<T> implements AutoCloseable, Dumpable
     private volatile boolean closed;
     private volatile int maxMultiplex = 1;
     private volatile int maxUsageCount = -1;
+    private volatile boolean statisticsEnabled;
+    private final HistogramStatistic acquireLatency = new HistogramStatistic();
+    private final LongAdder acquireMisses = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder strategyHits = new LongAdder();
+    private final LongAdder strategyProbes = new LongAdder();
+    private final LongAdder overUsedRemovals = new LongAdder();
 
     /**
      * The type of the strategy to use for the pool.
@@ -129,31 +150,37 @@ public class Pool<T> implements AutoCloseable, Dumpable
         nextIndex = strategyType == StrategyType.ROUND_ROBIN ? new AtomicInteger() : null;
     }
 
+    @ManagedAttribute("The number of reserved entries")
     public int getReservedCount()
     {
         return (int)entries.stream().filter(Entry::isReserved).count();
     }
 
+    @ManagedAttribute("The number of idle entries")
     public int getIdleCount()
     {
         return (int)entries.stream().filter(Entry::isIdle).count();
     }
 
+    @ManagedAttribute("The number of in use entries")
     public int getInUseCount()
     {
         return (int)entries.stream().filter(Entry::isInUse).count();
     }
 
+    @ManagedAttribute("The number of closed entries")
     public int getClosedCount()
     {
         return (int)entries.stream().filter(Entry::isClosed).count();
     }
 
+    @ManagedAttribute("The maximum number of entries")
     public int getMaxEntries()
     {
         return maxEntries;
     }
 
+    @ManagedAttribute("The maximum multiplex count of entries")
     public int getMaxMultiplex()
     {
         return maxMultiplex;
@@ -171,6 +198,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
      * can be acquired.
      * @return the max usage count.
      */
+    @ManagedAttribute("The maximum usage count of entries")
     public int getMaxUsageCount()
     {
         return maxUsageCount;
@@ -195,7 +223,9 @@ public class Pool<T> implements AutoCloseable, Dumpable
                 return;
 
             copy = entries.stream()
-                .filter(entry -> entry.isIdleAndOverUsed() && remove(entry) && entry.pooled instanceof Closeable)
+                .filter(entry -> entry.isIdleAndOverUsed() && remove(entry))
+                .peek(entry -> overUsedRemovals.increment())
+                .filter(entry -> entry.pooled instanceof Closeable)
                 .map(entry -> (Closeable)entry.pooled)
                 .collect(Collectors.toList());
         }
@@ -275,6 +305,19 @@ public class Pool<T> implements AutoCloseable, Dumpable
         if (closed)
             return null;
 
+        if (!statisticsEnabled)
+            return tryAcquire(false);
+
+        long begin = System.nanoTime();
+        Entry entry = tryAcquire(true);
+        acquireLatency.record(System.nanoTime() - begin);
+        if (entry == null)
+            acquireMisses.increment();
+        return entry;
+    }
+
+    private Entry tryAcquire(boolean statistics)
+    {
         int size = entries.size();
         if (size == 0)
             return null;
@@ -283,7 +326,13 @@ public class Pool<T> implements AutoCloseable, Dumpable
         {
             Pool<T>.Entry entry = cache.get();
             if (entry != null && entry.tryAcquire())
+            {
+                if (statistics)
+                    cacheHits.increment();
                 return entry;
+            }
+            if (statistics)
+                cacheMisses.increment();
         }
 
         int index = startIndex(size);
@@ -292,9 +341,15 @@ public class Pool<T> implements AutoCloseable, Dumpable
         {
             try
             {
+                if (statistics)
+                    strategyProbes.increment();
                 Pool<T>.Entry entry = entries.get(index);
                 if (entry != null && entry.tryAcquire())
+                {
+                    if (statistics)
+                        strategyHits.increment();
                     return entry;
+                }
             }
             catch (IndexOutOfBoundsException e)
             {
@@ -365,6 +420,24 @@ public class Pool<T> implements AutoCloseable, Dumpable
         return entry.enable(value, true) ? entry : null;
     }
 
+    /**
+     * <p>Acquires the given entry, typically selected among the {@link #values()}
+     * by callers that implement their own selection policy.</p>
+     * <p>The entry is not acquired if it is closed, if it is not enabled yet,
+     * or if it reached its max multiplex or its max usage count.</p>
+     * <p>Differently from {@link #acquire()}, calls to this method are not
+     * recorded in the acquire statistics.</p>
+     *
+     * @param entry the entry to acquire
+     * @return true if the entry has been acquired, false otherwise
+     */
+    public boolean acquire(Entry entry)
+    {
+        if (closed)
+            return false;
+        return entry.tryAcquire();
+    }
+
     /**
      * This method will return an acquired object to the pool. Objects
      * that are acquired from the pool but never released will result
@@ -384,6 +457,8 @@ public class Pool<T> implements AutoCloseable, Dumpable
         boolean released = entry.tryRelease();
         if (released && cache != null)
             cache.set(entry);
+        if (!released && entry.isOverUsed())
+            overUsedRemovals.increment();
         return released;
     }
 
@@ -412,6 +487,30 @@ public class Pool<T> implements AutoCloseable, Dumpable
         return removed;
     }
 
+    /**
+     * <p>Removes the given entry only if it is idle.</p>
+     * <p>Differently from {@link #remove(Entry)}, this method can be called
+     * for entries that have not been acquired by the caller: if the entry is
+     * in use, it is not removed.</p>
+     *
+     * @param entry the entry to remove
+     * @return true if the entry was idle and has been removed, false otherwise
+     */
+    public boolean removeIdle(Entry entry)
+    {
+        if (closed)
+            return false;
+
+        if (!entry.tryRemoveIdle())
+            return false;
+
+        boolean removed = entries.remove(entry);
+        if (!removed && LOGGER.isDebugEnabled())
+            LOGGER.debug("Attempt to remove an object from the pool that does not exist: {}", entry);
+
+        return removed;
+    }
+
     public boolean isClosed()
     {
         return closed;
@@ -436,11 +535,132 @@ public class Pool<T> implements AutoCloseable, Dumpable
         }
     }
 
+    @ManagedAttribute("The number of entries")
     public int size()
     {
         return entries.size();
     }
 
+    public StrategyType getStrategyType()
+    {
+        return strategyType;
+    }
+
+    @ManagedAttribute("Whether the ThreadLocal cache of the last released entry is used")
+    public boolean isCached()
+    {
+        return cache != null;
+    }
+
+    @ManagedAttribute("Whether the statistics of the calls to acquire() are recorded")
+    public boolean isStatisticsEnabled()
+    {
+        return statisticsEnabled;
+    }
+
+    /**
+     * <p>Enables or disables the recording of the statistics of the calls to {@link #acquire()}.</p>
+     * <p>The statistics are disabled by default because recording them
+     * adds a cost to every call to {@link #acquire()}.</p>
+     *
+     * @param statisticsEnabled whether the statistics of the calls to {@link #acquire()} are recorded
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled)
+    {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * @return the histogram of the latencies, in nanoseconds, of the calls to {@link #acquire()}
+     */
+    public HistogramStatistic getAcquireLatencyStatistic()
+    {
+        return acquireLatency;
+    }
+
+    @ManagedAttribute("The number of calls to acquire()")
+    public long getAcquireCount()
+    {
+        return acquireLatency.getCount();
+    }
+
+    @ManagedAttribute("The number of calls to acquire() that found no available entry")
+    public long getAcquireMissCount()
+    {
+        return acquireMisses.sum();
+    }
+
+    @ManagedAttribute("The average latency of acquire() in nanoseconds")
+    public double getAcquireLatencyMean()
+    {
+        return acquireLatency.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile of the latency of acquire() in nanoseconds")
+    public long getAcquireLatency99thPercentile()
+    {
+        return acquireLatency.getPercentile(99);
+    }
+
+    @ManagedAttribute("The max latency of acquire() in nanoseconds")
+    public long getAcquireLatencyMax()
+    {
+        return acquireLatency.getMax();
+    }
+
+    @ManagedAttribute("The number of entries acquired from the ThreadLocal cache")
+    public long getCacheHitCount()
+    {
+        return cacheHits.sum();
+    }
+
+    @ManagedAttribute("The number of times the ThreadLocal cache had no available entry")
+    public long getCacheMissCount()
+    {
+        return cacheMisses.sum();
+    }
+
+    @ManagedAttribute("The number of entries acquired by iterating with the strategy")
+    public long getStrategyHitCount()
+    {
+        return strategyHits.sum();
+    }
+
+    @ManagedAttribute("The number of entries probed by iterating with the strategy")
+    public long getStrategyProbeCount()
+    {
+        return strategyProbes.sum();
+    }
+
+    /**
+     * @return the ratio of the entries probed by the strategy that could be acquired,
+     * between 0 and 1, or 0 if no entry has been probed
+     */
+    @ManagedAttribute("The ratio of the entries probed by the strategy that could be acquired")
+    public double getStrategyHitRatio()
+    {
+        long probes = getStrategyProbeCount();
+        return probes == 0 ? 0.0D : (double)getStrategyHitCount() / probes;
+    }
+
+    @ManagedAttribute("The number of entries that were removed because they reached the max usage count")
+    public long getOverUsedRemovedCount()
+    {
+        return overUsedRemovals.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        acquireLatency.reset();
+        acquireMisses.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        strategyHits.reset();
+        strategyProbes.reset();
+        overUsedRemovals.reset();
+    }
+
     public Collection<Entry> values()
     {
         return Collections.unmodifiableCollection(entries);
@@ -450,6 +670,18 @@ public class Pool<T> implements AutoCloseable, Dumpable
     public void dump(Appendable out, String indent) throws IOException
     {
         Dumpable.dumpObjects(out, indent, this,
+            Dumpable.named("statistics", String.format("acquired=%d,misses=%d,latency[mean=%dns,p99=%dns,max=%dns],cache[hits=%d,misses=%d],%s[hits=%d,probes=%d],overUsedRemoved=%d",
+                getAcquireCount(),
+                getAcquireMissCount(),
+                (long)getAcquireLatencyMean(),
+                getAcquireLatency99thPercentile(),
+                getAcquireLatencyMax(),
+                getCacheHitCount(),
+                getCacheMissCount(),
+                strategyType,
+                getStrategyHitCount(),
+                getStrategyProbeCount(),
+                getOverUsedRemovedCount())),
             new DumpableCollection("entries", entries));
     }
 
@@ -621,6 +853,24 @@ public class Pool<T> implements AutoCloseable, Dumpable
             }
         }
 
+        /**
+         * Try to remove the entry by marking it as closed, only if its multiplexing counter is zero.
+         * @return true if the entry was idle and can be removed from the containing pool, false otherwise.
+         */
+        boolean tryRemoveIdle()
+        {
+            while (true)
+            {
+                long encoded = state.get();
+                int usageCount = AtomicBiInteger.getHi(encoded);
+                int multiplexCount = AtomicBiInteger.getLo(encoded);
+                if (usageCount < 0 || multiplexCount > 0)
+                    return false;
+                if (state.compareAndSet(encoded, -1, 0))
+                    return true;
+            }
+        }
+
         public boolean isClosed()
         {
             return state.getHi() < 0;
@@ -18,14 +18,21 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -194,4 +201,346 @@ public interface SocketAddressResolver
             });
         }
     }
+
+    /**
+     * <p>Caches the results of the resolutions performed by another {@link SocketAddressResolver}.</p>
+     * <p>Successful resolutions are cached for the {@link #getTimeToLive() time to live}, and failed
+     * resolutions caused by {@link UnknownHostException} are cached for the
+     * {@link #getNegativeTimeToLive() negative time to live}; other failures, such as timeouts,
+     * are not cached.</p>
+     * <p>Concurrent resolutions of the same host are coalesced into a single resolution
+     * performed by the wrapped resolver.</p>
+     * <p>When a cached successful resolution is used after {@link #getRefreshRatio() a fraction}
+     * of its time to live has elapsed, the host is resolved again in the background, while the
+     * cached result continues to be used until the background resolution completes, so that
+     * frequently used hosts are never resolved in the critical path of a connect.
+     * If the background resolution fails, the cached result is used until it expires.</p>
+     * <p>Example usage:</p>
+     * <pre>
+     * SocketAddressResolver async = new SocketAddressResolver.Async(executor, scheduler, timeout);
+     * SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(async);
+     * resolver.setTimeToLive(60_000);
+     * httpClient.setSocketAddressResolver(resolver);
+     * </pre>
+     */
+    @ManagedObject("The caching address resolver")
+    public static class Caching implements SocketAddressResolver
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(Caching.class);
+
+        private final AutoLock lock = new AutoLock();
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder refreshes = new LongAdder();
+        private final SocketAddressResolver resolver;
+        private long timeToLive = 30_000;
+        private long negativeTimeToLive = 10_000;
+        private double refreshRatio = 0.75;
+        private int maxEntries = 1024;
+
+        /**
+         * @param resolver the resolver that performs the resolutions to cache
+         */
+        public Caching(SocketAddressResolver resolver)
+        {
+            this.resolver = Objects.requireNonNull(resolver);
+        }
+
+        public SocketAddressResolver getSocketAddressResolver()
+        {
+            return resolver;
+        }
+
+        @ManagedAttribute("The time, in milliseconds, successful resolutions are cached for")
+        public long getTimeToLive()
+        {
+            return timeToLive;
+        }
+
+        /**
+         * @param timeToLive the time, in milliseconds, successful resolutions are cached for
+         */
+        public void setTimeToLive(long timeToLive)
+        {
+            this.timeToLive = timeToLive;
+        }
+
+        @ManagedAttribute("The time, in milliseconds, failed resolutions are cached for")
+        public long getNegativeTimeToLive()
+        {
+            return negativeTimeToLive;
+        }
+
+        /**
+         * @param negativeTimeToLive the time, in milliseconds, failed resolutions of unknown hosts are cached for
+         */
+        public void setNegativeTimeToLive(long negativeTimeToLive)
+        {
+            this.negativeTimeToLive = negativeTimeToLive;
+        }
+
+        @ManagedAttribute("The fraction of the time to live after which cached resolutions are refreshed")
+        public double getRefreshRatio()
+        {
+            return refreshRatio;
+        }
+
+        /**
+         * @param refreshRatio the fraction of the time to live after which a cached resolution
+         * is refreshed in the background when it is used, or a value {@code >= 1} to disable
+         * background refreshes
+         */
+        public void setRefreshRatio(double refreshRatio)
+        {
+            if (refreshRatio <= 0)
+                throw new IllegalArgumentException("Invalid refresh ratio " + refreshRatio);
+            this.refreshRatio = refreshRatio;
+        }
+
+        @ManagedAttribute("The max number of cached hosts")
+        public int getMaxEntries()
+        {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries)
+        {
+            this.maxEntries = maxEntries;
+        }
+
+        @ManagedAttribute("The number of cached hosts")
+        public int getSize()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                return entries.size();
+            }
+        }
+
+        @ManagedAttribute("The number of resolutions served from the cache")
+        public long getHits()
+        {
+            return hits.longValue();
+        }
+
+        @ManagedAttribute("The number of resolutions not served from the cache")
+        public long getMisses()
+        {
+            return misses.longValue();
+        }
+
+        @ManagedAttribute("The number of background refreshes")
+        public long getRefreshes()
+        {
+            return refreshes.longValue();
+        }
+
+        @ManagedOperation(value = "Clears the cache", impact = "ACTION")
+        public void clear()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                // Entries being resolved must stay, as they hold the pending promises.
+                entries.values().removeIf(entry -> entry.pending == null);
+            }
+        }
+
+        @Override
+        public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+        {
+            long now = System.nanoTime();
+            boolean resolve = false;
+            boolean refresh = false;
+            List<InetAddress> addresses = null;
+            Throwable failure = null;
+            try (AutoLock l = lock.lock())
+            {
+                Entry entry = entries.get(host);
+                if (entry == null)
+                {
+                    if (entries.size() >= getMaxEntries())
+                        evict(now);
+                    entry = new Entry();
+                    entries.put(host, entry);
+                }
+
+                if (entry.isExpired(now))
+                {
+                    misses.increment();
+                    if (entry.pending == null)
+                    {
+                        entry.pending = new ArrayList<>();
+                        resolve = true;
+                    }
+                    entry.pending.add(new Pending(port, promise));
+                }
+                else
+                {
+                    hits.increment();
+                    addresses = entry.addresses;
+                    failure = entry.failure;
+                    if (failure == null && entry.pending == null && entry.isStale(now))
+                    {
+                        entry.pending = new ArrayList<>();
+                        resolve = refresh = true;
+                    }
+                }
+            }
+
+            if (resolve)
+            {
+                if (refresh)
+                {
+                    refreshes.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Refreshing {}", host);
+                }
+                // Resolve with port zero, since the same result
+                // is used for all the ports of the cached host.
+                resolver.resolve(host, 0, new Promise<>()
+                {
+                    @Override
+                    public void succeeded(List<InetSocketAddress> result)
+                    {
+                        List<InetAddress> resolved = new ArrayList<>(result.size());
+                        for (InetSocketAddress address : result)
+                        {
+                            resolved.add(address.getAddress());
+                        }
+                        resolved(host, resolved, null);
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        resolved(host, null, x);
+                    }
+                });
+            }
+
+            if (addresses != null)
+                promise.succeeded(toSocketAddresses(addresses, port));
+            else if (failure != null)
+                promise.failed(newUnknownHostException(host, failure));
+        }
+
+        private void resolved(String host, List<InetAddress> addresses, Throwable failure)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Resolved {} to {}", host, addresses, failure);
+
+            long now = System.nanoTime();
+            List<Pending> pending;
+            try (AutoLock l = lock.lock())
+            {
+                Entry entry = entries.get(host);
+                if (entry == null)
+                    return;
+                pending = entry.pending;
+                entry.pending = null;
+
+                if (failure == null)
+                {
+                    entry.update(addresses, null, now, getTimeToLive());
+                }
+                else if (!entry.isExpired(now))
+                {
+                    // A failed background refresh, keep using the cached addresses.
+                }
+                else if (failure instanceof UnknownHostException)
+                {
+                    entry.update(null, failure, now, getNegativeTimeToLive());
+                }
+                else
+                {
+                    entries.remove(host);
+                }
+            }
+
+            for (Pending p : pending)
+            {
+                if (failure == null)
+                    p.promise.succeeded(toSocketAddresses(addresses, p.port));
+                else
+                    p.promise.failed(failure);
+            }
+        }
+
+        private void evict(long now)
+        {
+            assert lock.isHeldByCurrentThread();
+            entries.values().removeIf(entry -> entry.pending == null && entry.isExpired(now));
+            // Still full, evict the hosts that have been cached first.
+            for (Iterator<Entry> iterator = entries.values().iterator(); entries.size() >= getMaxEntries() && iterator.hasNext(); )
+            {
+                if (iterator.next().pending == null)
+                    iterator.remove();
+            }
+        }
+
+        private static List<InetSocketAddress> toSocketAddresses(List<InetAddress> addresses, int port)
+        {
+            List<InetSocketAddress> result = new ArrayList<>(addresses.size());
+            for (InetAddress address : addresses)
+            {
+                result.add(new InetSocketAddress(address, port));
+            }
+            return result;
+        }
+
+        private static Throwable newUnknownHostException(String host, Throwable cause)
+        {
+            // Do not share the cached exception between unrelated failures.
+            UnknownHostException failure = new UnknownHostException(host);
+            failure.initCause(cause);
+            return failure;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[size=%d,hits=%d,misses=%d]", getClass().getSimpleName(), hashCode(), getSize(), getHits(), getMisses());
+        }
+
+        private class Entry
+        {
+            private List<InetAddress> addresses;
+            private Throwable failure;
+            private long expireNanoTime;
+            private long refreshNanoTime;
+            private List<Pending> pending;
+
+            private void update(List<InetAddress> addresses, Throwable failure, long now, long timeToLive)
+            {
+                this.addresses = addresses;
+                this.failure = failure;
+                long ttl = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+                this.expireNanoTime = now + ttl;
+                this.refreshNanoTime = now + (long)(ttl * getRefreshRatio());
+            }
+
+            private boolean isExpired(long now)
+            {
+                return addresses == null && failure == null || now - expireNanoTime >= 0;
+            }
+
+            private boolean isStale(long now)
+            {
+                return now - refreshNanoTime >= 0;
+            }
+        }
+
+        private static class Pending
+        {
+            private final int port;
+            private final Promise<List<InetSocketAddress>> promise;
+
+            private Pending(int port, Promise<List<InetSocketAddress>> promise)
+            {
+                this.port = port;
+                this.promise = promise;
+            }
+        }
+    }
 }
@@ -51,6 +51,7 @@ public abstract class Utf8Appendable
     public static final byte[] REPLACEMENT_UTF8 = new byte[]{(byte)0xEF, (byte)0xBF, (byte)0xBD};
     private static final int UTF8_ACCEPT = 0;
     private static final int UTF8_REJECT = 12;
+    private static final long ASCII_MASK = 0x8080808080808080L;
 
     protected final Appendable _appendable;
     protected int _state = UTF8_ACCEPT;
@@ -162,6 +163,15 @@ public abstract class Utf8Appendable
         {
             while (buf.remaining() > 0)
             {
+                if (_state == UTF8_ACCEPT)
+                {
+                    int ascii = asciiLength(buf);
+                    if (ascii > 0)
+                    {
+                        appendAscii(buf, ascii);
+                        continue;
+                    }
+                }
                 appendByte(buf.get());
             }
         }
@@ -178,18 +188,7 @@ public abstract class Utf8Appendable
 
     public void append(byte[] b, int offset, int length)
     {
-        try
-        {
-            int end = offset + length;
-            for (int i = offset; i < end; i++)
-            {
-                appendByte(b[i]);
-            }
-        }
-        catch (IOException e)
-        {
-            throw new RuntimeException(e);
-        }
+        append(ByteBuffer.wrap(b, offset, length));
     }
 
     public boolean append(byte[] b, int offset, int length, int maxChars)
@@ -211,6 +210,51 @@ public abstract class Utf8Appendable
         }
     }
 
+    /**
+     * <p>Returns the number of ASCII bytes at the beginning of the given buffer.</p>
+     * <p>ASCII runs are skipped 16 and 8 bytes at a time, checking the high bit
+     * of all the bytes of a long word at once.</p>
+     *
+     * @param buf the buffer to scan, not modified
+     * @return the number of ASCII bytes starting at the buffer position
+     */
+    private static int asciiLength(ByteBuffer buf)
+    {
+        int start = buf.position();
+        int end = buf.limit();
+        if (buf.get(start) < 0)
+            return 0;
+        int i = start;
+        while (end - i >= 16 && ((buf.getLong(i) | buf.getLong(i + 8)) & ASCII_MASK) == 0)
+        {
+            i += 16;
+        }
+        if (end - i >= 8 && (buf.getLong(i) & ASCII_MASK) == 0)
+            i += 8;
+        while (i < end && buf.get(i) >= 0)
+        {
+            ++i;
+        }
+        return i - start;
+    }
+
+    /**
+     * <p>Appends ASCII bytes, that need no UTF-8 decoding.</p>
+     * <p>Subclasses that do not need the characters, for example because they only
+     * validate the UTF-8 encoding, may override this method to just skip the bytes.</p>
+     *
+     * @param buf the buffer to append from, whose position must be advanced by {@code length}
+     * @param length the number of ASCII bytes to append
+     * @throws IOException if the characters cannot be appended
+     */
+    protected void appendAscii(ByteBuffer buf, int length) throws IOException
+    {
+        for (int i = 0; i < length; i++)
+        {
+            _appendable.append((char)buf.get());
+        }
+    }
+
     protected void appendByte(byte b) throws IOException
     {
 
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.util.compression;
 
 import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.util.Pool;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
@@ -22,6 +23,7 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
 {
     public static final int DEFAULT_CAPACITY = 1024;
 
+    private final AtomicInteger _inUse = new AtomicInteger();
     private int _capacity;
     private Pool<Entry> _pool;
 
@@ -51,6 +53,14 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
         _capacity = capacity;
     }
 
+    /**
+     * @return the number of Objects that have been acquired and not yet released
+     */
+    public int getInUseCount()
+    {
+        return _inUse.get();
+    }
+
     protected abstract T newPooled();
 
     protected abstract void end(T object);
@@ -70,6 +80,7 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
                 entry = acquiredEntry.getPooled();
         }
 
+        _inUse.incrementAndGet();
         return (entry == null) ? new Entry(newPooled()) : entry;
     }
 
@@ -123,6 +134,8 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
 
         public void release()
         {
+            _inUse.decrementAndGet();
+
             // Reset the value for the next usage.
             reset(_value);
 
@@ -151,11 +164,12 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
     @Override
     public String toString()
     {
-        return String.format("%s@%x{%s,size=%d,capacity=%s}",
+        return String.format("%s@%x{%s,size=%d,capacity=%s,inUse=%d}",
             getClass().getSimpleName(),
             hashCode(),
             getState(),
             (_pool == null) ? -1 : _pool.size(),
-            _capacity);
+            _capacity,
+            _inUse.get());
     }
 }
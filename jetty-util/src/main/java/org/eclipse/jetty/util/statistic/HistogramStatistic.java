@@ -0,0 +1,174 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Histogram of a sampled non-negative value.</p>
+ * <p>Samples are counted in buckets whose bounds are powers of 2: the bucket
+ * at index {@code 0} counts the samples equal to {@code 0}, and the bucket at
+ * index {@code i} counts the samples in the range {@code [2^(i-1), 2^i)}.
+ * Recording a sample is therefore constant time and allocation free, and
+ * percentiles are approximated by the upper bound of the bucket they fall in.</p>
+ * <p>Unlike {@link SampleStatistic}, only contention free counters are updated
+ * when a sample is recorded, so the values returned while samples are being
+ * recorded are estimates.</p>
+ */
+public class HistogramStatistic
+{
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] _buckets = new LongAdder[BUCKETS];
+    private final LongAdder _total = new LongAdder();
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0L);
+
+    public HistogramStatistic()
+    {
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            _buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void reset()
+    {
+        for (LongAdder bucket : _buckets)
+        {
+            bucket.reset();
+        }
+        _total.reset();
+        _max.reset();
+    }
+
+    /**
+     * Records a sample value.
+     *
+     * @param sample the value to record, negative values are recorded as {@code 0}.
+     */
+    public void record(long sample)
+    {
+        if (sample < 0)
+            sample = 0;
+        _buckets[bucketFor(sample)].increment();
+        _total.add(sample);
+        _max.accumulate(sample);
+    }
+
+    private static int bucketFor(long sample)
+    {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(sample));
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (LongAdder bucket : _buckets)
+        {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return the max value of the recorded samples
+     */
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    /**
+     * @return the sum of all the recorded samples
+     */
+    public long getTotal()
+    {
+        return _total.sum();
+    }
+
+    /**
+     * @return the average value of the samples recorded, or zero if there are no samples
+     */
+    public double getMean()
+    {
+        long count = getCount();
+        return count > 0 ? (double)getTotal() / count : 0.0D;
+    }
+
+    /**
+     * @return the number of samples of each bucket, where the bucket at index {@code i > 0}
+     * counts the samples in the range {@code [2^(i-1), 2^i)}
+     */
+    public long[] getBuckets()
+    {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            result[i] = _buckets[i].sum();
+        }
+        return result;
+    }
+
+    /**
+     * <p>Returns an estimate of the given percentile of the recorded samples,
+     * that is the exclusive upper bound of the bucket the percentile falls in,
+     * capped to the max value recorded.</p>
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return an estimate of the given percentile, or zero if there are no samples
+     */
+    public long getPercentile(double percentile)
+    {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+        long[] buckets = getBuckets();
+        long count = 0;
+        for (long bucket : buckets)
+        {
+            count += bucket;
+        }
+        if (count == 0)
+            return 0;
+
+        long rank = (long)Math.ceil(count * percentile / 100.0D);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(i == 0 ? 0 : (i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i), getMax());
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{count=%d,mean=%.2f,p50=%d,p99=%d,max=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getCount(),
+            getMean(),
+            getPercentile(50),
+            getPercentile(99),
+            getMax());
+    }
+}
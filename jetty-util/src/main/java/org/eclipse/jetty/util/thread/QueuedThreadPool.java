@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -42,7 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @ManagedObject("A thread pool")
-public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactory, SizedThreadPool, Dumpable, TryExecutor
+public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactory, SizedThreadPool, Dumpable, TryExecutor, VirtualThreads.Configurable
 {
     private static final Logger LOG = LoggerFactory.getLogger(QueuedThreadPool.class);
     private static Runnable NOOP = () ->
@@ -77,6 +78,7 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
     private int _lowThreadsThreshold = 1;
     private ThreadPoolBudget _budget;
     private long _stopTimeout;
+    private Executor _virtualThreadsExecutor;
 
     public QueuedThreadPool()
     {
@@ -166,6 +168,55 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         return _stopTimeout;
     }
 
+    @Override
+    public Executor getVirtualThreadsExecutor()
+    {
+        return _virtualThreadsExecutor;
+    }
+
+    /**
+     * <p>Sets the executor of virtual threads used to run blocking tasks.</p>
+     * <p>Jetty components that know that a task is blocking, such as the execution
+     * strategies that run the request handling, execute it with the given executor,
+     * while the selectors and the non-blocking tasks keep running on the threads of
+     * this pool.</p>
+     *
+     * @param executor the executor of virtual threads, or null to run all tasks on this pool
+     * @see VirtualThreads#getVirtualThreadsExecutor(Executor)
+     */
+    @Override
+    public void setVirtualThreadsExecutor(Executor executor)
+    {
+        _virtualThreadsExecutor = executor;
+    }
+
+    /**
+     * @return whether blocking tasks run on virtual threads
+     */
+    @ManagedAttribute("whether blocking tasks run on virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _virtualThreadsExecutor != null;
+    }
+
+    /**
+     * <p>Sets whether blocking tasks run on virtual threads.</p>
+     * <p>Enabling virtual threads on a JDK that does not support them logs
+     * a warning and has no effect.</p>
+     *
+     * @param useVirtualThreads whether blocking tasks run on virtual threads
+     * @see #setVirtualThreadsExecutor(Executor)
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads)
+    {
+        if (!useVirtualThreads)
+            setVirtualThreadsExecutor(null);
+        else if (!VirtualThreads.areSupported())
+            LOG.warn("Virtual threads are not supported by this JDK, ignoring useVirtualThreads for {}", this);
+        else if (_virtualThreadsExecutor == null)
+            setVirtualThreadsExecutor(VirtualThreads.newVirtualThreadsExecutor(getName() + "-virtual-"));
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -734,10 +785,14 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         }
 
         DumpableCollection threadsDump = new DumpableCollection("threads", threads);
+        List<Object> dumpables = new ArrayList<>();
+        dumpables.add(threadsDump);
         if (isDetailedDump())
-            dumpObjects(out, indent, threadsDump, new DumpableCollection("jobs", new ArrayList<>(getQueue())));
-        else
-            dumpObjects(out, indent, threadsDump);
+            dumpables.add(new DumpableCollection("jobs", new ArrayList<>(getQueue())));
+        Executor virtualThreadsExecutor = getVirtualThreadsExecutor();
+        if (virtualThreadsExecutor != null)
+            dumpables.add(Dumpable.named("virtualThreadsExecutor", virtualThreadsExecutor));
+        dumpObjects(out, indent, dumpables.toArray());
     }
 
     private String getCompressedStackTag(StackTraceElement[] trace)
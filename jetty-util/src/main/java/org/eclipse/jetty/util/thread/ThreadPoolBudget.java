@@ -155,6 +155,21 @@ public class ThreadPoolBudget
     private void printInfoOnLeases()
     {
         leases.forEach(lease -> LOG.info("{} requires {} threads from {}", lease.leasee, lease.getThreads(), pool));
+        if (isUseVirtualThreads())
+            LOG.info("Blocking tasks run on virtual threads from {}", VirtualThreads.getVirtualThreadsExecutor(pool));
+    }
+
+    /**
+     * <p>Returns whether the blocking tasks, such as the handling of requests, run on
+     * {@link VirtualThreads virtual threads} rather than on the threads of the pool.</p>
+     * <p>In this case the threads of the pool only need to cover the leases and
+     * the non-blocking tasks, so the pool may be sized accordingly.</p>
+     *
+     * @return whether blocking tasks run on virtual threads
+     */
+    public boolean isUseVirtualThreads()
+    {
+        return VirtualThreads.isUseVirtualThreads(pool);
     }
 
     public static Lease leaseFrom(Executor executor, Object leasee, int threads)
@@ -0,0 +1,145 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Utility methods to run tasks on virtual threads, when the JDK supports them.</p>
+ * <p>Virtual threads are looked up via reflection, so that this class compiles and runs
+ * with JDKs that do not support them, in which case {@link #areSupported()} returns
+ * {@code false}.</p>
+ * <p>Executors that implement {@link Configurable} may be configured with an executor
+ * of virtual threads; Jetty components use it to run blocking tasks, such as the
+ * handling of requests, while selectors and non-blocking tasks keep running on the
+ * platform threads of the executor.</p>
+ */
+public class VirtualThreads
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method isVirtualThread = probeIsVirtualThread();
+
+    private static Method probeIsVirtualThread()
+    {
+        try
+        {
+            Method method = Thread.class.getMethod("isVirtual");
+            // Virtual threads may be a preview feature that is not enabled.
+            newVirtualThreadsExecutor("probe-");
+            return method;
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Virtual threads are not supported", x);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the JDK supports virtual threads
+     */
+    public static boolean areSupported()
+    {
+        return isVirtualThread != null;
+    }
+
+    /**
+     * @return whether the current thread is a virtual thread
+     */
+    public static boolean isVirtualThread()
+    {
+        if (isVirtualThread == null)
+            return false;
+        try
+        {
+            return (Boolean)isVirtualThread.invoke(Thread.currentThread());
+        }
+        catch (Throwable x)
+        {
+            LOG.trace("IGNORED", x);
+            return false;
+        }
+    }
+
+    /**
+     * <p>Returns a new executor that runs each task in a new virtual thread.</p>
+     *
+     * @param namePrefix the prefix of the virtual thread names
+     * @return a new executor of virtual threads
+     * @throws UnsupportedOperationException if the JDK does not support virtual threads
+     */
+    public static Executor newVirtualThreadsExecutor(String namePrefix)
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+            return (Executor)Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        }
+        catch (Throwable x)
+        {
+            throw new UnsupportedOperationException("Virtual threads are not supported", x);
+        }
+    }
+
+    /**
+     * @param executor the executor to inspect
+     * @return the executor of virtual threads configured on the given executor, or null
+     * @see Configurable#getVirtualThreadsExecutor()
+     */
+    public static Executor getVirtualThreadsExecutor(Executor executor)
+    {
+        if (executor instanceof Configurable)
+            return ((Configurable)executor).getVirtualThreadsExecutor();
+        return null;
+    }
+
+    /**
+     * @param executor the executor to inspect
+     * @return whether the given executor is configured to run blocking tasks on virtual threads
+     */
+    public static boolean isUseVirtualThreads(Executor executor)
+    {
+        return getVirtualThreadsExecutor(executor) != null;
+    }
+
+    /**
+     * <p>Implemented by executors that can be configured to run blocking tasks on virtual threads.</p>
+     */
+    public interface Configurable
+    {
+        /**
+         * @return the executor of virtual threads used to run blocking tasks, or null
+         */
+        Executor getVirtualThreadsExecutor();
+
+        /**
+         * @param executor the executor of virtual threads used to run blocking tasks, or null
+         */
+        void setVirtualThreadsExecutor(Executor executor);
+    }
+
+    private VirtualThreads()
+    {
+    }
+}
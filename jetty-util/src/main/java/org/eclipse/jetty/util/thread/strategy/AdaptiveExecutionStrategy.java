@@ -0,0 +1,217 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread.strategy;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * <p>An {@link EatWhatYouKill} strategy that learns from the observed task service
+ * times and executor queue depth which mode to use for tasks that may block.</p>
+ * <p>{@link EatWhatYouKill} always prefers the Execute Produce Consume (EPC) mode
+ * when a reserved thread is available. This strategy instead keeps an exponentially
+ * weighted moving average of the time taken by the tasks it consumes, separately
+ * for {@link Invocable.InvocationType#BLOCKING} and {@link Invocable.InvocationType#EITHER}
+ * tasks, and:</p>
+ * <ul>
+ * <li>consumes BLOCKING tasks in EPC mode while their average service time is below
+ * {@link #getMaxConsumeTime() maxConsumeTime}; longer tasks are executed in Produce
+ * Execute Consume (PEC) mode, so that they do not take the reserved threads needed
+ * by short tasks, unless the executor queue is larger than
+ * {@link #getMaxQueueSize() maxQueueSize}, in which case executing the task would
+ * add the queue latency to the task latency;</li>
+ * <li>invokes EITHER tasks as non blocking in Produce Consume (PIC) mode while their
+ * average service time is below {@link #getMaxConsumeTime() maxConsumeTime}, which
+ * avoids handing production over to another thread; longer tasks use EPC mode.</li>
+ * </ul>
+ * <p>One every {@code 16} long BLOCKING tasks is consumed nevertheless, so that
+ * their average service time keeps being sampled while in PEC mode.</p>
+ * <p>The statistics are kept per strategy instance, so they are per connection when
+ * the strategy is used by a multiplexed connection, and per selector when it is used
+ * by a {@code ManagedSelector}.</p>
+ */
+@ManagedObject("adaptive execution strategy")
+public class AdaptiveExecutionStrategy extends EatWhatYouKill
+{
+    private static final int PROBE_MASK = 15;
+
+    private final AtomicLong _blockingTime = new AtomicLong();
+    private final AtomicLong _eitherTime = new AtomicLong();
+    private final AtomicLong _longTasks = new AtomicLong();
+    private final LongAdder _probes = new LongAdder();
+    private final LongAdder _adaptations = new LongAdder();
+    private final IntSupplier _queueSize;
+    private long _maxConsumeTime = TimeUnit.MICROSECONDS.toNanos(500);
+    private int _maxQueueSize = 0;
+
+    public AdaptiveExecutionStrategy(Producer producer, Executor executor)
+    {
+        super(producer, executor);
+        if (executor instanceof QueuedThreadPool)
+            _queueSize = ((QueuedThreadPool)executor)::getQueueSize;
+        else
+            _queueSize = () -> 0;
+    }
+
+    /**
+     * @return the max average service time, in nanoseconds, of the tasks that are consumed by the producing thread
+     */
+    @ManagedAttribute("The max average service time (ns) of consumed tasks")
+    public long getMaxConsumeTime()
+    {
+        return _maxConsumeTime;
+    }
+
+    /**
+     * @param maxConsumeTime the max average service time, in nanoseconds, of the tasks that are consumed by the producing thread
+     */
+    public void setMaxConsumeTime(long maxConsumeTime)
+    {
+        _maxConsumeTime = maxConsumeTime;
+    }
+
+    /**
+     * @return the executor queue size above which long BLOCKING tasks are consumed rather than executed
+     */
+    @ManagedAttribute("The executor queue size above which long blocking tasks are consumed")
+    public int getMaxQueueSize()
+    {
+        return _maxQueueSize;
+    }
+
+    /**
+     * @param maxQueueSize the executor queue size above which long BLOCKING tasks are consumed rather than executed
+     */
+    public void setMaxQueueSize(int maxQueueSize)
+    {
+        _maxQueueSize = maxQueueSize;
+    }
+
+    @ManagedAttribute(value = "average service time (ns) of blocking tasks", readonly = true)
+    public long getBlockingTaskTime()
+    {
+        return _blockingTime.get();
+    }
+
+    @ManagedAttribute(value = "average service time (ns) of either tasks", readonly = true)
+    public long getEitherTaskTime()
+    {
+        return _eitherTime.get();
+    }
+
+    @ManagedAttribute(value = "number of tasks for which the EPC mode was not preferred", readonly = true)
+    public long getAdaptedTasks()
+    {
+        return _adaptations.longValue();
+    }
+
+    @ManagedAttribute(value = "number of blocking tasks consumed to sample their service time", readonly = true)
+    public long getProbedTasks()
+    {
+        return _probes.longValue();
+    }
+
+    @Override
+    @ManagedOperation(value = "resets the task counts and service times", impact = "ACTION")
+    public void reset()
+    {
+        super.reset();
+        _blockingTime.set(0);
+        _eitherTime.set(0);
+        _longTasks.set(0);
+        _probes.reset();
+        _adaptations.reset();
+    }
+
+    @Override
+    protected boolean isExecuteProduceConsumePreferred(Runnable task, Invocable.InvocationType invocationType)
+    {
+        if (invocationType == Invocable.InvocationType.BLOCKING)
+        {
+            if (_blockingTime.get() <= _maxConsumeTime || _queueSize.getAsInt() > _maxQueueSize)
+                return true;
+            // Long task, execute it, but consume one in a while to sample its service time.
+            if ((_longTasks.incrementAndGet() & PROBE_MASK) == 0)
+            {
+                _probes.increment();
+                return true;
+            }
+        }
+        else
+        {
+            if (_eitherTime.get() > _maxConsumeTime)
+                return true;
+        }
+        _adaptations.increment();
+        return false;
+    }
+
+    @Override
+    protected void runTask(Runnable task)
+    {
+        long begin = System.nanoTime();
+        try
+        {
+            super.runTask(task);
+        }
+        finally
+        {
+            sample(task, System.nanoTime() - begin);
+        }
+    }
+
+    @Override
+    protected void invokeTask(Runnable task)
+    {
+        long begin = System.nanoTime();
+        try
+        {
+            super.invokeTask(task);
+        }
+        finally
+        {
+            sample(task, System.nanoTime() - begin);
+        }
+    }
+
+    private void sample(Runnable task, long time)
+    {
+        switch (Invocable.getInvocationType(task))
+        {
+            case BLOCKING:
+                _blockingTime.accumulateAndGet(time, AdaptiveExecutionStrategy::average);
+                break;
+            case EITHER:
+                _eitherTime.accumulateAndGet(time, AdaptiveExecutionStrategy::average);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static long average(long average, long sample)
+    {
+        // Exponentially weighted moving average with alpha=1/8.
+        return average + ((sample - average) >> 3);
+    }
+}
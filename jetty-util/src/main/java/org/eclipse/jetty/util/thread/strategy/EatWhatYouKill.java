@@ -28,6 +28,7 @@ import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.TryExecutor;
+import org.eclipse.jetty.util.thread.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +49,10 @@ import org.slf4j.LoggerFactory;
  * indicated it is non-blocking, then this strategy will dispatch the execution of
  * the task and immediately continue production. When operating in this pattern, the
  * sub-strategy is called ProduceExecuteConsume (PEC).</p>
+ * <p>If the executor is configured to run blocking tasks on
+ * {@link VirtualThreads virtual threads}, then tasks that have not indicated
+ * they are non-blocking are always executed on a virtual thread (PEC), so that
+ * the platform threads are only used for production and non-blocking tasks.</p>
  */
 @ManagedObject("eat what you kill execution strategy")
 public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrategy, Runnable
@@ -234,6 +239,12 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
                 case BLOCKING:
                     // The task is blocking, so PC is not an option. Thus we choose
                     // between EPC and PEC based on the availability of a reserved thread.
+                    // Blocking tasks are always executed if they can run on virtual threads.
+                    if (VirtualThreads.isUseVirtualThreads(_executor) || !isExecuteProduceConsumePreferred(task, Invocable.InvocationType.BLOCKING))
+                    {
+                        mode = Mode.PRODUCE_EXECUTE_CONSUME;
+                        break;
+                    }
                     try (AutoLock l = _lock.lock())
                     {
                         if (_pending)
@@ -257,6 +268,11 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
                 case EITHER:
                     // The task may be non blocking, so PC is an option. Thus we choose
                     // between EPC and PC based on the availability of a reserved thread.
+                    if (!isExecuteProduceConsumePreferred(task, Invocable.InvocationType.EITHER))
+                    {
+                        mode = Mode.PRODUCE_INVOKE_CONSUME;
+                        break;
+                    }
                     try (AutoLock l = _lock.lock())
                     {
                         if (_pending)
@@ -326,7 +342,30 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
         }
     }
 
-    private void runTask(Runnable task)
+    /**
+     * <p>Returns whether the given task, that may block, should be consumed by the
+     * producing thread while a reserved thread takes over production (EPC mode).</p>
+     * <p>When this method returns {@code false}, a {@link Invocable.InvocationType#BLOCKING}
+     * task is executed by another thread (PEC mode) and an {@link Invocable.InvocationType#EITHER}
+     * task is invoked as non blocking by the producing thread (PIC mode).</p>
+     * <p>This implementation always returns {@code true}, so that EPC mode is used
+     * whenever a reserved thread is available.</p>
+     *
+     * @param task the task produced
+     * @param invocationType the invocation type of the task, either BLOCKING or EITHER
+     * @return whether EPC mode should be used if a reserved thread is available
+     */
+    protected boolean isExecuteProduceConsumePreferred(Runnable task, Invocable.InvocationType invocationType)
+    {
+        return true;
+    }
+
+    /**
+     * <p>Runs the given task in the calling thread.</p>
+     *
+     * @param task the task to run
+     */
+    protected void runTask(Runnable task)
     {
         try
         {
@@ -338,7 +377,13 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
         }
     }
 
-    private void invokeTask(Runnable task)
+    /**
+     * <p>Invokes the given task as non blocking in the calling thread.</p>
+     *
+     * @param task the task to invoke
+     * @see Invocable#invokeNonBlocking(Runnable)
+     */
+    protected void invokeTask(Runnable task)
     {
         try
         {
@@ -367,7 +412,12 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
     {
         try
         {
-            _executor.execute(task);
+            // Only blocking tasks are executed, so they run on virtual threads if available.
+            Executor virtualThreadsExecutor = VirtualThreads.getVirtualThreadsExecutor(_executor);
+            if (virtualThreadsExecutor != null)
+                virtualThreadsExecutor.execute(task);
+            else
+                _executor.execute(task);
         }
         catch (RejectedExecutionException e)
         {
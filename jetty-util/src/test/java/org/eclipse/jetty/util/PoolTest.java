@@ -31,8 +31,10 @@ import static org.eclipse.jetty.util.Pool.StrategyType.FIRST;
 import static org.eclipse.jetty.util.Pool.StrategyType.RANDOM;
 import static org.eclipse.jetty.util.Pool.StrategyType.ROUND_ROBIN;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
@@ -323,6 +325,46 @@ public class PoolTest
         assertThrows(NullPointerException.class, () -> pool.remove(null));
     }
 
+    @ParameterizedTest
+    @MethodSource(value = "strategy")
+    public void testRemoveIdle(Factory factory)
+    {
+        Pool<CloseableHolder> pool = factory.getPool(2);
+        pool.setMaxMultiplex(2);
+        pool.reserve().enable(new CloseableHolder("aaa"), false);
+
+        Pool<CloseableHolder>.Entry e1 = pool.acquire();
+        assertThat(pool.removeIdle(e1), is(false));
+        assertThat(e1.isClosed(), is(false));
+        assertThat(pool.release(e1), is(true));
+
+        assertThat(pool.removeIdle(e1), is(true));
+        assertThat(pool.removeIdle(e1), is(false));
+        assertThat(pool.size(), is(0));
+        assertThat(pool.acquire(), nullValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "strategy")
+    public void testAcquireEntry(Factory factory)
+    {
+        Pool<CloseableHolder> pool = factory.getPool(2);
+        pool.setMaxMultiplex(2);
+        Pool<CloseableHolder>.Entry reserved = pool.reserve();
+        assertThat(pool.acquire(reserved), is(false));
+        reserved.enable(new CloseableHolder("aaa"), false);
+
+        assertThat(pool.acquire(reserved), is(true));
+        assertThat(pool.acquire(reserved), is(true));
+        assertThat(pool.acquire(reserved), is(false));
+        assertThat(pool.release(reserved), is(true));
+        assertThat(pool.acquire(reserved), is(true));
+
+        assertThat(pool.remove(reserved), is(false));
+        assertThat(pool.remove(reserved), is(true));
+        assertThat(pool.acquire(reserved), is(false));
+    }
+
     @ParameterizedTest
     @MethodSource(value = "strategy")
     public void testValuesSize(Factory factory)
@@ -751,4 +793,98 @@ public class PoolTest
         assertThat(e3.getPooled().get(), greaterThan(10));
         assertThat(e4.getPooled().get(), greaterThan(10));
     }
+
+    @Test
+    public void testStatisticsDisabledByDefault()
+    {
+        Pool<CloseableHolder> pool = new Pool<>(FIRST, 1);
+        pool.reserve().enable(new CloseableHolder("aaa"), false);
+        Pool<CloseableHolder>.Entry e1 = pool.acquire();
+        assertThat(e1, notNullValue());
+        assertThat(pool.acquire(), nullValue());
+
+        assertThat(pool.isStatisticsEnabled(), is(false));
+        assertThat(pool.getAcquireCount(), is(0L));
+        assertThat(pool.getAcquireMissCount(), is(0L));
+        assertThat(pool.getStrategyProbeCount(), is(0L));
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        Pool<CloseableHolder> pool = new Pool<>(FIRST, 2);
+        pool.setStatisticsEnabled(true);
+        assertThat(pool.acquire(), nullValue());
+        assertThat(pool.getAcquireCount(), is(1L));
+        assertThat(pool.getAcquireMissCount(), is(1L));
+
+        pool.reserve().enable(new CloseableHolder("aaa"), false);
+        pool.reserve().enable(new CloseableHolder("bbb"), false);
+
+        Pool<CloseableHolder>.Entry e1 = pool.acquire();
+        Pool<CloseableHolder>.Entry e2 = pool.acquire();
+        assertThat(pool.acquire(), nullValue());
+
+        assertThat(pool.getAcquireCount(), is(4L));
+        assertThat(pool.getAcquireMissCount(), is(2L));
+        assertThat(pool.getStrategyHitCount(), is(2L));
+        // FIRST probes 1 entry for e1, 2 for e2, 2 for the miss.
+        assertThat(pool.getStrategyProbeCount(), is(5L));
+        assertThat(pool.getStrategyHitRatio(), is(2.0D / 5));
+        assertThat(pool.getCacheHitCount(), is(0L));
+        assertThat(pool.getAcquireLatencyStatistic().getCount(), is(4L));
+        assertThat(pool.getAcquireLatencyMax(), greaterThanOrEqualTo(pool.getAcquireLatency99thPercentile()));
+
+        pool.release(e1);
+        pool.release(e2);
+        assertThat(pool.dump(), containsString("misses=2"));
+
+        pool.resetStatistics();
+        assertThat(pool.getAcquireCount(), is(0L));
+        assertThat(pool.getAcquireMissCount(), is(0L));
+        assertThat(pool.getStrategyProbeCount(), is(0L));
+    }
+
+    @Test
+    public void testCacheStatistics()
+    {
+        Pool<CloseableHolder> pool = new Pool<>(FIRST, 1, true);
+        pool.setStatisticsEnabled(true);
+        pool.reserve().enable(new CloseableHolder("aaa"), false);
+
+        // Nothing in the cache yet.
+        Pool<CloseableHolder>.Entry e1 = pool.acquire();
+        assertThat(pool.getCacheMissCount(), is(1L));
+        assertThat(pool.getStrategyHitCount(), is(1L));
+        pool.release(e1);
+
+        // The released entry is cached.
+        Pool<CloseableHolder>.Entry e2 = pool.acquire();
+        assertThat(e2, sameInstance(e1));
+        assertThat(pool.getCacheHitCount(), is(1L));
+        assertThat(pool.getStrategyHitCount(), is(1L));
+        pool.release(e2);
+    }
+
+    @Test
+    public void testOverUsedRemovedStatistics()
+    {
+        Pool<CloseableHolder> pool = new Pool<>(FIRST, 2);
+        pool.setMaxUsageCount(1);
+        pool.reserve().enable(new CloseableHolder("aaa"), false);
+
+        Pool<CloseableHolder>.Entry e1 = pool.acquire();
+        assertThat(pool.release(e1), is(false));
+        assertThat(pool.getOverUsedRemovedCount(), is(1L));
+        assertThat(pool.remove(e1), is(true));
+
+        pool.setMaxUsageCount(2);
+        Pool<CloseableHolder>.Entry e2 = pool.reserve();
+        e2.enable(new CloseableHolder("bbb"), false);
+        e2 = pool.acquire();
+        assertThat(pool.release(e2), is(true));
+        pool.setMaxUsageCount(1);
+        assertThat(pool.size(), is(0));
+        assertThat(pool.getOverUsedRemovedCount(), is(2L));
+    }
 }
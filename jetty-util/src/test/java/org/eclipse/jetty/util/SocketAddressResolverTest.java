@@ -0,0 +1,159 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocketAddressResolverTest
+{
+    private final BlockingQueue<Promise<List<InetSocketAddress>>> resolutions = new LinkedBlockingQueue<>();
+    private final SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching((host, port, promise) -> resolutions.offer(promise));
+
+    @Test
+    public void testResolutionIsCached() throws Exception
+    {
+        Promise.Completable<List<InetSocketAddress>> promise1 = resolve(8080);
+        succeed(resolutions.poll(), "10.0.0.1", "10.0.0.2");
+        assertEquals(List.of(address("10.0.0.1", 8080), address("10.0.0.2", 8080)), promise1.get(5, TimeUnit.SECONDS));
+
+        Promise.Completable<List<InetSocketAddress>> promise2 = resolve(8443);
+        assertTrue(promise2.isDone());
+        assertNull(resolutions.poll());
+        assertEquals(List.of(address("10.0.0.1", 8443), address("10.0.0.2", 8443)), promise2.get());
+        assertEquals(1, resolver.getHits());
+        assertEquals(1, resolver.getMisses());
+    }
+
+    @Test
+    public void testResolutionExpires() throws Exception
+    {
+        resolver.setTimeToLive(100);
+        resolve(80);
+        succeed(resolutions.poll(), "10.0.0.1");
+
+        Thread.sleep(200);
+
+        Promise.Completable<List<InetSocketAddress>> promise = resolve(80);
+        assertFalse(promise.isDone());
+        succeed(resolutions.poll(), "10.0.0.2");
+        assertEquals(List.of(address("10.0.0.2", 80)), promise.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentResolutionsAreCoalesced() throws Exception
+    {
+        Promise.Completable<List<InetSocketAddress>> promise1 = resolve(80);
+        Promise.Completable<List<InetSocketAddress>> promise2 = resolve(443);
+        assertFalse(promise1.isDone());
+        assertFalse(promise2.isDone());
+
+        succeed(resolutions.poll(), "10.0.0.1");
+        assertNull(resolutions.poll());
+        assertEquals(List.of(address("10.0.0.1", 80)), promise1.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(address("10.0.0.1", 443)), promise2.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUnknownHostIsCached() throws Exception
+    {
+        Promise.Completable<List<InetSocketAddress>> promise1 = resolve(80);
+        resolutions.poll().failed(new UnknownHostException("unknown"));
+        ExecutionException failure1 = assertThrows(ExecutionException.class, () -> promise1.get(5, TimeUnit.SECONDS));
+        assertThat(failure1.getCause(), instanceOf(UnknownHostException.class));
+
+        Promise.Completable<List<InetSocketAddress>> promise2 = resolve(80);
+        assertNull(resolutions.poll());
+        ExecutionException failure2 = assertThrows(ExecutionException.class, () -> promise2.get(5, TimeUnit.SECONDS));
+        assertThat(failure2.getCause(), instanceOf(UnknownHostException.class));
+    }
+
+    @Test
+    public void testTimeoutIsNotCached() throws Exception
+    {
+        Promise.Completable<List<InetSocketAddress>> promise1 = resolve(80);
+        resolutions.poll().failed(new TimeoutException());
+        assertThrows(ExecutionException.class, () -> promise1.get(5, TimeUnit.SECONDS));
+
+        Promise.Completable<List<InetSocketAddress>> promise2 = resolve(80);
+        succeed(resolutions.poll(), "10.0.0.1");
+        assertEquals(List.of(address("10.0.0.1", 80)), promise2.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStaleResolutionIsRefreshedInBackground() throws Exception
+    {
+        resolver.setTimeToLive(60_000);
+        resolver.setRefreshRatio(0.001);
+        resolve(80);
+        succeed(resolutions.poll(), "10.0.0.1");
+
+        Thread.sleep(100);
+
+        // The stale result is used while the host is resolved again.
+        Promise.Completable<List<InetSocketAddress>> promise1 = resolve(80);
+        assertEquals(List.of(address("10.0.0.1", 80)), promise1.get());
+        Promise<List<InetSocketAddress>> refresh = resolutions.poll();
+        Promise.Completable<List<InetSocketAddress>> promise2 = resolve(80);
+        assertEquals(List.of(address("10.0.0.1", 80)), promise2.get());
+        assertNull(resolutions.poll());
+        assertEquals(1, resolver.getRefreshes());
+
+        // A failed refresh does not discard the cached result.
+        refresh.failed(new TimeoutException());
+        assertEquals(List.of(address("10.0.0.1", 80)), resolve(80).get());
+
+        succeed(resolutions.poll(), "10.0.0.2");
+        assertEquals(List.of(address("10.0.0.2", 80)), resolve(80).get());
+    }
+
+    private Promise.Completable<List<InetSocketAddress>> resolve(int port)
+    {
+        Promise.Completable<List<InetSocketAddress>> promise = new Promise.Completable<>();
+        resolver.resolve("host", port, promise);
+        return promise;
+    }
+
+    private static void succeed(Promise<List<InetSocketAddress>> promise, String... addresses) throws UnknownHostException
+    {
+        InetSocketAddress[] result = new InetSocketAddress[addresses.length];
+        for (int i = 0; i < addresses.length; ++i)
+        {
+            result[i] = address(addresses[i], 0);
+        }
+        promise.succeeded(List.of(result));
+    }
+
+    private static InetSocketAddress address(String address, int port) throws UnknownHostException
+    {
+        return new InetSocketAddress(InetAddress.getByName(address), port);
+    }
+}
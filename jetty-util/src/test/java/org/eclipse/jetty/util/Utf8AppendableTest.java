@@ -14,6 +14,7 @@
 package org.eclipse.jetty.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -29,6 +30,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -249,6 +251,35 @@ public class Utf8AppendableTest
         assertThat("Seq3", ret3, is("\uC3A4\uC3BC\uC3A0\uC3A1-UTF-8!!"));
     }
 
+    @ParameterizedTest
+    @MethodSource("implementations")
+    public void testAsciiRunsOfAnyLength(Class<Utf8Appendable> impl) throws Exception
+    {
+        StringBuilder source = new StringBuilder();
+        for (int run = 0; run < 40; run++)
+        {
+            source.append("x".repeat(run)).append("\u00e9\u20ac");
+        }
+        Utf8Appendable utf8 = impl.getDeclaredConstructor().newInstance();
+        utf8.append(BufferUtil.toBuffer(source.toString(), StandardCharsets.UTF_8));
+        assertThat(utf8.toString(), is(source.toString()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("implementations")
+    public void testInvalidByteAfterLongAsciiRun(Class<Utf8Appendable> impl) throws Exception
+    {
+        String ascii = "abcdefghijklmnopqrstuvwxyz0123456789";
+        ByteBuffer buffer = BufferUtil.toBuffer(ascii + "\u00e9", StandardCharsets.UTF_8);
+        // Replace the continuation byte of the last character with an ASCII byte.
+        buffer.put(buffer.limit() - 1, (byte)'!');
+        Utf8Appendable utf8 = impl.getDeclaredConstructor().newInstance();
+
+        assertThrows(Utf8Appendable.NotUtf8Exception.class, () -> utf8.append(buffer));
+        assertThat(utf8.toString(), startsWith(ascii));
+        assertThat(buffer.remaining(), is(0));
+    }
+
     @TestFactory
     public Iterator<DynamicTest> testBadUtf8()
     {
@@ -0,0 +1,77 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testEmpty()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0D, histogram.getMean(), 0.0D);
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testBuckets()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+
+        long[] buckets = histogram.getBuckets();
+        assertEquals(2, buckets[0]);
+        assertEquals(1, buckets[1]);
+        assertEquals(2, buckets[2]);
+        assertEquals(1, buckets[3]);
+        assertEquals(1, buckets[63]);
+        assertEquals(7, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (int i = 0; i < 99; ++i)
+        {
+            histogram.record(100);
+        }
+        histogram.record(10_000);
+
+        // 100 falls in [64, 128), 10_000 falls in [8192, 16384).
+        assertEquals(128, histogram.getPercentile(50));
+        assertEquals(128, histogram.getPercentile(99));
+        // The upper bound is capped to the max value.
+        assertEquals(10_000, histogram.getPercentile(100));
+        assertEquals((99 * 100 + 10_000) / 100.0D, histogram.getMean(), 0.001D);
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
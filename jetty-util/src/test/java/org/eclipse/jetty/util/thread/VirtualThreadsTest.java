@@ -0,0 +1,120 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualThreadsTest
+{
+    @Test
+    public void testUseVirtualThreads() throws Exception
+    {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("test");
+        threadPool.setUseVirtualThreads(true);
+        assertEquals(VirtualThreads.areSupported(), threadPool.isUseVirtualThreads());
+        assertEquals(VirtualThreads.areSupported(), threadPool.getThreadPoolBudget().isUseVirtualThreads());
+
+        if (VirtualThreads.areSupported())
+        {
+            CountDownLatch latch = new CountDownLatch(1);
+            VirtualThreads.getVirtualThreadsExecutor(threadPool).execute(() ->
+            {
+                assertTrue(VirtualThreads.isVirtualThread());
+                assertThat(Thread.currentThread().getName(), startsWith("test-virtual-"));
+                latch.countDown();
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        else
+        {
+            assertFalse(VirtualThreads.isVirtualThread());
+            assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newVirtualThreadsExecutor("test-"));
+        }
+
+        threadPool.setUseVirtualThreads(false);
+        assertFalse(threadPool.isUseVirtualThreads());
+    }
+
+    @Test
+    public void testBlockingTasksRunOnVirtualThreadsExecutor() throws Exception
+    {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        AtomicInteger virtualTasks = new AtomicInteger();
+        Executor virtualThreadsExecutor = task ->
+        {
+            virtualTasks.incrementAndGet();
+            new Thread(task).start();
+        };
+        threadPool.setVirtualThreadsExecutor(virtualThreadsExecutor);
+        threadPool.start();
+        try
+        {
+            Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+            EatWhatYouKill strategy = new EatWhatYouKill(tasks::poll, threadPool);
+            strategy.start();
+
+            CountDownLatch latch = new CountDownLatch(2);
+            Thread producer = Thread.currentThread();
+            // A blocking task runs on the virtual threads executor.
+            tasks.offer(latch::countDown);
+            // A non-blocking task runs in the producing thread.
+            tasks.offer(new NonBlockingTask()
+            {
+                @Override
+                public void run()
+                {
+                    if (Thread.currentThread() == producer)
+                        latch.countDown();
+                }
+            });
+            strategy.produce();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(virtualTasks.get(), is(1));
+            assertThat(strategy.getPECTasksExecuted(), is(1L));
+            assertThat(strategy.getPCTasksConsumed(), is(1L));
+            strategy.stop();
+        }
+        finally
+        {
+            threadPool.stop();
+        }
+    }
+
+    private abstract static class NonBlockingTask implements Runnable, Invocable
+    {
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return InvocationType.NON_BLOCKING;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread.strategy;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveExecutionStrategyTest
+{
+    private final QueuedThreadPool _threads = new QueuedThreadPool(20);
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+    private AdaptiveExecutionStrategy _strategy;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        _threads.start();
+        _strategy = new AdaptiveExecutionStrategy(_tasks::poll, _threads);
+        _strategy.setMaxConsumeTime(TimeUnit.MILLISECONDS.toNanos(1));
+        _strategy.start();
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        _strategy.stop();
+        _threads.stop();
+    }
+
+    @Test
+    public void testShortBlockingTasksAreConsumed()
+    {
+        _strategy.runTask(new Task(Invocable.InvocationType.BLOCKING, 0));
+        assertTrue(_strategy.isExecuteProduceConsumePreferred(null, Invocable.InvocationType.BLOCKING));
+        assertThat(_strategy.getAdaptedTasks(), is(0L));
+    }
+
+    @Test
+    public void testLongBlockingTasksAreExecuted()
+    {
+        // Sample enough long tasks for the average to exceed the max consume time.
+        while (_strategy.getBlockingTaskTime() <= _strategy.getMaxConsumeTime())
+        {
+            _strategy.runTask(new Task(Invocable.InvocationType.BLOCKING, 5));
+        }
+
+        int preferred = 0;
+        for (int i = 0; i < 32; ++i)
+        {
+            if (_strategy.isExecuteProduceConsumePreferred(null, Invocable.InvocationType.BLOCKING))
+                ++preferred;
+        }
+        // Only the probes are consumed.
+        assertThat(preferred, is(2));
+        assertThat(_strategy.getProbedTasks(), is(2L));
+        assertThat(_strategy.getAdaptedTasks(), is(30L));
+
+        _strategy.reset();
+        assertThat(_strategy.getBlockingTaskTime(), is(0L));
+        assertTrue(_strategy.isExecuteProduceConsumePreferred(null, Invocable.InvocationType.BLOCKING));
+    }
+
+    @Test
+    public void testEitherTasks()
+    {
+        // Short EITHER tasks are invoked as non blocking.
+        _strategy.invokeTask(new Task(Invocable.InvocationType.EITHER, 0));
+        assertFalse(_strategy.isExecuteProduceConsumePreferred(null, Invocable.InvocationType.EITHER));
+
+        // Long EITHER tasks are consumed in EPC mode.
+        while (_strategy.getEitherTaskTime() <= _strategy.getMaxConsumeTime())
+        {
+            _strategy.runTask(new Task(Invocable.InvocationType.EITHER, 5));
+        }
+        assertTrue(_strategy.isExecuteProduceConsumePreferred(null, Invocable.InvocationType.EITHER));
+    }
+
+    @Test
+    public void testProduceLongBlockingTasks() throws Exception
+    {
+        int count = 64;
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; ++i)
+        {
+            _tasks.offer(new Task(Invocable.InvocationType.BLOCKING, 2)
+            {
+                @Override
+                public void run()
+                {
+                    super.run();
+                    latch.countDown();
+                }
+            });
+            _strategy.produce();
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(_strategy.getBlockingTaskTime(), greaterThan(_strategy.getMaxConsumeTime()));
+        assertThat(_strategy.getPECTasksExecuted(), greaterThan(0L));
+    }
+
+    private static class Task implements Runnable, Invocable
+    {
+        private final InvocationType _invocationType;
+        private final long _sleep;
+
+        private Task(InvocationType invocationType, long sleep)
+        {
+            _invocationType = invocationType;
+            _sleep = sleep;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                Thread.sleep(_sleep);
+            }
+            catch (InterruptedException x)
+            {
+                throw new RuntimeException(x);
+            }
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _invocationType;
+        }
+    }
+}
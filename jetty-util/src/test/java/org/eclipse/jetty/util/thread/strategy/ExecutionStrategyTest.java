@@ -44,7 +44,8 @@ public class ExecutionStrategyTest
         return Stream.of(
             ProduceExecuteConsume.class,
             ExecuteProduceConsume.class,
-            EatWhatYouKill.class
+            EatWhatYouKill.class,
+            AdaptiveExecutionStrategy.class
         ).map(Arguments::of);
     }
 
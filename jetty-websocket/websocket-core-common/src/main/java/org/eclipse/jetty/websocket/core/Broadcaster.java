@@ -0,0 +1,247 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.nio.channels.WritePendingException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.websocket.core.internal.EncodedFrame;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Sends the same frame to many {@link CoreSession}s, generating the frame only once.</p>
+ * <p>The frame is generated into a reference counted buffer that is shared by all the sessions:
+ * the sessions that send the frame as it is, without masking it and without transforming it
+ * with extensions such as permessage-deflate, write a read-only view of the shared buffer,
+ * while the other sessions generate the frame as usual.</p>
+ * <p>A session that does not keep up with the broadcasts eventually exceeds its
+ * {@link Configuration#getMaxOutgoingFrames() max outgoing frames}; the {@link Policy}
+ * decides whether the frame is dropped for that session, or whether that session is closed.</p>
+ * <p>The callback passed to {@link #broadcast(Frame, Collection, Callback)} is succeeded
+ * when the frame has been sent, dropped or failed for all the sessions; the outcome for
+ * the single sessions is reported by the statistics of this class.</p>
+ * <p>The collection of sessions may be modified concurrently with a broadcast,
+ * for example when it is a concurrent set of the connected sessions.</p>
+ */
+@ManagedObject("Broadcasts frames to WebSocket sessions")
+public class Broadcaster
+{
+    private static final Logger LOG = LoggerFactory.getLogger(Broadcaster.class);
+
+    /**
+     * The policy applied to sessions whose outgoing frames queue is full.
+     */
+    public enum Policy
+    {
+        /**
+         * The frame is not sent to the session.
+         */
+        DROP,
+        /**
+         * The frame is not sent to the session, and the session is closed.
+         */
+        CLOSE
+    }
+
+    private final Generator generator = new Generator();
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final ByteBufferPool bufferPool;
+    private Policy policy = Policy.DROP;
+    private boolean useDirectByteBuffers;
+
+    public Broadcaster(ByteBufferPool bufferPool)
+    {
+        this.bufferPool = Objects.requireNonNull(bufferPool);
+    }
+
+    @ManagedAttribute("The policy for sessions whose outgoing frames queue is full")
+    public Policy getPolicy()
+    {
+        return policy;
+    }
+
+    public void setPolicy(Policy policy)
+    {
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    @ManagedAttribute("Whether frames are generated into direct ByteBuffers")
+    public boolean isUseDirectByteBuffers()
+    {
+        return useDirectByteBuffers;
+    }
+
+    public void setUseDirectByteBuffers(boolean useDirectByteBuffers)
+    {
+        this.useDirectByteBuffers = useDirectByteBuffers;
+    }
+
+    @ManagedAttribute("The number of broadcasts")
+    public long getBroadcasts()
+    {
+        return broadcasts.longValue();
+    }
+
+    @ManagedAttribute("The number of frames sent to sessions")
+    public long getSent()
+    {
+        return sent.longValue();
+    }
+
+    @ManagedAttribute("The number of frames dropped because the session outgoing frames queue was full")
+    public long getDropped()
+    {
+        return dropped.longValue();
+    }
+
+    @ManagedAttribute("The number of frames that failed to be sent to sessions")
+    public long getFailed()
+    {
+        return failed.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        broadcasts.reset();
+        sent.reset();
+        dropped.reset();
+        failed.reset();
+    }
+
+    /**
+     * <p>Sends the given frame to the given sessions.</p>
+     * <p>The frame and its payload must not be modified until the callback is completed.</p>
+     * <p>The callback is failed if the frame cannot be generated, or if a session
+     * throws while sending it.</p>
+     *
+     * @param frame the frame to send
+     * @param sessions the sessions to send the frame to
+     * @param callback the callback completed when the frame has been sent, dropped or failed for all the sessions
+     */
+    public void broadcast(Frame frame, Collection<? extends CoreSession> sessions, Callback callback)
+    {
+        broadcasts.increment();
+
+        RetainableByteBuffer encoded = new RetainableByteBuffer(bufferPool, Generator.MAX_HEADER_LENGTH + frame.getPayloadLength(), isUseDirectByteBuffers());
+
+        // One for this method, so that the callback is not completed before all sessions have been processed;
+        // the sessions are counted while iterating, as the collection may be modified concurrently.
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable complete = () ->
+        {
+            if (pending.decrementAndGet() == 0)
+            {
+                encoded.release();
+                Throwable x = failure.get();
+                if (x == null)
+                    callback.succeeded();
+                else
+                    callback.failed(x);
+            }
+        };
+
+        try
+        {
+            generator.generateWholeFrame(frame, encoded.getBuffer());
+            for (CoreSession session : sessions)
+            {
+                pending.incrementAndGet();
+                try
+                {
+                    session.sendFrame(new EncodedFrame(frame, encoded), new Callback()
+                    {
+                        @Override
+                        public void succeeded()
+                        {
+                            sent.increment();
+                            complete.run();
+                        }
+
+                        @Override
+                        public void failed(Throwable x)
+                        {
+                            if (x instanceof WritePendingException)
+                                onFull(session);
+                            else
+                                onFailed(session, x);
+                            complete.run();
+                        }
+                    }, false);
+                }
+                catch (Throwable x)
+                {
+                    // Assume that the session did not complete the callback.
+                    complete.run();
+                    throw x;
+                }
+            }
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Failed broadcast of {}", frame, x);
+            // The buffer is released and the callback failed only
+            // when the sessions already sending the frame complete.
+            failure.set(x);
+        }
+
+        complete.run();
+    }
+
+    private void onFull(CoreSession session)
+    {
+        dropped.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Outgoing frames queue full, {} {}", policy, session);
+        if (policy == Policy.CLOSE)
+            session.close(CloseStatus.POLICY_VIOLATION, "Slow consumer", Callback.NOOP);
+    }
+
+    private void onFailed(CoreSession session, Throwable failure)
+    {
+        failed.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Failed broadcast to {}", session, failure);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[policy=%s,broadcasts=%d,sent=%d,dropped=%d,failed=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            policy,
+            getBroadcasts(),
+            getSent(),
+            getDropped(),
+            getFailed());
+    }
+}
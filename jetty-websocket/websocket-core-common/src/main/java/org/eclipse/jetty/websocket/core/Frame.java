@@ -372,26 +372,23 @@ public class Frame
                 maskInt = (maskInt << 8) + (maskByte & 0xFF);
             }
 
-            int maskOffset = 0;
-
+            // Unmask a long word at a time, then the remaining bytes.
+            long maskLong = ((long)maskInt << 32) | (maskInt & 0xFFFFFFFFL);
             int start = payload.position();
             int end = payload.limit();
-            int offset = maskOffset;
-            int remaining;
-            while ((remaining = end - start) > 0)
+            while (end - start >= 8)
+            {
+                payload.putLong(start, payload.getLong(start) ^ maskLong);
+                start += 8;
+            }
+            if (end - start >= 4)
+            {
+                payload.putInt(start, payload.getInt(start) ^ maskInt);
+                start += 4;
+            }
+            for (int offset = 0; start < end; ++start, ++offset)
             {
-                if (remaining >= 4 && (offset & 3) == 0)
-                {
-                    payload.putInt(start, payload.getInt(start) ^ maskInt);
-                    start += 4;
-                    offset += 4;
-                }
-                else
-                {
-                    payload.put(start, (byte)(payload.get(start) ^ mask[offset & 3]));
-                    ++start;
-                    ++offset;
-                }
+                payload.put(start, (byte)(payload.get(start) ^ mask[offset]));
             }
 
             Arrays.fill(mask, (byte)0);
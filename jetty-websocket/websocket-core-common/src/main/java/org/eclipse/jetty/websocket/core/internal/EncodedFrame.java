@@ -0,0 +1,60 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.internal;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.websocket.core.Frame;
+
+/**
+ * <p>A {@link Frame} that has already been generated into a shared buffer.</p>
+ * <p>The {@link FrameFlusher} writes the shared buffer in place of generating the frame,
+ * unless the frame has been modified after it has been generated, for example because
+ * it has been masked; in that case the frame is generated as usual.</p>
+ * <p>The shared buffer must be retained for as long as the frame is in use.</p>
+ */
+public class EncodedFrame extends Frame
+{
+    private final RetainableByteBuffer encoded;
+    private final ByteBuffer encodedPayload;
+    private final byte encodedFinRsvOp;
+    private final int encodedPayloadLength;
+
+    /**
+     * @param frame the frame that has been generated
+     * @param encoded the buffer containing the generated frame, header and payload
+     */
+    public EncodedFrame(Frame frame, RetainableByteBuffer encoded)
+    {
+        super(frame.getOpCode(), frame.getPayload());
+        copyHeaders(frame);
+        this.encoded = encoded;
+        this.encodedPayload = getPayload();
+        this.encodedFinRsvOp = finRsvOp;
+        this.encodedPayloadLength = getPayloadLength();
+    }
+
+    /**
+     * @return a read-only view of the generated frame, or null if the frame has been modified after it has been generated
+     */
+    public ByteBuffer getEncodedBuffer()
+    {
+        if (isMasked() || finRsvOp != encodedFinRsvOp)
+            return null;
+        if (getPayload() != encodedPayload || getPayloadLength() != encodedPayloadLength)
+            return null;
+        return encoded.getBuffer().asReadOnlyBuffer();
+    }
+}
@@ -222,6 +222,16 @@ public class FrameFlusher extends IteratingCallback
 
                 messagesOut.increment();
 
+                // A frame already generated into a shared buffer is written as is.
+                ByteBuffer encoded = entry.frame instanceof EncodedFrame ? ((EncodedFrame)entry.frame).getEncodedBuffer() : null;
+                if (encoded != null)
+                {
+                    buffers.add(encoded);
+                    flush = true;
+                    flushed = true;
+                    continue;
+                }
+
                 int batchSpace = batchBuffer == null ? bufferSize : BufferUtil.space(batchBuffer);
 
                 boolean batch = entry.batch &&
@@ -180,23 +180,23 @@ public class Generator
         ByteBuffer payload = frame.getPayload();
         if ((payload != null) && (payload.remaining() > 0))
         {
-            int maskOffset = 0;
+            // Mask a long word at a time, then the remaining bytes.
+            long maskLong = ((long)maskInt << 32) | (maskInt & 0xFFFFFFFFL);
             int start = payload.position();
             int end = payload.limit();
-            int remaining;
-            while ((remaining = end - start) > 0)
+            while (end - start >= 8)
             {
-                if (remaining >= 4)
-                {
-                    buffer.putInt(payload.getInt(start) ^ maskInt);
-                    start += 4;
-                }
-                else
-                {
-                    buffer.put((byte)(payload.get(start) ^ mask[maskOffset & 3]));
-                    ++start;
-                    ++maskOffset;
-                }
+                buffer.putLong(payload.getLong(start) ^ maskLong);
+                start += 8;
+            }
+            if (end - start >= 4)
+            {
+                buffer.putInt(payload.getInt(start) ^ maskInt);
+                start += 4;
+            }
+            for (int offset = 0; start < end; ++start, ++offset)
+            {
+                buffer.put((byte)(payload.get(start) ^ mask[offset]));
             }
         }
     }
@@ -13,6 +13,8 @@
 
 package org.eclipse.jetty.websocket.core.internal;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jetty.util.Utf8Appendable;
 
 public class NullAppendable extends Utf8Appendable
@@ -41,6 +43,13 @@ public class NullAppendable extends Utf8Appendable
         });
     }
 
+    @Override
+    protected void appendAscii(ByteBuffer buf, int length)
+    {
+        // ASCII bytes are valid UTF-8, just skip them.
+        buf.position(buf.position() + length);
+    }
+
     @Override
     public int length()
     {
@@ -22,6 +22,9 @@ import java.util.zip.Inflater;
 
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.compression.CompressionPool;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
 import org.eclipse.jetty.websocket.core.AbstractExtension;
@@ -39,9 +42,40 @@ import org.slf4j.LoggerFactory;
  * Per Message Deflate Compression extension for WebSocket.
  * <p>
  * Attempts to follow <a href="https://tools.ietf.org/html/rfc7692">Compression Extensions for WebSocket</a>
+ * <p>
+ * A {@link Deflater} and an {@link Inflater} retain a few hundreds of KiB of native memory
+ * while the compression context is taken over from one message to the next.
+ * The {@code @context_takeover_limit} parameter limits the number of Deflaters in use
+ * from the shared {@link org.eclipse.jetty.util.compression.DeflaterPool}: when the limit
+ * is exceeded, the outgoing context is not taken over, and the Deflater is returned to the
+ * pool at the end of each message, even if context takeover has been negotiated.
+ * This is allowed because the peer's decompressor does not depend on whether the
+ * compressor refers to previous messages.
+ * The incoming context can only be released between messages if
+ * {@code client_no_context_takeover} has been negotiated.
+ * <p>
+ * A {@link #setDictionary(byte[]) preset dictionary} may be configured in subclasses that
+ * are registered in place of this extension, when both peers are known to use the same
+ * dictionary, for example to compress messages of a known schema.
+ * <p>
+ * The Deflater and Inflater of the JDK do not allow to configure the window bits and the
+ * memory level, so {@code client_max_window_bits} and {@code server_max_window_bits}
+ * are not negotiated.
  */
+@ManagedObject("Per Message Deflate Extension")
 public class PerMessageDeflateExtension extends AbstractExtension
 {
+    /**
+     * The estimated memory retained by a Deflater using the zlib defaults,
+     * that is {@code (1 << (windowBits + 2)) + (1 << (memLevel + 9))} plus its internal state.
+     */
+    public static final int DEFLATER_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+    /**
+     * The estimated memory retained by an Inflater using the zlib defaults,
+     * that is {@code 1 << windowBits} plus its internal state.
+     */
+    public static final int INFLATER_MEMORY = (1 << 15) + 7 * 1024;
+
     private static final byte[] TAIL_BYTES = new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF};
     private static final ByteBuffer TAIL_BYTES_BUF = ByteBuffer.wrap(TAIL_BYTES);
     private static final Logger LOG = LoggerFactory.getLogger(PerMessageDeflateExtension.class);
@@ -59,6 +93,9 @@ public class PerMessageDeflateExtension extends AbstractExtension
     private int inflateBufferSize = DEFAULT_BUF_SIZE;
     private boolean incomingContextTakeover = true;
     private boolean outgoingContextTakeover = true;
+    private int contextTakeoverLimit = -1;
+    private byte[] dictionary;
+    private long outgoingContextResets;
 
     public PerMessageDeflateExtension()
     {
@@ -131,6 +168,11 @@ public class PerMessageDeflateExtension extends AbstractExtension
                     inflateBufferSize = config.getParameter(key, DEFAULT_BUF_SIZE);
                     break;
                 }
+                case "@context_takeover_limit":
+                {
+                    contextTakeoverLimit = config.getParameter(key, -1);
+                    break;
+                }
                 default:
                 {
                     throw new IllegalArgumentException();
@@ -176,17 +218,89 @@ public class PerMessageDeflateExtension extends AbstractExtension
     public Deflater getDeflater()
     {
         if (deflaterHolder == null)
+        {
             deflaterHolder = getDeflaterPool().acquire();
+            if (dictionary != null)
+                deflaterHolder.get().setDictionary(dictionary);
+        }
         return deflaterHolder.get();
     }
 
     public Inflater getInflater()
     {
         if (inflaterHolder == null)
+        {
             inflaterHolder = getInflaterPool().acquire();
+            if (dictionary != null)
+                inflaterHolder.get().setDictionary(dictionary);
+        }
         return inflaterHolder.get();
     }
 
+    /**
+     * @return the preset dictionary, or null if no dictionary is used
+     */
+    public byte[] getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * <p>Sets a preset dictionary used by both the Deflater and the Inflater every time
+     * the compression context is reset.</p>
+     * <p>Preset dictionaries are not part of RFC 7692, so the same dictionary must be
+     * configured on both peers, otherwise the messages cannot be decompressed.</p>
+     *
+     * @param dictionary the preset dictionary, or null to use no dictionary
+     */
+    public void setDictionary(byte[] dictionary)
+    {
+        this.dictionary = dictionary;
+    }
+
+    @ManagedAttribute("The limit of Deflaters in use above which the outgoing context is not taken over")
+    public int getContextTakeoverLimit()
+    {
+        return contextTakeoverLimit;
+    }
+
+    @ManagedAttribute("Whether the incoming compression context is taken over across messages")
+    public boolean isIncomingContextTakeover()
+    {
+        return incomingContextTakeover;
+    }
+
+    @ManagedAttribute("Whether the outgoing compression context is taken over across messages")
+    public boolean isOutgoingContextTakeover()
+    {
+        return outgoingContextTakeover;
+    }
+
+    @ManagedAttribute("The number of outgoing contexts reset because of the context takeover limit")
+    public long getOutgoingContextResets()
+    {
+        return outgoingContextResets;
+    }
+
+    /**
+     * @return the estimated memory, in bytes, retained by this extension between messages
+     */
+    @ManagedAttribute("The estimated memory retained by this extension")
+    public long getRetainedMemory()
+    {
+        long memory = 0;
+        if (deflaterHolder != null)
+            memory += DEFLATER_MEMORY;
+        if (inflaterHolder != null)
+            memory += INFLATER_MEMORY;
+        return memory;
+    }
+
+    private boolean isContextTakeoverLimitExceeded(CompressionPool<?> pool)
+    {
+        return contextTakeoverLimit >= 0 && pool.getInUseCount() > contextTakeoverLimit;
+    }
+
     public void releaseInflater()
     {
         if (inflaterHolder != null)
@@ -228,10 +342,20 @@ public class PerMessageDeflateExtension extends AbstractExtension
     @Override
     protected void nextOutgoingFrame(Frame frame, Callback callback, boolean batch)
     {
-        if (frame.isFin() && !outgoingContextTakeover)
+        if (frame.isFin())
         {
-            LOG.debug("Outgoing Context Reset");
-            releaseDeflater();
+            if (!outgoingContextTakeover)
+            {
+                LOG.debug("Outgoing Context Reset");
+                releaseDeflater();
+            }
+            else if (deflaterHolder != null && isContextTakeoverLimitExceeded(getDeflaterPool()))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Outgoing Context Reset, {} Deflaters in use", getDeflaterPool().getInUseCount());
+                ++outgoingContextResets;
+                releaseDeflater();
+            }
         }
         super.nextOutgoingFrame(frame, callback, batch);
     }
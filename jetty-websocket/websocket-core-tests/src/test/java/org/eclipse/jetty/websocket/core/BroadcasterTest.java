@@ -0,0 +1,285 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+package org.eclipse.jetty.websocket.core;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritePendingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.websocket.core.internal.FrameFlusher;
+import org.eclipse.jetty.websocket.core.internal.FrameFlusherTest;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BroadcasterTest
+{
+    private final ByteBufferPool bufferPool = new MappedByteBufferPool();
+    private Scheduler scheduler;
+    private Broadcaster broadcaster;
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        broadcaster = new Broadcaster(bufferPool);
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testFrameIsGeneratedOnce() throws Exception
+    {
+        List<FlusherSession> sessions = List.of(new FlusherSession(false), new FlusherSession(false), new FlusherSession(false));
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.TEXT).setPayload("Hello World"), sessions, callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        for (FlusherSession session : sessions)
+        {
+            // The shared buffer is written as it is.
+            assertEquals(List.of(true), session.endPoint.readOnly);
+            Frame frame = session.endPoint.incomingFrames.poll(5, TimeUnit.SECONDS);
+            assertThat(frame.getPayloadAsUTF8(), is("Hello World"));
+            assertTrue(frame.isFin());
+        }
+        assertEquals(1, broadcaster.getBroadcasts());
+        assertEquals(3, broadcaster.getSent());
+    }
+
+    @Test
+    public void testMaskedFrameIsGeneratedPerSession() throws Exception
+    {
+        FlusherSession plain = new FlusherSession(false);
+        FlusherSession masked = new FlusherSession(true);
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.TEXT).setPayload("Hello World"), List.of(plain, masked), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(true), plain.endPoint.readOnly);
+        assertFalse(masked.endPoint.readOnly.contains(true));
+        Frame frame = masked.endPoint.incomingFrames.poll(5, TimeUnit.SECONDS);
+        assertTrue(frame.isMasked());
+        assertThat(frame.getPayloadAsUTF8(), is("Hello World"));
+    }
+
+    @Test
+    public void testSlowSessionDropPolicy() throws Exception
+    {
+        FlusherSession session = new FlusherSession(false);
+        SlowSession slow = new SlowSession();
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.BINARY).setPayload(ByteBuffer.allocate(16)), List.of(session, slow), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, broadcaster.getSent());
+        assertEquals(1, broadcaster.getDropped());
+        assertEquals(0, broadcaster.getFailed());
+        assertFalse(slow.closed);
+    }
+
+    @Test
+    public void testSlowSessionClosePolicy() throws Exception
+    {
+        broadcaster.setPolicy(Broadcaster.Policy.CLOSE);
+        SlowSession slow = new SlowSession();
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.BINARY).setPayload(ByteBuffer.allocate(16)), List.of(slow), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, broadcaster.getDropped());
+        assertTrue(slow.closed);
+    }
+
+    @Test
+    public void testSessionAddedDuringBroadcast() throws Exception
+    {
+        Queue<CoreSession> sessions = new ConcurrentLinkedQueue<>();
+        DeferredSession added = new DeferredSession();
+        DeferredSession session = new DeferredSession()
+        {
+            @Override
+            public void sendFrame(Frame frame, Callback callback, boolean batch)
+            {
+                super.sendFrame(frame, callback, batch);
+                sessions.add(added);
+            }
+        };
+        DeferredSession other = new DeferredSession();
+        sessions.add(session);
+        sessions.add(other);
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.TEXT).setPayload("Hello World"), sessions, callback);
+
+        // The added session is still writing the shared buffer.
+        session.callback.succeeded();
+        other.callback.succeeded();
+        assertFalse(callback.isDone());
+        added.callback.succeeded();
+        callback.get(5, TimeUnit.SECONDS);
+        assertEquals(3, broadcaster.getSent());
+    }
+
+    @Test
+    public void testSessionRemovedDuringBroadcast() throws Exception
+    {
+        Queue<CoreSession> sessions = new ConcurrentLinkedQueue<>();
+        DeferredSession removed = new DeferredSession();
+        DeferredSession session = new DeferredSession()
+        {
+            @Override
+            public void sendFrame(Frame frame, Callback callback, boolean batch)
+            {
+                super.sendFrame(frame, callback, batch);
+                sessions.remove(removed);
+            }
+        };
+        DeferredSession other = new DeferredSession();
+        sessions.add(session);
+        sessions.add(other);
+        sessions.add(removed);
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.TEXT).setPayload("Hello World"), sessions, callback);
+
+        session.callback.succeeded();
+        other.callback.succeeded();
+        callback.get(5, TimeUnit.SECONDS);
+        assertNull(removed.callback);
+        assertEquals(2, broadcaster.getSent());
+    }
+
+    @Test
+    public void testSessionThrowingFailsBroadcast() throws Exception
+    {
+        DeferredSession session = new DeferredSession();
+        CoreSession throwing = new CoreSession.Empty()
+        {
+            @Override
+            public void sendFrame(Frame frame, Callback callback, boolean batch)
+            {
+                throw new IllegalStateException("explicitly_thrown");
+            }
+        };
+
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.TEXT).setPayload("Hello World"), List.of(session, throwing, new DeferredSession()), callback);
+
+        // The callback is failed only when the session sending the frame completes.
+        assertFalse(callback.isDone());
+        session.callback.succeeded();
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> callback.get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause(), instanceOf(IllegalStateException.class));
+    }
+
+    private static class DeferredSession extends CoreSession.Empty
+    {
+        private Callback callback;
+
+        @Override
+        public void sendFrame(Frame frame, Callback callback, boolean batch)
+        {
+            this.callback = callback;
+        }
+    }
+
+    private class FlusherSession extends CoreSession.Empty
+    {
+        private final RecordingEndPoint endPoint = new RecordingEndPoint(bufferPool);
+        private final FrameFlusher flusher = new FrameFlusher(bufferPool, scheduler, new Generator(), endPoint, 4096, 8);
+        private final boolean mask;
+
+        private FlusherSession(boolean mask)
+        {
+            this.mask = mask;
+        }
+
+        @Override
+        public void sendFrame(Frame frame, Callback callback, boolean batch)
+        {
+            if (mask)
+                frame.setMask(new byte[]{0x11, 0x22, 0x33, 0x44});
+            if (flusher.enqueue(frame, callback, batch))
+                flusher.iterate();
+        }
+    }
+
+    private static class SlowSession extends CoreSession.Empty
+    {
+        private boolean closed;
+
+        @Override
+        public void sendFrame(Frame frame, Callback callback, boolean batch)
+        {
+            callback.failed(new WritePendingException());
+        }
+
+        @Override
+        public void close(int statusCode, String reason, Callback callback)
+        {
+            closed = statusCode == CloseStatus.POLICY_VIOLATION;
+            callback.succeeded();
+        }
+    }
+
+    private static class RecordingEndPoint extends FrameFlusherTest.CapturingEndPoint
+    {
+        private final List<Boolean> readOnly = new ArrayList<>();
+
+        private RecordingEndPoint(ByteBufferPool bufferPool)
+        {
+            super(bufferPool);
+        }
+
+        @Override
+        public void write(Callback callback, ByteBuffer... buffers) throws WritePendingException
+        {
+            for (ByteBuffer buffer : buffers)
+            {
+                readOnly.add(buffer.isReadOnly());
+            }
+            super.write(callback, buffers);
+        }
+    }
+}
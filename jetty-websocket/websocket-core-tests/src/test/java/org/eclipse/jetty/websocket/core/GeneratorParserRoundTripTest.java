@@ -19,11 +19,13 @@ import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.websocket.core.internal.Generator;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GeneratorParserRoundTripTest
@@ -95,4 +97,48 @@ public class GeneratorParserRoundTripTest
         assertTrue(txt.isMasked(), "Text.isMasked");
         assertThat("Text parsed", txt.getPayloadAsUTF8(), is(message));
     }
+
+    @Test
+    public void testParserAndGeneratorMaskedAnyLength() throws Exception
+    {
+        Generator gen = new Generator();
+        byte[] mask = new byte[]{0x12, 0x34, 0x56, 0x78};
+
+        // Cover the long word, int word and single byte masking paths.
+        for (int length = 0; length <= 40; length++)
+        {
+            byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++)
+            {
+                payload[i] = (byte)('a' + i % 26);
+            }
+
+            ParserCapture capture = new ParserCapture(true, Behavior.SERVER);
+            ByteBuffer out = bufferPool.acquire(8192, false);
+            try
+            {
+                Frame frame = new Frame(OpCode.BINARY).setPayload(ByteBuffer.wrap(payload));
+                frame.setMask(mask.clone());
+                gen.generateHeader(frame, out);
+                int headerLength = out.remaining();
+                gen.generatePayload(frame, out);
+
+                for (int i = 0; i < length; i++)
+                {
+                    assertThat("Masked byte " + i + " of " + length, out.get(headerLength + i), is((byte)(payload[i] ^ mask[i & 3])));
+                }
+
+                capture.parse(out);
+            }
+            finally
+            {
+                bufferPool.release(out);
+            }
+
+            Frame bin = capture.framesQueue.poll(1, TimeUnit.SECONDS);
+            assertThat("Payload length", bin.getPayloadLength(), is(length));
+            if (length > 0)
+                assertArrayEquals(payload, BufferUtil.toArray(bin.getPayload()), "Payload unmasked");
+        }
+    }
 }
@@ -590,6 +590,81 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
         tester.assertHasFrames("tora", "tora", "tora");
     }
 
+    @Test
+    public void testOutgoingContextReleasedAboveContextTakeoverLimit()
+    {
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate; @context_takeover_limit=0"), components);
+        ext.setCoreSession(newSession());
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        ext.sendFrame(new Frame(OpCode.TEXT, false, "Hello "), Callback.NOOP, false);
+        // The context is retained until the end of the message.
+        assertThat(ext.getRetainedMemory(), is((long)PerMessageDeflateExtension.DEFLATER_MEMORY));
+        assertThat(components.getDeflaterPool().getInUseCount(), is(1));
+
+        ext.sendFrame(new Frame(OpCode.CONTINUATION, true, "World"), Callback.NOOP, false);
+        capture.assertFrameCount(2);
+        assertThat(ext.getRetainedMemory(), is(0L));
+        assertThat(components.getDeflaterPool().getInUseCount(), is(0));
+        assertThat(ext.getOutgoingContextResets(), is(1L));
+        // The negotiated parameters are not affected.
+        assertThat(ext.getConfig().getParameterizedName(), is("permessage-deflate"));
+    }
+
+    @Test
+    public void testOutgoingContextRetainedBelowContextTakeoverLimit()
+    {
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate; @context_takeover_limit=1"), components);
+        ext.setCoreSession(newSession());
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        ext.sendFrame(new Frame(OpCode.TEXT, true, "Hello World"), Callback.NOOP, false);
+        capture.assertFrameCount(1);
+        assertThat(ext.getRetainedMemory(), is((long)PerMessageDeflateExtension.DEFLATER_MEMORY));
+        assertThat(ext.getOutgoingContextResets(), is(0L));
+
+        ext.releaseDeflater();
+        assertThat(components.getDeflaterPool().getInUseCount(), is(0));
+    }
+
+    @Test
+    public void testPresetDictionary() throws Exception
+    {
+        byte[] dictionary = "{\"type\":\"quote\",\"symbol\":\"\",\"price\":}".getBytes(StandardCharsets.UTF_8);
+        String message = "{\"type\":\"quote\",\"symbol\":\"ACME\",\"price\":12.5}";
+
+        Frame plain = deflate(message, null);
+        Frame compressed = deflate(message, dictionary);
+        assertThat(compressed.getPayloadLength() < plain.getPayloadLength(), is(true));
+
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext.setCoreSession(newSession());
+        ext.setDictionary(dictionary);
+        IncomingFramesCapture capture = new IncomingFramesCapture();
+        ext.setNextIncomingFrames(capture);
+
+        ext.onFrame(compressed, Callback.NOOP);
+        capture.assertFrameCount(1);
+        assertThat(capture.frames.poll().getPayloadAsUTF8(), is(message));
+    }
+
+    private Frame deflate(String message, byte[] dictionary) throws InterruptedException
+    {
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext.setCoreSession(newSession());
+        ext.setDictionary(dictionary);
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+        ext.sendFrame(new Frame(OpCode.TEXT, true, message), Callback.NOOP, false);
+        return capture.frames.poll(1, TimeUnit.SECONDS);
+    }
+
     private WebSocketCoreSession newSession()
     {
         return newSessionFromConfig(new ConfigurationCustomizer());
@@ -0,0 +1,91 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+package org.eclipse.jetty.websocket.javax.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import javax.websocket.SendHandler;
+import javax.websocket.Session;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.Broadcaster;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+
+/**
+ * <p>Sends the same message to many {@link Session}s, generating the WebSocket frame only once.</p>
+ *
+ * @see Broadcaster
+ */
+public class JavaxWebSocketBroadcaster
+{
+    private final Broadcaster broadcaster;
+
+    public JavaxWebSocketBroadcaster(ByteBufferPool bufferPool)
+    {
+        this(new Broadcaster(bufferPool));
+    }
+
+    public JavaxWebSocketBroadcaster(Broadcaster broadcaster)
+    {
+        this.broadcaster = Objects.requireNonNull(broadcaster);
+    }
+
+    public Broadcaster getBroadcaster()
+    {
+        return broadcaster;
+    }
+
+    /**
+     * @param text the text message to send
+     * @param sessions the sessions to send the message to
+     * @param handler the handler notified when the message has been sent, dropped or failed for all the sessions, or null
+     */
+    public void broadcast(String text, Collection<? extends Session> sessions, SendHandler handler)
+    {
+        broadcast(new Frame(OpCode.TEXT).setPayload(text), sessions, handler);
+    }
+
+    /**
+     * @param data the binary message to send
+     * @param sessions the sessions to send the message to
+     * @param handler the handler notified when the message has been sent, dropped or failed for all the sessions, or null
+     */
+    public void broadcast(ByteBuffer data, Collection<? extends Session> sessions, SendHandler handler)
+    {
+        broadcast(new Frame(OpCode.BINARY).setPayload(data), sessions, handler);
+    }
+
+    private void broadcast(Frame frame, Collection<? extends Session> sessions, SendHandler handler)
+    {
+        List<CoreSession> coreSessions = new ArrayList<>(sessions.size());
+        for (Session session : sessions)
+        {
+            if (!(session instanceof JavaxWebSocketSession))
+                throw new IllegalArgumentException("Unsupported session " + session);
+            coreSessions.add(((JavaxWebSocketSession)session).getCoreSession());
+        }
+        broadcaster.broadcast(frame, coreSessions, handler == null ? Callback.NOOP : new SendHandlerCallback(handler));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), broadcaster);
+    }
+}
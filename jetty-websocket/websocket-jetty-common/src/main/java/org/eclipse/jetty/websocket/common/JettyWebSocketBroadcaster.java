@@ -0,0 +1,91 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+package org.eclipse.jetty.websocket.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.core.Broadcaster;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+
+/**
+ * <p>Sends the same message to many {@link Session}s, generating the WebSocket frame only once.</p>
+ *
+ * @see Broadcaster
+ */
+public class JettyWebSocketBroadcaster
+{
+    private final Broadcaster broadcaster;
+
+    public JettyWebSocketBroadcaster(ByteBufferPool bufferPool)
+    {
+        this(new Broadcaster(bufferPool));
+    }
+
+    public JettyWebSocketBroadcaster(Broadcaster broadcaster)
+    {
+        this.broadcaster = Objects.requireNonNull(broadcaster);
+    }
+
+    public Broadcaster getBroadcaster()
+    {
+        return broadcaster;
+    }
+
+    /**
+     * @param text the text message to send
+     * @param sessions the sessions to send the message to
+     * @param callback the callback notified when the message has been sent, dropped or failed for all the sessions, or null
+     */
+    public void broadcast(String text, Collection<? extends Session> sessions, WriteCallback callback)
+    {
+        broadcast(new Frame(OpCode.TEXT).setPayload(text), sessions, callback);
+    }
+
+    /**
+     * @param data the binary message to send
+     * @param sessions the sessions to send the message to
+     * @param callback the callback notified when the message has been sent, dropped or failed for all the sessions, or null
+     */
+    public void broadcast(ByteBuffer data, Collection<? extends Session> sessions, WriteCallback callback)
+    {
+        broadcast(new Frame(OpCode.BINARY).setPayload(data), sessions, callback);
+    }
+
+    private void broadcast(Frame frame, Collection<? extends Session> sessions, WriteCallback callback)
+    {
+        List<CoreSession> coreSessions = new ArrayList<>(sessions.size());
+        for (Session session : sessions)
+        {
+            if (!(session instanceof WebSocketSession))
+                throw new IllegalArgumentException("Unsupported session " + session);
+            coreSessions.add(((WebSocketSession)session).getCoreSession());
+        }
+        broadcaster.broadcast(frame, coreSessions, callback == null ? Callback.NOOP : Callback.from(callback::writeSuccess, callback::writeFailed));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), broadcaster);
+    }
+}
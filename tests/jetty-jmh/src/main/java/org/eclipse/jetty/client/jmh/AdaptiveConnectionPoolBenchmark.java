@@ -0,0 +1,189 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.AdaptiveConnectionPoolPolicy;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares, under a ramp of traffic, a connection pool that opens connections
+ * lazily with a connection pool sized by {@link AdaptiveConnectionPoolPolicy}.</p>
+ * <p>Differently from {@link ConnectionPoolsBenchmark}, opening a connection takes
+ * {@code CONNECT_DELAY} milliseconds, like the TCP and TLS handshakes would; each
+ * benchmark invocation starts with a cold pool and sends {@code REQUESTS} requests
+ * with a decreasing interval between them, each request holding its connection for
+ * {@code SERVICE_TIME} milliseconds.</p>
+ * <p>The time taken by an invocation is mostly given by the intervals between requests,
+ * so the benchmark also reports, as secondary results, the number of times a request
+ * found no connection available ({@code waits}) and the total time requests waited for
+ * a connection ({@code waitMillis}).</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class AdaptiveConnectionPoolBenchmark
+{
+    @Param({"lazy", "adaptive"})
+    public static String POLICY;
+
+    @Param({"5", "20"})
+    public static long CONNECT_DELAY;
+
+    @Param({"2", "10"})
+    public static long SERVICE_TIME;
+
+    @Param({"300"})
+    public static int REQUESTS;
+
+    private HttpClient httpClient;
+    private Scheduler scheduler;
+    private AbstractConnectionPool pool;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception
+    {
+        httpClient = new HttpClient()
+        {
+            @Override
+            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            {
+                getScheduler().schedule(() -> promise.succeeded(new ConnectionPoolsBenchmark.MockConnection()), CONNECT_DELAY, TimeUnit.MILLISECONDS);
+            }
+        };
+        httpClient.start();
+        scheduler = httpClient.getScheduler();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws Exception
+    {
+        httpClient.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception
+    {
+        HttpDestination httpDestination = new HttpDestination(httpClient, new Origin("http", "localhost", 8080))
+        {
+        };
+        pool = new DuplexConnectionPool(httpDestination, 256, Callback.NOOP);
+        switch (POLICY)
+        {
+            case "lazy":
+                break;
+            case "adaptive":
+                AdaptiveConnectionPoolPolicy policy = new AdaptiveConnectionPoolPolicy(httpDestination, pool);
+                policy.setPeriod(CONNECT_DELAY);
+                pool.addBean(policy);
+                break;
+            default:
+                throw new AssertionError("Unknown policy: " + POLICY);
+        }
+        pool.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception
+    {
+        pool.stop();
+        pool = null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void testRamp(Waits waits)
+    {
+        AbstractConnectionPool pool = this.pool;
+        long maxInterval = TimeUnit.MILLISECONDS.toNanos(SERVICE_TIME);
+        for (int i = 0; i < REQUESTS; ++i)
+        {
+            // The interval between requests decreases from the service
+            // time down to 1/10 of it, so the demand grows by 10 times.
+            LockSupport.parkNanos(maxInterval - (maxInterval * 9 / 10) * i / REQUESTS);
+            Connection connection = pool.acquire(true);
+            if (connection == null)
+            {
+                ++waits.waits;
+                long begin = System.nanoTime();
+                while (connection == null)
+                {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                    connection = pool.acquire(true);
+                }
+                waits.waitNanos += System.nanoTime() - begin;
+            }
+            Connection acquired = connection;
+            scheduler.schedule(() -> pool.release(acquired), SERVICE_TIME, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Waits
+    {
+        public long waits;
+        private long waitNanos;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            waits = 0;
+            waitNanos = 0;
+        }
+
+        public long waitMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(AdaptiveConnectionPoolBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
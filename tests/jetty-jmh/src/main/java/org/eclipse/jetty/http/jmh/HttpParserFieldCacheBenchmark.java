@@ -0,0 +1,181 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Parses the requests that a browser sends over a persistent connection to load
+ * a page and its resources, with a per parser field cache of different sizes.</p>
+ * <p>The field cache hit rate is printed at the end of each measurement iteration,
+ * and the allocation rate is reported by the GC profiler.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpParserFieldCacheBenchmark
+{
+    private static final String USER_AGENT = "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/88.0.4324.150 Safari/537.36\r\n";
+    private static final String COOKIE = "Cookie: JSESSIONID=node01q6ngb6z4a8rf1p3mhc1n5xk3v0.node0; _ga=GA1.2.1480394938.1612345678; theme=dark\r\n";
+    private static final String[] PATHS = {
+        "/index.html", "/css/site.css", "/js/app.js", "/img/logo.png", "/img/banner.jpg", "/favicon.ico"
+    };
+    private static final String[] ACCEPTS = {
+        "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.9",
+        "text/css,*/*;q=0.1",
+        "*/*",
+        "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8",
+        "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8",
+        "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8"
+    };
+
+    @Param({"0", "1024", "4096"})
+    public int headerCacheSize;
+
+    private ByteBuffer[] requests;
+    private Handler handler;
+    private HttpParser parser;
+
+    @Setup
+    public void setUp()
+    {
+        requests = new ByteBuffer[PATHS.length];
+        for (int i = 0; i < PATHS.length; ++i)
+        {
+            requests[i] = BufferUtil.toBuffer("GET " + PATHS[i] + " HTTP/1.1\r\n" +
+                "Host: www.example.com\r\n" +
+                "Connection: keep-alive\r\n" +
+                USER_AGENT +
+                "Accept: " + ACCEPTS[i] + "\r\n" +
+                "Sec-Fetch-Site: same-origin\r\n" +
+                "Sec-Fetch-Mode: no-cors\r\n" +
+                "Referer: https://www.example.com/index.html\r\n" +
+                "Accept-Encoding: gzip, deflate, br\r\n" +
+                "Accept-Language: en-GB,en-US;q=0.9,en;q=0.8\r\n" +
+                COOKIE +
+                "\r\n");
+        }
+        handler = new Handler();
+        parser = new HttpParser(handler);
+        parser.setHeaderCacheSize(headerCacheSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report()
+    {
+        long hits = parser.getFieldCacheHits();
+        long misses = parser.getFieldCacheMisses();
+        if (hits + misses > 0)
+            System.err.printf("%nheaderCacheSize=%d hits=%d misses=%d hitRate=%.4f%n",
+                headerCacheSize, hits, misses, (double)hits / (hits + misses));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testParsePage(Blackhole blackhole)
+    {
+        for (ByteBuffer request : requests)
+        {
+            ByteBuffer buffer = request.slice();
+            handler.blackhole = blackhole;
+            while (buffer.hasRemaining())
+            {
+                parser.parseNext(buffer);
+            }
+            parser.reset();
+        }
+    }
+
+    private static class Handler implements HttpParser.RequestHandler
+    {
+        private Blackhole blackhole;
+
+        @Override
+        public void startRequest(String method, String uri, HttpVersion version)
+        {
+            blackhole.consume(uri);
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            blackhole.consume(field);
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean content(ByteBuffer item)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean contentComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            return true;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpParserFieldCacheBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,122 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.pathmap.MappedResource;
+import org.eclipse.jetty.http.pathmap.PathMappings;
+import org.eclipse.jetty.http.pathmap.RegexPathSpec;
+import org.eclipse.jetty.http.pathmap.ServletPathSpec;
+import org.eclipse.jetty.http.pathmap.UriTemplatePathSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class PathMappingsBenchmark
+{
+    @Param({"100", "1000", "5000"})
+    int mappings;
+
+    private PathMappings<String> pathMappings;
+    private String[] paths;
+
+    @Setup
+    public void setUp()
+    {
+        // A mix of the mappings typical of a gateway: exact and prefix
+        // servlet mappings, URI templates and regular expressions.
+        pathMappings = new PathMappings<>();
+        for (int i = 0; i < mappings; ++i)
+        {
+            switch (i % 5)
+            {
+                case 0:
+                    pathMappings.put(new ServletPathSpec("/static" + i + "/*"), "prefix" + i);
+                    break;
+                case 1:
+                    pathMappings.put(new ServletPathSpec("/exact" + i + "/index.html"), "exact" + i);
+                    break;
+                case 2:
+                    pathMappings.put(new UriTemplatePathSpec("/api" + i + "/{id}/orders/{order}"), "template" + i);
+                    break;
+                case 3:
+                    pathMappings.put(new RegexPathSpec("^/rest" + i + "/[0-9]+/items$"), "regex" + i);
+                    break;
+                default:
+                    pathMappings.put(new ServletPathSpec("*.ext" + i), "suffix" + i);
+                    break;
+            }
+        }
+        pathMappings.put(new ServletPathSpec("/"), "default");
+
+        paths = new String[1024];
+        for (int i = 0; i < paths.length; ++i)
+        {
+            int n = ThreadLocalRandom.current().nextInt(mappings);
+            switch (n % 5)
+            {
+                case 0:
+                    paths[i] = "/static" + n + "/css/site.css";
+                    break;
+                case 1:
+                    paths[i] = "/exact" + n + "/index.html";
+                    break;
+                case 2:
+                    paths[i] = "/api" + n + "/" + i + "/orders/" + n;
+                    break;
+                case 3:
+                    paths[i] = "/rest" + n + "/" + i + "/items";
+                    break;
+                default:
+                    paths[i] = "/unmapped/" + n + "/resource";
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public MappedResource<String> testGetMatch()
+    {
+        String path = paths[ThreadLocalRandom.current().nextInt(paths.length)];
+        return pathMappings.getMatch(path);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(PathMappingsBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,136 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Encodes the responses of an API server over a single connection, where most
+ * responses share the same pre encoded fields and differ by a few others.</p>
+ * <p>The average number of encoded bytes per response is printed at the end of
+ * each measurement iteration.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class HpackEncoderBenchmark
+{
+    private static final HttpFields COMMON = HttpFields.build()
+        .add(new PreEncodedHttpField(HttpHeader.SERVER, "Jetty(10.0.x)"))
+        .add(new PreEncodedHttpField(HttpHeader.CONTENT_TYPE, "application/json;charset=utf-8"))
+        .add(new PreEncodedHttpField(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate"))
+        .add(new PreEncodedHttpField(HttpHeader.VARY, "Accept-Encoding, Origin"))
+        .add(new PreEncodedHttpField("Access-Control-Allow-Origin", "*"))
+        .add(new PreEncodedHttpField("X-Content-Type-Options", "nosniff"))
+        .add(new PreEncodedHttpField("Strict-Transport-Security", "max-age=31536000"))
+        .asImmutable();
+    private static final String[] DATES = {
+        "Mon, 01 Feb 2021 10:00:00 GMT", "Mon, 01 Feb 2021 10:00:01 GMT"
+    };
+    private static final String[] LAST_MODIFIED = {
+        "Fri, 29 Jan 2021 08:00:00 GMT", "Sat, 30 Jan 2021 09:30:00 GMT", "Sun, 31 Jan 2021 18:45:00 GMT"
+    };
+
+    @Param({"false", "true"})
+    public boolean adaptiveIndexing;
+
+    @Param({"0", "16"})
+    public int blockCacheSize;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+    private MetaData.Response[] responses;
+    private HpackEncoder encoder;
+    private int index;
+    private long bytes;
+    private long count;
+
+    @Setup
+    public void setUp()
+    {
+        responses = new MetaData.Response[1024];
+        for (int i = 0; i < responses.length; ++i)
+        {
+            HttpFields fields = HttpFields.build(COMMON)
+                .add(HttpHeader.DATE, DATES[i * DATES.length / responses.length])
+                .add(HttpHeader.LAST_MODIFIED, LAST_MODIFIED[i % LAST_MODIFIED.length])
+                .add(HttpHeader.ETAG, "W/\"" + Integer.toHexString(i * 7919) + "\"")
+                .add("X-Request-Id", Integer.toHexString(i * 104729))
+                .add(HttpHeader.CONTENT_LENGTH, Integer.toString(128 + i % 8));
+            responses[i] = new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+        }
+        encoder = new HpackEncoder();
+        encoder.setAdaptiveIndexing(adaptiveIndexing);
+        encoder.setBlockCacheSize(blockCacheSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report()
+    {
+        if (count > 0)
+            System.err.printf("%nadaptiveIndexing=%b blockCacheSize=%d bytes/response=%.2f%n",
+                adaptiveIndexing, blockCacheSize, (double)bytes / count);
+        bytes = 0;
+        count = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testEncodeResponse() throws HpackException
+    {
+        MetaData.Response response = responses[index];
+        index = (index + 1) % responses.length;
+        buffer.clear();
+        encoder.encode(buffer, response);
+        int length = buffer.position();
+        bytes += length;
+        ++count;
+        return length;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackEncoderBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,243 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.jmh;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.DependencyTreeFrameScheduler;
+import org.eclipse.jetty.http2.ExtensiblePriorityFrameScheduler;
+import org.eclipse.jetty.http2.FIFOFrameScheduler;
+import org.eclipse.jetty.http2.FrameScheduler;
+import org.eclipse.jetty.http2.HTTP2Flusher;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Sends the resources of a page over a single connection, where the images
+ * have been queued before the critical CSS and JavaScript resources, in the
+ * same way {@link HTTP2Flusher} would, one DATA frame at a time.</p>
+ * <p>The benchmark measures the cost of the scheduler; the time to first byte
+ * and to last byte of each stream, expressed as the KiB written on the connection
+ * before the first and after the last byte of the stream, is printed at the end
+ * of each measurement iteration.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class FrameSchedulerBenchmark
+{
+    private static final Resource[] RESOURCES = resources();
+
+    private static Resource[] resources()
+    {
+        List<Resource> resources = new ArrayList<>();
+        resources.add(new Resource("html", 60 * 1024, "u=0", 0, 256));
+        for (int i = 0; i < 24; ++i)
+        {
+            resources.add(new Resource("img", 150 * 1024, "u=5, i", 1, 16));
+        }
+        resources.add(new Resource("css", 40 * 1024, "u=1", 0, 256));
+        resources.add(new Resource("css", 40 * 1024, "u=1", 0, 256));
+        resources.add(new Resource("js", 120 * 1024, "u=1", 0, 256));
+        resources.add(new Resource("js", 120 * 1024, "u=1", 0, 256));
+        return resources.toArray(new Resource[0]);
+    }
+
+    @Param({"fifo", "extensible", "tree"})
+    public String scheduler;
+
+    private final long[] firstBytes = new long[RESOURCES.length];
+    private final long[] lastBytes = new long[RESOURCES.length];
+    private long pages;
+
+    @TearDown(Level.Iteration)
+    public void report()
+    {
+        if (pages == 0)
+            return;
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%nscheduler=%s ttfb/ttlb KiB:", scheduler));
+        for (int i = 0; i < RESOURCES.length; ++i)
+        {
+            builder.append(String.format(" %s#%d=%d/%d", RESOURCES[i].type, streamId(i), firstBytes[i] / pages / 1024, lastBytes[i] / pages / 1024));
+        }
+        System.err.println(builder);
+        pages = 0;
+        for (int i = 0; i < RESOURCES.length; ++i)
+        {
+            firstBytes[i] = 0;
+            lastBytes[i] = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public long testSendPage()
+    {
+        FrameScheduler frameScheduler = newFrameScheduler();
+        List<HTTP2Flusher.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < RESOURCES.length; ++i)
+        {
+            Resource resource = RESOURCES[i];
+            int streamId = streamId(i);
+            frameScheduler.onHeaders(resource.newHeadersFrame(streamId));
+            entries.add(new ResourceEntry(i, streamId, resource.length));
+        }
+
+        long written = 0;
+        while (!entries.isEmpty())
+        {
+            boolean oneDataFrame = frameScheduler.schedule(entries);
+            Iterator<HTTP2Flusher.Entry> iterator = entries.iterator();
+            while (iterator.hasNext())
+            {
+                ResourceEntry entry = (ResourceEntry)iterator.next();
+                if (entry.remaining == entry.length)
+                    firstBytes[entry.index] += written;
+                int length = Math.min(entry.remaining, Frame.DEFAULT_MAX_LENGTH);
+                entry.remaining -= length;
+                written += Frame.HEADER_LENGTH + length;
+                frameScheduler.onDataGenerated(entry.streamId, length);
+                if (entry.remaining == 0)
+                {
+                    lastBytes[entry.index] += written;
+                    iterator.remove();
+                    frameScheduler.onStreamRemoved(entry.streamId);
+                }
+                if (oneDataFrame)
+                    break;
+            }
+        }
+        ++pages;
+        return written;
+    }
+
+    private FrameScheduler newFrameScheduler()
+    {
+        switch (scheduler)
+        {
+            case "fifo":
+                return new FIFOFrameScheduler();
+            case "extensible":
+                return new ExtensiblePriorityFrameScheduler();
+            case "tree":
+                return new DependencyTreeFrameScheduler();
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private static int streamId(int index)
+    {
+        return 2 * index + 1;
+    }
+
+    private static class Resource
+    {
+        private final String type;
+        private final int length;
+        private final String priority;
+        private final int parentStreamId;
+        private final int weight;
+
+        private Resource(String type, int length, String priority, int parentStreamId, int weight)
+        {
+            this.type = type;
+            this.length = length;
+            this.priority = priority;
+            this.parentStreamId = parentStreamId;
+            this.weight = weight;
+        }
+
+        private HeadersFrame newHeadersFrame(int streamId)
+        {
+            HttpFields fields = HttpFields.build().put(ExtensiblePriorityFrameScheduler.PRIORITY_HEADER, priority);
+            MetaData.Request request = new MetaData.Request("GET", HttpScheme.HTTPS.asString(), null, "/" + type, HttpVersion.HTTP_2, fields, -1);
+            return new HeadersFrame(streamId, request, new PriorityFrame(streamId, parentStreamId, weight, false), true);
+        }
+    }
+
+    private static class ResourceEntry extends HTTP2Flusher.Entry
+    {
+        private final int index;
+        private final int streamId;
+        private final int length;
+        private int remaining;
+
+        private ResourceEntry(int index, int streamId, int length)
+        {
+            super(new DataFrame(streamId, BufferUtil.EMPTY_BUFFER, true), null, Callback.NOOP);
+            this.index = index;
+            this.streamId = streamId;
+            this.length = length;
+            this.remaining = length;
+        }
+
+        @Override
+        public int getFrameBytesGenerated()
+        {
+            return 0;
+        }
+
+        @Override
+        protected boolean generate(ByteBufferPool.Lease lease)
+        {
+            return false;
+        }
+
+        @Override
+        public long onFlushed(long bytes)
+        {
+            return bytes;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(FrameSchedulerBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
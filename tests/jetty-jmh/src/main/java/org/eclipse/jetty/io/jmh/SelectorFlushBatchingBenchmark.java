@@ -0,0 +1,185 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.io.NetworkTrafficListener;
+import org.eclipse.jetty.server.NetworkTrafficServerConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the number of network reads and writes performed by the server
+ * per request, with and without flush batching in the SelectorManager.</p>
+ * <p>Each benchmark thread performs small keep-alive requests over its own
+ * connection; the number of reads and writes per request is printed at the
+ * end of each measurement iteration.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(16)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class SelectorFlushBatchingBenchmark
+{
+    private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT = "OK".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"false", "true"})
+    public boolean flushBatching;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private Server server;
+    private NetworkTrafficServerConnector connector;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        server = new Server();
+        connector = new NetworkTrafficServerConnector(server);
+        connector.getSelectorManager().setFlushBatching(flushBatching);
+        connector.setNetworkTrafficListener(new NetworkTrafficListener()
+        {
+            @Override
+            public void incoming(Socket socket, ByteBuffer bytes)
+            {
+                reads.increment();
+            }
+
+            @Override
+            public void outgoing(Socket socket, ByteBuffer bytes)
+            {
+                writes.increment();
+            }
+        });
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                response.setContentLength(CONTENT.length);
+                response.getOutputStream().write(CONTENT);
+            }
+        });
+        server.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report()
+    {
+        long count = requests.sumThenReset();
+        if (count > 0)
+            System.err.printf("%nbatching=%b reads/request=%.3f writes/request=%.3f batched=%d%n",
+                flushBatching,
+                (double)reads.sumThenReset() / count,
+                (double)writes.sumThenReset() / count,
+                connector.getSelectorManager().getBatchedFlushCount());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        server.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Client
+    {
+        private Socket socket;
+        private OutputStream output;
+        private InputStream input;
+        private final byte[] buffer = new byte[1024];
+
+        @Setup
+        public void setUp(SelectorFlushBatchingBenchmark benchmark) throws IOException
+        {
+            socket = new Socket("localhost", benchmark.connector.getLocalPort());
+            socket.setTcpNoDelay(true);
+            output = socket.getOutputStream();
+            input = socket.getInputStream();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException
+        {
+            socket.close();
+        }
+
+        private int exchange() throws IOException
+        {
+            output.write(REQUEST);
+            output.flush();
+            // Read until the response content has been received.
+            int length = 0;
+            while (true)
+            {
+                int read = input.read(buffer, length, buffer.length - length);
+                if (read < 0)
+                    throw new IOException("Unexpected EOF");
+                length += read;
+                if (length >= CONTENT.length && buffer[length - 2] == CONTENT[0] && buffer[length - 1] == CONTENT[1])
+                    return length;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testRequest(Client client) throws IOException
+    {
+        int length = client.exchange();
+        requests.increment();
+        return length;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SelectorFlushBatchingBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
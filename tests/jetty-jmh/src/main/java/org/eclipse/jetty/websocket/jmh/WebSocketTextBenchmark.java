@@ -0,0 +1,128 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+package org.eclipse.jetty.websocket.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.Utf8StringBuilder;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.eclipse.jetty.websocket.core.internal.NullAppendable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// @checkstyle-disable-check : AvoidEscapedUnicodeCharactersCheck
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class WebSocketTextBenchmark
+{
+    private static final String ASCII = "{\"user\":\"alice\",\"room\":\"general\",\"text\":\"see you at the standup in 5 minutes\"}";
+    private static final String MIXED = "{\"user\":\"zo\u00eb\",\"room\":\"g\u00e9n\u00e9ral\",\"text\":\"\u00e0 bient\u00f4t \u2014 \u4f1a\u8bae\u5728\u4e94\u5206\u949f\u540e\"}";
+
+    @Param({"ASCII", "MIXED"})
+    public String text;
+
+    @Param({"64", "1024", "16384"})
+    public int size;
+
+    private final byte[] mask = new byte[]{0x12, 0x34, 0x56, 0x78};
+    private final Generator generator = new Generator();
+    private ByteBuffer payload;
+    private ByteBuffer masked;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        String message = "ASCII".equals(text) ? ASCII : MIXED;
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < size)
+        {
+            builder.append(message);
+        }
+        payload = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        // The masked payload, without the frame header.
+        Frame frame = new Frame(OpCode.TEXT).setPayload(payload.slice()).setMask(mask.clone());
+        ByteBuffer buffer = ByteBuffer.allocate(payload.remaining());
+        buffer.flip();
+        generator.generatePayload(frame, buffer);
+        masked = buffer;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testMask()
+    {
+        Frame frame = new Frame(OpCode.TEXT).setPayload(payload.slice()).setMask(mask.clone());
+        ByteBuffer buffer = ByteBuffer.allocate(payload.remaining());
+        buffer.flip();
+        generator.generatePayload(frame, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public Frame testUnmask()
+    {
+        // Unmasking twice restores the original bytes, so the input can be reused.
+        Frame frame = new Frame(OpCode.TEXT).setPayload(masked).setMask(mask.clone());
+        frame.demask();
+        return frame;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public boolean testValidateUtf8()
+    {
+        NullAppendable validator = new NullAppendable();
+        validator.append(payload.slice());
+        return validator.isUtf8SequenceComplete();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testDecodeUtf8()
+    {
+        Utf8StringBuilder builder = new Utf8StringBuilder(payload.remaining());
+        builder.append(payload.slice());
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(WebSocketTextBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}